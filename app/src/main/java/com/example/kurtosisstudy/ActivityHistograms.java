@@ -0,0 +1,235 @@
+package com.example.kurtosisstudy;
+
+import com.example.kurtosisstudy.db.DayHistogramEntity;
+import com.example.kurtosisstudy.db.MainResultsDatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+/*
+ * ActivityHistograms
+ * ------------------
+ * Purpose:
+ *   - Chart-ready histograms of each day, maintained as minute averages land, so a day or week view
+ *     (MPAndroidChart) plots primitive arrays instead of scanning minute_averages_table / sensor_data_table.
+ *
+ * What it does:
+ *   • Per day, per 15' slot (96 slots): active seconds, diverse seconds and the wrist-angle histogram
+ *     (samples per ANGLE_BIN_DEG bin over the −90°..90° pitch range, clamped at both ends).
+ *     Hourly values are the sum of 4 slots (DayHistogram.hourly…()).
+ *   • onMinute(...) (computeAndSaveMinuteAverage, storage worker):
+ *       - adds the minute's contribution to its slot, O(ANGLE_BINS);
+ *       - a recomputed minute replaces its earlier contribution (kept per minute for the current day);
+ *       - a minute already counted before a process restart (known only from appliedMinutes) is skipped;
+ *       - the day's row (day_histogram_table, main DB) is rewritten through CoalescingWriter.dayHistogram.
+ *   • Readers:
+ *       - today(): immutable snapshot of the current day, published after each minute (any thread, no DB).
+ *       - fromEntity(row): the same view for a stored day (DataStorageManager.getWeekHistogramsAsync).
+ *
+ * Notes:
+ *   • onMinute is not thread-safe: storage worker only. DayHistogram is immutable and returns copies.
+ *   • A minute of an older day (23:59 computed after midnight) updates that day's stored row without
+ *     leaving today.
+ */
+
+public class ActivityHistograms {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int SLOT_MINUTES = 15;
+    static final int SLOTS = MINUTES_PER_DAY / SLOT_MINUTES;     // 96
+    static final int SLOTS_PER_HOUR = 60 / SLOT_MINUTES;         // 4
+    public static final int ANGLE_BINS = 12;
+    public static final float ANGLE_MIN_DEG = -90f;
+    public static final float ANGLE_BIN_DEG = 15f;
+
+    private Day current = null;                      // storage worker only
+    private volatile DayHistogram snapshot = null;   // today's published view
+
+    // ---- Metrics ----
+    private long minutesApplied = 0, minutesReplaced = 0, minutesSkipped = 0, olderDayMinutes = 0;
+
+    // Bin of one sample's pitch angle (degrees)
+    public static int angleBin(float angleDeg) {
+        int bin = (int) Math.floor((angleDeg - ANGLE_MIN_DEG) / ANGLE_BIN_DEG);
+        return Math.max(0, Math.min(ANGLE_BINS - 1, bin));
+    }
+
+    // ================== Updates (storage worker) ==================
+
+    public void onMinute(MainResultsDatabase db, String day, int week, long minuteStart,
+                         int activeSeconds, int diverseSeconds, int[] angleCounts) {
+        Day d = dayFor(db, day, week);
+        int minute = (int) ((minuteStart - d.dayStart) / 60_000L);
+        if (minute < 0 || minute >= MINUTES_PER_DAY) return;
+
+        if (d.applied.get(minute)) {
+            if (d.minuteActive == null || !d.known.get(minute)) {
+                minutesSkipped++;                    // counted before a restart: its contribution is unknown
+                return;
+            }
+            d.add(minute, -d.minuteActive[minute], -d.minuteDiverse[minute], d.minuteAngles(minute), -1);
+            minutesReplaced++;
+        }
+        d.add(minute, activeSeconds, diverseSeconds, angleCounts, 1);
+        d.applied.set(minute);
+        if (d.minuteActive != null) {
+            d.minuteActive[minute] = (short) activeSeconds;
+            d.minuteDiverse[minute] = (short) diverseSeconds;
+            for (int b = 0; b < ANGLE_BINS; b++) d.minuteAngle[minute * ANGLE_BINS + b] = (short) angleCounts[b];
+            d.known.set(minute);
+        }
+        d.week = week;
+        minutesApplied++;
+
+        CoalescingWriter.dayHistogram(d.toEntity());
+        if (d == current) snapshot = d.view();
+        else olderDayMinutes++;
+    }
+
+    // Current day, a newer day (becomes current) or an older one (stored row only)
+    private Day dayFor(MainResultsDatabase db, String day, int week) {
+        if (current != null && current.day.equals(day)) return current;
+        Day d = new Day(day, week, db.dayHistogramDao().getDay(day));
+        if (current == null || day.compareTo(current.day) > 0) {
+            d.trackMinutes();
+            current = d;
+        }
+        return d;
+    }
+
+    // ================== Reads ==================
+
+    // Today's histograms from memory; null until the first minute of this process
+    public DayHistogram today() {
+        return snapshot;
+    }
+
+    public static DayHistogram fromEntity(DayHistogramEntity row) {
+        if (row == null) return null;
+        return new DayHistogram(row.day, row.week,
+                unpack(row.slotActive, SLOTS), unpack(row.slotDiverse, SLOTS), unpack(row.slotAngle, SLOTS * ANGLE_BINS));
+    }
+
+    // Immutable, ready-to-plot view of one day; every accessor returns a fresh primitive array
+    public static final class DayHistogram {
+        public final String day;
+        public final int week;
+        private final int[] slotActive, slotDiverse, slotAngle;
+
+        DayHistogram(String day, int week, int[] slotActive, int[] slotDiverse, int[] slotAngle) {
+            this.day = day;
+            this.week = week;
+            this.slotActive = slotActive;
+            this.slotDiverse = slotDiverse;
+            this.slotAngle = slotAngle;
+        }
+
+        public int[] quarterActive()  { return slotActive.clone(); }
+        public int[] quarterDiverse() { return slotDiverse.clone(); }
+        public int[] hourlyActive()   { return sumSlots(slotActive, 1, SLOTS_PER_HOUR); }
+        public int[] hourlyDiverse()  { return sumSlots(slotDiverse, 1, SLOTS_PER_HOUR); }
+
+        // [slot * ANGLE_BINS + bin] → samples
+        public int[] quarterAngle()   { return slotAngle.clone(); }
+        // [hour * ANGLE_BINS + bin] → samples
+        public int[] hourlyAngle()    { return sumSlots(slotAngle, ANGLE_BINS, SLOTS_PER_HOUR); }
+        // [bin] → samples of the whole day
+        public int[] dayAngle()       { return sumSlots(slotAngle, ANGLE_BINS, SLOTS); }
+
+        // Sums `group` consecutive slots of `width` values each
+        private static int[] sumSlots(int[] slots, int width, int group) {
+            int[] out = new int[slots.length / group];
+            for (int i = 0; i < slots.length; i++) {
+                int slot = i / width;
+                out[(slot / group) * width + (i % width)] += slots[i];
+            }
+            return out;
+        }
+    }
+
+    // ================== Day state ==================
+
+    private static final class Day {
+        final String day;
+        final long dayStart;
+        int week;
+        final int[] slotActive, slotDiverse, slotAngle;
+        final BitSet applied;
+        // Per-minute contributions, current day only (minutes counted in this process)
+        short[] minuteActive, minuteDiverse, minuteAngle;
+        final BitSet known = new BitSet(MINUTES_PER_DAY);
+
+        Day(String day, int week, DayHistogramEntity row) {
+            this.day = day;
+            this.week = week;
+            this.dayStart = StudyClock.startOfDay(day);
+            if (row != null) {
+                slotActive = unpack(row.slotActive, SLOTS);
+                slotDiverse = unpack(row.slotDiverse, SLOTS);
+                slotAngle = unpack(row.slotAngle, SLOTS * ANGLE_BINS);
+                applied = (row.appliedMinutes != null) ? BitSet.valueOf(row.appliedMinutes) : new BitSet(MINUTES_PER_DAY);
+            } else {
+                slotActive = new int[SLOTS];
+                slotDiverse = new int[SLOTS];
+                slotAngle = new int[SLOTS * ANGLE_BINS];
+                applied = new BitSet(MINUTES_PER_DAY);
+            }
+        }
+
+        void trackMinutes() {
+            minuteActive = new short[MINUTES_PER_DAY];
+            minuteDiverse = new short[MINUTES_PER_DAY];
+            minuteAngle = new short[MINUTES_PER_DAY * ANGLE_BINS];
+        }
+
+        int[] minuteAngles(int minute) {
+            int[] out = new int[ANGLE_BINS];
+            for (int b = 0; b < ANGLE_BINS; b++) out[b] = minuteAngle[minute * ANGLE_BINS + b];
+            return out;
+        }
+
+        void add(int minute, int active, int diverse, int[] angleCounts, int sign) {
+            int slot = minute / SLOT_MINUTES;
+            slotActive[slot] += active;
+            slotDiverse[slot] += diverse;
+            for (int b = 0; b < ANGLE_BINS; b++) slotAngle[slot * ANGLE_BINS + b] += sign * angleCounts[b];
+        }
+
+        DayHistogramEntity toEntity() {
+            return new DayHistogramEntity(day, week, System.currentTimeMillis(),
+                    pack(slotActive), pack(slotDiverse), pack(slotAngle), applied.toByteArray());
+        }
+
+        DayHistogram view() {
+            return new DayHistogram(day, week, slotActive.clone(), slotDiverse.clone(), slotAngle.clone());
+        }
+    }
+
+    // ================== Encoding ==================
+
+    static byte[] pack(int[] values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int v : values) buf.putInt(v);
+        return buf.array();
+    }
+
+    // Missing or short BLOB → zeros
+    static int[] unpack(byte[] bytes, int length) {
+        int[] out = new int[length];
+        if (bytes == null) return out;
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < length && buf.remaining() >= 4; i++) out[i] = buf.getInt();
+        return out;
+    }
+
+    // ================== Metrics ==================
+
+    public String getMetricsSummary() {
+        return "histograms day=" + (current != null ? current.day : null)
+                + " minutes=" + minutesApplied
+                + " replaced=" + minutesReplaced
+                + " skipped=" + minutesSkipped
+                + " olderDay=" + olderDayMinutes;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.kurtosisstudy;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+ * AnalyticsGraph
+ * --------------
+ * Purpose:
+ *   - Dirty-flag dataflow graph for DataStorageManager's analytics chain, so a computeAndSave… step
+ *     only runs when one of its inputs actually changed since its last successful run.
+ *
+ * What it does:
+ *   • Node declares its inputs (declaration order is a topological order):
+ *       - Sources (bumped by whoever changes them):
+ *           RAW_SAMPLES (50 Hz flush), WEAR_SESSIONS (wear state change), WEAR_CLOCK (a new minute inside
+ *           the 08:00–22:00 wear window), DAY (rollover / user change), WEEK (week id changed).
+ *       - Computed nodes:
+ *           MINUTE_AVERAGE   ← RAW_SAMPLES
+ *           DAILY_CUMULATIVE ← MINUTE_AVERAGE, DAY
+ *           DAILY_WEAR_TIME  ← WEAR_SESSIONS, WEAR_CLOCK, DAY
+ *           WEEKLY_AVERAGE   ← DAILY_CUMULATIVE, DAILY_WEAR_TIME, WEEK
+ *           WEEKLY_RATIOS    ← WEEKLY_AVERAGE, WEEK
+ *           ADJUSTED_GOAL    ← DAILY_WEAR_TIME, WEEKLY_RATIOS, WEEK, DAY
+ *   • Every node has an output version:
+ *       - bump(source) for sources; complete(node, seen, true) when a computed node's value changed.
+ *   • beginIfDirty(node) returns the input versions it is about to consume (null = clean → skip);
+ *     complete(...) records exactly those, so an input that changes DURING a run keeps the node dirty.
+ *   • A failed run simply never calls complete(...) → the node stays dirty and retries next time.
+ *   • After a process start every computed node is dirty once (nothing seen yet).
+ *   • MINUTE_AVERAGE is windowed: a flush can cover several minute windows, so DataStorageManager also
+ *     forces it (begin(node, true)) whenever raw data reaches into the window being computed.
+ *
+ * Metrics (getMetricsSummary()):
+ *   • Per computed node: runs, skips (clean) and runs whose output changed.
+ *
+ * Notes:
+ *   • Callers keep their own schedule (every minute / 5 min / hour); the graph only decides whether
+ *     the scheduled run has anything new to do.
+ *   • Complication refreshes are tied to "output changed", i.e. to a displayed value changing.
+ */
+
+public class AnalyticsGraph {
+
+    public enum Node {
+        // Sources
+        RAW_SAMPLES,
+        WEAR_SESSIONS,
+        WEAR_CLOCK,
+        DAY,
+        WEEK,
+
+        // Computed (inputs must be declared above)
+        MINUTE_AVERAGE(RAW_SAMPLES),
+        DAILY_CUMULATIVE(MINUTE_AVERAGE, DAY),
+        DAILY_WEAR_TIME(WEAR_SESSIONS, WEAR_CLOCK, DAY),
+        WEEKLY_AVERAGE(DAILY_CUMULATIVE, DAILY_WEAR_TIME, WEEK),
+        WEEKLY_RATIOS(WEEKLY_AVERAGE, WEEK),
+        ADJUSTED_GOAL(DAILY_WEAR_TIME, WEEKLY_RATIOS, WEEK, DAY);
+
+        final Node[] inputs;
+        Node(Node... inputs) { this.inputs = inputs; }
+    }
+
+    private final Map<Node, Long> version = new EnumMap<>(Node.class);
+    private final Map<Node, long[]> seen = new EnumMap<>(Node.class);
+    private final Map<Node, long[]> counters = new EnumMap<>(Node.class);   // runs, skips, changed
+
+    public AnalyticsGraph() {
+        for (Node n : Node.values()) {
+            version.put(n, 0L);
+            counters.put(n, new long[3]);
+        }
+    }
+
+    // A source (or a node computed outside the graph) changed
+    public synchronized void bump(Node node) {
+        version.put(node, version.get(node) + 1);
+    }
+
+    // Input versions to consume, or null if nothing changed since the last completed run
+    public long[] beginIfDirty(Node node) {
+        return begin(node, false);
+    }
+
+    // force = the caller knows of new work the versions cannot express (e.g. a new window with data in it)
+    public synchronized long[] begin(Node node, boolean force) {
+        long[] current = new long[node.inputs.length];
+        for (int i = 0; i < current.length; i++) current[i] = version.get(node.inputs[i]);
+
+        long[] last = seen.get(node);
+        if (!force && last != null && Arrays.equals(last, current)) {
+            counters.get(node)[1]++;
+            return null;
+        }
+        counters.get(node)[0]++;
+        return current;
+    }
+
+    // Marks the run as done for the inputs it consumed; outputChanged dirties the downstream nodes
+    public synchronized void complete(Node node, long[] consumed, boolean outputChanged) {
+        seen.put(node, consumed);
+        if (outputChanged) {
+            version.put(node, version.get(node) + 1);
+            counters.get(node)[2]++;
+        }
+    }
+
+    public synchronized String getMetricsSummary() {
+        StringBuilder sb = new StringBuilder("AnalyticsGraph");
+        for (Node n : Node.values()) {
+            if (n.inputs.length == 0) continue;
+            long[] c = counters.get(n);
+            sb.append('\n').append(n)
+                    .append(" runs=").append(c[0])
+                    .append(" skipped=").append(c[1])
+                    .append(" changed=").append(c[2]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.kurtosisstudy;
+
+import android.util.Log;
+
+import androidx.room.RoomDatabase;
+
+import com.example.kurtosisstudy.db.AdjustedDailyGoalEntity;
+import com.example.kurtosisstudy.db.DailyCumulativeEntity;
+import com.example.kurtosisstudy.db.DailyDatabase;
+import com.example.kurtosisstudy.db.DailyWearTimeEntity;
+import com.example.kurtosisstudy.db.DayHistogramEntity;
+import com.example.kurtosisstudy.db.DaySummaryDao;
+import com.example.kurtosisstudy.db.DaySummaryEntity;
+import com.example.kurtosisstudy.db.EnergyReportEntity;
+import com.example.kurtosisstudy.db.LogsEntity;
+import com.example.kurtosisstudy.db.MainResultsDatabase;
+import com.example.kurtosisstudy.db.NotificationEntity;
+import com.example.kurtosisstudy.db.WearSessionEntity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * CoalescingWriter
+ * ----------------
+ * Purpose:
+ *   - Single writer thread for the small, frequent Room inserts (logs, notifications, wear sessions,
+ *     daily cumulative, daily wear time, adjusted goal). Instead of one implicit transaction per row,
+ *     everything that accumulated is committed in ONE transaction per database.
+ *
+ * What it does:
+ *   • Typed commands (logs(...), notification(...), wearSession(...), dailyCumulative(...),
+ *     dailyWearTime(...), adjustedGoal(...), daySummaryGoal(...), dayHistogram(...), energyReport(...))
+ *     go into a bounded queue (QUEUE_CAPACITY). notification / dailyCumulative / dailyWearTime also update the day's day_summary
+ *     row in the same transaction, so the summary never disagrees with the append-only tables;
+ *     wearSession(...) likewise keeps the worn segments of WearIntervalIndex in step.
+ *   • The writer commits a batch when FLUSH_INTERVAL_MS passed since its first command
+ *     or MAX_BATCH commands are waiting, whichever comes first.
+ *   • Target DBs are resolved at commit time. DAILY commands carry the day they belong to (submit time,
+ *     or the line timestamps for logs) and go to DataStorageManager.dailyDatabaseFor(day): around midnight
+ *     a row of yesterday still lands in yesterday's file while it is open, and today's in today's.
+ *   • Idle, the writer blocks on the queue with no timeout (no wakeups). If a DB is closed, its commands are
+ *     kept (bounded by QUEUE_CAPACITY, oldest dropped) and retried every FLUSH_INTERVAL_MS.
+ *   • flush(timeoutMs) blocks until everything submitted before the call is committed
+ *     → called before the DBs are closed (retiring yesterday's file, user change, shutdown).
+ *   • afterCommit(r) is the non-blocking form: r runs on the writer thread once everything submitted
+ *     before it is committed (read-after-write, e.g. the progress complication after dailyCumulative).
+ *     Both wait while commands are parked for a closed DB; they are released when nothing is parked.
+ *
+ * Metrics (getStatsSummary()):
+ *   • submitted / committed / dropped commands, transactions, rows per transaction, mean commit time,
+ *     the largest queue depth and timed wakeups (batch windows closing + retries of parked commands). Compare "rows/txn" and "ms/txn" with the old one-row-per-transaction
+ *     behaviour (1 row/txn); WriterBenchmark (src/test, Robolectric) drives both paths into a daily DB.
+ *
+ * Notes:
+ *   • Logs arrive already batched by LogSaver (its ring buffer is where they wait and get rate-limited).
+ *   • Full queue: log batches are dropped (counted) so the sensor/analytics threads never block;
+ *     result rows wait up to OFFER_TIMEOUT_MS before being dropped and reported.
+ *   • The raw 3000-row sensor batches keep their own insertAll on the analytics executor.
+ */
+
+public class CoalescingWriter {
+
+    private static final String TAG = "CoalescingWriter_KurtosisStudy";
+
+    static final long FLUSH_INTERVAL_MS = 500;      // N ms
+    static final int MAX_BATCH = 256;               // M items
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final long OFFER_TIMEOUT_MS = 1000;
+
+    enum Target { MAIN, DAILY }
+
+    // One typed write; apply() runs inside the transaction of its target DB
+    abstract static class Command {
+        final Target target;
+        final String day;            // DAILY only: yyyy_MM_dd of the file the row belongs to
+        Command(Target target) {
+            this(target, target == Target.DAILY ? DataStorageManager.getDayForDB() : null);
+        }
+        Command(Target target, String day) {
+            this.target = target;
+            this.day = day;
+        }
+        abstract void apply(RoomDatabase db);
+    }
+
+    // Marker used by flush() / afterCommit(): commits everything before it, then runs `then`
+    // once no command is parked for a closed DB
+    private static final class Barrier extends Command {
+        final Runnable then;
+        Barrier(Runnable then) {
+            super(null, null);
+            this.then = then;
+        }
+        @Override void apply(RoomDatabase db) { }
+    }
+
+    private static final BlockingQueue<Command> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final ArrayDeque<Command> pending = new ArrayDeque<>(); // writer thread only: waiting for a closed DB
+    private static final List<Barrier> barriers = new ArrayList<>();      // writer thread only: waiting for `pending`
+    private static Thread writerThread = null;
+
+    // ---- Metrics ----
+    private static final AtomicLong submitted = new AtomicLong();
+    private static final AtomicLong committed = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong transactions = new AtomicLong();
+    private static final AtomicLong commitNanos = new AtomicLong();
+    private static volatile int maxQueueDepth = 0;
+    private static final AtomicLong timedWakeups = new AtomicLong();
+
+    // ================== Typed commands ==================
+
+    // A whole LogSaver batch is one command (one insertAll inside the daily transaction);
+    // a batch spanning midnight becomes one command per day
+    public static void logs(List<LogsEntity> entries) {
+        int from = 0;
+        String fromDay = entries.isEmpty() ? null : DataStorageManager.dayKeyOf(entries.get(0).timestamp);
+        for (int i = 1; i <= entries.size(); i++) {
+            String day = (i < entries.size()) ? DataStorageManager.dayKeyOf(entries.get(i).timestamp) : null;
+            if (i < entries.size() && day.equals(fromDay)) continue;
+            List<LogsEntity> part = entries.subList(from, i);
+            submit(new Command(Target.DAILY, fromDay) {
+                @Override void apply(RoomDatabase db) { ((DailyDatabase) db).logsDao().insertAll(part); }
+            }, false);
+            from = i;
+            fromDay = day;
+        }
+    }
+
+    public static void notification(NotificationEntity entry) {
+        String day = DataStorageManager.dayKeyOf(entry.timestamp);
+        int week = DataStorageManager.getWeekFromPrefs();
+        submit(new Command(Target.MAIN) {
+            @Override void apply(RoomDatabase db) {
+                ((MainResultsDatabase) db).notificationDao().insert(entry);
+                summary(db, day, week).countNotification(day, entry.timestamp, entry.level);
+            }
+        }, true);
+    }
+
+    public static void wearSession(WearSessionEntity entry) {
+        wearSession(entry, false);
+    }
+
+    // backfilled: a closure stamped after the fact (last heartbeat + 1 ms), kept on its worn segment
+    public static void wearSession(WearSessionEntity entry, boolean backfilled) {
+        submit(new Command(Target.MAIN) {
+            @Override void apply(RoomDatabase db) {
+                ((MainResultsDatabase) db).wearSessionDao().insert(entry);
+                WearIntervalIndex.apply((MainResultsDatabase) db, entry, backfilled);
+            }
+        }, true);
+    }
+
+    // Builds wear_intervals_table from the transitions if it is still empty (first start after MAIN_3_4);
+    // queued like a write so it is ordered with the wear rows around it
+    public static void wearIntervalsIfEmpty() {
+        submit(new Command(Target.MAIN) {
+            @Override void apply(RoomDatabase db) { WearIntervalIndex.rebuildIfEmpty((MainResultsDatabase) db); }
+        }, true);
+    }
+
+    public static void dailyCumulative(DailyCumulativeEntity entry) {
+        submit(new Command(Target.MAIN) {
+            @Override void apply(RoomDatabase db) {
+                ((MainResultsDatabase) db).dailyCumulativeDao().insert(entry);
+                summary(db, entry.day, entry.week).updateProgress(entry.day, entry.week, entry.timestamp,
+                        entry.cumulative, entry.secondaryCumulative);
+            }
+        }, true);
+    }
+
+    public static void dailyWearTime(DailyWearTimeEntity entry) {
+        submit(new Command(Target.MAIN) {
+            @Override void apply(RoomDatabase db) {
+                ((MainResultsDatabase) db).dailyWearTimeDao().insertOrUpdate(entry);
+                summary(db, entry.day, entry.week).updateWear(entry.day, entry.week, entry.timestamp,
+                        entry.wornMinutes, entry.notWornMinutes);
+            }
+        }, true);
+    }
+
+    // The goal row itself goes to the daily DB (adjustedGoal); its summary columns live in the main DB
+    public static void daySummaryGoal(String day, int week, int goalMinutes, float ratio) {
+        long ts = StudyClock.now();
+        submit(new Command(Target.MAIN) {
+            @Override void apply(RoomDatabase db) {
+                summary(db, day, week).updateGoal(day, week, ts, goalMinutes, ratio);
+            }
+        }, true);
+    }
+
+    // Whole-row rewrite of a day's chart histograms (ActivityHistograms)
+    public static void dayHistogram(DayHistogramEntity row) {
+        submit(new Command(Target.MAIN) {
+            @Override void apply(RoomDatabase db) { ((MainResultsDatabase) db).dayHistogramDao().upsert(row); }
+        }, true);
+    }
+
+    // day_summary row of that day, created (all -1) on its first write
+    private static DaySummaryDao summary(RoomDatabase db, String day, int week) {
+        DaySummaryDao dao = ((MainResultsDatabase) db).daySummaryDao();
+        dao.ensure(new DaySummaryEntity(day, week, StudyClock.now()));
+        return dao;
+    }
+
+    // Cumulative day report: replaces the rows written earlier the same day
+    public static void energyReport(List<EnergyReportEntity> rows) {
+        submit(new Command(Target.DAILY) {
+            @Override void apply(RoomDatabase db) { ((DailyDatabase) db).energyReportDao().upsertAll(rows); }
+        }, true);
+    }
+
+    public static void adjustedGoal(AdjustedDailyGoalEntity entry) {
+        submit(new Command(Target.DAILY) {
+            @Override void apply(RoomDatabase db) { ((DailyDatabase) db).adjustedDailyGoalDao().insert(entry); }
+        }, true);
+    }
+
+    // ================== Queue / durability ==================
+
+    private static boolean submit(Command cmd, boolean mayWait) {
+        ensureWriterAlive();
+        boolean accepted;
+        try {
+            accepted = mayWait ? queue.offer(cmd, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS) : queue.offer(cmd);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            dropped.incrementAndGet();
+            // Plain Log on purpose: LogSaver would feed the same full queue
+            if (mayWait) Log.e(TAG, "Write queue full — dropped a " + cmd.target + " row");
+            return false;
+        }
+        if (!(cmd instanceof Barrier)) submitted.incrementAndGet();
+        int depth = queue.size();
+        if (depth > maxQueueDepth) maxQueueDepth = depth;
+        return true;
+    }
+
+    // Blocks until everything submitted before this call is committed (or timeout). Returns true if flushed.
+    public static boolean flush(long timeoutMs) {
+        if (writerThread == null || !writerThread.isAlive()) return queue.isEmpty();
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            if (!queue.offer(new Barrier(done::countDown), timeoutMs, TimeUnit.MILLISECONDS)) return false;
+            return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Runs `then` on the writer thread once everything submitted before this call is committed.
+    // Keep it short (a refresh request, a hand-off to another executor): the next batch waits for it.
+    // Returns false if the queue stayed full (then `then` never runs).
+    public static boolean afterCommit(Runnable then) {
+        return submit(new Barrier(then), true);
+    }
+
+    private static synchronized void ensureWriterAlive() {
+        if (writerThread != null && writerThread.isAlive()) return;
+        writerThread = new Thread(CoalescingWriter::writerLoop, "CoalescingWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private static void writerLoop() {
+        List<Command> batch = new ArrayList<>(MAX_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // Wait for the first command (or retry parked ones every FLUSH_INTERVAL_MS)
+                Command first = pending.isEmpty() ? queue.take() : queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) timedWakeups.incrementAndGet();
+                if (first != null) {
+                    long deadline = System.currentTimeMillis() + FLUSH_INTERVAL_MS;
+                    Command next = first;
+                    while (next != null) {
+                        if (next instanceof Barrier) {
+                            barriers.add((Barrier) next);
+                            break;                   // commit right away
+                        }
+                        batch.add(next);
+                        if (batch.size() >= MAX_BATCH) break;
+                        long wait = deadline - System.currentTimeMillis();
+                        next = (wait > 0) ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+                        if (next == null) timedWakeups.incrementAndGet();   // window closed
+                    }
+                }
+
+                commit(batch);
+                batch.clear();
+                // Parked commands were submitted before the barriers too → release only when none is left
+                if (pending.isEmpty()) releaseBarriers();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                Log.e(TAG, "Writer loop error: " + e.getMessage(), e);
+                batch.clear();
+            }
+        }
+    }
+
+    private static void releaseBarriers() {
+        for (Barrier b : barriers) {
+            try {
+                b.then.run();
+            } catch (Exception e) {
+                Log.e(TAG, "afterCommit action failed: " + e.getMessage(), e);
+            }
+        }
+        barriers.clear();
+    }
+
+    // One transaction per target DB (per day for DAILY); commands whose DB is closed go back to pending
+    private static void commit(List<Command> batch) {
+        List<Command> main = new ArrayList<>();
+        Map<String, List<Command>> dailyByDay = new LinkedHashMap<>();
+        pending.addAll(batch);
+        while (!pending.isEmpty()) {
+            Command c = pending.poll();
+            if (c.target == Target.MAIN) main.add(c);
+            else dailyByDay.computeIfAbsent(c.day, k -> new ArrayList<>()).add(c);
+        }
+        commitTo(DataStorageManager.peekMainDatabase(), main);
+        for (Map.Entry<String, List<Command>> e : dailyByDay.entrySet()) {
+            commitTo(DataStorageManager.dailyDatabaseFor(e.getKey()), e.getValue());
+        }
+
+        // Bound what waits for a closed DB
+        while (pending.size() > QUEUE_CAPACITY) {
+            pending.poll();
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static void commitTo(RoomDatabase db, List<Command> cmds) {
+        if (cmds.isEmpty()) return;
+        if (db == null || !db.isOpen()) {
+            pending.addAll(cmds);
+            return;
+        }
+        long t0 = System.nanoTime();
+        long cpuStart = CpuAccounting.start();
+        try {
+            db.runInTransaction(() -> {
+                for (Command c : cmds) c.apply(db);
+            });
+            committed.addAndGet(cmds.size());
+            transactions.incrementAndGet();
+            commitNanos.addAndGet(System.nanoTime() - t0);
+        } catch (Exception e) {
+            // Whole batch rolled back → replay row by row so one bad row cannot block the others
+            Log.e(TAG, "Batch commit failed (" + cmds.size() + " rows), replaying one by one: " + e.getMessage(), e);
+            for (Command c : cmds) {
+                try {
+                    c.apply(db);
+                    committed.incrementAndGet();
+                } catch (Exception rowEx) {
+                    dropped.incrementAndGet();
+                    Log.e(TAG, "Dropped " + c.target + " row: " + rowEx.getMessage());
+                }
+            }
+        } finally {
+            CpuAccounting.stop(CpuAccounting.Subsystem.DB_WRITER, cpuStart);
+        }
+    }
+
+    // Committed rows / transactions so far (WriterBenchmark compares them with one transaction per row)
+    static long committedRows() {
+        return committed.get();
+    }
+
+    static long transactionCount() {
+        return transactions.get();
+    }
+
+    public static String getStatsSummary() {
+        long txns = transactions.get();
+        long rows = committed.get();
+        return "submitted=" + submitted.get()
+                + " committed=" + rows
+                + " dropped=" + dropped.get()
+                + " txns=" + txns
+                + " rows/txn=" + (txns == 0 ? 0 : String.format(java.util.Locale.US, "%.1f", rows / (double) txns))
+                + " ms/txn=" + (txns == 0 ? 0 : String.format(java.util.Locale.US, "%.2f", commitNanos.get() / 1e6 / txns))
+                + " maxQueue=" + maxQueueDepth
+                + " timedWakeups=" + timedWakeups.get();
+    }
+}
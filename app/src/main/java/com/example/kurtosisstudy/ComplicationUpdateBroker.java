@@ -0,0 +1,173 @@
+package com.example.kurtosisstudy;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.kurtosisstudy.complications.MyComplicationProviderService;
+import com.example.kurtosisstudy.complications.MyProgressComplicationProviderService;
+import com.example.kurtosisstudy.complications.MyServiceAliveCheckComplicationProviderService;
+import com.example.kurtosisstudy.complications.MyWearTimeComplicationProviderService;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * ComplicationUpdateBroker
+ * ------------------------
+ * Purpose:
+ *   - Single entry point for complication refreshes. Every requestUpdateAll() wakes the watch-face
+ *     renderer, and the same provider used to be asked several times per minute (cumulative, wear time,
+ *     goal, rollover, HeartbeatCheckWorker refreshing all four unconditionally).
+ *
+ * What it does:
+ *   • request(context, targets...):
+ *       - Debounce: the first request for a provider opens a DEBOUNCE_MS window; further requests for it
+ *         inside the window are merged into that one update.
+ *       - Dedupe: when the window closes, the value the provider WOULD render is computed (from
+ *         TodaySnapshot + week/heartbeat); if it equals the last value sent, the update is suppressed.
+ *       - If that value cannot be known without the DB (cold start), the update is always sent.
+ *   • Metrics (getStatsSummary(), logged hourly by ForegroundSensorService):
+ *       - requested, merged by debounce, suppressed as unchanged, sent, timer wakeups (closed windows).
+ *
+ * Wakeups:
+ *   • The debounce timer only runs after a request (no periodic wakeup); most requests come from the
+ *     storage worker right after the minute tick, so the window closes while the CPU is still up.
+ *
+ * Notes:
+ *   • renderedValue(...) must follow what each provider displays (week gating, clamping, liveness window).
+ *   • The providers' own requestComplicationUpdate(...) remain the low-level senders used here.
+ */
+
+public class ComplicationUpdateBroker {
+
+    private static final String TAG = "ComplicationBroker_KurtosisStudy";
+
+    private static final long DEBOUNCE_MS = 2000;
+    private static final long ALIVE_FRESH_MS = 120_000L;      // same window as the service-alive provider
+    private static final int DEFAULT_GOAL_MINUTES = 840;     // progress provider's fallback
+
+    public enum Target { PROGRESS, WEAR_TIME, SERVICE_ALIVE, EXERCISE }
+
+    private static final Object lock = new Object();
+    private static final Set<Target> pending = EnumSet.noneOf(Target.class);   // window open
+    private static final Map<Target, String> lastSent = new EnumMap<>(Target.class);
+    private static ScheduledExecutorService executor = null;
+
+    private static final AtomicLong requested = new AtomicLong();
+    private static final AtomicLong debounced = new AtomicLong();
+    private static final AtomicLong suppressed = new AtomicLong();
+    private static final AtomicLong sent = new AtomicLong();
+    private static final AtomicLong timerWakeups = new AtomicLong();
+
+    // ================== Requests ==================
+
+    public static void request(Context context, Target... targets) {
+        final Context app = context.getApplicationContext();
+        for (Target t : targets) {
+            requested.incrementAndGet();
+            synchronized (lock) {
+                if (!pending.add(t)) {
+                    debounced.incrementAndGet();
+                    continue;
+                }
+                ensureExecutor().schedule(() -> fire(app, t), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    public static void requestAll(Context context) {
+        request(context, Target.values());
+    }
+
+    private static ScheduledExecutorService ensureExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ComplicationBroker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    private static void fire(Context app, Target t) {
+        timerWakeups.incrementAndGet();
+        CpuAccounting.run(CpuAccounting.Subsystem.COMPLICATIONS, () -> fireNow(app, t));
+    }
+
+    private static void fireNow(Context app, Target t) {
+        synchronized (lock) {
+            pending.remove(t);          // a request from now on opens a new window
+        }
+        try {
+            String value = renderedValue(app, t);
+            synchronized (lock) {
+                if (value != null && value.equals(lastSent.get(t))) {
+                    suppressed.incrementAndGet();
+                    return;
+                }
+                lastSent.put(t, value);
+            }
+            send(app, t);
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            Log.e(TAG, "Complication update for " + t + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void send(Context app, Target t) {
+        switch (t) {
+            case PROGRESS:      MyProgressComplicationProviderService.requestComplicationUpdate(app); break;
+            case WEAR_TIME:     MyWearTimeComplicationProviderService.requestComplicationUpdate(app); break;
+            case SERVICE_ALIVE: MyServiceAliveCheckComplicationProviderService.requestComplicationUpdate(app); break;
+            case EXERCISE:      MyComplicationProviderService.requestComplicationUpdate(app); break;
+        }
+    }
+
+    // ================== Rendered values ==================
+
+    // What the provider would show right now; null = unknown without the DB → always send
+    private static String renderedValue(Context app, Target t) {
+        int week = app.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE)
+                .getInt(PrefsKeys.Data.WEEK_ID, 1);
+        boolean hiddenWeek = (week == 1 || week >= 6);
+        TodaySnapshot snapshot = TodaySnapshot.peek();
+
+        switch (t) {
+            case EXERCISE:
+                return hiddenWeek ? "hidden" : "shown";
+            case PROGRESS:
+                if (hiddenWeek) return "hidden";
+                if (snapshot == null) return null;
+                int goal = Math.max(snapshot.goalMinutes > 0 ? snapshot.goalMinutes : DEFAULT_GOAL_MINUTES, 1);
+                return snapshot.day + ":" + Math.max(snapshot.progressMinutes, 0) + "/" + goal;
+            case WEAR_TIME:
+                if (snapshot == null) return null;
+                return snapshot.day + ":" + snapshot.wornMinutes;
+            case SERVICE_ALIVE: {
+                long lastBeat = (snapshot != null) ? snapshot.heartbeatAt
+                        : HotStateFile.get(app).getLong(HotStateFile.LongField.HEARTBEAT_TIME);
+                boolean alive = lastBeat > 0 && StudyClock.now() - lastBeat < ALIVE_FRESH_MS;
+                return alive ? "alive" : "stale";
+            }
+        }
+        return null;
+    }
+
+    // ================== Metrics ==================
+
+    public static String getStatsSummary() {
+        return "complications requested=" + requested.get()
+                + " debounced=" + debounced.get()
+                + " suppressed=" + suppressed.get()
+                + " sent=" + sent.get()
+                + " avoided=" + (debounced.get() + suppressed.get())
+                + " timerWakeups=" + timerWakeups.get();
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.kurtosisstudy;
+
+import android.os.Debug;
+import android.os.Process;
+import android.os.SystemClock;
+import android.system.Os;
+import android.system.OsConstants;
+
+import com.example.kurtosisstudy.db.EnergyReportEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * CpuAccounting
+ * -------------
+ * Purpose:
+ *   - Tells which part of the app burns the CPU (and so the battery) while the service keeps its
+ *     permanent partial wakelock: sensor math, storage, the DB writer, logging, the minute tick,
+ *     wear detection, notifications, complications.
+ *
+ * What it does:
+ *   • Per-task CPU time, per subsystem:
+ *       - long t = CpuAccounting.start(); ...work...; CpuAccounting.stop(Subsystem.X, t);
+ *         (or run(Subsystem.X, runnable)). Uses Debug.threadCpuTimeNanos(), i.e. CPU actually consumed
+ *         by the calling thread — time spent blocked or waiting is not counted.
+ *       - Keeps CPU ms, invocations and the longest single invocation.
+ *   • Per-thread CPU time: utime + stime of every thread of the process (/proc/self/task/<tid>/stat),
+ *     minus the values at the start of the day. Catches threads nobody instrumented (Room, binder, GC).
+ *     Thread names are folded (digits → '#') so pools add up into one line.
+ *   • Wakelock: wakeLockAcquired()/wakeLockReleased() (ForegroundSensorService) → held ms + acquisitions.
+ *     "held_idle" = held − process CPU: time the wakelock kept the CPU up without the app using it.
+ *   • Daily report (buildReport()):
+ *       - SUBSYSTEM / THREAD / WAKELOCK / PROCESS rows (EnergyReportEntity), cumulative since startDay().
+ *       - DataStorageManager writes it to the daily DB every hour and before closing the day's file,
+ *         then startDay() resets the counters for the new day.
+ *
+ * Notes:
+ *   • Cost of start()/stop(): one clock_gettime(CLOCK_THREAD_CPUTIME_ID) each — fine even at 50 Hz.
+ *   • Threads that ended during the day drop out of the THREAD rows (their /proc entry is gone);
+ *     PROCESS "cpu" still includes them.
+ */
+
+public final class CpuAccounting {
+
+    public enum Subsystem {
+        SENSOR_MATH,        // SensorHandler: per-sample GMAC / kurtosis
+        STORAGE,            // StorageTaskScheduler tasks: raw inserts + analytics queries
+        DB_WRITER,          // CoalescingWriter transactions
+        LOGGING,            // LogSaver batch hand-off
+        SCHEDULER,          // MinuteTickScheduler stages
+        WEAR_DETECTION,     // WatchWearDetector off-body + HR resolver callbacks
+        NOTIFICATIONS,      // GoalNotificationManager decisions
+        COMPLICATIONS       // ComplicationUpdateBroker renders
+    }
+
+    private static final int N = Subsystem.values().length;
+    private static final AtomicLongArray cpuNanos = new AtomicLongArray(N);
+    private static final AtomicLongArray invocations = new AtomicLongArray(N);
+    private static final AtomicLongArray maxNanos = new AtomicLongArray(N);
+
+    // ---- Day baselines / wakelock (guarded by CpuAccounting.class) ----
+    private static long dayStartElapsed = SystemClock.elapsedRealtime();
+    private static long dayStartProcessCpuMs = Process.getElapsedCpuTime();
+    private static Map<Integer, ThreadSample> threadBaseline = readThreads();
+    private static long wakeLockHeldMs = 0;
+    private static long wakeLockAcquisitions = 0;
+    private static long wakeLockHeldSince = -1;          // elapsedRealtime, -1 = not held
+
+    private static final class ThreadSample {
+        final String name;
+        final long ticks;
+        ThreadSample(String name, long ticks) { this.name = name; this.ticks = ticks; }
+    }
+
+    private CpuAccounting() {} // no instances
+
+    // ================== Per-task CPU ==================
+
+    public static long start() {
+        return Debug.threadCpuTimeNanos();
+    }
+
+    public static void stop(Subsystem subsystem, long startCpuNanos) {
+        if (startCpuNanos < 0) return;                     // not supported on this thread/device
+        long used = Debug.threadCpuTimeNanos() - startCpuNanos;
+        if (used < 0) return;
+        int i = subsystem.ordinal();
+        cpuNanos.addAndGet(i, used);
+        invocations.incrementAndGet(i);
+        long max;
+        while (used > (max = maxNanos.get(i)) && !maxNanos.compareAndSet(i, max, used)) { /* retry */ }
+    }
+
+    public static void run(Subsystem subsystem, Runnable task) {
+        long t = start();
+        try {
+            task.run();
+        } finally {
+            stop(subsystem, t);
+        }
+    }
+
+    // ================== Wakelock ==================
+
+    public static synchronized void wakeLockAcquired() {
+        if (wakeLockHeldSince >= 0) return;
+        wakeLockHeldSince = SystemClock.elapsedRealtime();
+        wakeLockAcquisitions++;
+    }
+
+    public static synchronized void wakeLockReleased() {
+        if (wakeLockHeldSince < 0) return;
+        wakeLockHeldMs += SystemClock.elapsedRealtime() - wakeLockHeldSince;
+        wakeLockHeldSince = -1;
+    }
+
+    private static long wakeLockHeldNowMs(long nowElapsed) {
+        return wakeLockHeldMs + (wakeLockHeldSince >= 0 ? nowElapsed - wakeLockHeldSince : 0);
+    }
+
+    // ================== Day ==================
+
+    // New day: counters restart from zero (a wakelock still held keeps counting from now)
+    public static synchronized void startDay() {
+        long now = SystemClock.elapsedRealtime();
+        for (int i = 0; i < N; i++) {
+            cpuNanos.set(i, 0);
+            invocations.set(i, 0);
+            maxNanos.set(i, 0);
+        }
+        dayStartElapsed = now;
+        dayStartProcessCpuMs = Process.getElapsedCpuTime();
+        threadBaseline = readThreads();
+        wakeLockHeldMs = 0;
+        wakeLockAcquisitions = (wakeLockHeldSince >= 0) ? 1 : 0;
+        if (wakeLockHeldSince >= 0) wakeLockHeldSince = now;
+    }
+
+    // Cumulative values since startDay()
+    public static synchronized List<EnergyReportEntity> buildReport() {
+        long ts = System.currentTimeMillis();
+        long nowElapsed = SystemClock.elapsedRealtime();
+        List<EnergyReportEntity> rows = new ArrayList<>();
+
+        for (Subsystem s : Subsystem.values()) {
+            int i = s.ordinal();
+            rows.add(new EnergyReportEntity("SUBSYSTEM", s.name(), ts,
+                    cpuNanos.get(i) / 1_000_000L, invocations.get(i), maxNanos.get(i) / 1_000_000L));
+        }
+
+        for (Map.Entry<String, Long> e : threadCpuMsSinceDayStart().entrySet()) {
+            rows.add(new EnergyReportEntity("THREAD", e.getKey(), ts, e.getValue(), 0, 0));
+        }
+
+        long processCpuMs = Process.getElapsedCpuTime() - dayStartProcessCpuMs;
+        long heldMs = wakeLockHeldNowMs(nowElapsed);
+        rows.add(new EnergyReportEntity("PROCESS", "cpu", ts, processCpuMs, 0, 0));
+        rows.add(new EnergyReportEntity("PROCESS", "elapsed", ts, nowElapsed - dayStartElapsed, 0, 0));
+        rows.add(new EnergyReportEntity("WAKELOCK", "held", ts, heldMs, wakeLockAcquisitions, 0));
+        rows.add(new EnergyReportEntity("WAKELOCK", "held_idle", ts, Math.max(0, heldMs - processCpuMs), 0, 0));
+        return rows;
+    }
+
+    // ================== Threads (/proc) ==================
+
+    private static Map<String, Long> threadCpuMsSinceDayStart() {
+        long clkTck = Os.sysconf(OsConstants._SC_CLK_TCK);
+        if (clkTck <= 0) clkTck = 100;
+        Map<String, Long> byName = new TreeMap<>();
+        for (Map.Entry<Integer, ThreadSample> e : readThreads().entrySet()) {
+            ThreadSample now = e.getValue();
+            ThreadSample base = threadBaseline.get(e.getKey());
+            long baseTicks = (base != null && base.name.equals(now.name)) ? base.ticks : 0; // tid reuse → new thread
+            long ms = (now.ticks - baseTicks) * 1000L / clkTck;
+            if (ms <= 0) continue;
+            String folded = now.name.replaceAll("[0-9]+", "#");
+            byName.merge(folded, ms, Long::sum);
+        }
+        return byName;
+    }
+
+    // tid → (name, utime + stime in clock ticks)
+    private static Map<Integer, ThreadSample> readThreads() {
+        Map<Integer, ThreadSample> out = new HashMap<>();
+        File[] tasks = new File("/proc/self/task").listFiles();
+        if (tasks == null) return out;
+        for (File task : tasks) {
+            try {
+                String stat = new String(Files.readAllBytes(new File(task, "stat").toPath()), StandardCharsets.US_ASCII);
+                int open = stat.indexOf('(');
+                int close = stat.lastIndexOf(')');          // the name itself may contain ')'
+                if (open < 0 || close < open) continue;
+                String[] f = stat.substring(close + 2).split(" ");
+                // f[0] = state (field 3) → utime = field 14, stime = field 15
+                long ticks = Long.parseLong(f[11]) + Long.parseLong(f[12]);
+                out.put(Integer.parseInt(task.getName()), new ThreadSample(stat.substring(open + 1, close), ticks));
+            } catch (IOException | RuntimeException e) {
+                // Thread ended while listing: skip it
+            }
+        }
+        return out;
+    }
+
+    // ================== Metrics ==================
+
+    public static synchronized String getSummary() {
+        long nowElapsed = SystemClock.elapsedRealtime();
+        StringBuilder sb = new StringBuilder("CpuAccounting")
+                .append(" processCpuMs=").append(Process.getElapsedCpuTime() - dayStartProcessCpuMs)
+                .append(" wakeLockHeldMs=").append(wakeLockHeldNowMs(nowElapsed))
+                .append(" elapsedMs=").append(nowElapsed - dayStartElapsed);
+        for (Subsystem s : Subsystem.values()) {
+            int i = s.ordinal();
+            sb.append('\n').append(s)
+                    .append(" cpuMs=").append(cpuNanos.get(i) / 1_000_000L)
+                    .append(" runs=").append(invocations.get(i))
+                    .append(" maxMs=").append(maxNanos.get(i) / 1_000_000L);
+        }
+        return sb.toString();
+    }
+}
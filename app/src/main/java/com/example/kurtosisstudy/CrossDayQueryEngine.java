@@ -0,0 +1,321 @@
+package com.example.kurtosisstudy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.kurtosisstudy.db.DailyDatabase;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * CrossDayQueryEngine
+ * -------------------
+ * Purpose:
+ *   - Read-only analytics over many User<id>_<yyyy_MM_dd> files at once (e.g. hourly active-minute profile
+ *     over the baseline week, angle distribution across week 2) without each caller opening one Room
+ *     database per day.
+ *
+ * What it does:
+ *   • Days: listDays(context) enumerates the current user's day files; daysOfWeek(context, week) picks the
+ *     7 days of a study week (from STUDY_START_TIME) that have a file.
+ *   • Aggregation<A>: a declared per-day SQL query + partial(cursor) + merge(a, b) + empty().
+ *     hourlyActiveProfile() and angleHistogram(binDegrees) are provided.
+ *   • query(context, aggregation, days):
+ *       - Each day is scanned on a bounded pool (POOL_SIZE threads) into a partial aggregate.
+ *       - Finished days: the file is opened directly, read-only (no Room, no migrations, no WAL writes).
+ *       - Days still written (today, yesterday during the rollover grace, a pre-opened tomorrow):
+ *         read through the live DailyDatabase of DataStorageManager, never cached.
+ *       - Partials are merged into one result (ListenableFuture).
+ *   • Cache: partial per (aggregation key, finished day, file stamp). The stamp (size + mtime of the file
+ *     and its WAL) changes when RawDataCompactionWorker rewrites an old day, so a stale partial is never used.
+ *     Bounded to MAX_CACHED_PARTIALS entries (LRU).
+ *
+ * Notes:
+ *   • A day that fails (missing table in an old file, file deleted by the uploader prune) contributes
+ *     empty() and is counted in getStatsSummary(); the rest of the result stays valid.
+ *   • Aggregations must not mutate the partials they receive: cached partials are shared.
+ *   • The DB schema is read as-is: queries must only use tables/columns present in every daily version
+ *     they target (sensor_data_table, minute_averages_table, second_summaries_table from v3), or look the
+ *     columns up in partial() (minute_averages_table is keyed by epochMinute from v7, "HH:mm:ss" before).
+ */
+
+public final class CrossDayQueryEngine {
+
+    private static final String TAG = "CrossDayQuery_KurtosisStudy";
+
+    private static final int POOL_SIZE = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int MAX_CACHED_PARTIALS = 1024;
+
+    private static final Pattern USER_DAY_PATTERN =
+            Pattern.compile("^User(\\d+)_([0-9]{4}_[0-9]{2}_[0-9]{2})$");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+
+    // One declared cross-day computation
+    public interface Aggregation<A> {
+        String key();                   // cache identity: name + parameters
+        String sql();                   // run on each day file
+        A empty();
+        A partial(Cursor rows);         // one day's rows → partial aggregate
+        A merge(A a, A b);              // associative; must return a new value
+    }
+
+    private static ListeningExecutorService pool = null;
+
+    // LRU of finished-day partials: "<key>|<day>|<stamp>" → partial
+    private static final Map<String, Object> cache = new LinkedHashMap<String, Object>(64, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_CACHED_PARTIALS;
+        }
+    };
+
+    // ---- Metrics ----
+    private static final AtomicLong queries = new AtomicLong();
+    private static final AtomicLong fileScans = new AtomicLong();
+    private static final AtomicLong liveScans = new AtomicLong();
+    private static final AtomicLong cacheHits = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+
+    private CrossDayQueryEngine() {} // no instances
+
+    // ================== Days ==================
+
+    // Day keys (yyyy_MM_dd, ascending) of the current user's daily files
+    public static List<String> listDays(Context context) {
+        int userId = currentUserId(context);
+        List<String> days = new ArrayList<>();
+        File dbDir = context.getDatabasePath("dummy").getParentFile();
+        String[] names = (dbDir == null) ? null : dbDir.list();
+        if (names == null) return days;
+        for (String name : names) {
+            Matcher m = USER_DAY_PATTERN.matcher(name);
+            if (m.matches() && Integer.parseInt(m.group(1)) == userId) days.add(m.group(2));
+        }
+        Collections.sort(days);
+        return days;
+    }
+
+    // The days of study week `week` (1-based, 7 days from STUDY_START_TIME) that have a file
+    public static List<String> daysOfWeek(Context context, int week) {
+        long start = context.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE)
+                .getLong(PrefsKeys.Data.STUDY_START_TIME, 0L);
+        List<String> out = new ArrayList<>();
+        if (start <= 0 || week < 1) return out;
+        LocalDate first = Instant.ofEpochMilli(start).atZone(ZoneId.systemDefault()).toLocalDate().plusDays(7L * (week - 1));
+        List<String> existing = listDays(context);
+        for (int i = 0; i < 7; i++) {
+            String day = first.plusDays(i).format(DAY_FORMAT);
+            if (existing.contains(day)) out.add(day);
+        }
+        return out;
+    }
+
+    private static int currentUserId(Context context) {
+        SharedPreferences settings = context.getSharedPreferences(PrefsKeys.Settings.SETTINGS_PREFS, Context.MODE_PRIVATE);
+        return settings.getInt(PrefsKeys.Settings.USER_ID, 1);
+    }
+
+    // ================== Query ==================
+
+    public static <A> ListenableFuture<A> query(Context context, Aggregation<A> aggregation, List<String> days) {
+        queries.incrementAndGet();
+        Context app = context.getApplicationContext();
+        int userId = currentUserId(app);
+        ListeningExecutorService executor = ensurePool();
+
+        List<ListenableFuture<A>> partials = new ArrayList<>(days.size());
+        for (String day : days) {
+            partials.add(executor.submit(() -> scanDay(app, userId, aggregation, day)));
+        }
+        return Futures.transform(Futures.allAsList(partials), list -> {
+            A result = aggregation.empty();
+            for (A partial : list) result = aggregation.merge(result, partial);
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
+    // Blocking variant (worker / debug threads only)
+    public static <A> A queryBlocking(Context context, Aggregation<A> aggregation, List<String> days) {
+        return Futures.getUnchecked(query(context, aggregation, days));
+    }
+
+    private static synchronized ListeningExecutorService ensurePool() {
+        if (pool == null || pool.isShutdown()) {
+            AtomicInteger n = new AtomicInteger();
+            pool = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(POOL_SIZE, r -> {
+                Thread t = new Thread(r, "CrossDayQuery-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }));
+        }
+        return pool;
+    }
+
+    // Pool thread: one day → its partial (cached for finished days)
+    @SuppressWarnings("unchecked")
+    private static <A> A scanDay(Context app, int userId, Aggregation<A> aggregation, String day) {
+        try {
+            DailyDatabase live = DataStorageManager.liveDailyDatabase(day);
+            if (live != null && live.isOpen()) {
+                liveScans.incrementAndGet();
+                try (Cursor c = live.query(aggregation.sql(), null)) {
+                    return aggregation.partial(c);
+                }
+            }
+            if (day.compareTo(DataStorageManager.getDayForDB()) >= 0) {
+                // Today's file without a live instance (service not initialized yet): read, don't cache
+                return readFile(app, userId, aggregation, day);
+            }
+
+            File file = app.getDatabasePath("User" + userId + "_" + day);
+            if (!file.exists()) return aggregation.empty();
+            String cacheKey = aggregation.key() + '|' + day + '|' + stampOf(file);
+            synchronized (cache) {
+                Object hit = cache.get(cacheKey);
+                if (hit != null) {
+                    cacheHits.incrementAndGet();
+                    return (A) hit;
+                }
+            }
+            A partial = readFile(app, userId, aggregation, day);
+            synchronized (cache) {
+                cache.put(cacheKey, partial);
+            }
+            return partial;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            Log.w(TAG, "Day " + day + " skipped for " + aggregation.key() + ": " + e.getMessage());
+            return aggregation.empty();
+        }
+    }
+
+    private static <A> A readFile(Context app, int userId, Aggregation<A> aggregation, String day) {
+        File file = app.getDatabasePath("User" + userId + "_" + day);
+        if (!file.exists()) return aggregation.empty();
+        fileScans.incrementAndGet();
+        try (SQLiteDatabase sqlite = SQLiteDatabase.openDatabase(file.getPath(), null,
+                SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+             Cursor c = sqlite.rawQuery(aggregation.sql(), null)) {
+            return aggregation.partial(c);
+        }
+    }
+
+    // Changes whenever the day's content can have changed (compaction writes the WAL first, then checkpoints)
+    private static String stampOf(File file) {
+        File wal = new File(file.getPath() + "-wal");
+        return file.length() + ":" + file.lastModified() + ":" + wal.length() + ":" + wal.lastModified();
+    }
+
+    // ================== Declared aggregations ==================
+
+    // Active seconds per hour of day (0..23) from the minute averages, summed over the days
+    public static Aggregation<long[]> hourlyActiveProfile() {
+        return new Aggregation<long[]>() {
+            @Override public String key() { return "hourlyActiveProfile"; }
+            @Override public String sql() {
+                // Whole table (≤ 840 rows): a file not opened since DAILY_6_7 still has "HH:mm:ss" keys
+                return "SELECT * FROM minute_averages_table";
+            }
+            @Override public long[] empty() { return new long[24]; }
+            @Override public long[] partial(Cursor rows) {
+                long[] out = new long[24];
+                int keyCol = rows.getColumnIndex("epochMinute");
+                int oldKeyCol = rows.getColumnIndex("alignedMinute");
+                int avgCol = rows.getColumnIndexOrThrow("average");
+                ZoneId zone = ZoneId.systemDefault();
+                while (rows.moveToNext()) {
+                    int hour = (keyCol >= 0)
+                            ? Instant.ofEpochSecond(rows.getLong(keyCol) * 60L).atZone(zone).getHour()
+                            : parseHour(rows.getString(oldKeyCol));
+                    if (hour >= 0 && hour < 24) out[hour] += rows.getLong(avgCol);
+                }
+                return out;
+            }
+            @Override public long[] merge(long[] a, long[] b) {
+                long[] out = new long[24];
+                for (int h = 0; h < 24; h++) out[h] = a[h] + b[h];
+                return out;
+            }
+        };
+    }
+
+    // Sample count per angle bin (bin index = floor(angle / binDegrees)). Days already compacted to 1 Hz
+    // contribute their second summaries (mean angle weighted by sample count) instead of raw rows.
+    public static Aggregation<SortedMap<Integer, Long>> angleHistogram(int binDegrees) {
+        final int bin = Math.max(1, binDegrees);
+        return new Aggregation<SortedMap<Integer, Long>>() {
+            @Override public String key() { return "angleHistogram:" + bin; }
+            @Override public String sql() {
+                return "SELECT b, SUM(n) FROM ("
+                        + "SELECT " + floorSql("angle / " + bin + ".0") + " AS b, 1 AS n FROM sensor_data_table "
+                        + "UNION ALL "
+                        + "SELECT " + floorSql("meanAngle / " + bin + ".0") + " AS b, sampleCount AS n FROM second_summaries_table"
+                        + ") GROUP BY b";
+            }
+            @Override public SortedMap<Integer, Long> empty() { return Collections.emptySortedMap(); }
+            @Override public SortedMap<Integer, Long> partial(Cursor rows) {
+                SortedMap<Integer, Long> out = new TreeMap<>();
+                while (rows.moveToNext()) out.put(rows.getInt(0), rows.getLong(1));
+                return Collections.unmodifiableSortedMap(out);
+            }
+            @Override public SortedMap<Integer, Long> merge(SortedMap<Integer, Long> a, SortedMap<Integer, Long> b) {
+                SortedMap<Integer, Long> out = new TreeMap<>(a);
+                for (Map.Entry<Integer, Long> e : b.entrySet()) out.merge(e.getKey(), e.getValue(), Long::sum);
+                return out;
+            }
+        };
+    }
+
+    // floor() as an integer without SQLite's math functions (not built into the platform SQLite)
+    private static String floorSql(String expr) {
+        String x = "(" + expr + ")";
+        return "(CAST(" + x + " AS INTEGER) - (" + x + " < 0 AND " + x + " <> CAST(" + x + " AS INTEGER)))";
+    }
+
+    // Hour of a pre-v7 "HH:mm:ss" minute key, or -1
+    private static int parseHour(String alignedMinute) {
+        if (alignedMinute == null || alignedMinute.length() < 2) return -1;
+        try {
+            return Integer.parseInt(alignedMinute.substring(0, 2));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ================== Metrics ==================
+
+    public static String getStatsSummary() {
+        int cached;
+        synchronized (cache) {
+            cached = cache.size();
+        }
+        return "crossDay queries=" + queries.get()
+                + " fileScans=" + fileScans.get()
+                + " liveScans=" + liveScans.get()
+                + " cacheHits=" + cacheHits.get()
+                + " failures=" + failures.get()
+                + " cached=" + cached;
+    }
+}
@@ -7,45 +7,47 @@ import android.util.Log;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 
-import com.example.kurtosisstudy.complications.MyComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyProgressComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyWearTimeComplicationProviderService;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import com.example.kurtosisstudy.db.AdjustedDailyGoalEntity;
 import com.example.kurtosisstudy.db.DailyCumulativeEntity;
 import com.example.kurtosisstudy.db.DailyDatabase;
-import com.example.kurtosisstudy.db.DailyWearTimeDao;
+import com.example.kurtosisstudy.db.DatabaseMigrations;
 import com.example.kurtosisstudy.db.DailyWearTimeEntity;
+import com.example.kurtosisstudy.db.DayHistogramEntity;
+import com.example.kurtosisstudy.db.DaySummaryEntity;
+import com.example.kurtosisstudy.db.EnergyReportEntity;
 import com.example.kurtosisstudy.db.MainResultsDatabase;
 import com.example.kurtosisstudy.db.MinuteAverageEntity;
 import com.example.kurtosisstudy.db.NotificationEntity;
+import com.example.kurtosisstudy.db.PartitionedMinuteAverageEntity;
+import com.example.kurtosisstudy.db.PartitionedSampleEntity;
 import com.example.kurtosisstudy.db.SensorSampleEntity;
+import com.example.kurtosisstudy.db.SqliteTuningProfile;
 import com.example.kurtosisstudy.db.StudyMetaDao;
 import com.example.kurtosisstudy.db.StudyMetaEntity;
 import com.example.kurtosisstudy.db.WearSessionEntity;
 import com.example.kurtosisstudy.db.WeeklyAverageDao;
 import com.example.kurtosisstudy.db.WeeklyAverageEntity;
+import com.example.kurtosisstudy.db.WeeklyMovementTotals;
 import com.example.kurtosisstudy.db.WeeklyRatioDao;
 import com.example.kurtosisstudy.db.WeeklyRatioEntity;
+import com.example.kurtosisstudy.StorageTaskScheduler.Lane;
+import com.example.kurtosisstudy.AnalyticsGraph.Node;
 
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.RejectedExecutionException;
 
-import java.time.*;
-import java.time.temporal.ChronoUnit;
 
 /*
  * DataStorageManager
@@ -53,7 +55,7 @@ import java.time.temporal.ChronoUnit;
  * Purpose:
  *   - Central hub for all persistent data in Diversify.
  *   - Owns the per-day DailyDatabase, the per-user MainResultsDatabase, and a single
- *     analytics executor to keep all heavy DB work off the main thread.
+ *     supervised storage worker (StorageTaskScheduler) to keep all heavy DB work off the main thread.
  *
  * What it does:
  *   • Initialization (per user + per day):
@@ -66,17 +68,67 @@ import java.time.temporal.ChronoUnit;
  *       - shouldReinitializeDailyDb():
  *           · Returns true if the calendar day changed (FGS can then call init(...) again).
  *
+ *   • Day rollover (no stall, no lost sample):
+ *       - maintainDailyDatabases() (FGS, every minute):
+ *           · From PREPARE_AHEAD_MS before midnight: builds tomorrow's DailyDatabase and opens it on the
+ *             storage worker (file creation, migrations, PRAGMA tuning happen before midnight).
+ *           · PREVIOUS_DAY_GRACE_MS after the swap: closes yesterday's file on the storage worker, after
+ *             writing its final CPU report and letting CoalescingWriter finish.
+ *       - init(...) on a new day only swaps references: yesterday → previousDb, prepared file → db.
+ *       - dailyDatabaseFor(day) routes by the day of the data, not by the time of the write:
+ *           · snapshotAndSaveBuffers splits a buffer spanning midnight per sample day.
+ *           · computeAndSaveMinuteAverage reads/writes the file of the minute's day (23:59 → yesterday).
+ *           · CoalescingWriter's DAILY rows (logs, goal, energy report) go to the file of their day.
+ *         A day without an open file (e.g. older than yesterday) falls back to today's file.
+ *       - dayKeyOf(ts) / getDayForDB(): StudyClock's cached "yyyy_MM_dd" for today, formatted for other days.
+ *
  *   • Executor management:
- *       - ensureAnalyticsExecutorAlive():
- *           · Guarantees a live single-thread executor for all analytics/DB tasks.
- *           · All public “computeAndSave…” methods use this executor.
+ *       - storageScheduler (StorageTaskScheduler):
+ *           · One supervised worker with lanes RAW_FLUSH > MINUTE > GOAL_WEAR > WEEKLY.
+ *           · Repeated computeAndSave… calls still pending are coalesced by key.
+ *           · getSchedulerMetrics() exposes queue depths and wait times.
+ *       - Small result rows (wear sessions, notifications, cumulative, wear time, goal, logs)
+ *         are handed to CoalescingWriter, which commits them in one transaction per DB.
+ *
+ *   • Dirty flags (AnalyticsGraph):
+ *       - Each computeAndSave… step is a node with declared inputs (raw samples, wear sessions, wear-window
+ *         clock, day, week, upstream nodes). A scheduled run returns immediately if no input changed.
+ *       - A node only dirties its downstream nodes (and refreshes its complication) when its value changed.
+ *       - getAnalyticsGraphMetrics() exposes runs vs skipped runs per node.
+ *
+ *   • Energy report:
+ *       - saveEnergyReport() writes CpuAccounting's day-cumulative CPU / wakelock rows to the daily DB
+ *         (hourly from the service and on shutdown; the last report of a day is taken at the swap
+ *         and written when yesterday's file is retired).
+ *
+ *   • Day summary (day_summary, main DB):
+ *       - One row per day, updated in place by CoalescingWriter together with the cumulative / wear time /
+ *         notification rows, plus the goal + ratio (daySummaryGoal). -1 = not known yet.
+ *       - Today's progress / wear / goal reads (last-known values, change checks, goal projection, weekly
+ *         average, TodaySnapshot cold start) are primary-key lookups on it instead of ORDER BY … LIMIT 1.
+ *
+ *   • Chart histograms (ActivityHistograms, day_histogram_table):
+ *       - Each minute average also adds the minute's active / diverse seconds and wrist-angle bins to its
+ *         day's 15' slots; getTodayHistogram() (memory) and getWeekHistogramsAsync(week) serve plot-ready arrays.
+ *
+ *   • Signal pyramid (SignalPyramid, signal_pyramid_table in each daily DB):
+ *       - Every raw flush also feeds 5 s / 30 s / 3 min / 15 min min-max + LTTB buckets of angle, inclination
+ *         and rawGMAC; getSignalSeriesAsync(signal, from, to, columns, pointsPerColumn) serves any zoom from them.
+ *
+ *   • UI snapshot:
+ *       - Changed progress / wear time / goal values are published to TodaySnapshot before the
+ *         matching complication refresh, so complications and MainActivity read memory, not Room.
+ *
+ *   • Time:
+ *       - Every time-dependent step reads StudyClock (now(), today's key / 08:00–22:00 bounds / week), so the
+ *         pipeline can run under a simulated clock (StudyClock.install(...)).
  *
  *   • Study timeline & weeks:
  *       - startStudyTimestamp():
  *           · Ensures StudyMetaEntity exists with a startOfStudyTimestamp/date.
  *           · Mirrors STUDY_START_TIME to prefs for fast cold-start week computation.
  *       - computeWeekFromDb():
- *           · Computes weekNumber from [startOfStudyDate → today] using java.time.
+ *           · Hands the study start to StudyClock, which derives the week once per day (days since start / 7 + 1).
  *       - scheduleWeekRefreshAsync():
  *           · Updates WEEK_ID in prefs based on DB + prefs (never moves backwards).
  *           · Triggers complication updates when the week changes.
@@ -85,47 +137,56 @@ import java.time.temporal.ChronoUnit;
  *
  *   • “Last known” values in SharedPreferences:
  *       - initializeLastKnownProgress():
- *           · Reads today’s DailyCumulative entry from mainResultsDb and caches LAST_KNOWN_PROGRESS.
+ *           · Reads today’s day_summary row from mainResultsDb and caches LAST_KNOWN_PROGRESS in HotStateFile.
  *       - initializeLastKnownGoal():
- *           · Reads latest AdjustedDailyGoalEntity from the daily DB and caches LAST_KNOWN_GOAL.
+ *           · Reads today’s summary goal (else the latest AdjustedDailyGoalEntity) and caches LAST_KNOWN_GOAL in HotStateFile.
  *
  *   • Wear sessions & notifications:
  *       - saveWearStateToDatabase(isWorn) / saveWearStateToDatabaseAt(isWorn, whenMillis):
  *           · Append WearSessionEntity entries (timestamp, day string, worn flag).
+ *           · The writer also keeps wear_intervals_table (WearIntervalIndex) in step: worn segments with a
+ *             running worn-ms prefix → worn ms between t1/t2, state at t, last removal in O(log n).
+ *       - closeOpenWearSegmentAt(closeAt, hotStateWorn):
+ *           · Service restart after downtime: backfills "not worn" at last heartbeat + 1 ms if a segment is open.
  *       - getLastNotWornTimestampToday():
- *           · Returns the most recent “not worn” timestamp for today (or -1).
+ *           · Returns when the watch was last taken off today (end of the last worn segment; falls back to the
+ *             day's latest “not worn” row if it was off since before today), or -1.
  *       - saveNotificationTimestamp(level, message):
  *           · Logs notification display events to NotificationEntity.
  *
- *   • Short-term activity queries:
- *       - getActivityDuringPrev30Minutes():
- *           · Sums MinuteAverageEntity entries over the last 30 min in the daily DB.
- *           · Returns true if ≥ 6 minutes active, false otherwise.
- *       - getCumulative30MinsBefore():
- *           · Returns DailyCumulative.cumulative value closest to 30 min ago.
+ *   • Short-term activity state (notifications):
+ *       - computeAndSaveMinuteAverage / computeAndSaveDailyCumulative feed NotificationDecisionState
+ *         (30' active window, cumulative 30' ago and at the slope start, in memory); seedNotificationState()
+ *         rebuilds it from today's rows once per process.
+ *       - runAfterMinuteAggregation(...) / wornRunStartToday(): GoalNotificationManager decides on the storage
+ *         worker once the tick's minute tasks ran, with the slope start taken from the wear accumulator.
  *
  *   • High-rate sensor data:
  *       - snapshotAndSaveBuffers(...):
  *           · Takes snapshots of the 50 Hz circular buffers (timestamps, accel, angle,
  *             inclination, std, rawKurtosis, rawGMAC, kurtosis flag, activity flag).
- *           · Bulk-inserts them as SensorSampleEntity rows into the daily DB.
+ *           · Bulk-inserts them as SensorSampleEntity rows into the daily DB of each sample's day.
  *
  *   • Daily aggregates:
- *       - computeAndSaveMinuteAverage(start, end, alignedMinute):
+ *       - computeAndSaveMinuteAverage(start, end):
  *           · Reads SensorSampleEntity rows in [start, end).
- *           · Converts GMAC/kurtosis flags into “active seconds” and “secondary” seconds.
- *           · Upserts a MinuteAverageEntity for that aligned minute.
+ *           · Converts GMAC/kurtosis flags into “active seconds” and “secondary” seconds
+ *             (0 for a minute the worn segments show as entirely not worn, only with EXCLUDE_NOT_WORN_MINUTES).
+ *           · Upserts a MinuteAverageEntity keyed by the minute's epoch minute (start / 60 000).
  *       - computeAndSaveDailyCumulative():
  *           · Sums all MinuteAverage entries for today → movement & secondary minutes.
  *           · Saves DailyCumulativeEntity into mainResultsDb.
- *           · Updates LAST_KNOWN_PROGRESS and refreshes MyProgressComplicationProviderService.
+ *           · Updates LAST_KNOWN_PROGRESS (HotStateFile) and requests a PROGRESS refresh from ComplicationUpdateBroker.
  *       - computeAndSaveDailyWearTime():
- *           · Uses WearSessionEntity (08:00–22:00 window) to compute worn/not-worn minutes.
- *           · Inserts/updates DailyWearTimeEntity and refreshes MyWearTimeComplicationProviderService.
+ *           · Worn/not-worn minutes of the 08:00–22:00 window from WearTimeAccumulator (in memory, fed by
+ *             saveWearStateToDatabase…); the day's WearSessionEntity rows are only read on process start
+ *             and for the hourly equivalence check.
+ *           · Inserts/updates DailyWearTimeEntity and requests a WEAR_TIME refresh from ComplicationUpdateBroker.
  *
  *   • Weekly metrics & goals:
  *       - computeAndSaveWeeklyAverage():
- *           · For current week, fetches all DailyWearTime + DailyCumulative entries.
+ *           · For current week, one DAO query (DaySummaryDao.getWeeklyMovementTotals) sums movement + wear
+ *             over the week's day_summary rows with ≥ MIN_WEAR_MINUTES_PER_DAY of wear.
  *           · Computes a weighted movement-per-wear ratio (goalAchieved) across valid days.
  *           · Saves WeeklyAverageEntity.
  *       - createAndSaveWeeklyRatios():
@@ -137,13 +198,14 @@ import java.time.temporal.ChronoUnit;
  *       - computeAndSaveAdjustedDailyGoal():
  *           · Uses WeeklyRatio.ratioValue + today’s wear pattern (08:00–22:00) to project
  *             an adjusted daily movement goal (with ≥8h wear floor).
- *           · Saves AdjustedDailyGoalEntity in the daily DB and updates LAST_KNOWN_GOAL.
+ *           · Saves AdjustedDailyGoalEntity in the daily DB and updates LAST_KNOWN_GOAL in HotStateFile.
  *           · Triggers MyProgressComplicationProviderService refresh.
  *
  *   • Shutdown:
  *       - shutdown():
- *           · Gracefully shuts down the analytics executor (waits up to 2s).
- *           · Closes daily and main Room databases if open.
+ *           · Lets the storage worker drain its lanes (waits up to 2s).
+ *           · Flushes CoalescingWriter so queued inserts are committed before closing.
+ *           · Closes daily (today, plus yesterday/tomorrow around midnight) and main Room databases if open.
  */
 
 public class DataStorageManager {
@@ -158,14 +220,57 @@ public class DataStorageManager {
     private static int NEW_USER_ID = 1;
 
     // Define databases
-    private static DailyDatabase db = null;
+    private static volatile DailyDatabase db = null;               // today
+    private static volatile String currentDayKey = null;           // yyyy_MM_dd of db
+
+    // Daily files around midnight (see "Day rollover" in the header); swapped under DataStorageManager.class
+    private static volatile DailyDatabase nextDb = null;           // tomorrow, pre-opened before midnight
+    private static volatile String nextDayKey = null;
+    private static volatile DailyDatabase previousDb = null;       // yesterday, until its late rows are in
+    private static volatile String previousDayKey = null;
+    private static long previousRetireAt = 0L;
+    private static List<EnergyReportEntity> previousDayReport = null;  // yesterday's final CPU report
+    private static final long PREPARE_AHEAD_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long PREVIOUS_DAY_GRACE_MS = TimeUnit.MINUTES.toMillis(2);
+
     private static MainResultsDatabase mainResultsDb;
     private static String currentMainDbName = null;   // track the open main DB file name
 
-    // One executor for long-running tasks
-    private static ExecutorService analyticsExecutor = Executors.newSingleThreadExecutor();
-    // Use synchronized to prevent race conditions if multiple methods try to check/recreate the executor at the same time.
-    private static final Object executorLock = new Object();
+    // Raw data + minute averages go to PartitionedStore instead of the daily DB when true
+    private static volatile boolean partitionedMode = false;
+
+    // Minutes entirely inside a not-worn segment are saved as 0 when true (EXCLUDE_NOT_WORN_MINUTES, off by default)
+    private static volatile boolean excludeNotWornMinutes = false;
+
+    // Need a minimum of 8 hours of worn time for a day to count in the weekly average
+    static final int MIN_WEAR_MINUTES_PER_DAY = 480;
+
+    // Max wait for CoalescingWriter before every DB is closed (user change, shutdown); the storage worker
+    // itself never waits for the writer, it continues through CoalescingWriter.afterCommit
+    private static final long WRITER_FLUSH_TIMEOUT_MS = 2000;
+
+    // Notification queries never wait longer than this for the storage worker
+    public static final long QUERY_DEADLINE_MS = 1500;
+    private static final long NOT_WORN_MAX_STALE_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final DeadlineQueries.Cached<Long> lastNotWornCache = new DeadlineQueries.Cached<>();
+
+    // One supervised worker with priority lanes for all long-running DB work
+    private static final StorageTaskScheduler storageScheduler = new StorageTaskScheduler("DataStorageWorker");
+
+    // Dirty flags of the analytics chain: a computeAndSave… step only runs if one of its inputs changed
+    private static final AnalyticsGraph analyticsGraph = new AnalyticsGraph();
+    private static volatile long rawWatermarkTs = 0L;      // newest raw sample timestamp saved
+    private static long lastWearClockMinute = -1L;         // storage worker only
+    private static boolean notificationStateSeeded = false; // NotificationDecisionState rebuilt in this process
+    private static final WearTimeAccumulator wearAccumulator = new WearTimeAccumulator();   // storage worker only
+    private static volatile boolean wearReadRequested = false;  // a DB read for wearAccumulator is queued
+    private static final ActivityHistograms activityHistograms = new ActivityHistograms(); // updated on the storage worker
+    private static final SignalPyramid signalPyramid = new SignalPyramid();                // storage worker only
+    // Last published values (storage worker only); complications refresh only when these change
+    private static String lastCumulativeDay = null, lastGoalDay = null;
+    private static int lastCumulativeMinutes = -1, lastCumulativeSecondaryMinutes = -1, lastGoal = -1;
+    private static int lastWeeklyAverageWeek = -1;
+    private static float lastWeeklyAverage = Float.NaN;
 
     // Class initialization
     public static synchronized void init(Context context) {
@@ -174,6 +279,9 @@ public class DataStorageManager {
         // Store application-wide context to avoid memory leaks
         appContext = context.getApplicationContext();
 
+        // Reopen the storage worker if shutdown() closed it (no-op otherwise)
+        storageScheduler.start();
+
         // Load current user id from AdminSettings
         prefsAdminSettings =  appContext.getSharedPreferences(PrefsKeys.Settings.SETTINGS_PREFS, Context.MODE_PRIVATE);
         int newUserId = prefsAdminSettings.getInt(PrefsKeys.Settings.USER_ID, 1);
@@ -192,16 +300,21 @@ public class DataStorageManager {
         if (userChanged) {
             Log.d(TAG, "User changed: " + lastUserId + " -> " + newUserId + " — resetting per-user state");
 
-            // Close old DBs if open
-            if (db != null && db.isOpen()) {
-                db.close();
-                db = null;
+            // Commit buffered logs + queued rows to the old user's files, then close them
+            LogSaver.flush();
+            if (!CoalescingWriter.flush(WRITER_FLUSH_TIMEOUT_MS)) {
+                Log.w(TAG, "CoalescingWriter flush timed out before the user change: " + CoalescingWriter.getStatsSummary());
             }
+            closeDailyDatabases();
             if (mainResultsDb != null) {
                 mainResultsDb.close();
                 mainResultsDb = null;
             }
             currentMainDbName = null;
+            PartitionedStore.close();
+            analyticsGraph.bump(Node.DAY);
+            NotificationDecisionState.clear();
+            notificationStateSeeded = false;
 
             // Clear per-user prefs that must restart from week 1 and fresh day DB
             prefsDataStorage.edit()
@@ -212,13 +325,12 @@ public class DataStorageManager {
                     .putInt(PrefsKeys.Data.LAST_USER_ID, newUserId)
                     .apply();
         }
+        // Study week of the cached clock day (0 until the study start is known)
+        StudyClock.setStudyStart(prefsDataStorage.getLong(PrefsKeys.Data.STUDY_START_TIME, 0L));
 
         // Keep the NEW_USER_ID cached
         NEW_USER_ID = newUserId;
 
-        // Start the executor that will manage all long running operations outside the main ui thread
-        ensureAnalyticsExecutorAlive();
-
         // (Re)build MainResults DB if needed OR if name changed
         String desiredMainName = "main_results_db_" + NEW_USER_ID;
         if (mainResultsDb == null || !desiredMainName.equals(currentMainDbName)) {
@@ -226,9 +338,14 @@ public class DataStorageManager {
                 mainResultsDb.close();
             }
             mainResultsDb = Room.databaseBuilder(appContext, MainResultsDatabase.class, desiredMainName)
+                    .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                    .addMigrations(DatabaseMigrations.MAIN)
+                    .addCallback(SqliteTuningProfile.MAIN_READ_MOSTLY.asCallback(desiredMainName))
                     .build();
             currentMainDbName = desiredMainName;
             Log.d(TAG, "Initialized MainResults DB: " + desiredMainName);
+            // First start after MAIN_3_4 (or a new user): fold the wear transitions into worn segments
+            CoalescingWriter.wearIntervalsIfEmpty();
         }
 
         // Generate today's database name (e.g., User01_2025_08_04)
@@ -237,17 +354,35 @@ public class DataStorageManager {
         // Get the last initialized daily database name from persistent storage
         String savedDbName = prefsDataStorage.getString(PrefsKeys.Data.CURRENT_DB_NAME, "");
 
-        // If the day has changed or DB name is different, close and create new DB
+        // If the day has changed or DB name is different, swap to the new day's DB.
+        // Nothing is flushed or closed here: yesterday's file stays reachable for rows of yesterday
+        // (late sensor buffers, queued logs) and is closed later on the storage worker.
         if (!todayDbName.equals(savedDbName)) {
+            String today = getDayForDB();
+            DailyDatabase prepared = today.equals(nextDayKey) ? nextDb : null;
             if (db != null && db.isOpen()) {
-                db.close(); // Cleanly close yesterday's DB
-                Log.d(TAG, "Closed previous daily DB: " + savedDbName);
+                if (previousDb != null) {
+                    // Two swaps within the grace period: the older file is closed right away
+                    DailyDatabase older = previousDb;
+                    String olderDay = previousDayKey;
+                    List<EnergyReportEntity> olderReport = previousDayReport;
+                    storageScheduler.execute(Lane.WEEKLY, null, () -> closeRetiredDatabase(older, olderDay, olderReport));
+                }
+                previousDayReport = CpuAccounting.buildReport();
+                previousRetireAt = StudyClock.now() + PREVIOUS_DAY_GRACE_MS;
+                previousDayKey = currentDayKey;
+                previousDb = db;               // published before db moves on: routing never misses a day
             }
 
-            // Build a new DB instance for the new day
-            db = Room.databaseBuilder(appContext, DailyDatabase.class, todayDbName)
-                    .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
-                    .build();
+            // Tomorrow's file prepared before midnight, or a new instance if the service missed that window
+            db = (prepared != null) ? prepared : buildDailyDatabase(todayDbName);
+            currentDayKey = today;
+            if (prepared == null && nextDb != null) {
+                DailyDatabase stale = nextDb;       // prepared for a day that never became "today"
+                storageScheduler.execute(Lane.WEEKLY, null, stale::close);
+            }
+            nextDb = null;
+            nextDayKey = null;
 
             // Update memory and persistent references
             prefsDataStorage.edit()
@@ -257,16 +392,36 @@ public class DataStorageManager {
                     .apply();
 
             Log.d(TAG, "New day, new daily DB: " + todayDbName);
+            analyticsGraph.bump(Node.DAY);
+            CpuAccounting.startDay();
 
             // Same day, but DB has not yet been initialized (e.g. app restart)
         } else if (db == null) {
-            db = Room.databaseBuilder(appContext, DailyDatabase.class, todayDbName)
-                    .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
-                    .build();
+            db = buildDailyDatabase(todayDbName);
+            currentDayKey = getDayForDB();
 
             Log.d(TAG, "Re-attaching to the existing DB file for today: " + todayDbName);
         }
 
+        // Opt-in: a changed minute definition changes the study output, so the default keeps the original one
+        excludeNotWornMinutes = prefsAdminSettings.getBoolean(PrefsKeys.Settings.EXCLUDE_NOT_WORN_MINUTES, false);
+
+        // Optional single long-lived store for raw data; switching day there is O(1)
+        partitionedMode = PrefsKeys.Settings.STORAGE_MODE_PARTITIONED.equals(
+                prefsAdminSettings.getString(PrefsKeys.Settings.STORAGE_MODE, PrefsKeys.Settings.STORAGE_MODE_PER_DAY));
+        if (partitionedMode) {
+            PartitionedStore.open(appContext, NEW_USER_ID);
+            PartitionedStore.switchDay(getDayForDB());
+            // First time in this mode: import the existing per-day files in the background
+            // (files of later days never get raw rows; today's file is imported once it is retired)
+            if (!prefsDataStorage.contains(PrefsKeys.Data.PARTITIONED_SINCE_DAY)) {
+                prefsDataStorage.edit().putString(PrefsKeys.Data.PARTITIONED_SINCE_DAY, getDayForDB()).apply();
+            }
+            if (!prefsDataStorage.getBoolean(PrefsKeys.Data.PARTITIONED_IMPORT_DONE, false)) {
+                PartitionedImportWorker.enqueue(appContext);
+            }
+        }
+
         // Initialize week id to 1 (if did not exist in shared prefs)
         if (!prefsDataStorage.contains(PrefsKeys.Data.WEEK_ID)) {
             prefsDataStorage.edit().putInt(PrefsKeys.Data.WEEK_ID, 1).apply();
@@ -275,18 +430,195 @@ public class DataStorageManager {
         // Set the week id based on the date
         scheduleWeekRefreshAsync();
 
+        // Once per process: the notification window state starts from today's stored rows
+        if (!notificationStateSeeded) {
+            notificationStateSeeded = true;
+            seedNotificationState();
+        }
     }
 
-    // Restart the analytics executor if shutdown.
-    private static void ensureAnalyticsExecutorAlive() {
-        synchronized (executorLock) {
-            if (analyticsExecutor == null || analyticsExecutor.isShutdown() || analyticsExecutor.isTerminated()) {
-                LogSaver.saveLog(TAG,"w", "ensureAnalyticsExecutorAlive - AnalyticsExecutor was shutdown — restarting.");
-                analyticsExecutor = Executors.newSingleThreadExecutor();
+    // Replays today's last minute averages and all of today's cumulative writes into NotificationDecisionState.
+    // Queued on the MINUTE lane ahead of the first tick, so live rows only arrive after it.
+    private static void seedNotificationState() {
+        Runnable task = () -> {
+            try {
+                String day = getDayForDB();
+                long now = StudyClock.now();
+                long fromMinute = StudyClock.epochMinute(now) - NotificationDecisionState.RING_MINUTES;
+                int minutes = 0;
+                if (partitionedMode) {
+                    for (PartitionedMinuteAverageEntity e : PartitionedStore.getMinuteAveragesForDay(day)) {
+                        if (e.epochMinute < fromMinute) continue;
+                        NotificationDecisionState.onMinuteAverage(day, e.epochMinute, e.average);
+                        minutes++;
+                    }
+                } else {
+                    for (MinuteAverageEntity e : db.minuteAverageDao().getMinuteAverageRowsSince(fromMinute)) {
+                        NotificationDecisionState.onMinuteAverage(day, e.epochMinute, e.average);
+                        minutes++;
+                    }
+                }
+
+                // Every cumulative of the day (≤ one per minute): the slope start may be hours back
+                List<DailyCumulativeEntity> cumulatives = mainResultsDb.dailyCumulativeDao().getEntriesSince(day, 0L);
+                for (DailyCumulativeEntity e : cumulatives) {
+                    NotificationDecisionState.onCumulative(day, e.timestamp, e.cumulative);
+                }
+                LogSaver.saveLog(TAG, "d", "Notification state seeded: " + minutes + " minutes, "
+                        + cumulatives.size() + " cumulatives");
+            } catch (Exception e) {
+                LogSaver.saveLog(TAG, "e", "Failed to seed notification state: " + e.getMessage());
             }
+        };
+        storageScheduler.execute(Lane.MINUTE, "notificationSeed", task);
+    }
+
+    // Room builds lazily: the file is only created/opened by the first query (or openDailyDatabase)
+    private static DailyDatabase buildDailyDatabase(String name) {
+        return Room.databaseBuilder(appContext, DailyDatabase.class, name)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .addMigrations(DatabaseMigrations.DAILY)
+                .addCallback(SqliteTuningProfile.DAILY_WRITE_HEAVY.asCallback(name))
+                .build();
+    }
+
+    // ================== Day rollover ==================
+
+    // Called by the service every minute: pre-opens tomorrow's file and retires yesterday's
+    public static synchronized void maintainDailyDatabases() {
+        if (appContext == null || db == null) return;
+        long now = StudyClock.now();
+
+        // Last minutes of the day: create/migrate/tune tomorrow's file on the storage worker
+        long nextMidnight = StudyClock.startOfNextDay(now);
+        if (nextDb == null && now >= nextMidnight - PREPARE_AHEAD_MS) {
+            String tomorrow = dayKeyOf(nextMidnight);
+            DailyDatabase prepared = buildDailyDatabase("User" + NEW_USER_ID + "_" + tomorrow);
+            nextDayKey = tomorrow;
+            nextDb = prepared;
+            storageScheduler.execute(Lane.WEEKLY, "prepareNextDay", () -> openDailyDatabase(prepared, tomorrow));
+        }
+
+        // Grace period over: yesterday's late rows are in, close its file
+        if (previousDb != null && now >= previousRetireAt) {
+            DailyDatabase old = previousDb;
+            storageScheduler.execute(Lane.WEEKLY, "retirePreviousDay", () -> retireDailyDatabase(old));
+        }
+    }
+
+    // Storage worker: the first getWritableDatabase() runs creation, migrations and the tuning callback
+    private static void openDailyDatabase(DailyDatabase daily, String day) {
+        try {
+            long t0 = System.currentTimeMillis();
+            daily.getOpenHelper().getWritableDatabase();
+            LogSaver.saveLog(TAG, "d", "Pre-opened daily DB for " + day + " in " + (System.currentTimeMillis() - t0) + " ms");
+        } catch (Exception e) {
+            LogSaver.saveLog(TAG, "e", "Failed to pre-open daily DB for " + day + ": " + e.getMessage());
+        }
+    }
+
+    // Storage worker: raw inserts and minute averages run on this thread too, so none is in flight here
+    private static void retireDailyDatabase(DailyDatabase old) {
+        String day;
+        List<EnergyReportEntity> report;
+        synchronized (DataStorageManager.class) {
+            if (previousDb != old) return;          // already retired
+            day = previousDayKey;
+            report = previousDayReport;
+            previousDb = null;                      // from now on a row of that day goes to today's file
+            previousDayKey = null;
+            previousDayReport = null;
+        }
+        closeRetiredDatabase(old, day, report);
+    }
+
+    // A writer transaction that already picked this file finishes first: the close runs on the storage
+    // worker once everything queued before now is committed (afterCommit, no blocking flush here)
+    private static void closeRetiredDatabase(DailyDatabase old, String day, List<EnergyReportEntity> report) {
+        boolean queued = CoalescingWriter.afterCommit(() -> storageScheduler.execute(Lane.WEEKLY, null,
+                () -> closeRetiredDatabaseNow(old, day, report)));
+        if (!queued) {
+            LogSaver.saveLog(TAG, "w", "Writer queue full, closing the daily DB of " + day + " without waiting for it");
+            closeRetiredDatabaseNow(old, day, report);
+        }
+    }
+
+    private static void closeRetiredDatabaseNow(DailyDatabase old, String day, List<EnergyReportEntity> report) {
+        try {
+            if (report != null) old.energyReportDao().upsertAll(report);
+        } catch (Exception e) {
+            LogSaver.saveLog(TAG, "e", "Failed to save the final energy report of " + day + ": " + e.getMessage());
+        }
+        if (old.isOpen()) old.close();
+        LogSaver.saveLog(TAG, "d", "Closed previous daily DB for " + day);
+
+        // The import skipped this file while it was open; it can be read now
+        if (partitionedMode && !prefsDataStorage.getBoolean(PrefsKeys.Data.PARTITIONED_IMPORT_DONE, false)) {
+            PartitionedImportWorker.enqueue(appContext);
         }
     }
 
+    // User change / shutdown: every daily file at once (callers flushed CoalescingWriter before)
+    private static synchronized void closeDailyDatabases() {
+        for (DailyDatabase d : new DailyDatabase[]{previousDb, db, nextDb}) {
+            if (d != null && d.isOpen()) d.close();
+        }
+        previousDb = null;
+        previousDayKey = null;
+        previousDayReport = null;
+        nextDb = null;
+        nextDayKey = null;
+        db = null;
+        currentDayKey = null;
+    }
+
+    // Daily DB holding the rows of the given day: today, tomorrow (pre-opened) or yesterday (until retired).
+    // Any other day, or one whose file is already closed, falls back to today's file.
+    static DailyDatabase dailyDatabaseFor(String day) {
+        if (day != null && !day.equals(currentDayKey)) {
+            DailyDatabase other = null;
+            if (day.equals(previousDayKey)) other = previousDb;
+            else if (day.equals(nextDayKey)) other = nextDb;
+            if (other != null) return other;
+        }
+        return db;
+    }
+
+    // Live (still written) instance of exactly that day, else null; read-only tools open other days' files themselves
+    static DailyDatabase liveDailyDatabase(String day) {
+        if (day == null) return null;
+        if (day.equals(currentDayKey)) return db;
+        if (day.equals(previousDayKey)) return previousDb;
+        if (day.equals(nextDayKey)) return nextDb;
+        return null;
+    }
+
+    // Days whose file is still written through a live DailyDatabase (plus today's, even before init)
+    static synchronized Set<String> openDailyDays() {
+        Set<String> days = new HashSet<>();
+        for (String day : new String[]{previousDayKey, currentDayKey, nextDayKey, StudyClock.todayKey()}) {
+            if (day != null) days.add(day);
+        }
+        return days;
+    }
+
+    // Queue depths, coalescing and wait times of the storage lanes
+    public static String getSchedulerMetrics() {
+        return storageScheduler.getMetricsSummary();
+    }
+
+    // Runs vs skipped (clean) runs of each analytics step, plus the wear accumulator's O(1) / refold / check counts
+    public static String getAnalyticsGraphMetrics() {
+        return analyticsGraph.getMetricsSummary() + "\n" + wearAccumulator.getMetricsSummary()
+                + "\n" + activityHistograms.getMetricsSummary()
+                + "\n" + signalPyramid.getMetricsSummary();
+    }
+
+    // Day-cumulative CPU / wakelock report (CpuAccounting) → today's daily DB, rows replaced in place
+    public static void saveEnergyReport() {
+        CoalescingWriter.energyReport(CpuAccounting.buildReport());
+    }
+
     public static MainResultsDatabase getMainDatabase() {
         if (mainResultsDb == null){
             LogSaver.saveLog(TAG,"e", "Trying to return mainResultsDb but its null");
@@ -294,6 +626,10 @@ public class DataStorageManager {
         return mainResultsDb;
     }
 
+    public static boolean isPartitionedMode() {
+        return partitionedMode;
+    }
+
     public static DailyDatabase getDailyDatabase() {
         if (db == null){
             LogSaver.saveLog(TAG,"e", "Trying to return DailyDatabase but its null");
@@ -301,6 +637,16 @@ public class DataStorageManager {
         return db;
     }
 
+    // Same as the getters above but silent when null: used by the writer/checkpoint threads,
+    // whose own logs would otherwise loop back through LogSaver while a DB is being reopened
+    static MainResultsDatabase peekMainDatabase() {
+        return mainResultsDb;
+    }
+
+    static DailyDatabase peekDailyDatabase() {
+        return db;
+    }
+
     // Check if a new day has come. This is called inside FGS-periodicCheckScheduler() every minute
     public static boolean shouldReinitializeDailyDb() {
         if (prefsDataStorage == null) return true;
@@ -311,26 +657,21 @@ public class DataStorageManager {
     // Week computation (DB + prefs)
     // Kicks an async DB read to compute week ID and persist a value to prefs. */
     private static void scheduleWeekRefreshAsync() {
-        ensureAnalyticsExecutorAlive();
-        try {
-            analyticsExecutor.execute(() -> {
-                int dbWeek = computeWeekFromDb();       // get from db based on "start study timestamp"
-                int current = getWeekFromPrefs();       // get from sharedprefs storage
-                int chosen = Math.max(current, dbWeek); // never go backwards, choose the largest id
-
-                // Today's a new week:
-                if (chosen != current) {
-                    prefsDataStorage.edit().putInt(PrefsKeys.Data.WEEK_ID, chosen).apply();
-                    // Notify the complications rendering based on week
-                    MyComplicationProviderService.requestComplicationUpdate(appContext);
-                    MyProgressComplicationProviderService.requestComplicationUpdate(appContext);
-                }
-                LogSaver.saveLog(TAG, "i",
-                        "Week refresh -> prefs=" + current + " db=" + dbWeek + " chosen=" + chosen);
-            });
-        } catch (RejectedExecutionException rex) {
-            LogSaver.saveLog(TAG, "e", "Executor rejected week refresh: " + rex.getMessage());
-        }
+        storageScheduler.execute(Lane.WEEKLY, "weekRefresh", () -> {
+            int dbWeek = computeWeekFromDb();       // get from db based on "start study timestamp"
+            int current = getWeekFromPrefs();       // get from sharedprefs storage
+            int chosen = Math.max(current, dbWeek); // never go backwards, choose the largest id
+
+            // Today's a new week:
+            if (chosen != current) {
+                prefsDataStorage.edit().putInt(PrefsKeys.Data.WEEK_ID, chosen).apply();
+                analyticsGraph.bump(Node.WEEK);
+                // Notify the complications rendering based on week
+                ComplicationUpdateBroker.request(appContext, ComplicationUpdateBroker.Target.EXERCISE, ComplicationUpdateBroker.Target.PROGRESS);
+            }
+            LogSaver.saveLog(TAG, "i",
+                    "Week refresh -> prefs=" + current + " db=" + dbWeek + " chosen=" + chosen);
+        });
     }
 
     // Computes week from SharedPreferences; if missing/unavailable, sets to week 1.
@@ -349,20 +690,10 @@ public class DataStorageManager {
                 return 1;
             }
 
-            // Choose your study timezone. If you know it, hardcode it, e.g. "America/Los_Angeles".
-            ZoneId zone = ZoneId.systemDefault(); // or ZoneId.of("America/Los_Angeles")
-
-            // Get start date based on startOfStudyTimestamp
-            LocalDate startDate = Instant.ofEpochMilli(meta.startOfStudyTimestamp)
-                    .atZone(zone).toLocalDate();
-            // Get today's date based on now (System.currentTimeMillis())
-            LocalDate todayDate = Instant.ofEpochMilli(System.currentTimeMillis())
-                    .atZone(zone).toLocalDate();
-
-            // Days elapsed from first day of study
-            long days = ChronoUnit.DAYS.between(startDate, todayDate);  // 0 for day1, 7 for day8, etc.
-            int weekNumber = (int)(days / 7) + 1;                       // day1..day7 -> week1, day8..day14 -> week2
-            weekNumber = Math.max(1, Math.min(12, weekNumber));
+            // Days elapsed from the first day of study, in the device timezone: day1..day7 -> week1,
+            // day8..day14 -> week2 (capped at 12). StudyClock computes it once per day.
+            StudyClock.setStudyStart(meta.startOfStudyTimestamp);
+            int weekNumber = StudyClock.week();
 
             // (Optional) mirror study start into prefs once, for faster cold starts later
             if (!prefsDataStorage.contains(PrefsKeys.Data.STUDY_START_TIME)) {
@@ -375,15 +706,18 @@ public class DataStorageManager {
         }
     }
 
-    // Get today's date in a specific format
+    // Get today's date in a specific format (cached by StudyClock until the next midnight)
     public static String getDayForDB() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy_MM_dd", Locale.US);
-        return sdf.format(new Date());
+        return StudyClock.todayKey();
+    }
+
+    // "yyyy_MM_dd" of a timestamp; today's key is cached, older days are formatted on each call
+    static String dayKeyOf(long ts) {
+        return StudyClock.dayKeyOf(ts);
     }
 
     // Set or save the timestamp from the start of the study, if not already on the db
     public static void startStudyTimestamp() {
-        ensureAnalyticsExecutorAlive();
         Runnable task = () -> {
             try {
                 StudyMetaDao metaDao = mainResultsDb.studyMetaDao();
@@ -393,7 +727,7 @@ public class DataStorageManager {
                 String startDateStr;
                 // If no value existed, save it to the studyMeta db, otherwise just read the value from the db
                 if (existing == null) {
-                    startMs = System.currentTimeMillis();
+                    startMs = StudyClock.now();
                     startDateStr = getDayForDB();
                     StudyMetaEntity meta = new StudyMetaEntity(startMs, startDateStr, false);
                     metaDao.insert(meta);
@@ -406,6 +740,7 @@ public class DataStorageManager {
 
                 // Mirror start timestamp to prefs so cold starts can compute week quickly
                 prefsDataStorage.edit().putLong(PrefsKeys.Data.STUDY_START_TIME, startMs).apply();
+                StudyClock.setStudyStart(startMs);
 
                 // Refresh the cached week again
                 int current = getWeekFromPrefs();
@@ -413,43 +748,33 @@ public class DataStorageManager {
                 int chosen  = Math.max(current, dbWeek);
                 if (chosen != current) {
                     prefsDataStorage.edit().putInt(PrefsKeys.Data.WEEK_ID, chosen).apply();
-                    MyComplicationProviderService.requestComplicationUpdate(appContext);
-                    MyProgressComplicationProviderService.requestComplicationUpdate(appContext);
+                    analyticsGraph.bump(Node.WEEK);
+                    ComplicationUpdateBroker.request(appContext, ComplicationUpdateBroker.Target.EXERCISE, ComplicationUpdateBroker.Target.PROGRESS);
                 }
             } catch (Exception e) {
                 LogSaver.saveLog(TAG, "e", "Failed to start study timestamp " + e.getMessage());
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG, "e", "Executor was shut down — recreating: " + e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.GOAL_WEAR, "studyStart", task);
     }
     
     // Whenever FGS is called, get movement progress from cumulative db and
-    // set the last known progress to shared prefs
+    // set the last known progress in the hot-state file
     public static void initializeLastKnownProgress() {
-        ensureAnalyticsExecutorAlive();
-
         Runnable task = () -> {
             final int DEFAULT_PROGRESS_MIN = 0;
             try {
                 if (mainResultsDb == null) {
                     LogSaver.saveLog(TAG, "w", "DB is null; defaulting progress to " + DEFAULT_PROGRESS_MIN);
-                    prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_PROGRESS, DEFAULT_PROGRESS_MIN).apply();
+                    HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_PROGRESS, DEFAULT_PROGRESS_MIN);
                     return;
                 }
                 String today = getDayForDB();
-                DailyCumulativeEntity last = mainResultsDb.dailyCumulativeDao().getLastEntryForDay(today);
-                int lastProgress = (last != null) ? last.cumulative : DEFAULT_PROGRESS_MIN;
-                prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_PROGRESS, lastProgress).apply();
+                DaySummaryEntity last = mainResultsDb.daySummaryDao().getDay(today);
+                if (last != null && last.activeMinutes < 0) last = null;
+                int lastProgress = (last != null) ? last.activeMinutes : DEFAULT_PROGRESS_MIN;
+                HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_PROGRESS, lastProgress);
                 
                 if (last != null) {
                     LogSaver.saveLog(TAG, "d", "initializeLastKnownProgress (minutes) from DB: " + lastProgress);
@@ -457,40 +782,34 @@ public class DataStorageManager {
                     LogSaver.saveLog(TAG, "d", "initializeLastKnownProgress No progress found. Defaulting progress (minutes) to " + lastProgress);
                 }
             } catch (Exception e) {
-                prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_PROGRESS, DEFAULT_PROGRESS_MIN).apply();
+                HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_PROGRESS, DEFAULT_PROGRESS_MIN);
                 LogSaver.saveLog(TAG, "e", "Failed to load lastKnownProgress: " + e.getMessage() + ". Defaulted to " + DEFAULT_PROGRESS_MIN);
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            // Optional, defensively ensure it's alive before retrying (not strictly needed here)
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.GOAL_WEAR, "lastKnownProgress", task);
     }
 
     // Whenever FGS is called, get movement adjusted goal from adjustedDailyGoalDao db and
-    // set the last goal to shared prefs (in minutes)
+    // set the last goal in the hot-state file (in minutes)
     public static void initializeLastKnownGoal() {
-        ensureAnalyticsExecutorAlive();
-
         Runnable task = () -> {
             final int DEFAULT_GOAL_MIN = 480;
             try {
                 if (db == null) {
                     LogSaver.saveLog(TAG, "w", "DB is null; defaulting progress to " + DEFAULT_GOAL_MIN);
-                    prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_GOAL, DEFAULT_GOAL_MIN).apply();
+                    HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_GOAL, DEFAULT_GOAL_MIN);
                     return;
                 }
-                AdjustedDailyGoalEntity last = db.adjustedDailyGoalDao().getLastGoal();
-                int lastAdjustedDailyGoal = (last != null && last.adjustedDailyGoal != 0) ? last.adjustedDailyGoal : DEFAULT_GOAL_MIN;
-                prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_GOAL, lastAdjustedDailyGoal).apply();
+                // Summary row first (O(1)); the daily goal table still covers a day summarized before v3
+                DaySummaryEntity summary = (mainResultsDb != null) ? mainResultsDb.daySummaryDao().getDay(getDayForDB()) : null;
+                Integer last = (summary != null && summary.goalMinutes >= 0) ? Integer.valueOf(summary.goalMinutes) : null;
+                if (last == null) {
+                    AdjustedDailyGoalEntity lastRow = db.adjustedDailyGoalDao().getLastGoal();
+                    if (lastRow != null) last = lastRow.adjustedDailyGoal;
+                }
+                int lastAdjustedDailyGoal = (last != null && last != 0) ? last : DEFAULT_GOAL_MIN;
+                HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_GOAL, lastAdjustedDailyGoal);
 
                 if (last != null) {
                     LogSaver.saveLog(TAG, "d", "initializeLastKnownGoal (minutes) from DB: " + lastAdjustedDailyGoal);
@@ -498,32 +817,27 @@ public class DataStorageManager {
                     LogSaver.saveLog(TAG, "d", "No goal found. Defaulting lastKnownGoal (minutes) to " + lastAdjustedDailyGoal);
                 }
             } catch (Exception e) {
-                prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_GOAL, DEFAULT_GOAL_MIN).apply();
+                HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_GOAL, DEFAULT_GOAL_MIN);
                 LogSaver.saveLog(TAG, "e", "Failed to load lastKnownGoal (minutes): " + e.getMessage()
                         + ". Defaulted to " + DEFAULT_GOAL_MIN);
             }
         };
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            // Optional, defensively ensure it's alive before retrying (not strictly needed here)
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.GOAL_WEAR, "lastKnownGoal", task);
     }
 
     // Get the timestamp of the last time the watch was removed from the wrist
-    public static long getLastNotWornTimestampToday() {
-        ensureAnalyticsExecutorAlive();
-
+    public static ListenableFuture<Long> getLastNotWornTimestampTodayAsync(long deadlineMs) {
         Callable<Long> task = () -> {
             try {
-                String today = getDayForDB();  // e.g. "2025-08-01"
-                Long ts = mainResultsDb.wearSessionDao().getLastNotWornTimestampForDate(today);
+                // End of the last worn segment: when the watch was actually taken off (repeated
+                // "not worn" rows, e.g. from service restarts, no longer move it forward)
+                long now = StudyClock.now();
+                Long ts = WearIntervalIndex.lastNotWornAt(mainResultsDb, now);
+                if (ts == null || ts < StudyClock.startOfDay(now)) {
+                    // Taken off before today: the day's latest "not worn" row, as before
+                    String today = getDayForDB();  // e.g. "2025-08-01"
+                    ts = mainResultsDb.wearSessionDao().getLastNotWornTimestampForDate(today);
+                }
                 LogSaver.saveLog(TAG, "d", "getLastNotWornTimestampToday: " + ts);
                 return (ts != null) ? ts : -1L;
             } catch (Exception e) {
@@ -532,161 +846,105 @@ public class DataStorageManager {
             }
         };
 
-        try {
-            Future<Long> future = analyticsExecutor.submit(task);
-            return future.get(); // Synchronously waits for the result
-        } catch (Exception e) {
-            LogSaver.saveLog(TAG, "e", "Executor submission failed: " + e.getMessage());
-            return -1L;
-        }
+        return DeadlineQueries.query(storageScheduler, Lane.GOAL_WEAR, task, deadlineMs, lastNotWornCache, NOT_WORN_MAX_STALE_MS, -1L);
+    }
+
+    // Blocking variant, bounded by QUERY_DEADLINE_MS
+    public static long getLastNotWornTimestampToday() {
+        return Futures.getUnchecked(getLastNotWornTimestampTodayAsync(QUERY_DEADLINE_MS));
+    }
+
+    // Today's chart histograms from memory (any thread); null until the first minute average of this process
+    public static ActivityHistograms.DayHistogram getTodayHistogram() {
+        return activityHistograms.today();
+    }
+
+    // The week's stored day histograms (≤ 7 primary rows, no table scan); today's row is the in-memory one
+    public static ListenableFuture<List<ActivityHistograms.DayHistogram>> getWeekHistogramsAsync(int week) {
+        Callable<List<ActivityHistograms.DayHistogram>> task = () -> {
+            List<ActivityHistograms.DayHistogram> out = new ArrayList<>();
+            if (mainResultsDb == null) return out;
+            ActivityHistograms.DayHistogram today = activityHistograms.today();
+            for (DayHistogramEntity row : mainResultsDb.dayHistogramDao().getWeek(week)) {
+                boolean live = today != null && today.day.equals(row.day);
+                out.add(live ? today : ActivityHistograms.fromEntity(row));
+            }
+            return out;
+        };
+        return storageScheduler.submit(Lane.WEEKLY, "histograms:" + week, task);
     }
 
     // Save 0 when the watch was removed, and 1 when put on. Also save timestamps, and day.
     public static void saveWearStateToDatabase(boolean isWorn){
-        ensureAnalyticsExecutorAlive();
-
         Runnable task = () -> {
             try{
-                WearSessionEntity wearSession = new WearSessionEntity(System.currentTimeMillis(), getDayForDB(), isWorn);
-                mainResultsDb.wearSessionDao().insert(wearSession);
+                WearSessionEntity wearSession = new WearSessionEntity(StudyClock.now(), getDayForDB(), isWorn);
+                CoalescingWriter.wearSession(wearSession);
+                wearAccumulator.onSession(wearSession);
+                analyticsGraph.bump(Node.WEAR_SESSIONS);
                 LogSaver.saveLog(TAG,"d", "saveWearStateToDatabase()");
             }catch (Exception e) {
                 LogSaver.saveLog(TAG,"e", "Failed to insert wear state entity: "+ e.getMessage());
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            // Optional, defensively ensure it's alive before retrying (not strictly needed here)
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.GOAL_WEAR, null, task);
     }
 
     // DataStorageManager.java
     public static void saveWearStateToDatabaseAt(boolean isWorn, long whenMillis) {
-        ensureAnalyticsExecutorAlive();
-
         final long ts = whenMillis;
         final String day = getDayForDB(); // overload that accepts a timestamp
 
         Runnable task = () -> {
             try {
                 WearSessionEntity wearSession = new WearSessionEntity(ts, day, isWorn);
-                mainResultsDb.wearSessionDao().insert(wearSession);
+                // A backdated "not worn" is a closure stamped after the fact → flagged on its segment
+                CoalescingWriter.wearSession(wearSession, !isWorn);
+                wearAccumulator.onSession(wearSession);
+                analyticsGraph.bump(Node.WEAR_SESSIONS);
                 LogSaver.saveLog(TAG, "d", "saveWearStateToDatabaseAt(ts=" + ts + ", worn=" + isWorn + ")");
             } catch (Exception e) {
                 LogSaver.saveLog(TAG, "e", "Failed to insert wear state entity @ts: " + e.getMessage());
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG, "e", "Executor was shut down — recreating: " + e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
+        storageScheduler.execute(Lane.GOAL_WEAR, null, task);
+    }
+
+    // Service restart after a dead period: closes the worn segment still open at `closeAt` (last heartbeat + 1 ms).
+    // The persisted segments decide, not only the hot-state flag, which HeartbeatCheckWorker resets to UNKNOWN.
+    public static void closeOpenWearSegmentAt(long closeAt, boolean hotStateWorn) {
+        Runnable task = () -> {
+            try {
+                boolean open = hotStateWorn
+                        || (mainResultsDb != null && WearIntervalIndex.isWornAt(mainResultsDb, closeAt));
+                LogSaver.saveLog(TAG, "d", "closeOpenWearSegmentAt(" + closeAt + "): hotState=" + hotStateWorn + ", open=" + open);
+                if (open) saveWearStateToDatabaseAt(false, closeAt);
+            } catch (Exception e) {
+                LogSaver.saveLog(TAG, "e", "Failed to check the open wear segment: " + e.getMessage());
             }
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        };
+
+        storageScheduler.execute(Lane.GOAL_WEAR, null, task);
     }
 
 
 
     // Save the content and time when the notifications are displayed
     public static void saveNotificationTimestamp(int level, String message){
-        ensureAnalyticsExecutorAlive();
-
         Runnable task = () -> {
             try{
                 // Create a new entry with the current timestamp
-                NotificationEntity notification = new NotificationEntity(System.currentTimeMillis(), level, message);
-                mainResultsDb.notificationDao().insert(notification);
+                NotificationEntity notification = new NotificationEntity(StudyClock.now(), level, message);
+                CoalescingWriter.notification(notification);
                 LogSaver.saveLog(TAG,"d", "saveNotificationTimestamp()");
             }catch (Exception e) {
                 LogSaver.saveLog(TAG,"e", "Failed to insert notification entry: "+ e.getMessage());
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-
-            // Optional, defensively ensure it's alive before retrying (not strictly needed here)
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
-    }
-
-    // Get the cumulative progress from a window of 30 minutes before calling this method.
-    // If in the last 30 minutes the user has moved less than 6 minutes, flag window as INACTIVE
-    public static boolean getActivityDuringPrev30Minutes() {
-        ensureAnalyticsExecutorAlive();
-
-        Callable<Boolean> task = () -> {
-            try {
-                long timestamp30MinutesAgo = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(30);
-                List<Integer> averages = db.minuteAverageDao().getMinuteAveragesSince(timestamp30MinutesAgo);
-
-                int seconds = 0;
-                for (int value : averages) {
-                    seconds += value;
-                }
-                LogSaver.saveLog(TAG,"d", "Was active during the previous 30'?: "+ (seconds >= 360));
-                return seconds >= 360; // TODO: true => if they have been active at least 6 minutes during the previous 30' (20%) , false = inactive
-            } catch (Exception e) {
-                LogSaver.saveLog(TAG, "e", "Failed to get 30-minute average: " + e.getMessage());
-                return false;
-            }
-        };
-
-        try {
-            Future<Boolean> future = analyticsExecutor.submit(task);
-            return future.get(); // Wait synchronously for result
-        } catch (Exception e) {
-            LogSaver.saveLog(TAG, "e", "Executor submission failed: " + e.getMessage());
-            return false;
-        }
-    }
-
-    // Get the movement progress value at exactly 30' before this method was called.
-    public static int getCumulative30MinsBefore() {
-        ensureAnalyticsExecutorAlive();
-
-        Callable<Integer> task = () -> {
-            try {
-                long thirtyMinutesAgo = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(30);
-                Integer cumulativeThen = mainResultsDb.dailyCumulativeDao().getClosestEntryBefore(thirtyMinutesAgo);
-                if (cumulativeThen != null) {
-                    Log.d(TAG, "Cumulative 30' ago was exactly: " + cumulativeThen);
-                    return cumulativeThen;
-                } else {
-                    Log.w(TAG, "No entry found before 30 minutes ago.");
-                    return 0;
-                }
-            } catch (Exception e) {
-                LogSaver.saveLog(TAG, "e", "Failed to get cumulative: " + e.getMessage());
-                return 0;
-            }
-        };
-
-        try {
-            Future<Integer> future = analyticsExecutor.submit(task);
-            return future.get(); // Waits for result
-        } catch (Exception e) {
-            LogSaver.saveLog(TAG, "e", "Executor failed: " + e.getMessage());
-            return 0;
-        }
+        storageScheduler.execute(Lane.GOAL_WEAR, null, task);
     }
 
     // Save the raw data optimally
@@ -704,12 +962,25 @@ public class DataStorageManager {
             int[] activityBuffer,
             int size){
 
-        ensureAnalyticsExecutorAlive();
         Runnable task = () -> {
             try {
-                List<SensorSampleEntity> entries = new ArrayList<>(size);
+                if (partitionedMode) {
+                    List<PartitionedSampleEntity> rows = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        rows.add(new PartitionedSampleEntity(
+                                timestamps[i], xBuffer[i], yBuffer[i], zBuffer[i], angleBuffer[i], inclinationBuffer[i],
+                                stdBuffer[i], rawKurtosisBuffer[i], rawGMACBuffer[i], kurtosisBuffer[i], activityBuffer[i]));
+                    }
+                    PartitionedStore.insertSamples(rows);
+                    onRawSamplesSaved(timestamps, size);
+                    updateSignalPyramid(timestamps, angleBuffer, inclinationBuffer, rawGMACBuffer, size);
+                    LogSaver.saveLog(TAG,"w", "PARTITIONED DAO SAVED " + rows.size() + " samples");
+                    return;
+                }
+                // A buffer spanning midnight is split: each sample goes to the file of its own day
+                Map<String, List<SensorSampleEntity>> byDay = new LinkedHashMap<>();
                 for (int i = 0; i < size; i++) {
-                    entries.add(new SensorSampleEntity(
+                    byDay.computeIfAbsent(dayKeyOf(timestamps[i]), k -> new ArrayList<>(size)).add(new SensorSampleEntity(
                             timestamps[i],
                             xBuffer[i],
                             yBuffer[i],
@@ -723,109 +994,190 @@ public class DataStorageManager {
                             activityBuffer[i]
                     ));
                 }
-                db.sensorSampleDao().insertAll(entries);
-                LogSaver.saveLog(TAG,"w", "DAO SAVED " + entries.size() + " samples");
+                for (Map.Entry<String, List<SensorSampleEntity>> day : byDay.entrySet()) {
+                    dailyDatabaseFor(day.getKey()).sensorSampleDao().insertAll(day.getValue());
+                }
+                onRawSamplesSaved(timestamps, size);
+                updateSignalPyramid(timestamps, angleBuffer, inclinationBuffer, rawGMACBuffer, size);
+                LogSaver.saveLog(TAG,"w", "DAO SAVED " + size + " samples" + (byDay.size() > 1 ? " across " + byDay.keySet() : ""));
             } catch (Exception e) {
                 LogSaver.saveLog(TAG,"e", "Failed to save buffer "+ e.getMessage());
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
+        storageScheduler.execute(Lane.RAW_FLUSH, null, task);
+    }
 
-            // Optional, defensively ensure it's alive before retrying (not strictly needed here)
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
+    // Same flush into the decimation pyramid (its rows go to the file of each bucket's day)
+    private static void updateSignalPyramid(long[] timestamps, float[] angle, float[] inclination, float[] rawGMAC, int size) {
+        try {
+            signalPyramid.onSamples(timestamps, angle, inclination, rawGMAC, size, ts -> dailyDatabaseFor(dayKeyOf(ts)));
+        } catch (Exception e) {
+            LogSaver.saveLog(TAG, "e", "Failed to update the signal pyramid: " + e.getMessage());
         }
     }
 
+    // Decimated series of [from, to) for a chart of `columns` pixel columns: the finest pyramid level with at
+    // most pointsPerColumn buckets per column (each bucket = min/max envelope + one LTTB point), no raw rows
+    public static ListenableFuture<SignalPyramid.Series> getSignalSeriesAsync(SignalPyramid.Signal signal, long from, long to,
+                                                                              int columns, int pointsPerColumn) {
+        int level = SignalPyramid.levelFor(from, to, Math.max(1, columns * pointsPerColumn));
+        List<String> days = new ArrayList<>();
+        for (long day = StudyClock.startOfDay(from); day < to; day = StudyClock.startOfNextDay(day)) days.add(dayKeyOf(day));
+        return CrossDayQueryEngine.query(appContext, SignalPyramid.range(signal, level, from, to), days);
+    }
+
+    // New raw data: dirties MINUTE_AVERAGE and moves the watermark used to force windows that contain data
+    private static void onRawSamplesSaved(long[] timestamps, int size) {
+        long newest = rawWatermarkTs;
+        for (int i = 0; i < size; i++) newest = Math.max(newest, timestamps[i]);
+        rawWatermarkTs = newest;
+        analyticsGraph.bump(Node.RAW_SAMPLES);
+    }
+
     // Computes active and diverse seconds for a given minute, e.g. 08:01 -> 49 seconds,
     // taking the 50Hz samples and converting to seconds, then saving to MinuteAverage.
-    public static void computeAndSaveMinuteAverage(long start, long end, String alignedMinute) {
-        ensureAnalyticsExecutorAlive();
-
+    public static void computeAndSaveMinuteAverage(long start, long end) {
+        final long epochMinute = StudyClock.epochMinute(start);
         Runnable task = () -> {
             try{
-                List<SensorSampleEntity> kurtosisOrGMACValues = db.sensorSampleDao().getkurtosisOrGMACValuesInRange(start, end);
-                // LogSaver.saveLog(TAG,"w","Getting kurtosisOrGMACValues from  " + start + " to " + end +" with diff: "+ (end-start)+" and size: "+kurtosisOrGMACValues.size());
-                if (kurtosisOrGMACValues == null || kurtosisOrGMACValues.isEmpty()) {
-                    LogSaver.saveLog(TAG,"w", "No kurtosisOrGMACValues values found between " + start + " and " + end);
-                    return;
-                }
+                // Skip if no flush happened since the last run and no raw data reaches into this window
+                long[] consumed = analyticsGraph.begin(Node.MINUTE_AVERAGE, rawWatermarkTs >= start);
+                if (consumed == null) return;
+
                 float averages = 0f;
                 float secondarys = 0f;
-                for (SensorSampleEntity e : kurtosisOrGMACValues) {
-                    averages += e.activity; // TODO
-                    secondarys += e.kurtosis;
+                int[] angleCounts = new int[ActivityHistograms.ANGLE_BINS];
+                if (partitionedMode) {
+                    List<PartitionedSampleEntity> rows = PartitionedStore.getSamplesInRange(start, end);
+                    if (rows == null || rows.isEmpty()) {
+                        LogSaver.saveLog(TAG,"w", "No kurtosisOrGMACValues values found between " + start + " and " + end);
+                        analyticsGraph.complete(Node.MINUTE_AVERAGE, consumed, false);
+                        return;
+                    }
+                    for (PartitionedSampleEntity e : rows) {
+                        averages += e.activity;
+                        secondarys += e.kurtosis;
+                        angleCounts[ActivityHistograms.angleBin(e.angle)]++;
+                    }
+                } else {
+                    List<SensorSampleEntity> kurtosisOrGMACValues = dailyDatabaseFor(dayKeyOf(start)).sensorSampleDao().getkurtosisOrGMACValuesInRange(start, end);
+                    // LogSaver.saveLog(TAG,"w","Getting kurtosisOrGMACValues from  " + start + " to " + end +" with diff: "+ (end-start)+" and size: "+kurtosisOrGMACValues.size());
+                    if (kurtosisOrGMACValues == null || kurtosisOrGMACValues.isEmpty()) {
+                        LogSaver.saveLog(TAG,"w", "No kurtosisOrGMACValues values found between " + start + " and " + end);
+                        analyticsGraph.complete(Node.MINUTE_AVERAGE, consumed, false);
+                        return;
+                    }
+                    for (SensorSampleEntity e : kurtosisOrGMACValues) {
+                        averages += e.activity; // TODO
+                        secondarys += e.kurtosis;
+                        angleCounts[ActivityHistograms.angleBin(e.angle)]++;
+                    }
                 }
                 int averageSeconds = (int) averages / 50; // I want to know how many seconds I have with kurtosisOrGMACValues of 1 --> (kurtosisOrGMACValues.size()
                 int secondarySeconds = (int) secondarys / 50;
 
+                // Minute entirely inside a not-worn period (known from the worn segments): off-body samples, not movement
+                if (excludeNotWornMinutes && mainResultsDb != null && WearIntervalIndex.hasHistoryAt(mainResultsDb, start)
+                        && WearIntervalIndex.wornMillisBetween(mainResultsDb, start, end) == 0L) {
+                    LogSaver.saveLog(TAG, "d", "Minute " + epochMinute + " not worn: " + averageSeconds + "/" + secondarySeconds + "s excluded");
+                    averageSeconds = 0;
+                    secondarySeconds = 0;
+                    Arrays.fill(angleCounts, 0);
+                }
+
                 // Save that minute average (in average seconds)
-                MinuteAverageEntity entry = new MinuteAverageEntity(alignedMinute, System.currentTimeMillis(), averageSeconds, secondarySeconds);
-                db.minuteAverageDao().insertOrUpdate(entry);
+                if (partitionedMode) {
+                    PartitionedStore.saveMinuteAverage(epochMinute, StudyClock.now(), averageSeconds, secondarySeconds);
+                } else {
+                    MinuteAverageEntity entry = new MinuteAverageEntity(epochMinute, StudyClock.now(), averageSeconds, secondarySeconds);
+                    dailyDatabaseFor(dayKeyOf(start)).minuteAverageDao().insertOrUpdate(entry);
+                }
+                // 30' activity window of the notifications, in memory
+                NotificationDecisionState.onMinuteAverage(dayKeyOf(start), epochMinute, averageSeconds);
+                // Chart histograms of the minute's day (15' slots), replaced if this minute was counted before
+                if (mainResultsDb != null) {
+                    activityHistograms.onMinute(mainResultsDb, dayKeyOf(start), getWeekFromPrefs(), start,
+                            averageSeconds, secondarySeconds, angleCounts);
+                }
+                // A minute with no active/secondary seconds adds nothing to today's sums
+                analyticsGraph.complete(Node.MINUTE_AVERAGE, consumed, averageSeconds > 0 || secondarySeconds > 0);
 
             }catch (Exception e) {
                 LogSaver.saveLog(TAG,"e", "Failed to computeAndSaveMinuteAverage"+ e.getMessage());
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-
-            // Optional, defensively ensure it's alive before retrying (not strictly needed here)
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.MINUTE, "minute:" + epochMinute, task);
     }
 
     // Sums all minutes for today, updates lastKnownProgress,
     // refreshes MyProgressComplicationProviderService, and saves to DailyCumulative.
     public static void computeAndSaveDailyCumulative() {
-        ensureAnalyticsExecutorAlive();
-
         Runnable task = () -> {
             try{
+                // Nothing to do if no minute average changed since the last sum (and the day is the same)
+                long[] consumed = analyticsGraph.beginIfDirty(Node.DAILY_CUMULATIVE);
+                if (consumed == null) return;
+
                 int week = getWeekFromPrefs();
                 String day = getDayForDB();
 
-                List<MinuteAverageEntity> entries = db.minuteAverageDao().getAllMinuteAverages();
-
-                if (entries == null || entries.isEmpty()) {
-                    LogSaver.saveLog(TAG,"w", "No averages found for today: " + day );
-                    return;
-                }
-
                 int dailyCumulative = 0;
                 int dailySecondaryCumulative = 0;
-                for (MinuteAverageEntity e : entries) {
-                    dailyCumulative += e.average;
-                    dailySecondaryCumulative += e.secondary;
+                if (partitionedMode) {
+                    List<PartitionedMinuteAverageEntity> entries = PartitionedStore.getMinuteAveragesForDay(day);
+                    if (entries == null || entries.isEmpty()) {
+                        LogSaver.saveLog(TAG,"w", "No averages found for today: " + day );
+                        analyticsGraph.complete(Node.DAILY_CUMULATIVE, consumed, false);
+                        return;
+                    }
+                    for (PartitionedMinuteAverageEntity e : entries) {
+                        dailyCumulative += e.average;
+                        dailySecondaryCumulative += e.secondary;
+                    }
+                } else {
+                    List<MinuteAverageEntity> entries = db.minuteAverageDao().getAllMinuteAverages();
+                    if (entries == null || entries.isEmpty()) {
+                        LogSaver.saveLog(TAG,"w", "No averages found for today: " + day );
+                        analyticsGraph.complete(Node.DAILY_CUMULATIVE, consumed, false);
+                        return;
+                    }
+                    for (MinuteAverageEntity e : entries) {
+                        dailyCumulative += e.average;
+                        dailySecondaryCumulative += e.secondary;
+                    }
                 }
 
                 int cumulativeMinutes = dailyCumulative / 60; // I want to know how many minutes I have with kurtosisOrGMACValues of 1 --> (kurtosisOrGMACValues.size()
                 int cumulativeSecondaryMinutes = dailySecondaryCumulative / 60;
 
                 LogSaver.saveLog(TAG,"d", "cumulativeMinutes: " +  cumulativeMinutes);
-                prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_PROGRESS, cumulativeMinutes).apply();
-
-                // Save daily cumulative
-                DailyCumulativeEntity dailyResult = new DailyCumulativeEntity(day, System.currentTimeMillis(), week, cumulativeMinutes, cumulativeSecondaryMinutes);
-                mainResultsDb.dailyCumulativeDao().insert(dailyResult);
 
-                // 🔔 Push an immediate complication refresh
-                MyProgressComplicationProviderService.requestComplicationUpdate(appContext);
-                Log.w("DebuggingKurto", "cumulativeMinutes: "+ cumulativeMinutes);
+                // Seconds can change without changing the whole minutes shown/stored
+                boolean changed = !day.equals(lastCumulativeDay)
+                        || cumulativeMinutes != lastCumulativeMinutes
+                        || cumulativeSecondaryMinutes != lastCumulativeSecondaryMinutes;
+                if (changed) {
+                    HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_PROGRESS, cumulativeMinutes);
+
+                    // Save daily cumulative
+                    DailyCumulativeEntity dailyResult = new DailyCumulativeEntity(day, StudyClock.now(), week, cumulativeMinutes, cumulativeSecondaryMinutes);
+                    CoalescingWriter.dailyCumulative(dailyResult);
+                    NotificationDecisionState.onCumulative(day, dailyResult.timestamp, cumulativeMinutes);
+
+                    // 🔔 Publish for the UI surfaces, then request a complication refresh (debounced)
+                    // once the row is committed, so a provider reading the DB sees it
+                    TodaySnapshot.publishProgress(day, cumulativeMinutes, cumulativeSecondaryMinutes);
+                    CoalescingWriter.afterCommit(() -> ComplicationUpdateBroker.request(appContext,
+                            ComplicationUpdateBroker.Target.PROGRESS));
+                    Log.w("DebuggingKurto", "cumulativeMinutes: "+ cumulativeMinutes);
+
+                    lastCumulativeDay = day;
+                    lastCumulativeMinutes = cumulativeMinutes;
+                    lastCumulativeSecondaryMinutes = cumulativeSecondaryMinutes;
+                }
+                analyticsGraph.complete(Node.DAILY_CUMULATIVE, consumed, changed);
 
                 LogSaver.saveLog(TAG,"d", "computeAndSaveDailyCumulative() finished");
 
@@ -833,85 +1185,58 @@ public class DataStorageManager {
                 LogSaver.saveLog(TAG,"e", "Failed to computeAndSaveDailyCumulative"+ e.getMessage());
             }
         };
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.MINUTE, "dailyCumulative", task);
     }
 
     // Uses worn/not-worn session marks from WearSession within 08:00–22:00,
     // refreshes MyWearTimeComplicationProviderService, and updates DailyWearTime.
     public static void computeAndSaveDailyWearTime() {
-        ensureAnalyticsExecutorAlive();
-
         Runnable task = () -> {
             try {
+                // Worn/not-worn minutes also grow with the clock, but only inside the 08:00–22:00 window
+                StudyClock.Day today = StudyClock.today();
+                long nowMinute = StudyClock.epochMinute(StudyClock.now());
+                long clockMinute = Math.max(StudyClock.epochMinute(today.windowStart),
+                        Math.min(nowMinute, StudyClock.epochMinute(today.windowEnd)));
+                if (clockMinute != lastWearClockMinute) {
+                    lastWearClockMinute = clockMinute;
+                    analyticsGraph.bump(Node.WEAR_CLOCK);
+                }
+                long[] consumed = analyticsGraph.beginIfDirty(Node.DAILY_WEAR_TIME);
+                if (consumed == null) return;
+
                 String day = getDayForDB();
                 int week = getWeekFromPrefs();
-                List<WearSessionEntity> sessions = mainResultsDb.wearSessionDao().getSessionsForDate(day);
-
-                int wornMinutes;
-                int notWornMinutes;
-
-                if (sessions == null || sessions.isEmpty()) {     // covers @Nullable cases too
-                    wornMinutes    = 0;
-                    notWornMinutes = 14 * 60;  // 840
-                }else{
-                    long windowStart = getTodayAtHour(8);   // 08:00
-                    long windowEnd = getTodayAtHour(22);  // 22:00
-                    long now = System.currentTimeMillis();
-                    long tailEnd = Math.min(now, windowEnd);
-
-                    long wornMillis = 0;
-                    long notWornMillis = 0;
-
-                    boolean currentState = false;            // Start day “not worn”
-                    long previousTs = windowStart;
-
-                    // Walk through events that fall inside the 8-22 window
-                    for (WearSessionEntity session : sessions) {
-                        if (session.timestamp < windowStart) {
-                            // Remember the most recent state before 08:00
-                            currentState = session.isWorn;
-                            continue;                   // still skip counting time before 08:00
-                        }
-                        if (session.timestamp > windowEnd)   break;      // we’re done
-
-                        long delta = session.timestamp - previousTs;
-                        if (currentState) wornMillis += delta;
-                        else notWornMillis += delta;
-                        currentState = session.isWorn;   // flip state
-                        previousTs   = session.timestamp;
-
-                    }
-
-                    // Tail from last event to 22:00
-                    // Clamp tail end to [now, 22:00] so we never count past 22:00
-                    if (previousTs < tailEnd) {
-                        long delta = tailEnd - previousTs;
-                        if (currentState) wornMillis += delta;
-                        else              notWornMillis += delta;
-                    }
-
-                    wornMinutes = (int) (wornMillis / 60_000L);
-                    notWornMinutes = (int) (notWornMillis / 60_000L);
+                long now = StudyClock.now();
+
+                // Full recompute only when nothing is loaded for today (process start); afterwards the
+                // accumulator advances on each saved transition and here only adds the open span
+                // The DB reads (load, hourly check) wait for the transitions still queued in the writer through
+                // an afterCommit hand-off; this worker never blocks on the writer
+                if (!wearAccumulator.isLoadedFor(day) && wearAccumulator.isLoaded()) {
+                    wearAccumulator.startDay(day);                         // rollover, no transition yet today
+                } else if (!wearAccumulator.isLoadedFor(day)) {
+                    requestWearRead(day, false);
+                    return;                                                // node stays dirty: runs again after the load
+                } else if (wearAccumulator.verifyDue(now)) {
+                    requestWearRead(day, true);
                 }
 
-                DailyWearTimeEntity existing = mainResultsDb.dailyWearTimeDao().getLastEntryForDay(day);
-                // Just update if wornMinutes or notWornMinutes value hasn’t changed since last write
-                if (existing == null || existing.wornMinutes != wornMinutes || existing.notWornMinutes != notWornMinutes) {
-                    DailyWearTimeEntity entry = new DailyWearTimeEntity(System.currentTimeMillis(), week, day, wornMinutes, notWornMinutes);
-                    mainResultsDb.dailyWearTimeDao().insertOrUpdate(entry);
+                int[] minutes = wearAccumulator.minutes(now);
+                int wornMinutes = minutes[0];
+                int notWornMinutes = minutes[1];
 
-                    // Push an immediate complication refresh
-                    MyWearTimeComplicationProviderService.requestComplicationUpdate(appContext);
+                // Just update if wornMinutes or notWornMinutes value changed since the last write (in memory)
+                boolean changed = wearAccumulator.publish(minutes);
+                if (changed) {
+                    DailyWearTimeEntity entry = new DailyWearTimeEntity(StudyClock.now(), week, day, wornMinutes, notWornMinutes);
+                    CoalescingWriter.dailyWearTime(entry);
+
+                    // Publish for the UI surfaces, then request a complication refresh (debounced)
+                    TodaySnapshot.publishWear(day, wornMinutes);
+                    ComplicationUpdateBroker.request(appContext, ComplicationUpdateBroker.Target.WEAR_TIME);
                 }
+                analyticsGraph.complete(Node.DAILY_WEAR_TIME, consumed, changed);
                 LogSaver.saveLog(TAG, "d", "Updated daily wear time: " + wornMinutes + " min for " + day);
 
             } catch (Exception e) {
@@ -919,77 +1244,86 @@ public class DataStorageManager {
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG, "e", "Executor shut down unexpectedly. Recreating: " + e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
+        storageScheduler.execute(Lane.GOAL_WEAR, "dailyWearTime", task);
+    }
+
+    // Storage worker: reads the day's transitions once everything queued in the writer before now is committed.
+    // Load: transitions arriving meanwhile are replayed by the accumulator. Check: skipped (retried next minute)
+    // if a transition arrived meanwhile, since the DB read may miss it and a false mismatch would drop it.
+    private static void requestWearRead(String day, boolean verify) {
+        if (wearReadRequested) return;
+        wearReadRequested = true;
+        long seen = wearAccumulator.sessionsSeen();
+        Runnable read = () -> {
+            wearReadRequested = false;
+            try {
+                if (mainResultsDb == null || !day.equals(getDayForDB())) return;
+                if (!verify) {
+                    if (wearAccumulator.isLoadedFor(day)) return;
+                    wearAccumulator.load(day, mainResultsDb.wearSessionDao().getSessionsForDate(day));
+                    LogSaver.saveLog(TAG, "d", "Wear accumulator loaded for " + day + ": " + wearAccumulator.getMetricsSummary());
+                    computeAndSaveDailyWearTime();
+                } else if (wearAccumulator.isLoadedFor(day) && wearAccumulator.sessionsSeen() == seen) {
+                    // Hourly equivalence check against the original per-minute algorithm on the DB rows
+                    if (!wearAccumulator.verify(mainResultsDb.wearSessionDao().getSessionsForDate(day), StudyClock.now())) {
+                        LogSaver.saveLog(TAG, "w", "Wear accumulator differed from the DB walk, reloaded: " + wearAccumulator.getMetricsSummary());
+                        analyticsGraph.bump(Node.WEAR_SESSIONS);
+                    }
+                }
+            } catch (Exception e) {
+                LogSaver.saveLog(TAG, "e", "Failed to read wear sessions for " + day + ": " + e.getMessage());
             }
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        };
+        boolean queued = CoalescingWriter.afterCommit(() -> {
+            if (!storageScheduler.execute(Lane.GOAL_WEAR, "wearAccumulatorRead", read)) wearReadRequested = false;
+        });
+        if (!queued) wearReadRequested = false;                    // writer queue full: asked again next minute
     }
 
-    // Get the timestamp from an exact hour given today's date.
-    private static long getTodayAtHour(int hour) {
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.HOUR_OF_DAY, hour);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return cal.getTimeInMillis();
+    // Runs `task` on the storage worker after this tick's aggregation: the GOAL_WEAR lane only runs once the
+    // MINUTE lane (minute averages, cumulative) is empty, and after the wear transitions queued before it.
+    // Same key → coalesced. False if it could not be queued.
+    public static boolean runAfterMinuteAggregation(String key, Runnable task) {
+        return storageScheduler.execute(Lane.GOAL_WEAR, key, task);
+    }
+
+    // Storage worker only: start of today's trailing worn run inside 08:00–22:00 (see WearTimeAccumulator), or -1
+    // while the accumulator is not loaded for today
+    static long wornRunStartToday() {
+        String day = getDayForDB();
+        return wearAccumulator.isLoadedFor(day) ? wearAccumulator.slopeStart() : -1L;
     }
 
     // Calculates the ratio between active or diverse time with respect to wear time for all that week, and saves to WeeklyAverage.
     public static void  computeAndSaveWeeklyAverage() {
-        ensureAnalyticsExecutorAlive();
         Runnable task = () -> {
             try{
+                // Only if today's cumulative / wear time (or the week) changed since the last run
+                long[] consumed = analyticsGraph.beginIfDirty(Node.WEEKLY_AVERAGE);
+                if (consumed == null) return;
+
                 int week = getWeekFromPrefs();
                 // Fallback default in case of no valid data // 20% of 14hours of activity
                 float weeklyAverage = 0.2f;
 
-                // Fetch both movement and wear entries for the given week
-                List<DailyWearTimeEntity> wearEntries = mainResultsDb.dailyWearTimeDao().getEntriesForWeek(week);
+                // The week's day_summary rows (≤ 7) summed in ONE query
+                WeeklyMovementTotals totals = mainResultsDb.daySummaryDao().getWeeklyMovementTotals(week, MIN_WEAR_MINUTES_PER_DAY);
 
                 // Validate presence of data
-                boolean missingData = false;
-                if (wearEntries == null || wearEntries.isEmpty()) {
-                    LogSaver.saveLog(TAG, "w", "No wear time entries found for week " + week);
-                    missingData = true;
-                }
-
-                if (!missingData) {
+                if (totals == null || totals.wearDays == 0) {
+                    LogSaver.saveLog(TAG, "w", "Missing data for week " + week + ", using fallback = " + weeklyAverage);
+                } else {
                     // Weighted average calculation (days with less worn time have less importance)
-                    float totalMovement = 0f;
-                    float totalWearMinutes = 0f;
-                    int validDays = 0;
-                    for (DailyWearTimeEntity wear : wearEntries) {
-                        // Need a minimum of 8hours of worn time per day
-                        if (wear.wornMinutes <= 0) continue;
-                        if (wear.wornMinutes < 480) {
-                            LogSaver.saveLog(TAG, "i",
-                                    "Skipping " + wear.day + " (wear=" + wear.wornMinutes + "m < " + 480 + "m)");
-                            continue;
-                        }
-
-                        DailyCumulativeEntity lastMovement =
-                                mainResultsDb.dailyCumulativeDao().getLastEntryForDay(wear.day);
-
-                        if (lastMovement != null) {
-                            totalMovement    += lastMovement.cumulative;
-                            totalWearMinutes += wear.wornMinutes;
-                            validDays++;
-                        }
+                    if (totals.shortDays > 0) {
+                        LogSaver.saveLog(TAG, "i", "Skipping " + totals.shortDays + " day(s) with wear < " + MIN_WEAR_MINUTES_PER_DAY + "m");
                     }
-                    LogSaver.saveLog(TAG, "d", "Weekly total movement: " + totalMovement + "; totalWearMinutes: " + totalWearMinutes);
+                    LogSaver.saveLog(TAG, "d", "Weekly total movement: " + totals.totalMovement + "; totalWearMinutes: " + totals.totalWearMinutes);
 
                     // Final weighted average (only if we have valid data)
-                    if (totalWearMinutes > 0f) {
-                        weeklyAverage = totalMovement / totalWearMinutes;
+                    if (totals.totalWearMinutes > 0) {
+                        weeklyAverage = (float) totals.totalMovement / (float) totals.totalWearMinutes;
                         LogSaver.saveLog(TAG, "i", "Week " + week + ": Weighted avg = " +
-                                weeklyAverage + " counts/min from " + validDays + " valid days");
+                                weeklyAverage + " counts/min from " + totals.validDays + " valid days");
                     }
                     else {
                         LogSaver.saveLog(TAG, "w", "No valid wear data this week, using fallback = " + weeklyAverage);
@@ -997,36 +1331,33 @@ public class DataStorageManager {
                     if (Float.isNaN(weeklyAverage) || Float.isInfinite(weeklyAverage)) {
                         weeklyAverage = 0.2f;
                     }
-                } else {
-                    LogSaver.saveLog(TAG, "w", "Missing data for week " + week + ", using fallback = " + weeklyAverage);
                 }
 
-                // Save result to DB
-                WeeklyAverageEntity result = new WeeklyAverageEntity(System.currentTimeMillis(), week, weeklyAverage);
-                mainResultsDb.weeklyAverageDao().insertOrUpdate(result);
-                LogSaver.saveLog(TAG, "d", "Saved weekly avg: week=" + week + ", avg=" + weeklyAverage);
+                // Save result to DB (only if it moved)
+                boolean changed = week != lastWeeklyAverageWeek || Float.compare(weeklyAverage, lastWeeklyAverage) != 0;
+                if (changed) {
+                    WeeklyAverageEntity result = new WeeklyAverageEntity(StudyClock.now(), week, weeklyAverage);
+                    mainResultsDb.weeklyAverageDao().insertOrUpdate(result);
+                    LogSaver.saveLog(TAG, "d", "Saved weekly avg: week=" + week + ", avg=" + weeklyAverage);
+                    lastWeeklyAverageWeek = week;
+                    lastWeeklyAverage = weeklyAverage;
+                }
+                analyticsGraph.complete(Node.WEEKLY_AVERAGE, consumed, changed);
 
             }catch (Exception e) {
                 LogSaver.saveLog(TAG,"e", "Failed to computeAndSaveWeeklyAverage"+ e.getMessage());
             }
         };
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.WEEKLY, "weeklyAverage", task);
     }
 
     // When a new week is detected, generates a goal ratio for that incoming week, and saves to WeeklyRatio.
     public static void createAndSaveWeeklyRatios() {
-        ensureAnalyticsExecutorAlive();
         Runnable task = () -> {
             try{
+                long[] consumed = analyticsGraph.beginIfDirty(Node.WEEKLY_RATIOS);
+                if (consumed == null) return;
+
                 WeeklyAverageDao resultDao = mainResultsDb.weeklyAverageDao();
                 WeeklyRatioDao ratioDao = mainResultsDb.weeklyRatioDao();
 
@@ -1034,6 +1365,7 @@ public class DataStorageManager {
                 List<WeeklyAverageEntity> weeklyResults = resultDao.getAllSortedByWeek();
                 if (weeklyResults == null || weeklyResults.isEmpty()) {
                     LogSaver.saveLog(TAG,"w", "No weekly results available to generate goals.");
+                    analyticsGraph.complete(Node.WEEKLY_RATIOS, consumed, false);
                     return;
                 }
 
@@ -1047,6 +1379,7 @@ public class DataStorageManager {
                 List<Integer> sortedWeeks = new ArrayList<>(resultMap.keySet());
                 Collections.sort(sortedWeeks);
 
+                boolean generated = false;
                 for (int weekId : sortedWeeks) {
                     /*if (weekId > 5) {
                         LogSaver.saveLog(TAG, "i", "Week " + weekId + " has no ratio (post-intervention).");
@@ -1083,47 +1416,50 @@ public class DataStorageManager {
                         }
 
                         // Save new goal to DB
-                        WeeklyRatioEntity goalEntry = new WeeklyRatioEntity(System.currentTimeMillis(), weekId, ratioValue);
+                        WeeklyRatioEntity goalEntry = new WeeklyRatioEntity(StudyClock.now(), weekId, ratioValue);
                         ratioDao.insertOrUpdate(goalEntry);
+                        generated = true;
                         LogSaver.saveLog(TAG, "d", "Generated goal for week " + weekId + ": " + ratioValue);
                     }
                     prefsDataStorage.edit().putFloat(PrefsKeys.Data.LAST_KNOWN_RATIO, ratioValue).apply();
                 }
+                // Existing ratios are never recomputed, so only a new one can change the goal
+                analyticsGraph.complete(Node.WEEKLY_RATIOS, consumed, generated);
             }catch (Exception e) {
                 LogSaver.saveLog(TAG,"e", "Failed to computeAndSaveWeeklyAverage"+ e.getMessage());
             }
         };
 
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.WEEKLY, "weeklyRatios", task);
     }
 
     // Projects today’s goal from weekly ratio and effective wear time (≥8h floor),
     // updates lastKnownGoal + MyProgressComplicationProviderService, and saves to AdjustedDailyGoal.
     public static void computeAndSaveAdjustedDailyGoal() {
-        ensureAnalyticsExecutorAlive();
         Runnable task = () -> {
             try{
+                // Only if today's wear time, the weekly ratio or the week/day changed
+                long[] consumed = analyticsGraph.beginIfDirty(Node.ADJUSTED_GOAL);
+                if (consumed == null) return;
+
                 final int DAY_WINDOW_MIN = 14 * 60;   // 8:00–22:00 = 840
                 final int MIN_WEAR_FLOOR = 8 * 60;    // 8 hours = 480
 
                 String day = getDayForDB();
                 int week = getWeekFromPrefs();
 
-                DailyWearTimeDao dailyWearTimeDao = mainResultsDb.dailyWearTimeDao();
                 WeeklyRatioDao weeklyRatioDao = mainResultsDb.weeklyRatioDao();
 
                 // Get latest not-worn minutes for today (0..840). If none yet, assume 0 at 8:00.
-                DailyWearTimeEntity wearEntry = dailyWearTimeDao.getLastEntryForDay(day);
-                int notWornMinutes = (wearEntry != null) ? wearEntry.notWornMinutes : 0;
+                // Same worker as computeAndSaveDailyWearTime → its accumulator is current; the stored row
+                // (maybe one write behind) is only used before the accumulator is loaded
+                int notWornMinutes;
+                if (wearAccumulator.isLoadedFor(day)) {
+                    notWornMinutes = wearAccumulator.minutes(StudyClock.now())[1];
+                } else {
+                    DaySummaryEntity summary = mainResultsDb.daySummaryDao().getDay(day);
+                    notWornMinutes = (summary != null && summary.notWornMinutes >= 0) ? summary.notWornMinutes : 0;
+                }
                 notWornMinutes = Math.max(0, Math.min(DAY_WINDOW_MIN, notWornMinutes));
 
                 // Available wear time so far today (bounded to 0..840).
@@ -1141,18 +1477,28 @@ public class DataStorageManager {
                 // Projected daily goal = ratio * effective wear time (round to nearest int).
                 int adjustedDailyGoal = Math.round(weekRatio * effectiveWearMinutes);
 
-                // Save to SharedPreferences
-                prefsDataStorage.edit().putInt(PrefsKeys.Data.LAST_KNOWN_GOAL, adjustedDailyGoal).apply();
+                // Wear time changes every minute, the rounded goal much less often
+                boolean changed = !day.equals(lastGoalDay) || adjustedDailyGoal != lastGoal;
+                if (!changed) {
+                    analyticsGraph.complete(Node.ADJUSTED_GOAL, consumed, false);
+                    return;
+                }
+
+                // Save to the hot-state file (read by the notification check)
+                HotStateFile.get(appContext).putInt(HotStateFile.IntField.LAST_KNOWN_GOAL, adjustedDailyGoal);
 
                 // Save to db
                 AdjustedDailyGoalEntity adjusted = new AdjustedDailyGoalEntity(
-                        System.currentTimeMillis(),
+                        StudyClock.now(),
                         week,
                         day,
                         adjustedDailyGoal
                 );
-                db.adjustedDailyGoalDao().insert(adjusted);
+                CoalescingWriter.adjustedGoal(adjusted);
+                CoalescingWriter.daySummaryGoal(day, week, adjustedDailyGoal, weekRatio);
                 Log.w("DebuggingKurto", "Adjusted goal: "+ adjustedDailyGoal);
+                lastGoalDay = day;
+                lastGoal = adjustedDailyGoal;
 
                 LogSaver.saveLog(
                         TAG,
@@ -1165,45 +1511,42 @@ public class DataStorageManager {
                                 + ", effectiveWear=" + effectiveWearMinutes
                                 + ", goal=" + adjustedDailyGoal
                 );
-                // 🔔 Push an immediate complication refresh
-                MyProgressComplicationProviderService.requestComplicationUpdate(appContext);
+                // 🔔 Publish for the UI surfaces, then request a complication refresh (debounced)
+                TodaySnapshot.publishGoal(day, adjustedDailyGoal);
+                ComplicationUpdateBroker.request(appContext, ComplicationUpdateBroker.Target.PROGRESS);
+                analyticsGraph.complete(Node.ADJUSTED_GOAL, consumed, true);
 
             }catch (Exception e) {
                 LogSaver.saveLog(TAG,"e", "Failed to computeAndSaveAdjustedDailyGoal"+ e.getMessage());
             }
         };
-        try {
-            analyticsExecutor.execute(task);
-        } catch (RejectedExecutionException e) {
-            LogSaver.saveLog(TAG,"e", "Executor was shut down unexpectedly — recreating and retrying: "+ e.getMessage());
-            synchronized (executorLock) {
-                analyticsExecutor = Executors.newSingleThreadExecutor();
-            }
-            ensureAnalyticsExecutorAlive();
-            analyticsExecutor.execute(task);
-        }
+        storageScheduler.execute(Lane.GOAL_WEAR, "adjustedGoal", task);
     }
 
     // Shutdown everything to avoid cache problems and save exit
     public static void shutdown() {
 
-        // Shutdown analyticsExecutor
-        analyticsExecutor.shutdown(); // Prevent new tasks
-        try {
-            if (!analyticsExecutor.awaitTermination(2, TimeUnit.SECONDS)) {
-                LogSaver.saveLog(TAG,"w", "Timeout waiting for analyticsExecutor to finish.");
-            }
-        } catch (InterruptedException e) {
-            LogSaver.saveLog(TAG,"e", "Interrupted while shutting down analyticsExecutor"+e.getMessage());
+        // Let the storage worker finish what is queued; it rejects new tasks until init() reopens it
+        if (!storageScheduler.shutdown(2000)) {
+            LogSaver.saveLog(TAG,"w", "Timeout waiting for the storage worker to finish. " + storageScheduler.getMetricsSummary());
         }
 
-        // Close database if open
-        if (db != null && db.isOpen()) {
-            db.close();
+        // Make the CPU report, buffered logs and queued inserts durable before closing
+        saveEnergyReport();
+        LogSaver.flush();
+        if (!CoalescingWriter.flush(WRITER_FLUSH_TIMEOUT_MS)) {
+            Log.w(TAG, "CoalescingWriter flush timed out: " + CoalescingWriter.getStatsSummary());
         }
+
+        // Close the daily databases if open (today + yesterday/tomorrow around midnight)
+        DailyDatabase yesterday = previousDb;
+        if (yesterday != null) retireDailyDatabase(yesterday);
+        closeDailyDatabases();
         // Close main results database
         if (mainResultsDb != null && mainResultsDb.isOpen()) {
             mainResultsDb.close();
         }
+        // Close the partitioned raw-data store (no-op in per-day mode)
+        PartitionedStore.close();
     }
 }
@@ -0,0 +1,104 @@
+package com.example.kurtosisstudy;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * DeadlineQueries
+ * ---------------
+ * Purpose:
+ *   - Lets the notification pipeline ask the storage worker for an answer WITHOUT blocking on it.
+ *   - Every query returns a ListenableFuture that ALWAYS completes by its deadline:
+ *       · with the fresh DB answer if the storage worker got to it in time,
+ *       · otherwise with the last cached answer if it is younger than maxStaleMs,
+ *       · otherwise with the caller's fallback value.
+ *
+ * Notes:
+ *   • A late query is not interrupted (that would interrupt the storage worker mid-transaction):
+ *     if it has not started yet it is cancelled, if it is running it still refreshes the cache.
+ *   • One small timer thread handles all deadlines. A deadline is cancelled as soon as the answer is in,
+ *     so the timer only wakes up for queries that are actually late (counted in getStatsSummary()).
+ */
+
+public class DeadlineQueries {
+
+    private static final ScheduledExecutorService deadlineTimer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "QueryDeadlineTimer");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private static final AtomicLong queries = new AtomicLong();
+    private static final AtomicLong deadlinesFired = new AtomicLong();
+
+    // Last successful answer of one query + when it was computed
+    public static final class Cached<T> {
+        private volatile T value = null;
+        private volatile long computedAt = 0L;
+
+        void update(T v) {
+            value = v;
+            computedAt = System.currentTimeMillis();
+        }
+
+        T getIfFresh(long maxStaleMs) {
+            T v = value;
+            return (v != null && System.currentTimeMillis() - computedAt <= maxStaleMs) ? v : null;
+        }
+    }
+
+    public static <T> ListenableFuture<T> query(StorageTaskScheduler scheduler, StorageTaskScheduler.Lane lane,
+                                                Callable<T> task, long deadlineMs,
+                                                Cached<T> cache, long maxStaleMs, T fallback) {
+        queries.incrementAndGet();
+        final SettableFuture<T> result = SettableFuture.create();
+        final ListenableFuture<T> dbAnswer = scheduler.submit(lane, null, task);
+
+        if (dbAnswer == null) {                      // lane full → answer right away
+            result.set(orFallback(cache.getIfFresh(maxStaleMs), fallback));
+            return result;
+        }
+
+        Futures.addCallback(dbAnswer, new FutureCallback<T>() {
+            @Override public void onSuccess(T v) {
+                if (v != null) cache.update(v);
+                result.set(v != null ? v : orFallback(cache.getIfFresh(maxStaleMs), fallback));
+            }
+            @Override public void onFailure(Throwable t) {
+                result.set(orFallback(cache.getIfFresh(maxStaleMs), fallback));
+            }
+        }, MoreExecutors.directExecutor());
+
+        final ScheduledFuture<?> deadline = deadlineTimer.schedule(() -> {
+            deadlinesFired.incrementAndGet();
+            if (result.set(orFallback(cache.getIfFresh(maxStaleMs), fallback))) {
+                dbAnswer.cancel(false);              // only drops it if it never started
+                LogSaver.saveLog("DeadlineQueries_KurtosisStudy", "w",
+                        "Query missed its " + deadlineMs + " ms deadline, answered from cache/fallback");
+            }
+        }, deadlineMs, TimeUnit.MILLISECONDS);
+        // Answered in time → the timer never wakes up for this query
+        result.addListener(() -> deadline.cancel(false), MoreExecutors.directExecutor());
+
+        return result;
+    }
+
+    public static String getStatsSummary() {
+        return "deadlineQueries queries=" + queries.get() + " timerWakeups=" + deadlinesFired.get();
+    }
+
+    private static <T> T orFallback(T cached, T fallback) {
+        return (cached != null) ? cached : fallback;
+    }
+}
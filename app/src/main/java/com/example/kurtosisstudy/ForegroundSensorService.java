@@ -12,9 +12,7 @@ import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.BatteryManager;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
 import android.os.PowerManager;
 import android.os.SystemClock;
 import android.util.Log;
@@ -22,22 +20,13 @@ import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
-import com.example.kurtosisstudy.complications.MyProgressComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyServiceAliveCheckComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyWearTimeComplicationProviderService;
 import com.example.kurtosisstudy.receivers.NotWornAlarmReceiver;
 import com.example.kurtosisstudy.receivers.RestartReceiver;
 import com.example.kurtosisstudy.sensors.SensorHandler;
 import com.example.kurtosisstudy.sensors.WatchWearDetector;
 import com.example.kurtosisstudy.receivers.HeartbeatCheckWorker;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.Locale;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /*
@@ -49,7 +38,7 @@ import java.util.concurrent.TimeUnit;
  *       • Tracks wear / not-wear episodes.
  *       • Periodically aggregates data into per-minute, daily, and weekly metrics.
  *       • Drives goal + wear-time notifications and complications.
- *       • Self-heals if executors or sensors die (watchdog).
+ *       • Self-heals if the tick thread or sensors die.
  *
  * Main components:
  *   • SensorHandler sensorHandler
@@ -60,20 +49,27 @@ import java.util.concurrent.TimeUnit;
  *       - Listens to OFFBODY + HR to decide if the watch is worn.
  *       - Persists wear sessions to DB via DataStorageManager.
  *
- *   • Heartbeat (hbHandler + hbTick)
- *       - Writes HEARTBEAT_TIME to shared prefs every 60 s.
+ *   • Heartbeat (HEARTBEAT stage of the minute tick)
+ *       - Writes HEARTBEAT_TIME to HotStateFile every minute tick (and publishes it to TodaySnapshot).
  *       - RestartReceiver / HeartbeatCheckWorker use this to detect if the service died.
  *       - onStartCommand() writes an immediate heartbeat and, if the last one is “stale”,
- *         closes the previous ON segment (saveWearStateToDatabaseAt(false, lastHb + 1))
+ *         closes the previous ON segment (closeOpenWearSegmentAt(lastHb + 1, wasOn))
  *         and forces wear state back to UNKNOWN so WatchWearDetector re-validates.
  *
  *   • Wake lock
  *       - acquireWakeLock(): keeps CPU on (PARTIAL_WAKE_LOCK) so periodic tasks and
  *         sensor collection continue with screen off.
  *       - releaseWakeLock(): called in onDestroy() to avoid battery leaks.
+ *       - Both report to CpuAccounting, which tracks held time next to per-subsystem CPU time.
  *
- *   • Schedulers (all single-threaded executors)
- *       - periodicCheckScheduler (every 60 s)
+ *   • Minute tick (MinuteTickScheduler tickScheduler — ONE wakeup per minute boundary)
+ *       - Replaces the former watchdog / periodic check / data storage / notification executors and the
+ *         main-looper heartbeat, which each woke the CPU on their own phase.
+ *       - Stages run in this order on every tick, each with a time budget (overruns are logged + counted):
+ *
+ *       - WEAR_HOURS_CHECK (2 s budget, also runs once right at start)
+ *           · Every ~50 min: refreshes WatchWearDetector (stop/start) and SensorHandler
+ *             (stop + mark inactive), updates LAST_SENSOR_CHECK and logs the tick + analytics graph metrics.
  *           · Checks:
  *               · Active hours? (08:00–22:00)
  *               · Is watch worn? (via wearDetector)
@@ -81,38 +77,41 @@ import java.util.concurrent.TimeUnit;
  *               · Battery state every 10 min (charging + battery % logging).
  *           · Logic:
  *               · If within hours AND worn → start SensorHandler (if not already),
- *                 ensure DataStorageManager + NotificationManager are running,
- *                 and dismiss “not worn” notification.
+ *                 enable goal notifications and dismiss “not worn” notification.
  *               · If within hours BUT not worn → show “watch not worn” notification,
- *                 stop SensorHandler, stop NotificationManager.
- *               · Outside hours → stop SensorHandler + NotificationManager.
+ *                 stop SensorHandler, disable goal notifications.
+ *               · Outside hours → stop SensorHandler + disable goal notifications.
+ *
+ *       - AGGREGATION (only within active hours and if the watch is worn)
+ *           · Uses one minute of raw data (the minute starting 2 minutes before the tick) to:
+ *               · computeAndSaveMinuteAverage(...)
+ *               · computeAndSaveDailyCumulative()
+ *               · computeAndSaveDailyWearTime()
  *
- *       - dataStorageScheduler (aligned to minute, then every 1 min)
- *           · Runs only if within active hours.
- *           · If watch is worn:
- *               · Uses one minute of data (2 minutes before computation call) of raw data to:
- *                   · computeAndSaveMinuteAverage(...)
- *                   · computeAndSaveDailyCumulative()
- *                   · computeAndSaveDailyWearTime()
- *           · Every 5 min:
- *               · computeAndSaveAdjustedDailyGoal() (movement goal based on weekly ratio
- *                 and current wear time).
- *           · Every 60 min:
- *               · computeAndSaveWeeklyAverage()
- *               · createAndSaveWeeklyRatios()
- *           · Persists LAST_WEAR_TIME and LAST_HOURLY_SAVE to prefs.
+ *       - GOAL
+ *           · Every 5 min (active hours): computeAndSaveAdjustedDailyGoal() (movement goal based on
+ *             weekly ratio and current wear time).
+ *           · Every 60 min: computeAndSaveWeeklyAverage() + createAndSaveWeeklyRatios().
+ *           · Persists LAST_WEAR_TIME and LAST_HOURLY_SAVE to HotStateFile.
  *
- *       - notificationScheduler (every 1 min, initial delay 35 s)
- *           · Only runs in active hours.
+ *       - NOTIFICATION (only while enabled and within active hours)
  *           · Calls GoalNotificationManager.notifyIfGoalReached(...) to push progress
  *             notifications (second-study behavior is guarded by TODO comments).
+ *           · The decision itself runs on the storage worker after this tick's aggregation tasks
+ *             (GOAL_WEAR lane, behind the MINUTE lane) and reads only in-memory state, which replaces
+ *             the old 35 s offset.
+ *
+ *       - HEARTBEAT
+ *           · Writes HEARTBEAT_TIME (see above).
+ *
+ *       - LOG_FLUSH
+ *           · LogSaver.tickStage(): hands the buffered log lines to CoalescingWriter (time trigger).
+ *
+ *       - WAL_CHECKPOINT (every 5th tick)
+ *           · WalCheckpointScheduler.checkpointAll(): passive checkpoint of the open databases.
  *
- *       - watchdogScheduler (every 60 min)
- *           · Ensures all three schedulers are alive; recreates them if shutdown.
- *           · Every ~50 min:
- *               · Refreshes WatchWearDetector (stop/start).
- *               · Refreshes SensorHandler (stop + mark inactive).
- *               · Updates LAST_SENSOR_CHECK in prefs.
+ *       - The stages only enqueue DB work (DataStorageManager / GoalNotificationManager run it on their
+ *         own threads), so a tick normally takes a few ms.
  *
  *   • Service lifecycle:
  *       - onCreate():
@@ -126,20 +125,18 @@ import java.util.concurrent.TimeUnit;
  *               · initializeLastKnownProgress()
  *               · initializeLastKnownGoal()
  *           · Cancels “resume app” notification from RestartReceiver.
- *           · Refreshes complications: wear time, progress, and “service alive”.
+ *           · Requests complication refreshes (wear time, progress, “service alive”) via ComplicationUpdateBroker.
  *           · Acquires wake lock.
  *           · Restores “last run” timestamps for wear time, hourly saves, sensor checks, battery.
  *           · Fixes stale wear state if service died while watch was ON.
- *           · Starts heartbeat loop, SensorHandler, WatchWearDetector, watchdog,
- *             periodic check, data storage, and notification managers.
+ *           · Starts SensorHandler, WatchWearDetector and the minute tick.
  *           · Returns START_STICKY so the system restarts it after kill.
  *
  *       - onDestroy():
  *           · Removes foreground notification.
- *           · Forces wear prefs to OFF + UNKNOWN and logs to DB.
- *           · Stops heartbeat, releases wake lock.
+ *           · Forces the HotStateFile wear pair to OFF + UNKNOWN and logs to DB.
+ *           · Stops the minute tick (and with it the heartbeat), releases wake lock.
  *           · Shuts down SensorHandler + WatchWearDetector.
- *           · Shuts down all schedulers (watchdog, periodic, data, notifications).
  *
  *       - onTaskRemoved():
  *           · Schedules HeartbeatCheckWorker so WorkManager can decide on restart.
@@ -158,7 +155,7 @@ import java.util.concurrent.TimeUnit;
  * Overall:
  *   - This class is the brain of the runtime system: it orchestrates sensors, wear detection,
  *     aggregation, goals, notifications, and complications, and it aggressively self-repairs
- *     (recreating executors and re-registering sensors) to survive watch quirks, reboots,
+ *     (recreating the tick thread and re-registering sensors) to survive watch quirks, reboots,
  *     and background kills.
  */
 
@@ -169,8 +166,7 @@ public class ForegroundSensorService extends Service{
 
     // Heartbeat (cross-process liveness signal checked by RestartReceiver/UI)
     // If it goes stale, receiver may restart service.
-    private static final long   HB_MS   = 60_000L;  // write heartbeat every 60s
-    private boolean heartbeatStarted = false;
+    private static final long   HB_MS   = 60_000L;  // heartbeat written by the HEARTBEAT stage every minute tick
 
 
     // Foreground notification
@@ -189,25 +185,16 @@ public class ForegroundSensorService extends Service{
     private boolean isWornSensorActive = false;
     private boolean withinHours = false;
 
-    // Schedule calls to the periodic checker for watch worn and active hours
-    private ScheduledExecutorService periodicCheckScheduler = Executors.newSingleThreadScheduledExecutor();
-    private boolean isPeriodicCheckRunning = false;
-
-    // Schedule the calls to the Data Storage Manager
-    private ScheduledExecutorService dataStorageScheduler = Executors.newSingleThreadScheduledExecutor();
-    private boolean isDataStorageManagerRunning = false;
+    // One wakeup per minute boundary: wear/hours check → aggregation → goal → notification → heartbeat
+    private final MinuteTickScheduler tickScheduler = new MinuteTickScheduler("ServiceMinuteTick");
+    private boolean tickStagesRegistered = false;
     private long lastHourlySaveTaskTimestamp = 0;
     private long lastDailyWearTimeUpdateTimestamp = 0;
     private long lastAllSensorsCheckTimestamp = 0;
     private long lastBatteryCheckTimestamp = 0;
 
-    // Schedule the calls to the Notification Scheduler to check when to provide notifications
-    private ScheduledExecutorService notificationScheduler = Executors.newSingleThreadScheduledExecutor();
-    private boolean isNotificationManagerRunning = false;
-
-    // A watchdog to protect the system against unexpected shutdowns (every 5 minutes for example)
-    private ScheduledExecutorService watchdogScheduler = Executors.newSingleThreadScheduledExecutor();
-    private boolean isWatchdogRunning = false;
+    // Goal notifications only while worn within active hours (set by the wear/hours check stage)
+    private volatile boolean notificationsEnabled = false;
 
     // Keep the foreground service active even when screen is off using a wakelock
     private PowerManager.WakeLock wakeLock; // Keep reference to avoid GC
@@ -215,29 +202,12 @@ public class ForegroundSensorService extends Service{
     // private static final long WAKELOCK_TIMEOUT_MS = TimeUnit.HOURS.toMillis(15);
 
     // Define preferences of service
-    private SharedPreferences prefs, prefsWatchWorn;
+    private SharedPreferences prefsWatchWorn;          // LAST_WEAR_NOTIF only; wear state lives in HotStateFile
+    private HotStateFile hotState;                     // heartbeat, periodic-check times, wear state
 
     // Restart service
     private static final int RESUME_ID = 42;                // notif presented to the user to restart service in RestartReceiver
 
-    // Heartbeat handler (runs on main thread). Writes timestamp in shared preferences
-    // Protection: helps the RestartReceiver class detect if service is killed, and tries to restart it
-    private final Handler hbHandler = new Handler(Looper.getMainLooper());
-    private final Runnable hbTick = new Runnable() {
-        @Override public void run() {
-            // Write a cross-process liveness timestamp
-            getSharedPreferences(PrefsKeys.HeartBeat.HEARTBEAT_PREFS, MODE_PRIVATE)
-                    .edit()
-                    .putLong(PrefsKeys.HeartBeat.HEARTBEAT_TIME, System.currentTimeMillis())
-                    .apply(); // saves asynchronously (non-blocking)
-
-            // re-schedules the same Runnable to run again after HB_MS creating a loop
-            hbHandler.postDelayed(this, HB_MS);
-            LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "w", "Heartbeat tick at: "+System.currentTimeMillis());
-
-        }
-    };
-
     // One-time setup when the service is first created by the system
     @Override
     public void onCreate() {
@@ -247,9 +217,11 @@ public class ForegroundSensorService extends Service{
         // Prepare notification channel before we call startForeground() (API 26+ requirement)
         createNotificationChannel();
 
-        // Kick off (start) the heartbeat immediately so external components can "see" us.
-        //hbHandler.post(hbTick);
-        //hbHandler.postDelayed(hbTick, HB_MS);
+        // Mapped hot-state file (heartbeat, periodic-check times, wear state)
+        hotState = HotStateFile.get(this);
+
+        // Stages of the minute tick (started in onStartCommand)
+        registerTickStages();
 
         // When the study begins, save the date to know when the week starts (if first entry)
         DataStorageManager.init(getApplicationContext());
@@ -269,9 +241,8 @@ public class ForegroundSensorService extends Service{
         LogSaver.saveLog(TAG,"d", "After call to startForeground() - notification created and being displayed");
 
         // Write immediate heartbeat so the complication hides quickly
-        long now = System.currentTimeMillis();
-        SharedPreferences hb = getSharedPreferences(PrefsKeys.HeartBeat.HEARTBEAT_PREFS, MODE_PRIVATE);
-        long lastHb = hb.getLong(PrefsKeys.HeartBeat.HEARTBEAT_TIME, 0L);
+        long now = StudyClock.now();
+        long lastHb = hotState.getLong(HotStateFile.LongField.HEARTBEAT_TIME);
         boolean stale = lastHb > 0 && now - lastHb > 2 * HB_MS;
 
 
@@ -285,51 +256,37 @@ public class ForegroundSensorService extends Service{
         if (nm != null) nm.cancel(RESUME_ID); // hide the resume prompt
 
         // Refresh the "ServiceAlive" complication so it disappears immediately
-        MyWearTimeComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-        MyProgressComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-        MyServiceAliveCheckComplicationProviderService.requestComplicationUpdate(getApplicationContext());
+        ComplicationUpdateBroker.request(getApplicationContext(), ComplicationUpdateBroker.Target.WEAR_TIME,
+                ComplicationUpdateBroker.Target.PROGRESS, ComplicationUpdateBroker.Target.SERVICE_ALIVE);
 
         // Acquires a partial wake lock to keep the CPU running even when the screen is off.
         acquireWakeLock();
 
         // In case of service restart, recover "update" times for the periodicChecks
-        prefs = getApplicationContext().getSharedPreferences(PrefsKeys.FGS.FGS_PREFS, MODE_PRIVATE);
-        lastDailyWearTimeUpdateTimestamp = prefs.getLong(PrefsKeys.FGS.LAST_WEAR_TIME, 0);
-        lastHourlySaveTaskTimestamp = prefs.getLong(PrefsKeys.FGS.LAST_HOURLY_SAVE, 0);
-        lastAllSensorsCheckTimestamp = prefs.getLong(PrefsKeys.FGS.LAST_SENSOR_CHECK, 0);
-        lastBatteryCheckTimestamp = prefs.getLong(PrefsKeys.FGS.LAST_BATTERY_CHECK, 0);
+        lastDailyWearTimeUpdateTimestamp = hotState.getLong(HotStateFile.LongField.LAST_WEAR_TIME);
+        lastHourlySaveTaskTimestamp = hotState.getLong(HotStateFile.LongField.LAST_HOURLY_SAVE);
+        lastAllSensorsCheckTimestamp = hotState.getLong(HotStateFile.LongField.LAST_SENSOR_CHECK);
+        lastBatteryCheckTimestamp = hotState.getLong(HotStateFile.LongField.LAST_BATTERY_CHECK);
 
         // If watch powered down during the day, next time it powers on doesn't know whether it has been taken off
         prefsWatchWorn = getApplicationContext().getSharedPreferences(PrefsKeys.Wear.WEAR_PREFS, MODE_PRIVATE);
-        boolean wasOn = prefsWatchWorn.getBoolean(PrefsKeys.Wear.WEAR_BOOL, false);
+        boolean wasOn = hotState.isWorn();
         // consider “dead” if >2 heartbeats have passed (2 * HB_MS)
         LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "w", "onStartCommand wear");
         if (stale) {
             // ideally stamp OFF at last heartbeat (+1 ms) so you don’t count the downtime
-            // Close previous ON segment neatly if we thought it was ON
-            if (wasOn) {
-                DataStorageManager.saveWearStateToDatabaseAt(false, lastHb + 1);
-                LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "w", "was on, saving to false at: "+lastHb);
-
-            }
+            // Close previous ON segment neatly if we thought it was ON, or if the persisted worn segments
+            // still have one open (HeartbeatCheckWorker may already have reset the hot state to UNKNOWN)
+            DataStorageManager.closeOpenWearSegmentAt(lastHb + 1, wasOn);
+            LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "w", "was on: " + wasOn + ", closing any open segment at: " + lastHb);
             // Force UNKNOWN so WatchWearDetector re-validates immediately
-            prefsWatchWorn.edit()
-                        //.putBoolean(PrefsKeys.Wear.WEAR_BOOL, false)
-                    .putInt(PrefsKeys.Wear.WEAR_STATE, -1)
-                    .apply();
+            hotState.putInt(HotStateFile.IntField.WEAR_STATE, -1);
             LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "w", "Cold start detected");
         }
 
         // Update heartbeat immediately so others can see we’re alive
-        hb.edit().putLong(PrefsKeys.HeartBeat.HEARTBEAT_TIME, now).apply();
-
-        // start periodic loop AFTER the check, with a delay
-        if (!heartbeatStarted) {
-            //hbHandler.postDelayed(hbTick, HB_MS);  // delayed first tick
-            LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "w", "Heartbeat started");
-            hbHandler.post(hbTick);
-            heartbeatStarted = true;
-        }
+        hotState.putLong(HotStateFile.LongField.HEARTBEAT_TIME, now);
+        TodaySnapshot.publishHeartbeat(now);
 
         // Initialize accelerometer Sensor Handler
         if (sensorHandler == null) {
@@ -344,26 +301,16 @@ public class ForegroundSensorService extends Service{
             LogSaver.saveLog(TAG,"d", "WearDetector registered and started");
         }
 
-        // Start the watch dog
-        startWatchdog();
-
-        // Start a periodic check to check if the watch is worn and if it's in between "active" hours
-        startPeriodicCheck();
-
-        // Starts the data storage manager to allow computing outcomes and saving to db
-        startDataStorageManager();
-
-        // Start the notification scheduler
-        startNotificationManager();
+        // Start the minute tick: the wear/hours check runs right away, then all stages run on every
+        // minute boundary (the HEARTBEAT stage keeps the liveness timestamp fresh from now on)
+        tickScheduler.ensureRunning();
 
         return START_STICKY; // Will be recreated after getting killed
     }
 
     // Checks if the time is between 8am and 10pm
     private boolean isWithinActiveHours() {
-        Calendar now = Calendar.getInstance();
-        int hour = now.get(Calendar.HOUR_OF_DAY);
-        return hour >= 8 && hour < 22;
+        return StudyClock.isWithinActiveHours();
     }
 
     // Acquires a partial wake lock to keep the CPU running even when the screen is off.
@@ -383,6 +330,7 @@ public class ForegroundSensorService extends Service{
 
             if (!wakeLock.isHeld()) {
                 wakeLock.acquire(); // WAKELOCK_TIMEOUT_MS would go here
+                CpuAccounting.wakeLockAcquired();
                 LogSaver.saveLog(TAG,"d", "Wake lock acquired forever");
             } else {
                 LogSaver.saveLog(TAG,"d", "Wake lock already held");
@@ -392,157 +340,142 @@ public class ForegroundSensorService extends Service{
         }
     }
 
-    // The watchdog restarts sensors and executors
-    private void startWatchdog() {
-        restartWatchDogIfShutdown();
-        if (isWatchdogRunning) return;
-        isWatchdogRunning = true;
-        try{
-            watchdogScheduler.scheduleWithFixedDelay(() -> {
-                try {
-                    LogSaver.saveLog(TAG,"d", "Watchdog scheduler called");
-                    restartPeriodicCheckIfShutdown();
-                    restartDataStorageSchedulerIfShutdown();
-                    restartNotificationSchedulerIfShutdown();
-
-                    // Check every 30 minutes to refresh sensor registrations in case they fail
-                    long now = System.currentTimeMillis();
-                    if (now - lastAllSensorsCheckTimestamp >= TimeUnit.MINUTES.toMillis(50)) {
-
-                        // Re-register or refresh WatchWearDetector
-                        if (wearDetector != null) {
-                            wearDetector.stop();
-                            wearDetector.start();
-                            LogSaver.saveLog(TAG, "w", "WatchWearDetector re-registered");
-                        } else {
-                            wearDetector = new WatchWearDetector(this);
-                            wearDetector.start();
-                            LogSaver.saveLog(TAG, "w", "WatchWearDetector was null during check");
-                        }
-                        // Re-register or refresh sensorhandler
-                        if (sensorHandler != null) {
-                            sensorHandler.stop();
-                            isWornSensorActive = false;
-                            //sensorHandler.start();
-                            LogSaver.saveLog(TAG, "w", "sensorHandler re-registered");
-                        } else {
-                            sensorHandler = new SensorHandler(this);
-                            isWornSensorActive = false;
-                            //sensorHandler.start();
-                            LogSaver.saveLog(TAG, "w", "sensorHandler was null during check");
-                        }
-
-                        // Update persistent and in-memory timestamp
-                        prefs.edit().putLong(PrefsKeys.FGS.LAST_SENSOR_CHECK, now).apply();
-                        lastAllSensorsCheckTimestamp = now;
-                    }
-
-                } catch (Throwable t) {
-                    LogSaver.saveLog(TAG,"e", "Watchdog failed" + Log.getStackTraceString(t));
-                    restartWatchDogIfShutdown();
-                }
-            }, 60, 60, TimeUnit.MINUTES);
-        } catch (RejectedExecutionException ex) {
-            LogSaver.saveLog(TAG, "e", "RejectedExecutionException in startNotificationManager: " + ex.getMessage());
-            restartWatchDogIfShutdown();
-        }
+    // Registers the per-minute stages once; MinuteTickScheduler runs them in Stage order on every minute boundary
+    private void registerTickStages() {
+        if (tickStagesRegistered) return;
+        tickScheduler.register(MinuteTickScheduler.Stage.WEAR_HOURS_CHECK, 2_000, true, this::wearAndHoursCheckStage);
+        tickScheduler.register(MinuteTickScheduler.Stage.AGGREGATION, 500, false, this::aggregationStage);
+        tickScheduler.register(MinuteTickScheduler.Stage.GOAL, 500, false, this::goalStage);
+        tickScheduler.register(MinuteTickScheduler.Stage.NOTIFICATION, 500, false, this::notificationStage);
+        tickScheduler.register(MinuteTickScheduler.Stage.HEARTBEAT, 200, false, this::heartbeatStage);
+        tickScheduler.register(MinuteTickScheduler.Stage.LOG_FLUSH, 200, false, LogSaver::tickStage);
+        tickScheduler.register(MinuteTickScheduler.Stage.WAL_CHECKPOINT, 1_000, false,
+                WalCheckpointScheduler.CHECKPOINT_EVERY_TICKS, WalCheckpointScheduler::tickStage);
+        tickStagesRegistered = true;
     }
 
     // Every minute, checks if the watch is worn and within active hours, otherwise it doesn't get data
-    private void startPeriodicCheck() {
-        restartPeriodicCheckIfShutdown();
-        if (isPeriodicCheckRunning) return;
-        LogSaver.saveLog(TAG,"d", "startPeriodicCheck()");
-        try{
-            periodicCheckScheduler.scheduleWithFixedDelay(() -> {
-                try {
-                    LogSaver.saveLog(TAG,"e", "Periodic check triggered at: " + new Date(System.currentTimeMillis()));
-                    // Check if watchdog is active and restarts it if inactive
-                    restartWatchDogIfShutdown();
-
-                    // Check wear state and hours
-                    withinHours = isWithinActiveHours();
-                    boolean watchIsWorn = wearDetector != null && wearDetector.isWorn();
-                    LogSaver.saveLog(TAG,"d", "withinHours: " + withinHours + ", watchIsWorn: " + watchIsWorn);
-
-                    // Check if the DB should be reinitialized (new day)
-                    if (DataStorageManager.shouldReinitializeDailyDb()) {
-                        DataStorageManager.init(getApplicationContext());
-                        LogSaver.saveLog(TAG,"d", "New day detected — reinitializing DB...");
-
-                        // Log the current wear state to start the new day's timeline
-                        DataStorageManager.saveWearStateToDatabase(watchIsWorn);
-
-                        // If a new day comes, update the wear complication
-                        MyWearTimeComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-                        MyProgressComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-                    }
-
-                    // Check if watch is charging
-                    long now = System.currentTimeMillis();
-                    boolean shouldCheckBattery = now - lastBatteryCheckTimestamp >= TimeUnit.MINUTES.toMillis(10);
-                    if (shouldCheckBattery) {
-                        IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-                        Intent batteryStatus = getApplicationContext().registerReceiver(null, ifilter);
-                        if (batteryStatus != null) {
-                            int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
-                            boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
-                            int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
-                            int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
-                            float batteryPct = level * 100 / (float) scale;
-                            LogSaver.saveLog(TAG, "d", "isCharging: " + isCharging + ", batteryPct: " + batteryPct);
-                        } else {
-                            LogSaver.saveLog(TAG, "w", "batteryStatus is null — unable to check charging state");
-                        }
-                        lastBatteryCheckTimestamp = now;
-                        prefs.edit().putLong(PrefsKeys.FGS.LAST_BATTERY_CHECK, now).apply();
-
-                    }
-
-                    if (withinHours) {
-                        if (watchIsWorn) {
-                            if (!isWornSensorActive) {
-                                LogSaver.saveLog(TAG, "d", "Starting sensorHandler");
-                                sensorHandler.start();
-                                isWornSensorActive = true;
-                                dismissNotWornNotification();
-                            }
-                            startDataStorageManager();
-                            startNotificationManager();
-                        } else {
-                            // Send notification ONLY if watch is not worn during active hours
-                            // TODO - 2nd STUDY (comment next to hide not worn notification)
-                            GoalNotificationManager.notificationIfWatchNotWorn(getApplicationContext());
-
-                            // Stop everything if it was running
-                            if (isWornSensorActive) {
-                                LogSaver.saveLog(TAG, "d", "Stopping sensorHandler");
-                                sensorHandler.stop();
-                                isWornSensorActive = false;
-                            }
-                            //stopDataStorageManager();
-                            stopNotificationManager();
-                        }
-                    } else {
-                        // Outside of active hours → always stop everything
-                        if (isWornSensorActive) {
-                            LogSaver.saveLog(TAG, "d", "Stopping sensorHandler");
-                            sensorHandler.stop();
-                            isWornSensorActive = false;
-                        }
-                        //stopDataStorageManager();
-                        stopNotificationManager();
-                    }
-                } catch (Throwable t) {
-                    LogSaver.saveLog(TAG,"e", "Periodic check failed" + Log.getStackTraceString(t));
-                    restartPeriodicCheckIfShutdown();
+    // (also refreshes sensor registrations every ~50 minutes, which the old watchdog did)
+    private void wearAndHoursCheckStage(long alignedMinute) {
+        LogSaver.saveLog(TAG,"e", "Periodic check triggered at: " + new Date(StudyClock.now()));
+
+        // Check every 50 minutes to refresh sensor registrations in case they fail
+        long now = StudyClock.now();
+        if (now - lastAllSensorsCheckTimestamp >= TimeUnit.MINUTES.toMillis(50)) {
+
+            // Re-register or refresh WatchWearDetector
+            if (wearDetector != null) {
+                wearDetector.stop();
+                wearDetector.start();
+                LogSaver.saveLog(TAG, "w", "WatchWearDetector re-registered");
+            } else {
+                wearDetector = new WatchWearDetector(this);
+                wearDetector.start();
+                LogSaver.saveLog(TAG, "w", "WatchWearDetector was null during check");
+            }
+            // Re-register or refresh sensorhandler
+            if (sensorHandler != null) {
+                sensorHandler.stop();
+                isWornSensorActive = false;
+                LogSaver.saveLog(TAG, "w", "sensorHandler re-registered");
+            } else {
+                sensorHandler = new SensorHandler(this);
+                isWornSensorActive = false;
+                LogSaver.saveLog(TAG, "w", "sensorHandler was null during check");
+            }
+
+            // Update persistent and in-memory timestamp
+            hotState.putLong(HotStateFile.LongField.LAST_SENSOR_CHECK, now);
+            lastAllSensorsCheckTimestamp = now;
+            hotState.sync();
+
+            // Hourly view of how the minute tick behaves (wakeups, lateness, stage budgets)
+            LogSaver.saveLog(TAG, "d", tickScheduler.getMetricsSummary());
+            LogSaver.saveLog(TAG, "d", DataStorageManager.getAnalyticsGraphMetrics());
+            LogSaver.saveLog(TAG, "d", ComplicationUpdateBroker.getStatsSummary());
+            LogSaver.saveLog(TAG, "d", LogSaver.getStatsSummary());
+            LogSaver.saveLog(TAG, "d", CoalescingWriter.getStatsSummary());
+            LogSaver.saveLog(TAG, "d", DeadlineQueries.getStatsSummary());
+            LogSaver.saveLog(TAG, "d", CrossDayQueryEngine.getStatsSummary());
+            LogSaver.saveLog(TAG, "d", StudyClock.getStatsSummary());
+            LogSaver.saveLog(TAG, "d", NotificationDecisionState.getStatsSummary());
+
+            // Where the CPU went since midnight; also persisted in today's daily DB
+            LogSaver.saveLog(TAG, "d", CpuAccounting.getSummary());
+            DataStorageManager.saveEnergyReport();
+        }
+
+        // Check wear state and hours
+        withinHours = isWithinActiveHours();
+        boolean watchIsWorn = wearDetector != null && wearDetector.isWorn();
+        LogSaver.saveLog(TAG,"d", "withinHours: " + withinHours + ", watchIsWorn: " + watchIsWorn);
+
+        // Pre-open tomorrow's daily DB before midnight / close yesterday's once its late rows are in
+        DataStorageManager.maintainDailyDatabases();
+
+        // Check if the DB should be reinitialized (new day)
+        if (DataStorageManager.shouldReinitializeDailyDb()) {
+            DataStorageManager.init(getApplicationContext());
+            LogSaver.saveLog(TAG,"d", "New day detected — reinitializing DB...");
+
+            // Log the current wear state to start the new day's timeline
+            DataStorageManager.saveWearStateToDatabase(watchIsWorn);
+
+            // If a new day comes, update the wear complication
+            ComplicationUpdateBroker.request(getApplicationContext(), ComplicationUpdateBroker.Target.WEAR_TIME,
+                    ComplicationUpdateBroker.Target.PROGRESS);
+        }
+
+        // Check if watch is charging
+        boolean shouldCheckBattery = now - lastBatteryCheckTimestamp >= TimeUnit.MINUTES.toMillis(10);
+        if (shouldCheckBattery) {
+            IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+            Intent batteryStatus = getApplicationContext().registerReceiver(null, ifilter);
+            if (batteryStatus != null) {
+                int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+                boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+                int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+                float batteryPct = level * 100 / (float) scale;
+                LogSaver.saveLog(TAG, "d", "isCharging: " + isCharging + ", batteryPct: " + batteryPct);
+            } else {
+                LogSaver.saveLog(TAG, "w", "batteryStatus is null — unable to check charging state");
+            }
+            lastBatteryCheckTimestamp = now;
+            hotState.putLong(HotStateFile.LongField.LAST_BATTERY_CHECK, now);
+
+        }
+
+        if (withinHours) {
+            if (watchIsWorn) {
+                if (!isWornSensorActive) {
+                    LogSaver.saveLog(TAG, "d", "Starting sensorHandler");
+                    sensorHandler.start();
+                    isWornSensorActive = true;
+                    dismissNotWornNotification();
+                }
+                notificationsEnabled = true;
+            } else {
+                // Send notification ONLY if watch is not worn during active hours
+                // TODO - 2nd STUDY (comment next to hide not worn notification)
+                GoalNotificationManager.notificationIfWatchNotWorn(getApplicationContext());
+
+                // Stop everything if it was running
+                if (isWornSensorActive) {
+                    LogSaver.saveLog(TAG, "d", "Stopping sensorHandler");
+                    sensorHandler.stop();
+                    isWornSensorActive = false;
                 }
-            }, 0, 60, TimeUnit.SECONDS);
-            isPeriodicCheckRunning = true;
-            LogSaver.saveLog(TAG, "d", "periodicCheckScheduler task successfully scheduled.");
-        } catch (RejectedExecutionException ex) {
-            LogSaver.saveLog(TAG, "e", "RejectedExecutionException in startNotificationManager: " + ex.getMessage());
-            restartPeriodicCheckIfShutdown();
+                notificationsEnabled = false;
+            }
+        } else {
+            // Outside of active hours → always stop everything
+            if (isWornSensorActive) {
+                LogSaver.saveLog(TAG, "d", "Stopping sensorHandler");
+                sensorHandler.stop();
+                isWornSensorActive = false;
+            }
+            notificationsEnabled = false;
         }
     }
 
@@ -570,176 +503,67 @@ public class ForegroundSensorService extends Service{
 
     }
 
-    private void startDataStorageManager() {
-        restartDataStorageSchedulerIfShutdown();
-        if (isDataStorageManagerRunning) return;
-        LogSaver.saveLog(TAG,"d", "startDataStorageManager()");
-
-        try {
-            dataStorageScheduler.scheduleWithFixedDelay(() -> {
-                try {
-                    restartWatchDogIfShutdown();    // Check if watchdog is active
-                    long now = System.currentTimeMillis();
-                    if (withinHours){
-                        //LogSaver.saveLog(TAG,"d", "startDataStorageScheduler called again after 1'");
-                        if (wearDetector != null && wearDetector.isWorn()){
-
-                            long startOfLast2Minute = now - TimeUnit.MINUTES.toMillis(2);
-                            long endOfLast2Minute = startOfLast2Minute + TimeUnit.MINUTES.toMillis(1);
-                            long minuteTimestamp = alignToMinuteTimestamp(startOfLast2Minute);
-                            String formattedMinute = formatAlignedMinute(minuteTimestamp);
-
-                            DataStorageManager.computeAndSaveMinuteAverage(startOfLast2Minute, endOfLast2Minute, formattedMinute);
-                            DataStorageManager.computeAndSaveDailyCumulative();
-                            DataStorageManager.computeAndSaveDailyWearTime(); // Update wear time for the day
-                        }
-
-                        // Run once every 5 minutes
-                        if (now - lastDailyWearTimeUpdateTimestamp >= TimeUnit.MINUTES.toMillis(5)) {
-
-                            // Update daily goal based on that week's ratio and the remaining wearTime
-                            DataStorageManager.computeAndSaveAdjustedDailyGoal();
-
-                            // Update check time
-                            lastDailyWearTimeUpdateTimestamp = now;
-                            prefs.edit().putLong(PrefsKeys.FGS.LAST_WEAR_TIME, now).apply();
-                        }
-                    }
-
-                    // Run once every 60 minutes
-                    if(now - lastHourlySaveTaskTimestamp >= TimeUnit.MINUTES.toMillis(60)){
-                        LogSaver.saveLog(TAG,"d", "Weekly updates called every hour'");
-                        // Update weekly average and redefine weekly goals
-                        DataStorageManager.computeAndSaveWeeklyAverage();
-                        DataStorageManager.createAndSaveWeeklyRatios();
-
-                        // Update check time
-                        lastHourlySaveTaskTimestamp = now;
-                        prefs.edit().putLong(PrefsKeys.FGS.LAST_HOURLY_SAVE, now).apply();
-                    }
-
-                } catch (Throwable t) {
-                    LogSaver.saveLog(TAG,"e", "dataStorageScheduler failed" + Log.getStackTraceString(t));
-                    restartDataStorageSchedulerIfShutdown();
-                }
-            }, computeDelayToNextMinuteMillis(), TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
-            isDataStorageManagerRunning = true;
-            LogSaver.saveLog(TAG, "d", "dataStorageScheduler task successfully scheduled.");
-        } catch (RejectedExecutionException ex) {
-            LogSaver.saveLog(TAG, "e", "RejectedExecutionException in startNotificationManager: " + ex.getMessage());
-            restartDataStorageSchedulerIfShutdown();
-        }
-    }
-
-    private void stopDataStorageManager() {
-        if (!isDataStorageManagerRunning) return;
-        LogSaver.saveLog(TAG, "w", "stopDataStorageManager()");
-        DataStorageManager.shutdown();
+    // Uses the minute that ended 1 minute before this tick (raw data of the last minute may still be buffered)
+    private void aggregationStage(long alignedMinute) {
+        if (!withinHours) return;
+        if (wearDetector != null && wearDetector.isWorn()){
 
-        dataStorageScheduler.shutdownNow(); // terminate the executor service permanently — it can’t be used again
-        isDataStorageManagerRunning = false;
-
-        // Recreate it so you can reschedule later
-        dataStorageScheduler = Executors.newSingleThreadScheduledExecutor();
-    }
+            long startOfLast2Minute = alignedMinute - TimeUnit.MINUTES.toMillis(2);
+            long endOfLast2Minute = startOfLast2Minute + TimeUnit.MINUTES.toMillis(1);
 
-    private void startNotificationManager() {
-        restartNotificationSchedulerIfShutdown(); // ensures a fresh executor if dead
-        if (isNotificationManagerRunning) return; // skip if already running
-        LogSaver.saveLog(TAG,"d", "startNotificationManager()");
-
-        try {
-            notificationScheduler.scheduleWithFixedDelay(() -> {
-                try {
-                    if (isWithinActiveHours()) {
-                        LogSaver.saveLog(TAG, "d", "notificationManager call");
-                        restartWatchDogIfShutdown();
-                        // TODO - 2nd STUDY (comment next to hide notifications)
-                        GoalNotificationManager.notifyIfGoalReached(getApplicationContext());
-                    } else {
-                        LogSaver.saveLog(TAG, "w", "Skipping notificationManager call — outside active hours");
-                    }
-                } catch (Exception e) {
-                    LogSaver.saveLog(TAG, "e", "NotificationManager failed: " + e.getMessage());
-                    restartNotificationSchedulerIfShutdown(); // refresh executor only
-                }
-            }, 35, 1, TimeUnit.MINUTES);
-            isNotificationManagerRunning = true;
-            LogSaver.saveLog(TAG, "d", "notificationScheduler task successfully scheduled.");
-        } catch (RejectedExecutionException ex) {
-            LogSaver.saveLog(TAG, "e", "RejectedExecutionException in startNotificationManager: " + ex.getMessage());
-            restartNotificationSchedulerIfShutdown();
+            DataStorageManager.computeAndSaveMinuteAverage(startOfLast2Minute, endOfLast2Minute);
+            DataStorageManager.computeAndSaveDailyCumulative();
+            DataStorageManager.computeAndSaveDailyWearTime(); // Update wear time for the day
         }
     }
 
+    private void goalStage(long alignedMinute) {
+        long now = StudyClock.now();
 
-    private void stopNotificationManager() {
-        if (!isNotificationManagerRunning) return;
-        LogSaver.saveLog(TAG, "w", "stopNotificationManager()");
-        notificationScheduler.shutdownNow(); // terminate the executor service permanently — it can’t be used again
-        isNotificationManagerRunning = false;
-        // Recreate it so you can reschedule later
-        notificationScheduler = Executors.newSingleThreadScheduledExecutor();
-    }
+        // Run once every 5 minutes
+        if (withinHours && now - lastDailyWearTimeUpdateTimestamp >= TimeUnit.MINUTES.toMillis(5)) {
 
+            // Update daily goal based on that week's ratio and the remaining wearTime
+            DataStorageManager.computeAndSaveAdjustedDailyGoal();
 
-    private void restartWatchDogIfShutdown() {
-        if (watchdogScheduler == null || watchdogScheduler.isShutdown() || watchdogScheduler.isTerminated()) {
-            LogSaver.saveLog(TAG,"w","Restarting WatchDog");
-            watchdogScheduler = Executors.newSingleThreadScheduledExecutor();
-            isWatchdogRunning = false;
-            startWatchdog(); // reschedule immediately
+            // Update check time
+            lastDailyWearTimeUpdateTimestamp = now;
+            hotState.putLong(HotStateFile.LongField.LAST_WEAR_TIME, now);
         }
-    }
 
-    private void restartPeriodicCheckIfShutdown() {
-        if (periodicCheckScheduler.isShutdown()||periodicCheckScheduler==null||periodicCheckScheduler.isTerminated()) {
-            LogSaver.saveLog(TAG,"w", "Restarting periodicCheckScheduler");
-            periodicCheckScheduler = Executors.newSingleThreadScheduledExecutor();
-            isPeriodicCheckRunning = false;
-            startPeriodicCheck();
-        }
-    }
+        // Run once every 60 minutes
+        if(now - lastHourlySaveTaskTimestamp >= TimeUnit.MINUTES.toMillis(60)){
+            LogSaver.saveLog(TAG,"d", "Weekly updates called every hour'");
+            // Update weekly average and redefine weekly goals
+            DataStorageManager.computeAndSaveWeeklyAverage();
+            DataStorageManager.createAndSaveWeeklyRatios();
 
-    private void restartDataStorageSchedulerIfShutdown() {
-        if (dataStorageScheduler.isShutdown()||dataStorageScheduler==null||dataStorageScheduler.isTerminated()) {
-            LogSaver.saveLog(TAG,"w", "Restarting dataStorageScheduler");
-            dataStorageScheduler = Executors.newSingleThreadScheduledExecutor();
-            isDataStorageManagerRunning = false;
-            startDataStorageManager();
+            // Update check time
+            lastHourlySaveTaskTimestamp = now;
+            hotState.putLong(HotStateFile.LongField.LAST_HOURLY_SAVE, now);
         }
     }
 
-    private void restartNotificationSchedulerIfShutdown(){
-        if (notificationScheduler.isShutdown()||notificationScheduler==null||notificationScheduler.isTerminated()) {
-            LogSaver.saveLog(TAG,"w", "Restarting notificationScheduler");
-            notificationScheduler = Executors.newSingleThreadScheduledExecutor();
-            isNotificationManagerRunning = false;
-            startNotificationManager();
+    // Only enqueues: GoalNotificationManager decides on the storage worker once the aggregation tasks
+    // queued above ran (GOAL_WEAR lane, after the MINUTE lane), so it sees this minute's values
+    private void notificationStage(long alignedMinute) {
+        if (!notificationsEnabled) return;
+        if (isWithinActiveHours()) {
+            LogSaver.saveLog(TAG, "d", "notificationManager call");
+            // TODO - 2nd STUDY (comment next to hide notifications)
+            GoalNotificationManager.notifyIfGoalReached(getApplicationContext());
+        } else {
+            LogSaver.saveLog(TAG, "w", "Skipping notificationManager call — outside active hours");
         }
     }
 
-    // Calculates a delay to the next minute, if we're in 08:31:12, it calculates the time to 08:32:00
-    private long computeDelayToNextMinuteMillis() {
-        Calendar nextMinute = Calendar.getInstance();
-        nextMinute.add(Calendar.MINUTE, 2);
-        nextMinute.set(Calendar.SECOND, 0);
-        nextMinute.set(Calendar.MILLISECOND, 0);
-        return nextMinute.getTimeInMillis() - System.currentTimeMillis();
-    }
-
-    public static String formatAlignedMinute(long timestamp) {
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss", Locale.US);
-        return sdf.format(new Date(timestamp));
-    }
-
-    // Gets the string of exactly 2 minutes before it is called, if its 08:31:01, it returns 08:29
-    private long alignToMinuteTimestamp(long timeMillis) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTimeInMillis(timeMillis);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return cal.getTimeInMillis();
+    // Writes a cross-process liveness timestamp
+    // Protection: helps the RestartReceiver class detect if service is killed, and tries to restart it
+    private void heartbeatStage(long alignedMinute) {
+        long now = StudyClock.now();
+        hotState.putLong(HotStateFile.LongField.HEARTBEAT_TIME, now); // a few stores into the mapped page
+        TodaySnapshot.publishHeartbeat(now);   // in-process liveness for complications / MainActivity
+        LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "w", "Heartbeat tick at: "+now);
     }
 
     // Releases the wake lock when service is stopped to avoid battery drain.
@@ -747,6 +571,7 @@ public class ForegroundSensorService extends Service{
         try {
             if (wakeLock != null && wakeLock.isHeld()) {
                 wakeLock.release();
+                CpuAccounting.wakeLockReleased();
                 LogSaver.saveLog(TAG,"d", "Wake lock released");
             }
         } catch (Exception e) {
@@ -755,14 +580,12 @@ public class ForegroundSensorService extends Service{
     }
 
     private void forceWatchWornOff() {
-        boolean wasOn = prefsWatchWorn.getBoolean(PrefsKeys.Wear.WEAR_BOOL, false);
+        boolean wasOn = hotState.isWorn();
         if (wasOn) {
             DataStorageManager.saveWearStateToDatabase(false);
         }
-        prefsWatchWorn.edit()
-                .putBoolean(PrefsKeys.Wear.WEAR_BOOL, false)
-                .putInt(PrefsKeys.Wear.WEAR_STATE, -1)
-                .apply();
+        hotState.putWear(false, -1);
+        hotState.sync();
         LogSaver.saveLog("WatchWearDetector_KurtosisStudy", "d", "forceOff wrote OFF (wasOn="+wasOn+")");
     }
 
@@ -776,11 +599,10 @@ public class ForegroundSensorService extends Service{
         // If destroyed/battery down, set wear state to 0 (not worn)
         forceWatchWornOff();
 
-        // Stop heartbeat loop
-        hbHandler.removeCallbacksAndMessages(null);
-        hbHandler.removeCallbacks(hbTick);
-        heartbeatStarted = false;
-        LogSaver.saveLog(TAG, "d", "Heartbeat handler destroyed");
+        // Stop the minute tick (also stops the heartbeat)
+        tickScheduler.stop();
+        notificationsEnabled = false;
+        LogSaver.saveLog(TAG, "d", "Minute tick stopped: " + tickScheduler.getMetricsSummary());
 
         // Release the wakelock to prevent resource leak
         releaseWakeLock();
@@ -795,30 +617,6 @@ public class ForegroundSensorService extends Service{
             wearDetector = null;
         }
 
-        if (watchdogScheduler != null && !watchdogScheduler.isShutdown()) {
-            watchdogScheduler.shutdownNow(); // Cleanup
-            LogSaver.saveLog(TAG, "w", "watchdogScheduler shut down");
-        }
-        isWatchdogRunning = false;
-
-        if (periodicCheckScheduler != null && !periodicCheckScheduler.isShutdown()) {
-            periodicCheckScheduler.shutdownNow();
-            LogSaver.saveLog(TAG, "w", "PeriodicCheckScheduler shut down");
-        }
-        isPeriodicCheckRunning = false;
-
-        if (dataStorageScheduler != null && !dataStorageScheduler.isShutdown()) {
-            dataStorageScheduler.shutdownNow(); // Cleanup
-            LogSaver.saveLog(TAG, "w", "dataStorageScheduler shut down");
-        }
-        isDataStorageManagerRunning = false;
-
-        if (notificationScheduler != null && !notificationScheduler.isShutdown()) {
-            notificationScheduler.shutdownNow(); // Cleanup
-            LogSaver.saveLog(TAG, "w", "NotificationScheduler shut down");
-        }
-        isNotificationManagerRunning = false;
-
         super.onDestroy(); // always call this last
     }
 
@@ -832,7 +630,7 @@ public class ForegroundSensorService extends Service{
 
     /*private void restartService() {
         // Restarts the service if last heartbeat was long before RESTART_COOLDOWN_MS
-        long now = System.currentTimeMillis();
+        long now = StudyClock.now();
         if (now - lastRestartAttemptElapsed < RESTART_COOLDOWN_MS) {
             LogSaver.saveLog(TAG, "w", "Restart skipped (cooldown)");
             return;
@@ -14,13 +14,11 @@ import android.util.Log;
 import android.app.AlarmManager;
 import androidx.core.app.NotificationCompat;
 
-import com.example.kurtosisstudy.db.DailyCumulativeEntity;
-import com.example.kurtosisstudy.db.WearSessionDao;
-import com.example.kurtosisstudy.db.WearSessionEntity;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import com.example.kurtosisstudy.receivers.NotWornAlarmReceiver;
 
-import java.util.Calendar;
-import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
@@ -36,8 +34,14 @@ import com.example.kurtosisstudy.PrefsKeys;
  *
  * HOW IT WORKS
  * ------------
- * All public calls (notifyIfGoalReached / notificationIfWatchNotWorn)
- * run on a background single-thread executor so UI/FGS threads never block.
+ * Both public calls return at once so UI/FGS threads never block:
+ *   • notifyIfGoalReached runs on DataStorageManager's storage worker, queued behind this tick's aggregation
+ *     tasks (runAfterMinuteAggregation), so it sees this minute's values. No DB read: the slope start comes
+ *     from the wear accumulator and every cumulative (30' ago, at the slope start) plus the 30' active
+ *     window from NotificationDecisionState, all in memory.
+ *   • notificationIfWatchNotWorn runs on a background single-thread executor; the last not-worn time is a
+ *     ListenableFuture with a deadline (DataStorageManager.QUERY_DEADLINE_MS), so this executor never
+ *     waits behind a raw-data flush.
  *
  * 1) Goal & Progress Notifications
  * --------------------------------
@@ -73,20 +77,20 @@ import com.example.kurtosisstudy.PrefsKeys;
  * PREFS USED
  * ----------
  *   • NOTIF_PREFS → Goal state, counts, timestamps
- *   • DATA_PREFS  → LAST_KNOWN_PROGRESS / LAST_KNOWN_GOAL
- *   • WEAR_PREFS  → Current wear state & last not-worn notif time
+ *   • HotStateFile → LAST_KNOWN_PROGRESS / LAST_KNOWN_GOAL / current wear flag
+ *   • WEAR_PREFS  → Last not-worn notif time
  *
  * NOTES
  * -----
  *   • Always uses a notification channel (IMPORTANCE_HIGH).
- *   • All heavy data access uses DataStorageManager (DB reads, cumulative values).
+ *   • All data access goes through DataStorageManager (DB reads, in-memory pipeline state).
  *   • All scheduling, filtering, and nudge logic is centralized here.
  */
 
 public class GoalNotificationManager {
     private static final String TAG = "GoalNotificationManager_KurtosisStudy";
 
-    private static SharedPreferences prefsNotifications, prefsWatchWorn, prefsDataStorage;
+    private static SharedPreferences prefsNotifications, prefsWatchWorn;
 
     private static final String CHANNEL_ID = "goal_channel";
     private static final int NOTIFICATION_ID = 1001;
@@ -147,23 +151,25 @@ public class GoalNotificationManager {
             "😱 Unstoppable! You've passed your goal and you're still going!"
     };
 
-    // Run all notification computations off the main thread.
+    // Run the not-worn check off the main thread.
     private static final java.util.concurrent.ExecutorService notifExecutor =
             java.util.concurrent.Executors.newSingleThreadExecutor();
 
-    /** Public entrypoint: safe to call from UI/receivers/services. */
+    /** Public entrypoint: safe to call from UI/receivers/services. Decides on the storage worker after aggregation. */
     public static void notifyIfGoalReached(Context context) {
         final Context app = context.getApplicationContext();
-        notifExecutor.execute(() -> notifyIfGoalReachedImpl(app));
+        boolean queued = DataStorageManager.runAfterMinuteAggregation("goalNotification",
+                () -> CpuAccounting.run(CpuAccounting.Subsystem.NOTIFICATIONS, () -> notifyIfGoalReachedImpl(app)));
+        if (!queued) LogSaver.saveLog(TAG, "w", "Goal notification check not queued (storage lane full)");
     }
 
-    public static void notifyIfGoalReachedImpl(Context context) {
+    // Storage worker only (reads the wear accumulator)
+    static void notifyIfGoalReachedImpl(Context context) {
         // Just for debugging to see that notifications work
         // hardPostTest(context);
 
         // Get shared prefs for goals and data
         prefsNotifications = context.getApplicationContext().getSharedPreferences(PrefsKeys.Notif.NOTIF_PREFS, Context.MODE_PRIVATE);
-        prefsDataStorage = context.getApplicationContext().getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE);
         prefsWatchWorn = context.getApplicationContext().getSharedPreferences(PrefsKeys.Wear.WEAR_PREFS, Context.MODE_PRIVATE);
 
         // check week
@@ -192,78 +198,28 @@ public class GoalNotificationManager {
 
         // Check if less than 45' has passed since last notification (early exit check)
         long lastNotificationTimestamp = prefsNotifications.getLong(PrefsKeys.Notif.LAST_NOTIF_TIME, 0L);
-        if (System.currentTimeMillis() - lastNotificationTimestamp < TimeUnit.MINUTES.toMillis(NOTIFICATION_FREQUENCY)) return;
+        if (StudyClock.now() - lastNotificationTimestamp < TimeUnit.MINUTES.toMillis(NOTIFICATION_FREQUENCY)) return;
 
         // Check if watch is not worn, then exit
-        boolean isWorn = prefsWatchWorn.getBoolean(PrefsKeys.Wear.WEAR_BOOL, true);
+        boolean isWorn = HotStateFile.get(context).isWorn();
         if (!isWorn) return;
 
         boolean goalReachedAlready = prefsNotifications.getBoolean(PrefsKeys.Notif.GOAL_REACHED_TODAY, false);
         Log.d(TAG,"goalReachedAlready: " + goalReachedAlready + "; notification number: " + notificationsShowed);
 
         // Get progress and dailyAdjustedGoal
-        int progress = prefsDataStorage.getInt(PrefsKeys.Data.LAST_KNOWN_PROGRESS, 0);
-        int dailyGoal = prefsDataStorage.getInt(PrefsKeys.Data.LAST_KNOWN_GOAL, 480);
-        LogSaver.saveLog(TAG,"w", "Reading from SharedPrefs, progress: " + progress + ", and goal: " + dailyGoal);
-
-        // Get Wear Start Time (not earlier than 8:00 AM) ---
-        WearSessionDao wearDao = DataStorageManager.getMainDatabase().wearSessionDao();
-        List<WearSessionEntity> todayWearSessions = wearDao.getSessionsForDate(today);
-        if (todayWearSessions == null || todayWearSessions.isEmpty()) {
-            LogSaver.saveLog(TAG, "w", "No wear session entries for today, skipping.");
-            return;
-        }
-        long eightAmMillis = getTodayAtHour(8);     // Get timestamp at 8am
-        long tenPmMillis = getTodayAtHour(22);      // Get timestamp at 10pm
-
-        boolean inStreak = false;     // have we found the trailing run of 1s (going backward)?
-        long slopeStartTime = -1L;
-
-        for (int i = todayWearSessions.size() - 1; i >= 0; i--) {
-            WearSessionEntity session = todayWearSessions.get(i);
-
-            long t = session.timestamp;
-            boolean w = session.isWorn;
+        int progress = HotStateFile.get(context).getInt(HotStateFile.IntField.LAST_KNOWN_PROGRESS);
+        int dailyGoal = HotStateFile.get(context).getInt(HotStateFile.IntField.LAST_KNOWN_GOAL);
+        LogSaver.saveLog(TAG,"w", "Reading from hot state, progress: " + progress + ", and goal: " + dailyGoal);
 
-            // Skip events after the window
-            if (t > tenPmMillis) continue;
-
-            // If we crossed before window start
-            if (t < eightAmMillis) {
-                if (inStreak) {
-                    Log.d(TAG,"We already found a run of 1s in the window — keep its start.");
-                    break;
-                }
-                Log.d(TAG,"No 1s seen in the window yet. Carry state to 8am: if worn before 8am, " +
-                        "clamp start to 8am; otherwise, nothing found.");
-                slopeStartTime = w ? eightAmMillis : -1L;
-                break;
-            }
-
-            if (!inStreak) {
-                if (w) {
-                    Log.d(TAG,"We just hit the last block of 1s (from the end)");
-                    inStreak = true;
-                    slopeStartTime = t; // start with this 1
-                } else {
-                    Log.d(TAG,"Still in trailing 0s, keep going back");
-                }
-            } else { // already inside a run of 1s
-                if (w) {
-                    Log.d(TAG,"Push the start earlier while we keep seeing 1s");
-                    slopeStartTime = t;
-                } else {
-                    Log.d(TAG,"Found the 0 before the run → the start is the earliest 1 we tracked");
-                    break;
-                }
-            }
-        }
+        // Get Wear Start Time (not earlier than 8:00 AM): start of the trailing worn run, from the wear accumulator
+        long tenPmMillis = StudyClock.todayAtHour(22);      // Get timestamp at 10pm
+        long slopeStartTime = DataStorageManager.wornRunStartToday();
         LogSaver.saveLog(TAG, "d", "slopeStartTime: " + slopeStartTime);
         if (slopeStartTime == -1L) return;
 
-        // Get cumulative value close to the slopeStartTime
-        DailyCumulativeEntity startEntry = DataStorageManager.getMainDatabase().dailyCumulativeDao().getClosestBefore(slopeStartTime, today);
-        float progressAtSlopeStart = (startEntry != null) ? startEntry.cumulative : 0f;
+        // Get cumulative value close to the slopeStartTime (last one written at or before it)
+        float progressAtSlopeStart = NotificationDecisionState.cumulativeAtOrBefore(slopeStartTime);
         LogSaver.saveLog(TAG, "d", "progressAtSlopeStart: " + progressAtSlopeStart);
 
         // Calculate slope rate (counts per worn minute)
@@ -271,15 +227,25 @@ public class GoalNotificationManager {
         if (denom <= 0) return;
 
         float expectedSlope = (dailyGoal - progressAtSlopeStart) / (float) denom;
-        float expectedCount = progressAtSlopeStart + expectedSlope * (System.currentTimeMillis() - slopeStartTime);
+        float expectedCount = progressAtSlopeStart + expectedSlope * (StudyClock.now() - slopeStartTime);
         LogSaver.saveLog(TAG,"w", "Expected count for this time is: " + expectedCount + ", and I am at: " + progress);
 
+        // Both 30' window inputs come from memory, fed by this tick's minute tasks that ran before this one
+        long now = StudyClock.now();
+        LogSaver.saveLog(TAG, "d", "Active seconds in the previous 30': " + NotificationDecisionState.activeSecondsPrev30Minutes(now));
+        decideAndNotify(context, progress, dailyGoal, goalReachedAlready, notificationsShowed, expectedSlope, expectedCount,
+                NotificationDecisionState.wasActiveDuringPrev30Minutes(now),
+                NotificationDecisionState.cumulative30MinutesBefore(now));
+    }
+
+    // Second half of notifyIfGoalReachedImpl: picks the level (1–4) from the 30' window state
+    private static void decideAndNotify(Context context, int progress, int dailyGoal, boolean goalReachedAlready,
+                                        int notificationsShowed, float expectedSlope, float expectedCount,
+                                        boolean previous30MinActive, int activity30MinAgo) {
         // Calculate if 30 minute window of time before was active or not, and only notify if inactive
-        boolean previous30MinActive = DataStorageManager.getActivityDuringPrev30Minutes();
         LogSaver.saveLog(TAG,"w", "previous30MinActive: " + previous30MinActive);
 
         // Calculate the activity at exactly 30 minutes before, interpolate and if on track, don’t notify
-        int activity30MinAgo = DataStorageManager.getCumulative30MinsBefore();
         LogSaver.saveLog(TAG,"d", "activity at timestamp exactly 30MinAgo: " + activity30MinAgo);
         if (activity30MinAgo == 0) return; // no data from 30' before
 
@@ -374,7 +340,7 @@ public class GoalNotificationManager {
                 notificationsShowed++;
                 prefsNotifications.edit()
                         .putInt(PrefsKeys.Notif.NOTIFS_SHOWED, notificationsShowed)
-                        .putLong(PrefsKeys.Notif.LAST_NOTIF_TIME, System.currentTimeMillis())
+                        .putLong(PrefsKeys.Notif.LAST_NOTIF_TIME, StudyClock.now())
                         .apply();
 
                 LogSaver.saveLog(TAG, "w", String.format("Notification level %d displayed with message: %s", level, message));
@@ -431,33 +397,30 @@ public class GoalNotificationManager {
     }
 
 
-    // --- Helper method ---
-    private static long getTodayAtHour(int hour) {
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.HOUR_OF_DAY, hour);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return cal.getTimeInMillis();
-    }
-
     public static void notificationIfWatchNotWorn(Context context) {
         final Context app = context.getApplicationContext();
-        notifExecutor.execute(() -> notificationIfWatchNotWornImpl(app));
+        notifExecutor.execute(() -> CpuAccounting.run(CpuAccounting.Subsystem.NOTIFICATIONS,
+                () -> notificationIfWatchNotWornImpl(app)));
     }
 
     public static void notificationIfWatchNotWornImpl(Context context) {
         LogSaver.saveLog(TAG, "w", "notificationIfWatchNotWorn() called");
 
         prefsWatchWorn = context.getApplicationContext().getSharedPreferences(PrefsKeys.Wear.WEAR_PREFS, Context.MODE_PRIVATE);
-        long now = System.currentTimeMillis();
+        long now = StudyClock.now();
 
         // Don't notify before 10am as users might be sleeping
-        long tenAmMillis = getTodayAtHour(10);
+        long tenAmMillis = StudyClock.todayAtHour(10);
         if (now < tenAmMillis) return;
 
-        // 1. Get last not-worn timestamp for today
-        long lastNotWornTimestamp = DataStorageManager.getLastNotWornTimestampToday();
+        // 1. Get last not-worn timestamp for today (async; continues on notifExecutor)
+        final ListenableFuture<Long> lastNotWornFuture =
+                DataStorageManager.getLastNotWornTimestampTodayAsync(DataStorageManager.QUERY_DEADLINE_MS);
+        lastNotWornFuture.addListener(() ->
+                continueNotWornCheck(context, now, Futures.getUnchecked(lastNotWornFuture)), notifExecutor);
+    }
+
+    private static void continueNotWornCheck(Context context, long now, long lastNotWornTimestamp) {
         if (lastNotWornTimestamp == -1L) return;
 
         // 2. Check if it's been worn again since (you could also use getLastWearSession() if needed)
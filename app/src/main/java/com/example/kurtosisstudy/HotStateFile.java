@@ -0,0 +1,224 @@
+package com.example.kurtosisstudy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * HotStateFile
+ * ------------
+ * Purpose:
+ *   - Small fixed-layout, memory-mapped file (files/hot_state.bin) for the values written every minute
+ *     or on every wear change: heartbeat, the service's periodic-check timestamps, last known
+ *     progress/goal and the wear state. A SharedPreferences apply() rewrites the whole XML file each time;
+ *     here a write is a few stores into a mapped page that the kernel writes back on its own.
+ *   - SharedPreferences stay for real settings and rarely changing data (week, user, study start, ...).
+ *
+ * What it does:
+ *   • Layout (big-endian, LAYOUT_SIZE bytes, never reordered — add fields at the end and bump VERSION):
+ *       0 magic | 4 version | 8 seq | 16 heartbeat | 24 lastWearTime | 32 lastHourlySave
+ *       40 lastSensorCheck | 48 lastBatteryCheck | 56 lastKnownProgress | 60 lastKnownGoal
+ *       64 wearState | 68 wearBool | 72 lastWriteAt
+ *   • Seqlock:
+ *       - Writers (serialized on the instance) make seq odd, store the field(s), then make it even again.
+ *       - Readers (this or another process mapping the same file, e.g. HeartbeatCheckWorker/RestartReceiver)
+ *         retry while seq is odd or changed during the read → never a half-written wear pair or timestamp.
+ *       - A seq left odd by a process killed mid-write is repaired on open.
+ *   • First open of a new/invalid file: seeds every field from the legacy SharedPreferences keys, so a
+ *     restart right after the update still sees the last heartbeat and wear state.
+ *   • sync(): msync (MappedByteBuffer.force) — called by the service every ~50 min and on destroy.
+ *     Without it, data survives a process kill (the page belongs to the kernel) and is only at risk on
+ *     a power loss, which every reader already treats as "stale heartbeat / unknown wear".
+ *
+ * Notes:
+ *   • If the file cannot be mapped, a heap buffer with the same layout is used (values then only live
+ *     as long as the process) and the failure is logged.
+ */
+
+public final class HotStateFile {
+
+    private static final String TAG = "HotStateFile_KurtosisStudy";
+
+    private static final String FILE_NAME = "hot_state.bin";
+    private static final int MAGIC = 0x4B534854;     // "KSHT"
+    private static final int VERSION = 1;
+    private static final int LAYOUT_SIZE = 80;
+    private static final int OFF_MAGIC = 0, OFF_VERSION = 4, OFF_SEQ = 8, OFF_LAST_WRITE = 72;
+
+    public enum LongField {
+        HEARTBEAT_TIME(16),
+        LAST_WEAR_TIME(24),
+        LAST_HOURLY_SAVE(32),
+        LAST_SENSOR_CHECK(40),
+        LAST_BATTERY_CHECK(48);
+
+        final int offset;
+        LongField(int offset) { this.offset = offset; }
+    }
+
+    public enum IntField {
+        LAST_KNOWN_PROGRESS(56),
+        LAST_KNOWN_GOAL(60),
+        WEAR_STATE(64),                // -1 UNKNOWN, 0 OFF, 1 ON
+        WEAR_BOOL(68);                 // 0 / 1
+
+        final int offset;
+        IntField(int offset) { this.offset = offset; }
+    }
+
+    private static volatile HotStateFile instance = null;
+
+    private final ByteBuffer buffer;     // MappedByteBuffer, or heap fallback
+    private final boolean mapped;
+
+    public static HotStateFile get(Context context) {
+        HotStateFile s = instance;
+        if (s == null) {
+            synchronized (HotStateFile.class) {
+                s = instance;
+                if (s == null) {
+                    s = new HotStateFile(context.getApplicationContext());
+                    instance = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    private HotStateFile(Context app) {
+        ByteBuffer b;
+        boolean isMapped;
+        File file = new File(app.getFilesDir(), FILE_NAME);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < LAYOUT_SIZE) raf.setLength(LAYOUT_SIZE);
+            b = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, LAYOUT_SIZE); // stays valid after close
+            isMapped = true;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot map " + file + ", using in-memory state: " + e.getMessage(), e);
+            b = ByteBuffer.allocate(LAYOUT_SIZE);
+            isMapped = false;
+        }
+        buffer = b;
+        mapped = isMapped;
+
+        if (buffer.getInt(OFF_MAGIC) != MAGIC || buffer.getInt(OFF_VERSION) != VERSION) {
+            seedFromPrefs(app);
+        } else if ((buffer.getLong(OFF_SEQ) & 1L) != 0) {
+            // Killed between beginWrite() and endWrite(): keep whatever the fields last received
+            buffer.putLong(OFF_SEQ, buffer.getLong(OFF_SEQ) + 1);
+            Log.w(TAG, "Hot state had an unfinished write; seq repaired");
+        }
+    }
+
+    // One-time migration from the SharedPreferences keys these values used to live in
+    private void seedFromPrefs(Context app) {
+        SharedPreferences hb = app.getSharedPreferences(PrefsKeys.HeartBeat.HEARTBEAT_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences fgs = app.getSharedPreferences(PrefsKeys.FGS.FGS_PREFS, Context.MODE_PRIVATE);
+        SharedPreferences data = app.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE);
+        SharedPreferences wear = app.getSharedPreferences(PrefsKeys.Wear.WEAR_PREFS, Context.MODE_PRIVATE);
+
+        synchronized (this) {
+            beginWrite();
+            buffer.putLong(LongField.HEARTBEAT_TIME.offset, hb.getLong(PrefsKeys.HeartBeat.HEARTBEAT_TIME, 0L));
+            buffer.putLong(LongField.LAST_WEAR_TIME.offset, fgs.getLong(PrefsKeys.FGS.LAST_WEAR_TIME, 0L));
+            buffer.putLong(LongField.LAST_HOURLY_SAVE.offset, fgs.getLong(PrefsKeys.FGS.LAST_HOURLY_SAVE, 0L));
+            buffer.putLong(LongField.LAST_SENSOR_CHECK.offset, fgs.getLong(PrefsKeys.FGS.LAST_SENSOR_CHECK, 0L));
+            buffer.putLong(LongField.LAST_BATTERY_CHECK.offset, fgs.getLong(PrefsKeys.FGS.LAST_BATTERY_CHECK, 0L));
+            buffer.putInt(IntField.LAST_KNOWN_PROGRESS.offset, data.getInt(PrefsKeys.Data.LAST_KNOWN_PROGRESS, 0));
+            buffer.putInt(IntField.LAST_KNOWN_GOAL.offset, data.getInt(PrefsKeys.Data.LAST_KNOWN_GOAL, 480));
+            buffer.putInt(IntField.WEAR_STATE.offset, wear.getInt(PrefsKeys.Wear.WEAR_STATE, -1));
+            buffer.putInt(IntField.WEAR_BOOL.offset, wear.getBoolean(PrefsKeys.Wear.WEAR_BOOL, false) ? 1 : 0);
+            buffer.putInt(OFF_VERSION, VERSION);
+            buffer.putInt(OFF_MAGIC, MAGIC);
+            endWrite();
+        }
+        Log.i(TAG, "Hot state seeded from SharedPreferences (mapped=" + mapped + ")");
+    }
+
+    // ================== Seqlock ==================
+
+    // Caller holds this
+    private void beginWrite() {
+        buffer.putLong(OFF_SEQ, buffer.getLong(OFF_SEQ) + 1);       // odd: write in progress
+    }
+
+    // Caller holds this
+    private void endWrite() {
+        buffer.putLong(OFF_LAST_WRITE, System.currentTimeMillis());
+        buffer.putLong(OFF_SEQ, buffer.getLong(OFF_SEQ) + 1);       // even: consistent
+    }
+
+    private interface Read<T> {
+        T read();
+    }
+
+    private <T> T readConsistent(Read<T> read) {
+        while (true) {
+            long before = buffer.getLong(OFF_SEQ);
+            if ((before & 1L) != 0) {
+                Thread.yield();
+                continue;
+            }
+            T value = read.read();
+            if (buffer.getLong(OFF_SEQ) == before) return value;
+        }
+    }
+
+    // ================== Fields ==================
+
+    public long getLong(LongField field) {
+        return readConsistent(() -> buffer.getLong(field.offset));
+    }
+
+    public int getInt(IntField field) {
+        return readConsistent(() -> buffer.getInt(field.offset));
+    }
+
+    public synchronized void putLong(LongField field, long value) {
+        beginWrite();
+        buffer.putLong(field.offset, value);
+        endWrite();
+    }
+
+    public synchronized void putInt(IntField field, int value) {
+        beginWrite();
+        buffer.putInt(field.offset, value);
+        endWrite();
+    }
+
+    // ---- Wear: worn flag + state always change together ----
+
+    public boolean isWorn() {
+        return getInt(IntField.WEAR_BOOL) != 0;
+    }
+
+    public int getWearState() {
+        return getInt(IntField.WEAR_STATE);
+    }
+
+    public synchronized void putWear(boolean worn, int state) {
+        beginWrite();
+        buffer.putInt(IntField.WEAR_BOOL.offset, worn ? 1 : 0);
+        buffer.putInt(IntField.WEAR_STATE.offset, state);
+        endWrite();
+    }
+
+    // ================== Durability ==================
+
+    // msync the page; only matters for a power loss (see header)
+    public void sync() {
+        if (!mapped) return;
+        try {
+            ((MappedByteBuffer) buffer).force();
+        } catch (Exception e) {
+            Log.w(TAG, "Hot state sync failed: " + e.getMessage());
+        }
+    }
+}
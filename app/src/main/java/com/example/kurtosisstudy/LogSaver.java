@@ -3,23 +3,98 @@ package com.example.kurtosisstudy;
 import android.util.Log;
 
 import com.example.kurtosisstudy.db.DailyDatabase;
-import com.example.kurtosisstudy.db.LogsDao;
 import com.example.kurtosisstudy.db.LogsEntity;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * LogSaver
+ * --------
+ * Purpose:
+ *   - Persisted debug log (logs_table of the daily DB) with a fixed memory cost, whatever the log volume
+ *     and however long the daily DB stays closed.
+ *
+ * What it does:
+ *   • saveLog(tag, level, message):
+ *       - Always logs to logcat.
+ *       - Rate limit per (tag, level): at most budgetFor(level) persisted lines per RATE_WINDOW_MS;
+ *         "w"/"e" are never limited. Lines over budget are counted and replaced by ONE summary line
+ *         ("suppressed N ...") written with the first line of that tag/level after the window ends.
+ *       - Accepted lines go into a ring buffer (RING_CAPACITY entries, MAX_BUFFERED_CHARS chars,
+ *         messages cut at MAX_MESSAGE_CHARS). When full, the OLDEST line is overwritten and counted;
+ *         the next batch carries a "dropped N" line so the gap is visible in the DB.
+ *   • Flush (ring → CoalescingWriter.logs(batch) → one insertAll in the daily transaction):
+ *       - Size trigger: FLUSH_AT buffered lines (drained right away on the LogSaverFlush thread).
+ *       - Time trigger: tickStage(...), the LOG_FLUSH stage of the service's minute tick → lines wait at most
+ *         one minute and the flush rides the tick's wakeup instead of a timer of its own.
+ *       - While the daily DB is closed (before init, user change) nothing is drained; lines wait in the ring
+ *         and the next tick retries.
+ *       - Around midnight CoalescingWriter routes each line to the file of its own day.
+ *       - flush() drains synchronously; DataStorageManager calls it before CoalescingWriter.flush(...).
+ *   • Metrics (getStatsSummary(), logged hourly by ForegroundSensorService):
+ *       - accepted, rate-limited, overwritten, persisted lines and batches.
+ *
+ * Notes:
+ *   • LogsEntity is keyed by a generated row id, so lines in the same millisecond are all kept.
+ *   • Internal problems go to plain Log: LogSaver must not log through itself.
+ */
 
 public class LogSaver {
-    private static final ExecutorService logExecutor = Executors.newSingleThreadExecutor();
-    private static final List<LogsEntity> buffer = new ArrayList<>();
-    private static boolean isFlushing = false;
 
     private static final String TAG = "LogSaver_KurtosisStudy";
 
+    static final int RING_CAPACITY = 1024;              // lines
+    static final int MAX_BUFFERED_CHARS = 256 * 1024;   // ≈ 512 KB of message text
+    static final int MAX_MESSAGE_CHARS = 4000;
+    static final int FLUSH_AT = 128;
+        static final long RATE_WINDOW_MS = 60_000;
+
+    // Persisted lines per (tag, level) per RATE_WINDOW_MS; -1 = unlimited
+    private static int budgetFor(String level) {
+        switch (level) {
+            case "d": return 60;
+            case "i": return 120;
+            default:  return -1;
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final LogsEntity[] ring = new LogsEntity[RING_CAPACITY];
+    private static int head = 0;                  // oldest
+    private static int size = 0;
+    private static int bufferedChars = 0;
+    private static long overwrittenSinceFlush = 0;
+    private static final Map<String, RateWindow> rates = new HashMap<>();
+
+    private static ExecutorService flusher = null;
+    private static boolean sizeFlushQueued = false;
+    private static boolean waitingForDb = false;   // daily DB closed: only the next tick drains
+
+    // ---- Metrics ----
+    private static final AtomicLong accepted = new AtomicLong();
+    private static final AtomicLong rateLimited = new AtomicLong();
+    private static final AtomicLong overwritten = new AtomicLong();
+    private static final AtomicLong persisted = new AtomicLong();
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong sizeFlushes = new AtomicLong();   // LogSaverFlush thread wakeups
+
+    private static final class RateWindow {
+        long start;
+        int count;
+        long suppressed;
+    }
+
+    // ================== Entry point ==================
+
     public static void saveLog(String tag, String level, String message) {
         if (level == null) level = "d";
+        if (message == null) message = "null";
         switch (level) {
             case "e": Log.e(tag, message); break;
             case "w": Log.w(tag, message); break;
@@ -27,43 +102,160 @@ public class LogSaver {
             default:  Log.d(tag, message); break;
         }
 
-        logExecutor.execute(() -> {
-            DailyDatabase db = DataStorageManager.getDailyDatabase();
-            LogsEntity entry = new LogsEntity(System.currentTimeMillis(), tag, message);
-
-            if (db == null || !db.isOpen()) {
-                // Buffer the log
-                synchronized (buffer) {
-                    buffer.add(entry);
-                }
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            if (!allow(tag, level, now)) {
+                rateLimited.incrementAndGet();
                 return;
             }
+            append(new LogsEntity(now, level, tag, truncate(message)));
+        }
+        accepted.incrementAndGet();
+    }
+
+    // ================== Rate limit ==================
+
+    // Caller holds lock
+    private static boolean allow(String tag, String level, long now) {
+        int budget = budgetFor(level);
+        if (budget < 0) return true;
 
-            try {
-                flushBufferedLogs(db);
-                db.logsDao().insert(entry);
-            } catch (Exception e) {
-                Log.e(TAG, "❌ Failed to save log: " + e.getMessage(), e);
+        String key = tag + '|' + level;
+        RateWindow w = rates.get(key);
+        if (w == null) {
+            w = new RateWindow();
+            w.start = now;
+            rates.put(key, w);
+        }
+        if (now - w.start >= RATE_WINDOW_MS) {
+            if (w.suppressed > 0) {
+                append(new LogsEntity(now, level, tag, "[LogSaver] suppressed " + w.suppressed + " '" + level
+                        + "' lines (limit " + budget + " per " + (RATE_WINDOW_MS / 1000) + " s)"));
             }
-        });
+            w.start = now;
+            w.count = 0;
+            w.suppressed = 0;
+        }
+        if (w.count >= budget) {
+            w.suppressed++;
+            return false;
+        }
+        w.count++;
+        return true;
     }
 
-    private static void flushBufferedLogs(DailyDatabase db) {
-        if (isFlushing) return;
-        isFlushing = true;
-        try {
-            synchronized (buffer) {
-                if (!buffer.isEmpty()) {
-                    LogsDao dao = db.logsDao();
-                    for (LogsEntity entry : buffer) {
-                        dao.insert(entry);
-                    }
-                    buffer.clear();
-                    Log.d(TAG, "✅ Flushed buffered logs.");
-                }
+    // ================== Ring buffer ==================
+
+    private static String truncate(String message) {
+        return (message.length() <= MAX_MESSAGE_CHARS) ? message
+                : message.substring(0, MAX_MESSAGE_CHARS) + "…[" + (message.length() - MAX_MESSAGE_CHARS) + " chars cut]";
+    }
+
+    private static int charsOf(LogsEntity e) {
+        return e.log.length() + (e.tag != null ? e.tag.length() : 0);
+    }
+
+    // Caller holds lock
+    private static void append(LogsEntity entry) {
+        while (size > 0 && (size == RING_CAPACITY || bufferedChars + charsOf(entry) > MAX_BUFFERED_CHARS)) {
+            LogsEntity oldest = ring[head];
+            ring[head] = null;
+            head = (head + 1) % RING_CAPACITY;
+            size--;
+            bufferedChars -= charsOf(oldest);
+            overwrittenSinceFlush++;
+            overwritten.incrementAndGet();
+        }
+        ring[(head + size) % RING_CAPACITY] = entry;
+        size++;
+        bufferedChars += charsOf(entry);
+
+        if (size >= FLUSH_AT && !waitingForDb && !sizeFlushQueued) {
+            sizeFlushQueued = true;
+            sizeFlushes.incrementAndGet();
+            ensureFlusher().execute(LogSaver::drain);
+        }
+    }
+
+    // Caller holds lock
+    private static ExecutorService ensureFlusher() {
+        if (flusher == null || flusher.isShutdown()) {
+            flusher = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "LogSaverFlush");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return flusher;
+    }
+
+    // ================== Flush ==================
+
+    // Hands everything buffered to CoalescingWriter now (only if the daily DB is open)
+    public static void flush() {
+        drain();
+    }
+
+    // MinuteTickScheduler stage (Stage.LOG_FLUSH): the time trigger
+    public static void tickStage(long alignedMinute) {
+        drain();
+    }
+
+    private static void drain() {
+        CpuAccounting.run(CpuAccounting.Subsystem.LOGGING, LogSaver::drainNow);
+    }
+
+    private static void drainNow() {
+        List<LogsEntity> batch;
+        synchronized (lock) {
+            sizeFlushQueued = false;
+            if (size == 0) return;
+
+            DailyDatabase daily = DataStorageManager.peekDailyDatabase();
+            if (daily == null || !daily.isOpen()) {
+                // Keep the lines (bounded by the ring); the next tick retries
+                waitingForDb = true;
+                return;
+            }
+
+            waitingForDb = false;
+            batch = new ArrayList<>(size + 1);
+            if (overwrittenSinceFlush > 0) {
+                batch.add(new LogsEntity(System.currentTimeMillis(), "w", TAG,
+                        "[LogSaver] dropped " + overwrittenSinceFlush + " oldest lines (buffer full)"));
+                overwrittenSinceFlush = 0;
+            }
+            for (int i = 0; i < size; i++) {
+                int idx = (head + i) % RING_CAPACITY;
+                batch.add(ring[idx]);
+                ring[idx] = null;
             }
-        } finally {
-            isFlushing = false;
+            head = 0;
+            size = 0;
+            bufferedChars = 0;
+        }
+        try {
+            CoalescingWriter.logs(batch);
+            persisted.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (Exception e) {
+            Log.e(TAG, "Log batch hand-off failed (" + batch.size() + " lines): " + e.getMessage(), e);
+        }
+    }
+
+    // ================== Metrics ==================
+
+    public static String getStatsSummary() {
+        int buffered;
+        synchronized (lock) {
+            buffered = size;
         }
+        return "logs accepted=" + accepted.get()
+                + " rateLimited=" + rateLimited.get()
+                + " overwritten=" + overwritten.get()
+                + " persisted=" + persisted.get()
+                + " batches=" + batches.get()
+                + " sizeFlushes=" + sizeFlushes.get()
+                + " buffered=" + buffered;
     }
 }
@@ -32,16 +32,6 @@ import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 
 import com.example.kurtosisstudy.cloud.CloudStorageActivity;
-import com.example.kurtosisstudy.complications.MyComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyProgressComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyServiceAliveCheckComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyWearTimeComplicationProviderService;
-import com.example.kurtosisstudy.db.AdjustedDailyGoalDao;
-import com.example.kurtosisstudy.db.AdjustedDailyGoalEntity;
-import com.example.kurtosisstudy.db.DailyCumulativeDao;
-import com.example.kurtosisstudy.db.DailyCumulativeEntity;
-import com.example.kurtosisstudy.db.DailyDatabase;
-import com.example.kurtosisstudy.db.MainResultsDatabase;
 import com.example.kurtosisstudy.receivers.HeartbeatCheckWorker;
 /*
  * MainActivity — Core Summary (Ultra-Short)
@@ -57,9 +47,9 @@ import com.example.kurtosisstudy.receivers.HeartbeatCheckWorker;
  *      - Uses heartbeat timestamp to check if service is alive (FRESH_MS window).
  *      - Updates background color + text depending on running state.
 
- *   2) Live UI Updates (Room LiveData)
- *      - Observes DailyCumulative → updates progress ring + “active time”.
- *      - Observes AdjustedDailyGoal → updates ring max.
+ *   2) Live UI Updates (TodaySnapshot)
+ *      - Listens to the published snapshot (onResume → onPause) → progress ring, “active time”
+ *        and ring max (goal) are updated together from one consistent snapshot.
  *      - Week logic:
  *          week 1 or ≥6 ⇒ hide ring (just-wear phase)
  *          weeks 2–5 → show active-minutes progress.
@@ -71,13 +61,14 @@ import com.example.kurtosisstudy.receivers.HeartbeatCheckWorker;
  *      - Requests BODY_SENSORS + POST_NOTIFICATIONS.
  *      - Asks user to ignore battery optimizations (keeps FGS alive).
  *      - Schedules HeartbeatCheckWorker (periodic restart if FGS dies).
+ *      - Schedules RawDataCompactionWorker (daily downsampling of old uploaded raw data).
 
  *   5) Admin & Settings
  *      - Simple password gate → open SettingsActivity & handedness changes.
  *      - Hard-coded user setup (temporary for study).
 
  *   6) Extra
- *      - Manual DB reads on resume ensure instant UI correctness.
+ *      - On resume, renders the current snapshot (DB read only on a cold start).
  *      - Hidden debug buttons for start/stop/data export.
  *
  * Essence:
@@ -97,6 +88,9 @@ public class MainActivity extends AppCompatActivity {
     // Variable to check whether the foreground service is running
     private boolean isServiceRunning = false;
 
+    // Called on the publisher's thread whenever progress / goal / wear / heartbeat is published
+    private final TodaySnapshot.Listener snapshotListener = snapshot -> runOnUiThread(() -> renderSnapshot(snapshot));
+
     // Check which week we're in in case its just-wear week (no notifications) 1,6,7,8,9:
     private boolean isWeek16789 = true;
 
@@ -192,66 +186,8 @@ public class MainActivity extends AppCompatActivity {
         isServiceRunning = isServiceLikelyRunning(this);
         updateUIBackground(isServiceRunning);
 
-        MainResultsDatabase mainResultsDb = DataStorageManager.getMainDatabase();
-        DailyDatabase db = DataStorageManager.getDailyDatabase();
-
         // At startup, push an immediate complication refresh to the watchface
-        MyComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-        MyWearTimeComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-        MyProgressComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-        MyServiceAliveCheckComplicationProviderService.requestComplicationUpdate(getApplicationContext());
-
-        // Set up LiveData observer for UI updates to also see the progress inside the main activity:
-        // Initializes the database and attaches a LiveData observer to automatically update
-        // the progress bar and active minutes text when new cumulative results are saved.
-        // This ensures the UI stays in sync with the latest sensor data in real time.
-        mainResultsDb.dailyCumulativeDao()
-                .getLastEntryForDayLive(DataStorageManager.getDayForDB())
-                .observe(this, entry -> {
-                    int cumulative = (entry != null) ? entry.cumulative : 0;
-
-                    // Log the retrieved result
-                    if (entry != null) {
-                        LogSaver.saveLog(TAG,"d", "LiveData observer: Found cumulative for day " + entry.day + " with average = " + cumulative);
-                    } else {
-                        LogSaver.saveLog(TAG,"d", "LiveData observer: No entry found for today — defaulting to average = 0");
-                    }
-
-                    // Update UI
-                    progressBar.setProgress(cumulative);
-
-                    if (isWeek16789){
-                        activeTimeText.setText("Watch is recording data");
-                    }else{
-                        activeTimeText.setText(formatActiveTime(cumulative) + " active");
-                    }
-
-                    // TODO - 2nd STUDY (uncomment next)
-                    //activeTimeText.setText(formatActiveTime(cumulative) + " active");
-
-                });
-
-        // Get most recent goal
-        db.adjustedDailyGoalDao()
-                .getLastGoalLive()
-                .observe(this, entry -> {
-
-                        // Hide during week 1 (baseline), show otherwise
-                        progressBar.setVisibility(isWeek16789 ? View.GONE : View.VISIBLE);
-
-                        // Log the retrieved result
-                        int adjustedDailyGoal = 480;
-                        if (entry != null) {
-                            adjustedDailyGoal = isWeek16789 ? 480 : entry.adjustedDailyGoal;
-                            LogSaver.saveLog(TAG,"d", "LiveData observer: Found entry for week " + entry.week + " with goal = " + adjustedDailyGoal);
-                        } else {
-                            LogSaver.saveLog(TAG,"d", "LiveData observer: No entry found for today — defaulting to 480");
-                        }
-
-                        // Update goal UI max range
-                        progressBar.setMax(adjustedDailyGoal);
-                    });
-
+        ComplicationUpdateBroker.requestAll(getApplicationContext());
 
         // A periodic worker calls the HeartBeatCheckWorker every 15' to try and restart the Service if not running
         // This schedules once and survives reboot; you do not need to re-enqueue later.
@@ -259,6 +195,9 @@ public class MainActivity extends AppCompatActivity {
 
         // Also run once right now so you can see it immediately:
         HeartbeatCheckWorker.enqueueNow(getApplicationContext());
+
+        // Daily (while charging) downsampling of old, already-uploaded raw data
+        RawDataCompactionWorker.enqueuePeriodic(getApplicationContext());
     }
 
 
@@ -385,54 +324,52 @@ public class MainActivity extends AppCompatActivity {
         isWeek16789 = (weekId == 1 || weekId >= 6);
         LogSaver.saveLog(TAG,"d", "Week ID is: " + weekId + ", so progress visible: " + !isWeek16789);
 
-        // Force-refresh cumulative value from DB
-        Executors.newSingleThreadExecutor().execute(() -> {
-            DailyCumulativeDao dao = DataStorageManager.getMainDatabase().dailyCumulativeDao();
-            DailyCumulativeEntity entry = dao.getLastEntryForDay(DataStorageManager.getDayForDB());
+        // Progress + goal come from the published TodaySnapshot (updated live through the listener);
+        // the DB is only read if nothing was published yet in this process (cold start)
+        TodaySnapshot.addListener(snapshotListener);
+        TodaySnapshot snapshot = TodaySnapshot.peek();
+        if (snapshot != null) {
+            renderSnapshot(snapshot);
+        } else {
+            Executors.newSingleThreadExecutor().execute(() -> {
+                TodaySnapshot loaded = TodaySnapshot.get(getApplicationContext());
+                runOnUiThread(() -> renderSnapshot(loaded));
+            });
+        }
+    }
 
-            int cumulative = (entry != null) ? entry.cumulative : 0;
-            runOnUiThread(() -> {
-                progressBar.setProgress(cumulative);
+    // Updates the progress ring, its max (goal) and the active time text from one consistent snapshot
+    private void renderSnapshot(TodaySnapshot snapshot) {
+        int cumulative = Math.max(snapshot.progressMinutes, 0);
+        progressBar.setProgress(cumulative);
 
-                if (isWeek16789){
-                    activeTimeText.setText("Watch is recording data");
-                }else{
-                    activeTimeText.setText(formatActiveTime(cumulative) + " active");
-                }
-                // TODO - 2nd STUDY (uncomment next)
-                //activeTimeText.setText(formatActiveTime(cumulative) + " active");
-                LogSaver.saveLog(TAG,"d", "MainActivity onResume() reopened,  manual DB read — UI updated with cumulative: " + cumulative);
-            });
-        });
+        if (isWeek16789){
+            activeTimeText.setText("Watch is recording data");
+        }else{
+            activeTimeText.setText(formatActiveTime(cumulative) + " active");
+        }
+        // TODO - 2nd STUDY (uncomment next)
+        //activeTimeText.setText(formatActiveTime(cumulative) + " active");
 
-        // Force-refresh adjusted goal value from DB
-        Executors.newSingleThreadExecutor().execute(() -> {
-            AdjustedDailyGoalDao dao = DataStorageManager.getDailyDatabase().adjustedDailyGoalDao();
-            AdjustedDailyGoalEntity entry = dao.getLastGoal();
-
-            runOnUiThread(() -> {
-                progressBar.setVisibility(isWeek16789 ? View.GONE : View.VISIBLE);
-
-                // Log the retrieved result
-                int adjustedDailyGoal = 480;
-                if (entry != null) {
-                    adjustedDailyGoal = isWeek16789 ? 480 : entry.adjustedDailyGoal;
-                    LogSaver.saveLog(TAG,"d", "LiveData observer: Found entry for week " + entry.week + " with goal = " + adjustedDailyGoal);
-                } else {
-                    LogSaver.saveLog(TAG,"d", "LiveData observer: No entry found for today — defaulting to 480");
-                }
-                // Update goal UI max range
-                progressBar.setMax(adjustedDailyGoal);
-            });
-        });
+        // Hide during week 1 (baseline), show otherwise
+        progressBar.setVisibility(isWeek16789 ? View.GONE : View.VISIBLE);
+
+        int adjustedDailyGoal = 480;
+        if (snapshot.goalMinutes > 0) {
+            adjustedDailyGoal = isWeek16789 ? 480 : snapshot.goalMinutes;
+        }
+        // Update goal UI max range
+        progressBar.setMax(adjustedDailyGoal);
+        LogSaver.saveLog(TAG,"d", "UI updated from " + snapshot);
     }
 
     // Service is considered to be running is the heartbeat is fresh.
     // Foreground Service sends a heartbeat while working, if it breaks the heartbeat is not sent
     private static boolean isServiceLikelyRunning(Context ctx) {
-        long last = ctx.getSharedPreferences(PrefsKeys.HeartBeat.HEARTBEAT_PREFS, Context.MODE_PRIVATE)
-                .getLong(PrefsKeys.HeartBeat.HEARTBEAT_TIME, 0L);
-        return last > 0 && (System.currentTimeMillis() - last) < FRESH_MS;
+        TodaySnapshot snapshot = TodaySnapshot.peek();
+        if (snapshot != null) return snapshot.isServiceAlive(FRESH_MS);
+        long last = HotStateFile.get(ctx).getLong(HotStateFile.LongField.HEARTBEAT_TIME);
+        return last > 0 && (StudyClock.now() - last) < FRESH_MS;
     }
 
     // A helper method to format the time string
@@ -542,6 +479,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
+        TodaySnapshot.removeListener(snapshotListener);
         LogSaver.saveLog(TAG,"d", "onPause() called");
     }
 
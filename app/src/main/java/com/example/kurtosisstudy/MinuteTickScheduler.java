@@ -0,0 +1,214 @@
+package com.example.kurtosisstudy;
+
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * MinuteTickScheduler
+ * -------------------
+ * Purpose:
+ *   - ONE thread that wakes up once per wall-clock minute boundary and runs the service's periodic
+ *     work as ordered stages, instead of one executor per job each waking the CPU on its own phase
+ *     (watchdog, 60 s periodic check, aligned data storage, notifications at +35 s, main-looper heartbeat).
+ *
+ * What it does:
+ *   • Stages (run in declaration order on every tick):
+ *       WEAR_HOURS_CHECK → AGGREGATION → GOAL → NOTIFICATION → HEARTBEAT → LOG_FLUSH → WAL_CHECKPOINT
+ *       - Each stage is registered with a time budget; a stage that runs longer is logged and counted
+ *         (it is not interrupted — the next stages simply start later).
+ *       - A failing stage is logged and the following stages still run.
+ *       - Stages registered with runAtStart also run once right away in start() (wear check + heartbeat),
+ *         so the service does not wait up to a minute before starting sensors or writing a heartbeat.
+ *       - Stages registered with everyTicks = N run only on minutes where epochMinute % N == 0
+ *         (e.g. the WAL checkpoint every 5'), riding an existing wakeup instead of adding their own.
+ *   • Timing:
+ *       - Every tick is scheduled one-shot to the next minute boundary + TICK_OFFSET_MS, recomputed
+ *         from StudyClock.now() each time → no drift, and a late tick never causes a burst of catch-up ticks.
+ *         Only the delay itself elapses on the executor's real clock; boundaries and lateness are study time.
+ *       - Stages receive the aligned minute of the tick (not "now"), so windows stay minute-exact.
+ *   • Supervision:
+ *       - The tick reschedules itself in a finally block; ensureRunning() recreates the executor if it died.
+ *   • Metrics (getMetricsSummary()):
+ *       - Ticks (= wakeups), mean / max lateness vs the minute boundary,
+ *         per stage: runs, failures, budget overruns, last / max duration.
+ */
+
+public class MinuteTickScheduler {
+
+    private static final String TAG = "MinuteTick_KurtosisStudy";
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long TICK_OFFSET_MS = 500;    // keep clear of hh:mm:59.999 rounding
+
+    // Declaration order = execution order
+    public enum Stage {
+        WEAR_HOURS_CHECK,
+        AGGREGATION,
+        GOAL,
+        NOTIFICATION,
+        HEARTBEAT,
+        LOG_FLUSH,
+        WAL_CHECKPOINT
+    }
+
+    // alignedMinute = start of the minute this tick belongs to (ms)
+    public interface StageTask {
+        void run(long alignedMinute) throws Exception;
+    }
+
+    private final String name;
+    private final Map<Stage, Registered> stages = new EnumMap<>(Stage.class);
+    private ScheduledExecutorService executor = null;
+    private ScheduledFuture<?> nextTick = null;
+    private boolean running = false;
+
+    // ---- Metrics (tick thread writes, getMetricsSummary() reads) ----
+    private volatile long ticks = 0;
+    private volatile long totalLatenessMs = 0;
+    private volatile long maxLatenessMs = 0;
+
+    public MinuteTickScheduler(String name) {
+        this.name = name;
+    }
+
+    // ================== Registration ==================
+
+    public synchronized void register(Stage stage, long budgetMs, boolean runAtStart, StageTask task) {
+        register(stage, budgetMs, runAtStart, 1, task);
+    }
+
+    // Runs the stage only on every everyTicks-th minute (epochMinute % everyTicks == 0)
+    public synchronized void register(Stage stage, long budgetMs, boolean runAtStart, int everyTicks, StageTask task) {
+        stages.put(stage, new Registered(budgetMs, runAtStart, Math.max(1, everyTicks), task));
+    }
+
+    // ================== Lifecycle ==================
+
+    public synchronized void start() {
+        ensureRunning();
+    }
+
+    // Starts the tick thread if it is not running (or died); safe to call on every onStartCommand()
+    public synchronized void ensureRunning() {
+        if (running && executor != null && !executor.isShutdown()) return;
+        if (running) Log.w(TAG, name + ": tick executor was shut down — recreating");
+        executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, name));
+        running = true;
+        executor.execute(() -> runStages(alignToMinute(StudyClock.now()), true));
+        scheduleNext();
+        LogSaver.saveLog(TAG, "d", name + " started, first tick in " + delayToNextTick(StudyClock.now()) + " ms");
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (nextTick != null) nextTick.cancel(false);
+        nextTick = null;
+        if (executor != null) executor.shutdownNow();
+        executor = null;
+    }
+
+    // ================== Tick ==================
+
+    private synchronized void scheduleNext() {
+        if (!running || executor == null || executor.isShutdown()) return;
+        long now = StudyClock.now();
+        final long boundary = now - (now % MINUTE_MS) + MINUTE_MS;
+        nextTick = executor.schedule(() -> tick(boundary), delayToNextTick(now), TimeUnit.MILLISECONDS);
+    }
+
+    private void tick(long boundary) {
+        try {
+            long lateness = Math.max(0L, StudyClock.now() - boundary - TICK_OFFSET_MS);
+            ticks++;
+            totalLatenessMs += lateness;
+            maxLatenessMs = Math.max(maxLatenessMs, lateness);
+            runStages(boundary, false);
+        } catch (Throwable t) {
+            LogSaver.saveLog(TAG, "e", name + ": tick failed " + Log.getStackTraceString(t));
+        } finally {
+            scheduleNext();
+        }
+    }
+
+    private void runStages(long alignedMinute, boolean startOnly) {
+        for (Stage stage : Stage.values()) {
+            Registered r;
+            synchronized (this) {
+                r = stages.get(stage);
+            }
+            if (r == null || (startOnly && !r.runAtStart)) continue;
+            if (!startOnly && r.everyTicks > 1 && (alignedMinute / MINUTE_MS) % r.everyTicks != 0) continue;
+
+            long t0 = System.nanoTime();
+            long cpuStart = CpuAccounting.start();
+            try {
+                r.task.run(alignedMinute);
+            } catch (Throwable t) {
+                r.failures++;
+                LogSaver.saveLog(TAG, "e", name + ": stage " + stage + " failed " + Log.getStackTraceString(t));
+            }
+            CpuAccounting.stop(CpuAccounting.Subsystem.SCHEDULER, cpuStart);
+            long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+            r.runs++;
+            r.lastMs = tookMs;
+            r.maxMs = Math.max(r.maxMs, tookMs);
+            if (tookMs > r.budgetMs) {
+                r.overruns++;
+                LogSaver.saveLog(TAG, "w", name + ": stage " + stage + " took " + tookMs + " ms (budget " + r.budgetMs + " ms)");
+            }
+        }
+    }
+
+    private static long delayToNextTick(long now) {
+        return MINUTE_MS - (now % MINUTE_MS) + TICK_OFFSET_MS;
+    }
+
+    private static long alignToMinute(long timeMillis) {
+        return StudyClock.alignToMinute(timeMillis);
+    }
+
+    // ================== Metrics ==================
+
+    public String getMetricsSummary() {
+        long n = ticks;
+        StringBuilder sb = new StringBuilder(name)
+                .append(" ticks=").append(n)
+                .append(" meanLateMs=").append(n == 0 ? 0 : totalLatenessMs / n)
+                .append(" maxLateMs=").append(maxLatenessMs);
+        synchronized (this) {
+            for (Map.Entry<Stage, Registered> e : stages.entrySet()) {
+                Registered r = e.getValue();
+                sb.append('\n').append(e.getKey())
+                        .append(" runs=").append(r.runs)
+                        .append(" failures=").append(r.failures)
+                        .append(" overruns=").append(r.overruns)
+                        .append(" every=").append(r.everyTicks)
+                        .append(" budgetMs=").append(r.budgetMs)
+                        .append(" lastMs=").append(r.lastMs)
+                        .append(" maxMs=").append(r.maxMs);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static final class Registered {
+        final long budgetMs;
+        final boolean runAtStart;
+        final int everyTicks;
+        final StageTask task;
+        volatile long runs, failures, overruns, lastMs, maxMs;
+
+        Registered(long budgetMs, boolean runAtStart, int everyTicks, StageTask task) {
+            this.budgetMs = budgetMs;
+            this.runAtStart = runAtStart;
+            this.everyTicks = everyTicks;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.kurtosisstudy;
+
+import java.util.Arrays;
+
+/*
+ * NotificationDecisionState
+ * -------------------------
+ * Purpose:
+ *   - The cumulative inputs of the goal notification levels (1–4), kept in memory as the minute pipeline
+ *     produces them, so GoalNotificationManager decides without DB round trips on the storage worker:
+ *       · wasActiveDuringPrev30Minutes(now) — Σ minute averages of the last 30 measured minutes ≥ 6'
+ *       · cumulative30MinutesBefore(now)    — daily cumulative (minutes) as written 30' before now
+ *       · cumulativeAtOrBefore(ts)          — daily cumulative at the expected slope's start
+ *
+ * What it does:
+ *   • Minute averages: ring of RING_MINUTES slots (slot = epochMinute mod RING_MINUTES, tagged with the
+ *     minute). onMinuteAverage(...) (computeAndSaveMinuteAverage) adds the minute to the running window
+ *     sum, or replaces its earlier value when a minute is recomputed; a minute a full ring older than
+ *     the one in its slot is dropped (never evicts a newer minute). The window start moves with the
+ *     clock on each read, subtracting the minutes that left it → amortized O(1).
+ *   • Cumulative: ring of the cumulative per write minute, filled forward between writes.
+ *     onCumulative(...) (computeAndSaveDailyCumulative) stores it; the 30'-lag read is one slot.
+ *   • Cumulative history: every write of the day (timestamp, value), appended in order (≤ one per minute);
+ *     cumulativeAtOrBefore(ts) is a binary search over it.
+ *   • Same windows as the DB queries it replaces: epochMinute ≥ now - 30' of today's minute averages,
+ *     the last cumulative written at or before now - 30', and getClosestBefore(ts, today).
+ *   • Process start: DataStorageManager.seedNotificationState() replays today's rows once (storage worker).
+ *
+ * Notes:
+ *   • Today only: a new day starts empty (the 30' window never reached into yesterday's file; the lag
+ *     cumulative of yesterday is not today's progress) and rows of an older day are ignored.
+ *   • Thread-safe: fed and read on the storage worker, also readable elsewhere (synchronized, a few array
+ *     reads per call).
+ */
+
+public final class NotificationDecisionState {
+
+    private static final String TAG = "NotificationDecisionState_KurtosisStudy";
+
+    static final int WINDOW_MINUTES = 30;
+    static final int ACTIVE_SECONDS = 360;           // ≥ 6 active minutes in the window (20 %)
+    static final int RING_MINUTES = 64;              // > WINDOW_MINUTES + late / recomputed minutes
+
+    private static String day = null;                // day the rings belong to; null = nothing yet
+
+    // ---- Minute averages (epoch minute → active seconds) ----
+    private static final long[] avgMinute = new long[RING_MINUTES];
+    private static final int[] avgSeconds = new int[RING_MINUTES];
+    private static long windowFrom = Long.MIN_VALUE; // first minute counted in windowSum
+    private static long windowSum = 0;
+
+    // ---- Cumulative (write minute → cumulative minutes) ----
+    private static final long[] cumMinute = new long[RING_MINUTES];
+    private static final int[] cumValue = new int[RING_MINUTES];
+    private static long cumFirst = -1, cumNewest = -1;
+    private static int cumLatest = 0;
+
+    // ---- Cumulative history (today's writes, by timestamp) ----
+    private static long[] histTimestamp = new long[256];
+    private static int[] histValue = new int[256];
+    private static int histSize = 0;
+
+    // ---- Metrics ----
+    private static long minutesFed = 0, minutesReplaced = 0, minutesDropped = 0, cumulativesFed = 0, reads = 0, resets = 0;
+
+    private NotificationDecisionState() {} // no instances
+
+    // ================== Feed (storage worker) ==================
+
+    public static synchronized void onMinuteAverage(String dayKey, long epochMinute, int activeSeconds) {
+        if (!enterDay(dayKey)) return;
+        int slot = slotOf(epochMinute);
+        if (avgMinute[slot] > epochMinute) {                     // a ring older than the slot's minute:
+            minutesDropped++;                                    // long out of the window, keep the newer one
+            return;
+        }
+        if (avgMinute[slot] == epochMinute) {
+            if (epochMinute >= windowFrom) windowSum += activeSeconds - avgSeconds[slot];
+            minutesReplaced++;
+        } else {
+            if (avgMinute[slot] >= 0 && avgMinute[slot] >= windowFrom) windowSum -= avgSeconds[slot];
+            if (epochMinute >= windowFrom) windowSum += activeSeconds;
+            avgMinute[slot] = epochMinute;
+        }
+        avgSeconds[slot] = activeSeconds;
+        minutesFed++;
+    }
+
+    public static synchronized void onCumulative(String dayKey, long timestamp, int cumulativeMinutes) {
+        if (!enterDay(dayKey)) return;
+        long m = StudyClock.epochMinute(timestamp);
+        if (cumNewest >= 0 && m < cumNewest) return;            // write times only move forward
+        if (cumNewest >= 0) {
+            // Minutes without a write keep the previous value (at most one ring of them matters)
+            for (long f = Math.max(cumNewest + 1, m - RING_MINUTES + 1); f < m; f++) {
+                cumMinute[slotOf(f)] = f;
+                cumValue[slotOf(f)] = cumLatest;
+            }
+        } else {
+            cumFirst = m;
+        }
+        cumMinute[slotOf(m)] = m;
+        cumValue[slotOf(m)] = cumulativeMinutes;
+        cumNewest = m;
+        cumLatest = cumulativeMinutes;
+        cumulativesFed++;
+
+        if (histSize > 0 && timestamp < histTimestamp[histSize - 1]) return;
+        if (histSize > 0 && timestamp == histTimestamp[histSize - 1]) {
+            histValue[histSize - 1] = cumulativeMinutes;        // same row written again
+            return;
+        }
+        if (histSize == histTimestamp.length) {
+            histTimestamp = Arrays.copyOf(histTimestamp, histSize * 2);
+            histValue = Arrays.copyOf(histValue, histSize * 2);
+        }
+        histTimestamp[histSize] = timestamp;
+        histValue[histSize] = cumulativeMinutes;
+        histSize++;
+    }
+
+    // ================== Reads (any thread) ==================
+
+    public static synchronized boolean wasActiveDuringPrev30Minutes(long now) {
+        reads++;
+        if (!StudyClock.dayKeyOf(now).equals(day)) return false;
+        advanceWindow(StudyClock.epochMinute(now) - WINDOW_MINUTES);
+        return windowSum >= ACTIVE_SECONDS;
+    }
+
+    // Active seconds of the last 30 measured minutes (for logs)
+    public static synchronized long activeSecondsPrev30Minutes(long now) {
+        if (!StudyClock.dayKeyOf(now).equals(day)) return 0L;
+        advanceWindow(StudyClock.epochMinute(now) - WINDOW_MINUTES);
+        return windowSum;
+    }
+
+    // 0 if nothing was written today at or before now - 30'
+    public static synchronized int cumulative30MinutesBefore(long now) {
+        reads++;
+        if (!StudyClock.dayKeyOf(now).equals(day) || cumNewest < 0) return 0;
+        long target = StudyClock.epochMinute(now) - WINDOW_MINUTES;
+        if (target < cumFirst) return 0;
+        if (target >= cumNewest) return cumLatest;
+        int slot = slotOf(target);
+        return (cumMinute[slot] == target) ? cumValue[slot] : 0;
+    }
+
+    // Last cumulative written today at or before `timestamp`; 0 if none (DailyCumulativeDao.getClosestBefore)
+    public static synchronized int cumulativeAtOrBefore(long timestamp) {
+        reads++;
+        if (!StudyClock.dayKeyOf(timestamp).equals(day)) return 0;
+        int lo = 0, hi = histSize - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (histTimestamp[mid] <= timestamp) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return (found >= 0) ? histValue[found] : 0;
+    }
+
+    // User switch: forget everything (the next feed or seed starts the day again)
+    public static synchronized void clear() {
+        day = null;
+    }
+
+    // ================== Internals ==================
+
+    // False for a row of an older day; a newer day empties both rings
+    private static boolean enterDay(String dayKey) {
+        if (dayKey == null) return false;
+        if (day != null) {
+            int cmp = dayKey.compareTo(day);
+            if (cmp < 0) return false;
+            if (cmp == 0) return true;
+        }
+        day = dayKey;
+        Arrays.fill(avgMinute, -1L);
+        Arrays.fill(cumMinute, -1L);
+        windowFrom = Long.MIN_VALUE;
+        windowSum = 0;
+        cumFirst = -1;
+        cumNewest = -1;
+        cumLatest = 0;
+        histSize = 0;
+        resets++;
+        LogSaver.saveLog(TAG, "d", "Decision state started for " + dayKey);
+        return true;
+    }
+
+    // Drops the minutes before `from` from the window sum
+    private static void advanceWindow(long from) {
+        if (from <= windowFrom) return;
+        if (windowFrom == Long.MIN_VALUE || from - windowFrom >= RING_MINUTES) {
+            windowSum = 0;                                       // long jump: re-add what is still inside
+            for (int i = 0; i < RING_MINUTES; i++) {
+                if (avgMinute[i] >= from) windowSum += avgSeconds[i];
+            }
+        } else {
+            for (long m = windowFrom; m < from; m++) {
+                int slot = slotOf(m);
+                if (avgMinute[slot] == m) windowSum -= avgSeconds[slot];
+            }
+        }
+        windowFrom = from;
+    }
+
+    private static int slotOf(long epochMinute) {
+        return (int) Math.floorMod(epochMinute, (long) RING_MINUTES);
+    }
+
+    // ================== Metrics ==================
+
+    public static synchronized String getStatsSummary() {
+        return "notifState day=" + day
+                + " minutes=" + minutesFed
+                + " replaced=" + minutesReplaced
+                + " dropped=" + minutesDropped
+                + " cumulatives=" + cumulativesFed
+                + " history=" + histSize
+                + " reads=" + reads
+                + " resets=" + resets;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.kurtosisstudy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/*
+ * PartitionedImportWorker
+ * -----------------------
+ * Purpose:
+ *   - One-off WorkManager job that migrates the existing User<id>_<yyyy_MM_dd> files into the
+ *     partitioned database (see PartitionedStore.importPerDayDatabases).
+ *   - Enqueued by DataStorageManager.init(...) the first time the partitioned storage mode is used.
+ *   - Resumable: days already in the catalog are skipped, so a killed run just starts again.
+ *   - Only files up to PARTITIONED_SINCE_DAY are imported; later files never held raw rows.
+ *   - Files DataStorageManager still has open are deferred; it enqueues the job again when it retires them.
+ *   - PARTITIONED_IMPORT_DONE is set only when every day imported; a failed day makes the job retry.
+ */
+
+public class PartitionedImportWorker extends Worker {
+
+    private static final String TAG = "PartitionedImport_KurtosisStudy";
+
+    private static final String UNIQUE_WORK = "partitioned-import";
+
+    // ---- Progress / output keys ----
+    public static final String PROG_DAY_DONE = "progress_day_done";
+    public static final String PROG_PERCENT = "progress_percent";
+    public static final String OUT_DAYS_IMPORTED = "out_days_imported";
+
+    public PartitionedImportWorker(@NonNull Context ctx, @NonNull WorkerParameters params) {
+        super(ctx, params);
+    }
+
+    @NonNull @Override
+    public Result doWork() {
+        Context ctx = getApplicationContext();
+        int userId = ctx.getSharedPreferences(PrefsKeys.Settings.SETTINGS_PREFS, Context.MODE_PRIVATE)
+                .getInt(PrefsKeys.Settings.USER_ID, 1);
+
+        SharedPreferences prefs = ctx.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE);
+        String lastDay = prefs.getString(PrefsKeys.Data.PARTITIONED_SINCE_DAY, StudyClock.todayKey());
+
+        try {
+            PartitionedStore.open(ctx, userId);
+            PartitionedStore.ImportSummary summary = PartitionedStore.importPerDayDatabases(ctx, userId, lastDay,
+                    DataStorageManager.openDailyDays(), (dayKey, done, total) ->
+                    setProgressAsync(new Data.Builder()
+                            .putString(PROG_DAY_DONE, dayKey)
+                            .putInt(PROG_PERCENT, total <= 0 ? 100 : Math.round(100f * done / total))
+                            .build()));
+
+            if (summary.failed > 0) {
+                Log.w(TAG, summary.failed + " day(s) failed to import, will retry");
+                return Result.retry();
+            }
+            if (summary.deferred > 0) {
+                // Re-enqueued by DataStorageManager when the open file is retired after the rollover
+                Log.d(TAG, summary.deferred + " open day(s) deferred to the rollover");
+                return Result.success(new Data.Builder().putInt(OUT_DAYS_IMPORTED, summary.imported).build());
+            }
+
+            prefs.edit().putBoolean(PrefsKeys.Data.PARTITIONED_IMPORT_DONE, true).apply();
+
+            return Result.success(new Data.Builder().putInt(OUT_DAYS_IMPORTED, summary.imported).build());
+        } catch (Exception e) {
+            Log.e(TAG, "Partitioned import failed, will retry", e);
+            return Result.retry();
+        }
+    }
+
+    public static void enqueue(Context c) {
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(PartitionedImportWorker.class).build();
+        WorkManager.getInstance(c).enqueueUniqueWork(UNIQUE_WORK, ExistingWorkPolicy.KEEP, req);
+    }
+}
@@ -0,0 +1,438 @@
+package com.example.kurtosisstudy;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+import com.example.kurtosisstudy.db.DatabaseMigrations;
+import com.example.kurtosisstudy.db.DayPartitionEntity;
+import com.example.kurtosisstudy.db.PartitionedDao;
+import com.example.kurtosisstudy.db.PartitionedDatabase;
+import com.example.kurtosisstudy.db.PartitionedMinuteAverageEntity;
+import com.example.kurtosisstudy.db.PartitionedSampleEntity;
+import com.example.kurtosisstudy.db.SqliteTuningProfile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * PartitionedStore
+ * ----------------
+ * Purpose:
+ *   - Alternative storage mode for the raw 50 Hz data and the minute averages: ONE long-lived Room
+ *     database per user ("partitioned_db_<USER_ID>") instead of one DailyDatabase file per day.
+ *   - Selected with PrefsKeys.Settings.STORAGE_MODE = STORAGE_MODE_PARTITIONED; the per-day mode stays the default.
+ *
+ * What it does:
+ *   • Day partitions:
+ *       - Every day owns the [local midnight, next midnight) timestamp range, recorded in day_partitions_table.
+ *       - switchDay(dayKey) only swaps a volatile key → O(1) rollover, no database is closed or rebuilt.
+ *       - dropDay(dayKey) deletes the day's raw rows with a single primary-key range delete.
+ *       - exportDay(dayKey, file) writes one day as a standalone file with the per-day tables
+ *         (sensor_data_table + minute_averages_table); DatabaseUploadWorker uploads it per day.
+ *       - applyRetention(keepDays, uploaded) drops the partitions older than today-(keepDays-1)
+ *         whose per-day copy is in the cloud.
+ *   • Migration tool:
+ *       - importPerDayDatabases(...) enumerates User<USER_ID>_<yyyy_MM_dd> files up to the day the mode was
+ *         switched on, streams their sensor_data_table and minute_averages_table into the partitioned tables
+ *         in batches, and records the source file in the catalog so re-runs skip finished days.
+ *       - A file DataStorageManager still has open (today, tomorrow pre-opened, yesterday in its grace period)
+ *         is deferred: it is imported by the run enqueued when that file is retired after the rollover.
+ *       - Run it through PartitionedImportWorker; it is idempotent (INSERT OR IGNORE on the keys).
+ *
+ * Notes:
+ *   • All methods except open/switchDay/close touch the database → call them off the main thread.
+ *   • Goals and logs keep living in the per-day DailyDatabase in both modes.
+ */
+
+public class PartitionedStore {
+
+    private static final String TAG = "PartitionedStore_KurtosisStudy";
+
+    // Rows per transaction when importing an old day file
+    private static final int IMPORT_BATCH_SIZE = 3000;
+
+    // Pattern: User{digits}_{yyyy_MM_dd}
+    private static final Pattern USER_DAY_PATTERN =
+            Pattern.compile("^User(\\d+)_([0-9]{4}_[0-9]{2}_[0-9]{2})$");
+
+    private static PartitionedDatabase pdb = null;
+    private static String currentDbName = null;
+    private static volatile String currentDayKey = null;
+    private static volatile boolean currentDayRegistered = false;
+
+    // Open (or re-attach to) the partitioned database of a user
+    public static synchronized void open(Context context, int userId) {
+        String desiredName = "partitioned_db_" + userId;
+        if (pdb != null && desiredName.equals(currentDbName)) return;
+        if (pdb != null) pdb.close();
+
+        pdb = Room.databaseBuilder(context.getApplicationContext(), PartitionedDatabase.class, desiredName)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .addCallback(SqliteTuningProfile.DAILY_WRITE_HEAVY.asCallback(desiredName))
+                .addMigrations(DatabaseMigrations.PARTITIONED)
+                .build();
+        currentDbName = desiredName;
+        currentDayRegistered = false;
+        Log.d(TAG, "Opened partitioned DB: " + desiredName);
+    }
+
+    public static synchronized void close() {
+        if (pdb != null && pdb.isOpen()) {
+            pdb.close();
+        }
+        pdb = null;
+        currentDbName = null;
+        currentDayRegistered = false;
+    }
+
+    public static boolean isOpen() {
+        PartitionedDatabase local = pdb;
+        return local != null && local.isOpen();
+    }
+
+    public static PartitionedDatabase getDatabase() {
+        return pdb;
+    }
+
+    public static String getDatabaseName() {
+        return currentDbName;
+    }
+
+    // O(1) day switch: the partition row itself is written lazily on the first write of the day
+    public static void switchDay(String dayKey) {
+        if (dayKey.equals(currentDayKey)) return;
+        currentDayKey = dayKey;
+        currentDayRegistered = false;
+        Log.d(TAG, "Switched current partition to " + dayKey);
+    }
+
+    public static String getCurrentDayKey() {
+        return currentDayKey;
+    }
+
+    // ---- Writes / reads used by DataStorageManager (analytics executor) ----
+
+    public static void insertSamples(List<PartitionedSampleEntity> samples) {
+        PartitionedDao dao = pdb.partitionedDao();
+        ensureCurrentPartition(dao);
+        dao.insertSamples(samples);
+    }
+
+    public static List<PartitionedSampleEntity> getSamplesInRange(long start, long end) {
+        return pdb.partitionedDao().getSamplesInRange(start, end);
+    }
+
+    // Filed under the minute's own day: 23:59 computed after midnight still belongs to yesterday
+    public static void saveMinuteAverage(long epochMinute, long timestamp, int average, int secondary) {
+        String dayKey = StudyClock.dayKeyOf(epochMinute * 60_000L);
+        PartitionedDao dao = pdb.partitionedDao();
+        ensurePartition(dao, dayKey);
+        dao.insertOrUpdateMinuteAverage(
+                new PartitionedMinuteAverageEntity(dayKey, epochMinute, timestamp, average, secondary));
+    }
+
+    public static List<PartitionedMinuteAverageEntity> getMinuteAveragesForDay(String dayKey) {
+        return pdb.partitionedDao().getMinuteAveragesForDay(dayKey);
+    }
+
+    public static List<Integer> getMinuteAveragesSince(String dayKey, long fromMinute) {
+        return pdb.partitionedDao().getMinuteAveragesSince(dayKey, fromMinute);
+    }
+
+    private static void ensureCurrentPartition(PartitionedDao dao) {
+        ensurePartition(dao, currentDayKey);
+    }
+
+    // Catalog row of a day (INSERT OR IGNORE); remembered for the current day only
+    private static void ensurePartition(PartitionedDao dao, String dayKey) {
+        boolean current = dayKey != null && dayKey.equals(currentDayKey);
+        if (current && currentDayRegistered) return;
+        long[] bounds = dayBounds(dayKey);
+        if (bounds == null) return;
+        dao.insertPartition(new DayPartitionEntity(dayKey, bounds[0], bounds[1], System.currentTimeMillis(), null));
+        if (current) currentDayRegistered = true;
+    }
+
+    public static List<DayPartitionEntity> getAllPartitions() {
+        return pdb.partitionedDao().getAllPartitions();
+    }
+
+    // ---- Per-day export (cloud upload) ----
+
+    // Writes one day to `out` as a plain SQLite file laid out like a User<id>_<day> DailyDatabase
+    // (sensor_data_table + minute_averages_table), streaming the raw rows in IMPORT_BATCH_SIZE transactions.
+    // Returns the number of raw rows written.
+    public static long exportDay(String dayKey, File out) {
+        long[] bounds = dayBounds(dayKey);
+        if (bounds == null) throw new IllegalArgumentException("Unparseable dayKey " + dayKey);
+        if (out.exists() && !out.delete()) throw new IllegalStateException("Cannot replace " + out.getName());
+
+        long rows = 0;
+        try (SQLiteDatabase dst = SQLiteDatabase.openOrCreateDatabase(out, null)) {
+            dst.execSQL("CREATE TABLE `sensor_data_table` (`timestamp` INTEGER NOT NULL, `accelX` REAL NOT NULL, "
+                    + "`accelY` REAL NOT NULL, `accelZ` REAL NOT NULL, `angle` REAL NOT NULL, `inclination` REAL NOT NULL, "
+                    + "`std` REAL NOT NULL, `rawKurtosis` REAL NOT NULL, `rawGMAC` REAL NOT NULL, "
+                    + "`kurtosis` INTEGER NOT NULL, `activity` INTEGER NOT NULL, PRIMARY KEY(`timestamp`))");
+            dst.execSQL("CREATE TABLE `minute_averages_table` (`epochMinute` INTEGER NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, `average` INTEGER NOT NULL, `secondary` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`epochMinute`))");
+
+            SQLiteStatement insertSample = dst.compileStatement(
+                    "INSERT OR IGNORE INTO `sensor_data_table` VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            try (Cursor c = pdb.query("SELECT timestamp, accelX, accelY, accelZ, angle, inclination, std, "
+                    + "rawKurtosis, rawGMAC, kurtosis, activity FROM partitioned_sensor_data_table "
+                    + "WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp", new Object[]{bounds[0], bounds[1]})) {
+                dst.beginTransaction();
+                try {
+                    while (c.moveToNext()) {
+                        insertSample.bindLong(1, c.getLong(0));
+                        for (int col = 1; col <= 8; col++) insertSample.bindDouble(col + 1, c.getFloat(col));
+                        insertSample.bindLong(10, c.getInt(9));
+                        insertSample.bindLong(11, c.getInt(10));
+                        insertSample.executeInsert();
+                        if (++rows % IMPORT_BATCH_SIZE == 0) {
+                            dst.setTransactionSuccessful();
+                            dst.endTransaction();
+                            dst.beginTransaction();
+                        }
+                    }
+                    dst.setTransactionSuccessful();
+                } finally {
+                    dst.endTransaction();
+                }
+            }
+
+            SQLiteStatement insertMinute = dst.compileStatement(
+                    "INSERT OR REPLACE INTO `minute_averages_table` VALUES (?, ?, ?, ?)");
+            dst.beginTransaction();
+            try {
+                for (PartitionedMinuteAverageEntity e : pdb.partitionedDao().getMinuteAveragesForDay(dayKey)) {
+                    insertMinute.bindLong(1, e.epochMinute);
+                    insertMinute.bindLong(2, e.timestamp);
+                    insertMinute.bindLong(3, e.average);
+                    insertMinute.bindLong(4, e.secondary);
+                    insertMinute.executeInsert();
+                }
+                dst.setTransactionSuccessful();
+            } finally {
+                dst.endTransaction();
+            }
+        }
+        LogSaver.saveLog(TAG, "d", "Exported partition " + dayKey + ": " + rows + " raw rows");
+        return rows;
+    }
+
+    // ---- Retention ----
+
+    // Drops one whole day (raw rows + minute averages + catalog row) in one transaction.
+    // Returns the number of raw rows removed.
+    public static int dropDay(String dayKey) {
+        if (dayKey.equals(currentDayKey)) {
+            LogSaver.saveLog(TAG, "w", "Refusing to drop the current partition " + dayKey);
+            return 0;
+        }
+        PartitionedDao dao = pdb.partitionedDao();
+        DayPartitionEntity partition = dao.getPartition(dayKey);
+        long[] bounds = (partition != null)
+                ? new long[]{partition.startMillis, partition.endMillis}
+                : dayBounds(dayKey);
+        if (bounds == null) return 0;
+
+        final int[] removed = {0};
+        pdb.runInTransaction(() -> {
+            removed[0] = dao.deleteSamplesInRange(bounds[0], bounds[1]);
+            dao.deleteMinuteAveragesForDay(dayKey);
+            dao.deletePartition(dayKey);
+        });
+        LogSaver.saveLog(TAG, "i", "Dropped partition " + dayKey + " (" + removed[0] + " raw rows)");
+        return removed[0];
+    }
+
+    // Keeps today..today-(keepDays-1) and drops the older partitions listed in `uploadedDays`
+    // (their per-day copy is in the cloud); the others stay until they are uploaded. Returns the number of days dropped.
+    public static int applyRetention(int keepDays, Set<String> uploadedDays) {
+        Calendar cutoff = Calendar.getInstance();
+        cutoff.set(Calendar.HOUR_OF_DAY, 0);
+        cutoff.set(Calendar.MINUTE, 0);
+        cutoff.set(Calendar.SECOND, 0);
+        cutoff.set(Calendar.MILLISECOND, 0);
+        cutoff.add(Calendar.DAY_OF_YEAR, -(keepDays - 1));
+        long cutoffMillis = cutoff.getTimeInMillis();
+
+        int dropped = 0;
+        for (DayPartitionEntity partition : pdb.partitionedDao().getAllPartitions()) {
+            if (partition.endMillis <= cutoffMillis && uploadedDays.contains(partition.dayKey)) {
+                dropDay(partition.dayKey);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    // ---- Migration tool: import existing per-day files ----
+
+    public interface ImportProgressListener {
+        void onDayImported(String dayKey, int done, int total);
+    }
+
+    // Outcome of one import run; complete only when no day failed or was deferred
+    public static final class ImportSummary {
+        public final int imported, failed, deferred;
+
+        ImportSummary(int imported, int failed, int deferred) {
+            this.imported = imported;
+            this.failed = failed;
+            this.deferred = deferred;
+        }
+
+        public boolean isComplete() {
+            return failed == 0 && deferred == 0;
+        }
+    }
+
+    // Imports every User<userId>_<day> file up to lastDay (inclusive, null = no limit) not yet in the catalog.
+    // Days in openDays are still written through a live DailyDatabase: they are skipped and counted in
+    // ImportSummary.deferred. A failed day is logged, skipped and counted in ImportSummary.failed.
+    // The next run retries both.
+    public static ImportSummary importPerDayDatabases(Context context, int userId, String lastDay, Set<String> openDays,
+                                                      ImportProgressListener listener) {
+        File dbDir = context.getDatabasePath("dummy").getParentFile();
+        if (dbDir == null || !dbDir.exists()) return new ImportSummary(0, 0, 0);
+
+        File[] entries = dbDir.listFiles((dir, name) ->
+                name.startsWith("User") && !name.endsWith("-wal") && !name.endsWith("-shm") && !name.endsWith("-journal")
+        );
+        if (entries == null || entries.length == 0) return new ImportSummary(0, 0, 0);
+        Arrays.sort(entries);
+
+        List<File> toImport = new ArrayList<>();
+        int deferred = 0;
+        for (File f : entries) {
+            Matcher m = USER_DAY_PATTERN.matcher(f.getName());
+            if (!m.matches() || !Integer.toString(userId).equals(m.group(1))) continue;
+            String dayKey = m.group(2);
+            if (lastDay != null && dayKey.compareTo(lastDay) > 0) continue;   // written in partitioned mode already
+            if (openDays.contains(dayKey)) {
+                deferred++;
+                LogSaver.saveLog(TAG, "d", "Deferring import of " + f.getName() + " until its file is retired");
+                continue;
+            }
+            toImport.add(f);
+        }
+
+        PartitionedDao dao = pdb.partitionedDao();
+        int imported = 0;
+        int failed = 0;
+        int done = 0;
+        for (File f : toImport) {
+            Matcher m = USER_DAY_PATTERN.matcher(f.getName());
+            if (!m.matches()) continue;
+            String dayKey = m.group(2);
+
+            DayPartitionEntity existing = dao.getPartition(dayKey);
+            if (existing != null && f.getName().equals(existing.importedFrom)) {
+                done++;
+                continue; // already imported on a previous run
+            }
+
+            try {
+                importOneDay(f, dayKey, dao);
+                imported++;
+            } catch (Exception e) {
+                failed++;
+                LogSaver.saveLog(TAG, "e", "Import failed for " + f.getName() + " (skipping): " + e.getMessage());
+            }
+            done++;
+            if (listener != null) listener.onDayImported(dayKey, done, toImport.size());
+        }
+        LogSaver.saveLog(TAG, "i", "Imported " + imported + " of " + toImport.size() + " per-day databases"
+                + (failed > 0 ? " (" + failed + " failed)" : "")
+                + (deferred > 0 ? " (" + deferred + " still open, deferred)" : ""));
+        return new ImportSummary(imported, failed, deferred);
+    }
+
+    private static void importOneDay(File file, String dayKey, PartitionedDao dao) {
+        long[] bounds = dayBounds(dayKey);
+        if (bounds == null) throw new IllegalArgumentException("Unparseable dayKey " + dayKey);
+        dao.insertPartition(new DayPartitionEntity(dayKey, bounds[0], bounds[1], System.currentTimeMillis(), null));
+
+        long rows = 0;
+        try (SQLiteDatabase src = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
+            // Raw samples, streamed through the cursor window in fixed-size batches
+            try (Cursor c = src.rawQuery("SELECT timestamp, accelX, accelY, accelZ, angle, inclination, std, "
+                    + "rawKurtosis, rawGMAC, kurtosis, activity FROM sensor_data_table ORDER BY timestamp", null)) {
+                List<PartitionedSampleEntity> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                while (c.moveToNext()) {
+                    batch.add(new PartitionedSampleEntity(c.getLong(0), c.getFloat(1), c.getFloat(2), c.getFloat(3),
+                            c.getFloat(4), c.getFloat(5), c.getFloat(6), c.getFloat(7), c.getFloat(8),
+                            c.getInt(9), c.getInt(10)));
+                    if (batch.size() == IMPORT_BATCH_SIZE) {
+                        insertBatch(dao, batch);
+                        rows += batch.size();
+                        batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    insertBatch(dao, batch);
+                    rows += batch.size();
+                }
+            }
+
+            // Minute averages (at most 840 rows per day); files not opened since DAILY_6_7 still carry "HH:mm:ss" keys
+            try (Cursor c = src.rawQuery("SELECT * FROM minute_averages_table", null)) {
+                int keyCol = c.getColumnIndex("epochMinute");
+                int oldKeyCol = c.getColumnIndex("alignedMinute");
+                int tsCol = c.getColumnIndexOrThrow("timestamp");
+                int avgCol = c.getColumnIndexOrThrow("average");
+                int secCol = c.getColumnIndexOrThrow("secondary");
+                List<PartitionedMinuteAverageEntity> minutes = new ArrayList<>(c.getCount());
+                while (c.moveToNext()) {
+                    long epochMinute = (keyCol >= 0) ? c.getLong(keyCol) : epochMinuteOf(bounds[0], c.getString(oldKeyCol));
+                    if (epochMinute < 0) continue;
+                    minutes.add(new PartitionedMinuteAverageEntity(dayKey, epochMinute, c.getLong(tsCol), c.getInt(avgCol), c.getInt(secCol)));
+                }
+                dao.insertMinuteAverages(minutes);
+            }
+        }
+
+        dao.markImported(dayKey, file.getName());
+        LogSaver.saveLog(TAG, "d", "Imported " + file.getName() + ": " + rows + " raw rows");
+    }
+
+    private static void insertBatch(PartitionedDao dao, List<PartitionedSampleEntity> batch) {
+        pdb.runInTransaction(() -> dao.insertSamples(batch));
+    }
+
+    // Epoch minute of an "HH:mm:ss" key of the day starting at dayStart, or -1 if unparseable
+    static long epochMinuteOf(long dayStart, String alignedMinute) {
+        if (alignedMinute == null) return -1;
+        String[] parts = alignedMinute.split(":");
+        if (parts.length < 2) return -1;
+        try {
+            Calendar cal = Calendar.getInstance();
+            cal.setTimeInMillis(dayStart);
+            cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(parts[0]));
+            cal.set(Calendar.MINUTE, Integer.parseInt(parts[1]));
+            return StudyClock.epochMinute(cal.getTimeInMillis());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // [local midnight, next local midnight) for a "yyyy_MM_dd" key, or null if unparseable
+    static long[] dayBounds(String dayKey) {
+        return StudyClock.boundsOf(dayKey);
+    }
+}
@@ -7,9 +7,14 @@ public final class PrefsKeys {
         public static final String SETTINGS_PREFS = "settings_prefs";
         public static final String USER_ID = "user_id";
         public static final String HANDEDNESS = "handedness";
+        public static final String STORAGE_MODE = "storage_mode";
+        public static final String STORAGE_MODE_PER_DAY = "per_day";            // one DailyDatabase per day (default)
+        public static final String STORAGE_MODE_PARTITIONED = "partitioned";    // one long-lived DB partitioned by day
+        public static final String EXCLUDE_NOT_WORN_MINUTES = "exclude_not_worn_minutes"; // boolean, default false (study output unchanged)
         private Settings() {}
     }
 
+    // Legacy: HEARTBEAT_TIME lives in HotStateFile (this key is only read once to seed it)
     public static final class HeartBeat {
         public static final String HEARTBEAT_PREFS = "heartbeat_prefs";
         public static final String HEARTBEAT_TIME = "heartbeat_time";
@@ -24,16 +29,22 @@ public final class PrefsKeys {
         public static final String WEEK_ID = "week_id";
         public static final String CURRENT_DB_NAME = "current_db_name";
         public static final String TODAY_DATE = "today_date";
-        public static final String LAST_KNOWN_PROGRESS = "last_known_progress";
-        public static final String LAST_KNOWN_GOAL = "last_known_goal";
+        public static final String LAST_KNOWN_PROGRESS = "last_known_progress";   // legacy → HotStateFile
+        public static final String LAST_KNOWN_GOAL = "last_known_goal";           // legacy → HotStateFile
         public static final String LAST_KNOWN_RATIO = "last_known_ratio";
+        public static final String PARTITIONED_IMPORT_DONE = "partitioned_import_done";
+        public static final String PARTITIONED_SINCE_DAY = "partitioned_since_day";      // yyyy_MM_dd the partitioned mode was first used
+        public static final String UPLOADED_DAILY_DBS = "uploaded_daily_dbs";          // Set<String> of User<id>_<day> safely in the cloud
+        public static final String UPLOADED_PARTITION_DAYS = "uploaded_partition_days"; // Set<String> of finished yyyy_MM_dd partitions in the cloud
+        public static final String COMPACTED_DAILY_DBS = "compacted_daily_dbs";        // Set<String> of User<id>_<day> no longer at full rate
+        public static final String LAST_COMPACTION_RECLAIMED = "last_compaction_reclaimed"; // bytes freed by the last compaction run
         private Data() {}
     }
 
     public static final class Wear {
         public static final String WEAR_PREFS = "wear_prefs";
-        public static final String WEAR_STATE = "wear_state";
-        public static final String WEAR_BOOL = "watch_is_worn";
+        public static final String WEAR_STATE = "wear_state";                     // legacy → HotStateFile
+        public static final String WEAR_BOOL = "watch_is_worn";                   // legacy → HotStateFile
         public static final String LAST_WEAR_NOTIF = "last_wear_notif";
         private Wear() {}
     }
@@ -45,6 +56,7 @@ public final class PrefsKeys {
         private Exercise() {}
     }
 
+    // Legacy: the periodic-check timestamps live in HotStateFile (these keys are only read once to seed it)
     public static final class FGS {
         public static final String FGS_PREFS = "fgs_prefs";
         public static final String LAST_WEAR_TIME = "last_daily_wear_time_update_timestamp";
@@ -0,0 +1,269 @@
+package com.example.kurtosisstudy;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.kurtosisstudy.db.DailyDatabase;
+import com.example.kurtosisstudy.db.DatabaseMigrations;
+import com.example.kurtosisstudy.db.SecondSummaryEntity;
+import com.example.kurtosisstudy.db.SensorSampleEntity;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * RawDataCompactionWorker
+ * -----------------------
+ * Purpose:
+ *   - Background retention tiers for the per-day User<id>_<yyyy_MM_dd> files, so old raw 50 Hz rows
+ *     stop using storage long before the cloud-safe prune of DatabaseUploadWorker deletes whole files.
+ *
+ * What it does:
+ *   • Tiers (age in days, today = 0):
+ *       - age < FULL_RATE_DAYS          → untouched, full-rate raw data.
+ *       - age < MINUTE_ONLY_DAYS        → raw rows rewritten to 1 Hz rows in second_summaries_table
+ *                                         (mean/min/max angle, inclination, |acc| + active/diverse counts).
+ *       - older                         → raw rows and 1 Hz rows dropped, minute_averages_table is kept.
+ *   • Safety:
+ *       - Only days listed in PrefsKeys.Data.UPLOADED_DAILY_DBS (full-rate copy in the cloud) are touched.
+ *       - A day is added to COMPACTED_DAILY_DBS before its first raw row is deleted, so the uploader
+ *         never overwrites the full-rate cloud copy with a compacted file.
+ *   • Incremental / resumable:
+ *       - Works in CHUNK_MS slices, each one a single transaction (insert summaries + delete raw rows).
+ *       - The next slice always starts at the oldest raw row left → a stopped run just continues next time.
+ *   • Reports the bytes reclaimed (db + WAL, after VACUUM) in its output Data and in LAST_COMPACTION_RECLAIMED.
+ *
+ * Notes:
+ *   • Scheduled once a day, only while charging (the watch is off the wrist, no sensor writes compete).
+ *   • The partitioned store (PartitionedStore) is not compacted here; it relies on its own retention.
+ */
+
+public class RawDataCompactionWorker extends Worker {
+
+    private static final String TAG = "RawDataCompaction_KurtosisStudy";
+
+    private static final String UNIQUE_PERIODIC = "raw-data-compaction-daily";
+
+    // ---- Tiers (days) ----
+    public static final int FULL_RATE_DAYS = 3;     // today + 2 previous days keep 50 Hz
+    public static final int MINUTE_ONLY_DAYS = 7;   // from day 7 on only minute aggregates remain
+
+    // Raw rows handled per transaction (5 min ≈ 15 000 rows at 50 Hz)
+    private static final long CHUNK_MS = TimeUnit.MINUTES.toMillis(5);
+
+    // ---- Output keys ----
+    public static final String OUT_DAYS_COMPACTED = "out_days_compacted";
+    public static final String OUT_BYTES_RECLAIMED = "out_bytes_reclaimed";
+
+    // Pattern: User{digits}_{yyyy_MM_dd}
+    private static final Pattern USER_DAY_PATTERN =
+            Pattern.compile("^User(\\d+)_([0-9]{4}_[0-9]{2}_[0-9]{2})$");
+
+    public RawDataCompactionWorker(@NonNull Context ctx, @NonNull WorkerParameters params) {
+        super(ctx, params);
+    }
+
+    @NonNull @Override
+    public Result doWork() {
+        Context ctx = getApplicationContext();
+        SharedPreferences prefs = ctx.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE);
+        Set<String> uploaded = prefs.getStringSet(PrefsKeys.Data.UPLOADED_DAILY_DBS, Collections.emptySet());
+
+        File dbDir = ctx.getDatabasePath("dummy").getParentFile();
+        File[] files = (dbDir == null) ? null : dbDir.listFiles((dir, name) ->
+                name.startsWith("User") && !name.endsWith("-wal") && !name.endsWith("-shm") && !name.endsWith("-journal"));
+        if (files == null || files.length == 0) {
+            return Result.success();
+        }
+
+        int daysCompacted = 0;
+        long bytesReclaimed = 0L;
+
+        for (File f : files) {
+            if (isStopped()) break;   // resumes on the next run
+
+            String dbName = f.getName();
+            Matcher m = USER_DAY_PATTERN.matcher(dbName);
+            if (!m.matches()) continue;
+
+            int age = ageInDays(m.group(2));
+            if (age < FULL_RATE_DAYS) continue;
+            if (!uploaded.contains(dbName)) {
+                Log.d(TAG, "Skip (not uploaded yet): " + dbName);
+                continue;
+            }
+
+            try {
+                long before = fileBytes(f);
+                boolean changed = compactDay(ctx, prefs, dbName, age >= MINUTE_ONLY_DAYS);
+                if (changed) {
+                    long reclaimed = Math.max(0L, before - fileBytes(f));
+                    bytesReclaimed += reclaimed;
+                    daysCompacted++;
+                    Log.i(TAG, "Compacted " + dbName + " (age " + age + "d) reclaimed " + reclaimed + " bytes");
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Compaction failed for " + dbName + " (skipping)", e);
+            }
+        }
+
+        prefs.edit().putLong(PrefsKeys.Data.LAST_COMPACTION_RECLAIMED, bytesReclaimed).apply();
+        Log.i(TAG, "Compaction run done: days=" + daysCompacted + " bytesReclaimed=" + bytesReclaimed);
+
+        return Result.success(new Data.Builder()
+                .putInt(OUT_DAYS_COMPACTED, daysCompacted)
+                .putLong(OUT_BYTES_RECLAIMED, bytesReclaimed)
+                .build());
+    }
+
+    // Returns true if anything was deleted from the file
+    private boolean compactDay(Context ctx, SharedPreferences prefs, String dbName, boolean minuteOnly) {
+        DailyDatabase day = Room.databaseBuilder(ctx, DailyDatabase.class, dbName)
+                .addMigrations(DatabaseMigrations.DAILY)
+                .build();
+        boolean changed = false;
+        try {
+            Long oldest = day.sensorSampleDao().getOldestTimestamp();
+            if (oldest != null) {
+                markCompacted(prefs, dbName);
+            }
+
+            while (oldest != null && !isStopped()) {
+                final long start = (oldest / 1000L) * 1000L;   // chunks stay aligned to whole seconds
+                final long end = start + CHUNK_MS;
+
+                if (minuteOnly) {
+                    day.sensorSampleDao().deleteSamplesInRange(start, end);
+                } else {
+                    final List<SecondSummaryEntity> summaries =
+                            summarize(day.sensorSampleDao().getSamplesInRange(start, end));
+                    day.runInTransaction(() -> {
+                        day.secondSummaryDao().insertAll(summaries);
+                        day.sensorSampleDao().deleteSamplesInRange(start, end);
+                    });
+                }
+                changed = true;
+                oldest = day.sensorSampleDao().getOldestTimestamp();
+            }
+
+            if (minuteOnly && !isStopped() && day.secondSummaryDao().deleteAll() > 0) {
+                changed = true;
+            }
+
+            if (changed && !isStopped()) {
+                // Give the freed pages back to the file system
+                day.getOpenHelper().getWritableDatabase().execSQL("VACUUM");
+                try (Cursor c = day.getOpenHelper().getWritableDatabase().query("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                    c.moveToFirst();
+                }
+            }
+        } finally {
+            day.close();
+        }
+        return changed;
+    }
+
+    // Groups time-ordered raw rows into one summary per second
+    static List<SecondSummaryEntity> summarize(List<SensorSampleEntity> rows) {
+        List<SecondSummaryEntity> out = new ArrayList<>();
+        if (rows == null || rows.isEmpty()) return out;
+
+        long second = -1L;
+        int n = 0, active = 0, diverse = 0;
+        float sumA = 0f, minA = 0f, maxA = 0f;
+        float sumI = 0f, minI = 0f, maxI = 0f;
+        float sumM = 0f, minM = 0f, maxM = 0f;
+
+        for (SensorSampleEntity r : rows) {
+            long s = (r.timestamp / 1000L) * 1000L;
+            float mag = (float) Math.sqrt(r.accelX * r.accelX + r.accelY * r.accelY + r.accelZ * r.accelZ);
+            if (s != second) {
+                if (n > 0) {
+                    out.add(new SecondSummaryEntity(second, n, sumA / n, minA, maxA, sumI / n, minI, maxI,
+                            sumM / n, minM, maxM, active, diverse));
+                }
+                second = s;
+                n = 0; active = 0; diverse = 0;
+                sumA = 0f; minA = r.angle; maxA = r.angle;
+                sumI = 0f; minI = r.inclination; maxI = r.inclination;
+                sumM = 0f; minM = mag; maxM = mag;
+            }
+            n++;
+            sumA += r.angle;       minA = Math.min(minA, r.angle);             maxA = Math.max(maxA, r.angle);
+            sumI += r.inclination; minI = Math.min(minI, r.inclination);       maxI = Math.max(maxI, r.inclination);
+            sumM += mag;           minM = Math.min(minM, mag);                 maxM = Math.max(maxM, mag);
+            active += r.activity;
+            diverse += r.kurtosis;
+        }
+        out.add(new SecondSummaryEntity(second, n, sumA / n, minA, maxA, sumI / n, minI, maxI,
+                sumM / n, minM, maxM, active, diverse));
+        return out;
+    }
+
+    // Synchronous commit: the uploader must see the flag before the first raw row disappears
+    private static void markCompacted(SharedPreferences prefs, String dbName) {
+        Set<String> compacted = new HashSet<>(prefs.getStringSet(PrefsKeys.Data.COMPACTED_DAILY_DBS, Collections.emptySet()));
+        if (compacted.add(dbName)) {
+            prefs.edit().putStringSet(PrefsKeys.Data.COMPACTED_DAILY_DBS, compacted).commit();
+        }
+    }
+
+    private static long fileBytes(File db) {
+        File wal = new File(db.getPath() + "-wal");
+        return db.length() + (wal.exists() ? wal.length() : 0L);
+    }
+
+    // Whole calendar days between dayKey and today (today = 0, unparseable = 0 → never compacted)
+    private static int ageInDays(String dayKey) {
+        Date d;
+        try {
+            d = new SimpleDateFormat("yyyy_MM_dd", Locale.US).parse(dayKey);
+        } catch (ParseException e) {
+            return 0;
+        }
+        if (d == null) return 0;
+        Calendar day = Calendar.getInstance();
+        day.setTime(d);
+        Calendar today = Calendar.getInstance();
+        today.set(Calendar.HOUR_OF_DAY, 12);
+        day.set(Calendar.HOUR_OF_DAY, 12);   // noon-to-noon is DST-safe
+        return (int) Math.round((today.getTimeInMillis() - day.getTimeInMillis()) / (double) TimeUnit.DAYS.toMillis(1));
+    }
+
+    public static void enqueuePeriodic(Context c) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest periodic = new PeriodicWorkRequest.Builder(
+                RawDataCompactionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(c).enqueueUniquePeriodicWork(
+                UNIQUE_PERIODIC, ExistingPeriodicWorkPolicy.KEEP, periodic);
+    }
+}
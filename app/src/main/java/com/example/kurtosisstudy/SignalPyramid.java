@@ -0,0 +1,320 @@
+package com.example.kurtosisstudy;
+
+import android.database.Cursor;
+
+import com.example.kurtosisstudy.db.DailyDatabase;
+import com.example.kurtosisstudy.db.SignalPyramidEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/*
+ * SignalPyramid
+ * -------------
+ * Purpose:
+ *   - Plot a day (or any zoom of it) of the 50 Hz angle / inclination / rawGMAC signals without reading
+ *     sensor_data_table: a full day is ~2.5 M raw rows, a chart needs a few points per pixel column.
+ *
+ * What it does:
+ *   • Levels (LEVEL_MS): 5 s, 30 s, 3 min, 15 min buckets, aligned on epoch multiples (they all divide 30 min,
+ *     so buckets never straddle a local midnight). Each bucket keeps min / max / mean of the raw samples and
+ *     one largest-triangle-three-buckets (LTTB) point.
+ *   • onSamples(...) (each raw flush, storage worker), incremental per (signal, level):
+ *       - level 0 takes the raw samples as LTTB candidates; level L+1 takes the points level L selected,
+ *         and merges the child's min / max / mean, so the envelope is exact at every level;
+ *       - a bucket's point is chosen once the NEXT bucket is complete (LTTB needs its average):
+ *         maximize the triangle (previous selected point, candidate, next bucket mean);
+ *       - the last two buckets of each level are written as provisional rows after every flush and replaced
+ *         by their final version later, so the stored pyramid is complete up to the last flush;
+ *       - after a process restart, the first bucket of each level resumes from its provisional row.
+ *   • Rows go to the daily file of the bucket's day (signal_pyramid_table).
+ *   • Reads: levelFor(from, to, maxBuckets) picks the finest level with at most maxBuckets buckets in range;
+ *     range(...) is a CrossDayQueryEngine aggregation returning plot-ready arrays (envelope + LTTB line).
+ *     DataStorageManager.getSignalSeriesAsync(...) combines both for "columns × points per column".
+ *
+ * Notes:
+ *   • onSamples is not thread-safe: storage worker only (RAW_FLUSH lane).
+ *   • Samples older than a level's open bucket (never the case for ordered flushes) are ignored.
+ *   • Zooming below 5 s per column returns the 5 s buckets (fewer points), never raw rows.
+ *   • Across a process restart, a bucket that was complete but not final yet keeps its provisional row
+ *     and is not folded into the level above (at most one bucket per level).
+ */
+
+public class SignalPyramid {
+
+    private static final String TAG = "SignalPyramid_KurtosisStudy";
+
+    public enum Signal { ANGLE, INCLINATION, RAW_GMAC }
+
+    static final long[] LEVEL_MS = {5_000L, 30_000L, 180_000L, 900_000L};
+
+    private final Level[][] levels = new Level[Signal.values().length][LEVEL_MS.length];
+
+    // ---- Metrics ----
+    private long samples = 0, finalRows = 0, provisionalRows = 0, resumed = 0;
+
+    public SignalPyramid() {
+        for (int s = 0; s < levels.length; s++) {
+            for (int l = 0; l < LEVEL_MS.length; l++) levels[s][l] = new Level(s, l);
+        }
+    }
+
+    // ================== Build (storage worker) ==================
+
+    // fileOf(bucketStart) → daily DB of that bucket's day (null = not open, rows dropped)
+    public void onSamples(long[] timestamps, float[] angle, float[] inclination, float[] rawGMAC, int size,
+                          LongFunction<DailyDatabase> fileOf) {
+        List<SignalPyramidEntity> out = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            long ts = timestamps[i];
+            levels[Signal.ANGLE.ordinal()][0].addSample(ts, angle[i], fileOf, out);
+            levels[Signal.INCLINATION.ordinal()][0].addSample(ts, inclination[i], fileOf, out);
+            levels[Signal.RAW_GMAC.ordinal()][0].addSample(ts, rawGMAC[i], fileOf, out);
+        }
+        samples += size;
+        int finals = out.size();
+        finalRows += finals;
+        for (Level[] signal : levels) {
+            for (Level level : signal) level.provisional(out);
+        }
+        provisionalRows += out.size() - finals;
+        write(out, fileOf);
+    }
+
+    private static void write(List<SignalPyramidEntity> rows, LongFunction<DailyDatabase> fileOf) {
+        Map<DailyDatabase, List<SignalPyramidEntity>> byFile = new IdentityHashMap<>();
+        for (SignalPyramidEntity r : rows) {
+            DailyDatabase db = fileOf.apply(r.bucketStart);
+            if (db != null) byFile.computeIfAbsent(db, k -> new ArrayList<>()).add(r);
+        }
+        for (Map.Entry<DailyDatabase, List<SignalPyramidEntity>> e : byFile.entrySet()) {
+            e.getKey().runInTransaction(() -> e.getKey().signalPyramidDao().upsertAll(e.getValue()));
+        }
+    }
+
+    // Incremental LTTB state of one (signal, level)
+    private final class Level {
+        final int signal, level;
+        final long width;
+        Bucket done = null;          // complete, waiting for the next bucket's mean to pick its point
+        Bucket open = null;          // being filled
+        boolean hasPrev = false;     // last selected point (LTTB "a")
+        long prevTs;
+        float prevValue;
+        boolean resumeChecked = false;
+
+        Level(int signal, int level) {
+            this.signal = signal;
+            this.level = level;
+            this.width = LEVEL_MS[level];
+        }
+
+        void addSample(long ts, float v, LongFunction<DailyDatabase> fileOf, List<SignalPyramidEntity> out) {
+            Bucket b = bucketFor(ts, fileOf, out);
+            if (b != null) b.add(ts, v, 1, v, v, v);
+        }
+
+        // A child bucket with its selected point: candidate here, envelope merged
+        void addChild(Bucket child, long pointTs, float pointValue,
+                      LongFunction<DailyDatabase> fileOf, List<SignalPyramidEntity> out) {
+            Bucket b = bucketFor(pointTs, fileOf, out);
+            if (b != null) b.add(pointTs, pointValue, child.count, child.sum, child.min, child.max, child.tsSum);
+        }
+
+        private Bucket bucketFor(long ts, LongFunction<DailyDatabase> fileOf, List<SignalPyramidEntity> out) {
+            long start = ts - Math.floorMod(ts, width);
+            if (open != null && start == open.start) return open;
+            if (open != null && start < open.start) return null;          // out of order
+            if (open != null) complete(fileOf, out);
+            open = new Bucket(start);
+            if (!resumeChecked) resume(fileOf);
+            return open;
+        }
+
+        // `open` is complete: the previous complete bucket can now pick its point
+        private void complete(LongFunction<DailyDatabase> fileOf, List<SignalPyramidEntity> out) {
+            if (done != null) {
+                int pick = done.pick(hasPrev, prevTs, prevValue, open.meanTs(), open.mean());
+                out.add(done.toEntity(signal, level, pick, false));
+                hasPrev = true;
+                prevTs = done.candTs[pick];
+                prevValue = done.candValue[pick];
+                if (level + 1 < LEVEL_MS.length) levels[signal][level + 1].addChild(done, prevTs, prevValue, fileOf, out);
+            }
+            done = open;
+        }
+
+        // Buckets not final yet, as they are now
+        void provisional(List<SignalPyramidEntity> out) {
+            if (done != null && open != null) {
+                out.add(done.toEntity(signal, level, done.pick(hasPrev, prevTs, prevValue, open.meanTs(), open.mean()), true));
+            }
+            Bucket last = (open != null) ? open : done;
+            if (last != null && last.candCount > 0) {
+                out.add(last.toEntity(signal, level, last.candCount - 1, true));
+            }
+        }
+
+        // First bucket of this process: continue from its provisional row (restart in the middle of it)
+        private void resume(LongFunction<DailyDatabase> fileOf) {
+            resumeChecked = true;
+            try {
+                DailyDatabase db = fileOf.apply(open.start);
+                SignalPyramidEntity row = (db != null) ? db.signalPyramidDao().getBucket(signal, level, open.start) : null;
+                if (row == null || !row.provisional || row.count <= 0) return;
+                double meanTs = open.start + width / 2.0;
+                open.add(row.pointTs, row.pointValue, row.count, (double) row.meanValue * row.count,
+                        row.minValue, row.maxValue, meanTs * row.count);
+                resumed++;
+            } catch (Exception e) {
+                LogSaver.saveLog(TAG, "w", "Resume of level " + level + " skipped: " + e.getMessage());
+            }
+        }
+    }
+
+    // One bucket being built: envelope + LTTB candidates
+    private static final class Bucket {
+        final long start;
+        int count = 0;
+        double sum = 0, tsSum = 0;
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        long[] candTs = new long[16];
+        float[] candValue = new float[16];
+        int candCount = 0;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        void add(long ts, float v, int n, double valueSum, float lo, float hi) {
+            add(ts, v, n, valueSum, lo, hi, (double) ts * n);
+        }
+
+        void add(long ts, float v, int n, double valueSum, float lo, float hi, double timeSum) {
+            count += n;
+            sum += valueSum;
+            tsSum += timeSum;
+            if (lo < min) min = lo;
+            if (hi > max) max = hi;
+            if (candCount == candTs.length) {
+                candTs = Arrays.copyOf(candTs, candCount * 2);
+                candValue = Arrays.copyOf(candValue, candCount * 2);
+            }
+            candTs[candCount] = ts;
+            candValue[candCount] = v;
+            candCount++;
+        }
+
+        double meanTs() { return tsSum / count; }
+        float mean()    { return (float) (sum / count); }
+
+        // LTTB: candidate with the largest triangle (a, candidate, c); without a previous point, the first one
+        int pick(boolean hasA, long aTs, float aValue, double cTs, float cValue) {
+            if (!hasA) return 0;
+            int best = 0;
+            double bestArea = -1;
+            for (int i = 0; i < candCount; i++) {
+                double area = Math.abs((aTs - cTs) * (candValue[i] - aValue)
+                        - (aTs - candTs[i]) * (double) (cValue - aValue));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        SignalPyramidEntity toEntity(int signal, int level, int pick, boolean provisional) {
+            return new SignalPyramidEntity(signal, level, start, count, min, max, mean(),
+                    candTs[pick], candValue[pick], provisional);
+        }
+    }
+
+    // ================== Reads ==================
+
+    // Finest level with at most maxBuckets buckets in [from, to); the coarsest if none fits
+    public static int levelFor(long from, long to, int maxBuckets) {
+        for (int l = 0; l < LEVEL_MS.length; l++) {
+            if ((to - from) / LEVEL_MS[l] + 1 <= maxBuckets) return l;
+        }
+        return LEVEL_MS.length - 1;
+    }
+
+    // Plot-ready buckets of one signal / level, ascending: envelope (min, max) + LTTB line (pointTs, point)
+    public static final class Series {
+        public final int level;
+        public final long[] bucketStart;
+        public final float[] min, max;
+        public final long[] pointTs;
+        public final float[] point;
+
+        Series(int level, int n) {
+            this.level = level;
+            bucketStart = new long[n];
+            min = new float[n];
+            max = new float[n];
+            pointTs = new long[n];
+            point = new float[n];
+        }
+
+        public int size() { return bucketStart.length; }
+    }
+
+    // Per-day read of [from, to) through CrossDayQueryEngine (days in ascending order → merge is a concat)
+    public static CrossDayQueryEngine.Aggregation<Series> range(Signal signal, int level, long from, long to) {
+        return new CrossDayQueryEngine.Aggregation<Series>() {
+            @Override public String key() {
+                return String.format(Locale.US, "pyramid:%d:%d:%d:%d", signal.ordinal(), level, from, to);
+            }
+            @Override public String sql() {
+                return "SELECT bucketStart, minValue, maxValue, pointTs, pointValue FROM signal_pyramid_table "
+                        + "WHERE signal = " + signal.ordinal() + " AND level = " + level
+                        + " AND bucketStart >= " + from + " AND bucketStart < " + to
+                        + " ORDER BY bucketStart ASC";
+            }
+            @Override public Series empty() { return new Series(level, 0); }
+            @Override public Series partial(Cursor rows) {
+                Series s = new Series(level, rows.getCount());
+                for (int i = 0; rows.moveToNext(); i++) {
+                    s.bucketStart[i] = rows.getLong(0);
+                    s.min[i] = rows.getFloat(1);
+                    s.max[i] = rows.getFloat(2);
+                    s.pointTs[i] = rows.getLong(3);
+                    s.point[i] = rows.getFloat(4);
+                }
+                return s;
+            }
+            @Override public Series merge(Series a, Series b) {
+                if (a.size() == 0) return b;
+                if (b.size() == 0) return a;
+                Series s = new Series(level, a.size() + b.size());
+                copy(a, s, 0);
+                copy(b, s, a.size());
+                return s;
+            }
+        };
+    }
+
+    private static void copy(Series from, Series to, int at) {
+        int n = from.size();
+        System.arraycopy(from.bucketStart, 0, to.bucketStart, at, n);
+        System.arraycopy(from.min, 0, to.min, at, n);
+        System.arraycopy(from.max, 0, to.max, at, n);
+        System.arraycopy(from.pointTs, 0, to.pointTs, at, n);
+        System.arraycopy(from.point, 0, to.point, at, n);
+    }
+
+    // ================== Metrics ==================
+
+    public String getMetricsSummary() {
+        return "pyramid samples=" + samples
+                + " finalRows=" + finalRows
+                + " provisionalRows=" + provisionalRows
+                + " resumed=" + resumed;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.kurtosisstudy;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * StorageTaskScheduler
+ * --------------------
+ * Purpose:
+ *   - Replaces DataStorageManager's single analytics executor (and its copy-pasted
+ *     "catch RejectedExecutionException → recreate → retry" blocks) with ONE supervised worker
+ *     thread that serves priority lanes.
+ *
+ * What it does:
+ *   • Lanes (highest first): RAW_FLUSH > MINUTE > GOAL_WEAR > WEEKLY.
+ *       - The worker always takes the oldest task of the highest non-empty lane, so a queued
+ *         weekly recomputation never delays a 3000-row flush or the aligned minute average.
+ *       - Each lane is bounded (Lane.capacity); a full lane rejects the new task (counted + logged).
+ *   • Coalescing:
+ *       - Tasks submitted with a key (e.g. "dailyCumulative", "minute:13:14:00") are dropped if an
+ *         identical key is still pending in that lane; the caller gets the pending task's Future.
+ *   • Supervision:
+ *       - Every task runs inside try/catch (Throwable, Errors included), so one failure never kills the worker.
+ *       - If the worker thread is gone, the next submit starts a new one (unexpected deaths count as restarts).
+ *   • Lifecycle:
+ *       - shutdown(timeoutMs) drains the lanes and stops the worker; from then on submits are rejected
+ *         (counted + logged) until start() reopens the scheduler (DataStorageManager.init).
+ *   • Metrics (getMetricsSummary()):
+ *       - Per lane: depth, max depth, submitted, executed, coalesced, rejected, mean / max queue wait.
+ *
+ * Notes:
+ *   • Single worker on purpose: Room writes to the daily file are serialized anyway, and the order
+ *     inside a lane (FIFO) is what the aggregation pipeline relies on.
+ */
+
+public class StorageTaskScheduler {
+
+    private static final String TAG = "StorageScheduler_KurtosisStudy";
+
+    public enum Lane {
+        RAW_FLUSH(32),      // ~32 minutes of 50 Hz snapshots
+        MINUTE(16),
+        GOAL_WEAR(32),
+        WEEKLY(8);
+
+        final int capacity;
+        Lane(int capacity) { this.capacity = capacity; }
+    }
+
+    private final String name;
+    private final Object lock = new Object();
+    private final Map<Lane, ArrayDeque<Job<?>>> queues = new HashMap<>();
+    private final Map<Lane, LaneStats> stats = new HashMap<>();
+    private Thread worker = null;
+    private boolean accepting = true;
+    private long restarts = 0;
+
+    public StorageTaskScheduler(String name) {
+        this.name = name;
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            stats.put(lane, new LaneStats());
+        }
+    }
+
+    // ================== Submit ==================
+
+    // Fire-and-forget; key may be null (no coalescing). Returns false if the lane was full or after shutdown.
+    public boolean execute(Lane lane, String key, Runnable task) {
+        Runnable logged = () -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                // FutureTask would swallow it: nobody reads the Future of a fire-and-forget task
+                Log.e(TAG, name + ": task failed in lane " + lane + ": " + t.getMessage(), t);
+            }
+        };
+        return enqueue(lane, key, ListenableFutureTask.create(logged, null)) != null;
+    }
+
+    // Returns a ListenableFuture for the result (callbacks instead of get()), or null if the lane was full
+    // or the scheduler is shut down
+    @SuppressWarnings("unchecked")
+    public <T> ListenableFuture<T> submit(Lane lane, String key, Callable<T> task) {
+        return (ListenableFuture<T>) enqueue(lane, key, ListenableFutureTask.create(task));
+    }
+
+    private ListenableFuture<?> enqueue(Lane lane, String key, ListenableFutureTask<?> task) {
+        synchronized (lock) {
+            LaneStats s = stats.get(lane);
+            ArrayDeque<Job<?>> q = queues.get(lane);
+
+            if (!accepting) {
+                s.rejected++;
+                Log.e(TAG, name + ": shut down, rejected " + (key != null ? key : "task") + " in lane " + lane);
+                return null;
+            }
+            if (key != null) {
+                for (Job<?> pending : q) {
+                    if (key.equals(pending.key)) {
+                        s.coalesced++;
+                        return pending.task;
+                    }
+                }
+            }
+            if (q.size() >= lane.capacity) {
+                s.rejected++;
+                Log.e(TAG, name + ": lane " + lane + " full (" + lane.capacity + "), rejected " + (key != null ? key : "task"));
+                return null;
+            }
+
+            q.addLast(new Job<>(key, task, System.nanoTime()));
+            s.submitted++;
+            s.maxDepth = Math.max(s.maxDepth, q.size());
+            ensureWorkerAlive();
+            lock.notifyAll();
+            return task;
+        }
+    }
+
+    // ================== Worker ==================
+
+    private void ensureWorkerAlive() {
+        if (worker != null && worker.isAlive()) return;
+        if (worker != null) {
+            restarts++;
+            Log.w(TAG, name + ": worker was not running — restarting (restarts=" + restarts + ")");
+        }
+        worker = new Thread(this::workerLoop, name);
+        worker.start();
+    }
+
+    private void workerLoop() {
+        while (true) {
+            Job<?> job;
+            Lane lane;
+            synchronized (lock) {
+                job = null;
+                lane = null;
+                while (job == null) {
+                    for (Lane l : Lane.values()) {           // declaration order = priority
+                        ArrayDeque<Job<?>> q = queues.get(l);
+                        if (!q.isEmpty()) {
+                            job = q.pollFirst();
+                            lane = l;
+                            break;
+                        }
+                    }
+                    if (job == null) {
+                        if (!accepting) return;            // shutdown() and nothing left to run
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                LaneStats s = stats.get(lane);
+                long waitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - job.enqueuedAt);
+                s.totalWaitMs += waitMs;
+                s.maxWaitMs = Math.max(s.maxWaitMs, waitMs);
+                s.executed++;
+            }
+            long cpuStart = CpuAccounting.start();
+            try {
+                job.task.run();                              // FutureTask already stores the task's own failure
+            } catch (Throwable t) {
+                Log.e(TAG, name + ": worker survived a failure in lane " + lane + ": " + t.getMessage(), t);
+            } finally {
+                CpuAccounting.stop(CpuAccounting.Subsystem.STORAGE, cpuStart);
+            }
+        }
+    }
+
+    // (Re)opens the scheduler after shutdown(); the worker starts with the next submit
+    public void start() {
+        synchronized (lock) {
+            if (accepting) return;
+            accepting = true;
+            // A worker still draining keeps serving; one that exited on its own is not a restart
+            if (worker != null && !worker.isAlive()) worker = null;
+            lock.notifyAll();
+        }
+    }
+
+    // Lets the worker exit once its lanes are empty (pending tasks still run); waits up to timeoutMs.
+    // Submits are rejected from now on until start().
+    public boolean shutdown(long timeoutMs) {
+        Thread w;
+        synchronized (lock) {
+            accepting = false;
+            lock.notifyAll();
+            w = worker;
+        }
+        if (w == null) return true;
+        try {
+            w.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !w.isAlive();
+    }
+
+    // ================== Metrics ==================
+
+    public int getQueueDepth(Lane lane) {
+        synchronized (lock) {
+            return queues.get(lane).size();
+        }
+    }
+
+    public String getMetricsSummary() {
+        StringBuilder sb = new StringBuilder(name).append(" restarts=").append(restarts);
+        synchronized (lock) {
+            for (Lane lane : Lane.values()) {
+                LaneStats s = stats.get(lane);
+                sb.append('\n').append(lane)
+                        .append(" depth=").append(queues.get(lane).size())
+                        .append(" maxDepth=").append(s.maxDepth)
+                        .append(" submitted=").append(s.submitted)
+                        .append(" executed=").append(s.executed)
+                        .append(" coalesced=").append(s.coalesced)
+                        .append(" rejected=").append(s.rejected)
+                        .append(" meanWaitMs=").append(s.executed == 0 ? 0 : s.totalWaitMs / s.executed)
+                        .append(" maxWaitMs=").append(s.maxWaitMs);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static final class Job<T> {
+        final String key;
+        final ListenableFutureTask<T> task;
+        final long enqueuedAt;
+
+        Job(String key, ListenableFutureTask<T> task, long enqueuedAt) {
+            this.key = key;
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class LaneStats {
+        long submitted, executed, coalesced, rejected;
+        int maxDepth;
+        long totalWaitMs, maxWaitMs;
+    }
+}
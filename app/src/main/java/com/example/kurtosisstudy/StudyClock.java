@@ -0,0 +1,238 @@
+package com.example.kurtosisstudy;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Locale;
+
+/*
+ * StudyClock
+ * ----------
+ * Purpose:
+ *   - One place for "what time / which day / which study week is it". Callers used to build a
+ *     SimpleDateFormat (getDayForDB), a Calendar (getTodayAtHour, duplicated in GoalNotificationManager)
+ *     or ZoneId/LocalDate math (computeWeekFromDb) on every per-minute call.
+ *
+ * What it does:
+ *   • today(): immutable Day with everything derived from the date, computed once per day:
+ *       - key "yyyy_MM_dd", [start, end) of the local day, the 08:00–22:00 study window, the study week.
+ *     It is rebuilt only when now() leaves [start, end) (day boundary) or the study start changes.
+ *   • dayKeyOf(ts): today's key from the cache; other days (late samples, week views) are formatted.
+ *   • boundsOf(dayKey): [start, end) of any "yyyy_MM_dd" day; keys are parsed / formatted with one cached
+ *     DateTimeFormatter (immutable, shared across threads) in the default zone.
+ *   • alignToMinute(ts) / epochMinute(ts): minute arithmetic, no Calendar.
+ *   • week(): (days since the study start day) / 7 + 1, clamped to 1..MAX_WEEK; 0 until setStudyStart(...)
+ *     is called (DataStorageManager does it from StudyMetaEntity / the STUDY_START_TIME mirror).
+ *
+ * Notes:
+ *   • Injectable: install(source) replaces the time source (and drops the cached day), so every caller
+ *     going through now() / today() runs under a simulated clock; install(SYSTEM) restores it.
+ *   • Timers themselves (MinuteTickScheduler's executor delay, AlarmManager triggers) elapse on the real clock;
+ *     the instants they aim at and the timestamps they stamp come from now(). Durations (commit times,
+ *     batch windows, flush deadlines) keep System.nanoTime / currentTimeMillis.
+ *   • Thread-safe: the cached Day is immutable and published through a volatile; two threads crossing
+ *     midnight at the same time just build the same Day twice.
+ */
+
+public final class StudyClock {
+
+    public interface TimeSource {
+        long currentTimeMillis();
+    }
+
+    public static final TimeSource SYSTEM = System::currentTimeMillis;
+
+    static final long MINUTE_MS = 60_000L;
+    static final int WINDOW_START_HOUR = 8;
+    static final int WINDOW_END_HOUR = 22;
+    static final int MAX_WEEK = 12;
+
+    private static final DateTimeFormatter DAY_KEY = DateTimeFormatter.ofPattern("yyyy_MM_dd", Locale.US);
+
+    private static volatile TimeSource source = SYSTEM;
+    private static volatile Day today = null;
+    private static volatile long studyStartMs = 0L;       // 0 = not known yet
+
+    private static volatile long dayBuilds = 0;
+
+    private StudyClock() {} // no instances
+
+    // Everything derived from one calendar day
+    public static final class Day {
+        public final String key;            // yyyy_MM_dd
+        public final long start, end;       // local midnight .. next local midnight
+        public final long windowStart;      // 08:00
+        public final long windowEnd;        // 22:00
+        public final int week;              // 1..MAX_WEEK, 0 if the study start is unknown
+
+        Day(String key, long start, long end, long windowStart, long windowEnd, int week) {
+            this.key = key;
+            this.start = start;
+            this.end = end;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.week = week;
+        }
+
+        public boolean contains(long ts) {
+            return ts >= start && ts < end;
+        }
+
+        public long atHour(int hour) {
+            if (hour == WINDOW_START_HOUR) return windowStart;
+            if (hour == WINDOW_END_HOUR) return windowEnd;
+            return hourOf(start, hour);
+        }
+    }
+
+    // ================== Source ==================
+
+    public static void install(TimeSource newSource) {
+        source = (newSource != null) ? newSource : SYSTEM;
+        today = null;
+    }
+
+    public static long now() {
+        return source.currentTimeMillis();
+    }
+
+    public static void setStudyStart(long startMs) {
+        if (startMs == studyStartMs) return;
+        studyStartMs = startMs;
+        today = null;                        // week depends on it
+    }
+
+    // ================== Day ==================
+
+    public static Day today() {
+        long t = now();
+        Day d = today;
+        if (d == null || !d.contains(t)) {
+            d = build(t);
+            today = d;
+        }
+        return d;
+    }
+
+    public static String todayKey() {
+        return today().key;
+    }
+
+    public static String dayKeyOf(long ts) {
+        Day d = today();
+        return d.contains(ts) ? d.key : format(startOfDay(ts));
+    }
+
+    public static long todayAtHour(int hour) {
+        return today().atHour(hour);
+    }
+
+    public static boolean isWithinActiveHours() {
+        long t = now();
+        Day d = today();
+        return t >= d.windowStart && t < d.windowEnd;
+    }
+
+    public static int week() {
+        return today().week;
+    }
+
+    // 08:00 and 22:00 of a yyyy_MM_dd day (today's from the cache)
+    public static long[] windowOf(String dayKey) {
+        Day d = today();
+        if (d.key.equals(dayKey)) return new long[]{d.windowStart, d.windowEnd};
+        long start = startOfDay(dayKey);
+        return new long[]{hourOf(start, WINDOW_START_HOUR), hourOf(start, WINDOW_END_HOUR)};
+    }
+
+    // Local midnight of a yyyy_MM_dd day (today's from the cache; unknown format → today)
+    public static long startOfDay(String dayKey) {
+        long[] bounds = boundsOf(dayKey);
+        return (bounds != null) ? bounds[0] : today().start;
+    }
+
+    // [local midnight, next local midnight) of a yyyy_MM_dd day (today's from the cache), or null if unparseable
+    public static long[] boundsOf(String dayKey) {
+        if (dayKey == null) return null;
+        Day d = today();
+        if (d.key.equals(dayKey)) return new long[]{d.start, d.end};
+        try {
+            LocalDate date = LocalDate.parse(dayKey, DAY_KEY);
+            ZoneId zone = ZoneId.systemDefault();
+            return new long[]{date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli()};
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    public static long startOfDay(long ts) {
+        Day d = today;
+        if (d != null && d.contains(ts)) return d.start;
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(ts);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        return c.getTimeInMillis();
+    }
+
+    public static long startOfNextDay(long ts) {
+        Day d = today;
+        if (d != null && d.contains(ts)) return d.end;
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(startOfDay(ts));
+        c.add(Calendar.DAY_OF_YEAR, 1);
+        return c.getTimeInMillis();
+    }
+
+    // ================== Minutes ==================
+
+    public static long alignToMinute(long ts) {
+        return ts - Math.floorMod(ts, MINUTE_MS);
+    }
+
+    public static long epochMinute(long ts) {
+        return Math.floorDiv(ts, MINUTE_MS);
+    }
+
+    // ================== Internals ==================
+
+    private static Day build(long t) {
+        long start = startOfDay(t);
+        long end = startOfNextDay(t);
+        int week = 0;
+        long studyStart = studyStartMs;
+        if (studyStart > 0L) {
+            // Whole local days between the two midnights (23 h / 25 h DST days round to one)
+            long days = Math.round((start - startOfDay(studyStart)) / (24.0 * 60 * 60 * 1000));
+            week = (int) Math.max(1, Math.min(MAX_WEEK, days / 7 + 1));
+        }
+        dayBuilds++;
+        return new Day(format(start), start, end,
+                hourOf(start, WINDOW_START_HOUR), hourOf(start, WINDOW_END_HOUR), week);
+    }
+
+    private static long hourOf(long dayStart, int hour) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(dayStart);
+        c.set(Calendar.HOUR_OF_DAY, hour);
+        return c.getTimeInMillis();
+    }
+
+    private static String format(long dayStart) {
+        return DAY_KEY.format(Instant.ofEpochMilli(dayStart).atZone(ZoneId.systemDefault()));
+    }
+
+    public static String getStatsSummary() {
+        Day d = today;
+        return "clock day=" + (d != null ? d.key : null)
+                + " week=" + (d != null ? d.week : 0)
+                + " dayBuilds=" + dayBuilds
+                + " simulated=" + (source != SYSTEM);
+    }
+}
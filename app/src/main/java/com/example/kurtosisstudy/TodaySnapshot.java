@@ -0,0 +1,200 @@
+package com.example.kurtosisstudy;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.kurtosisstudy.db.AdjustedDailyGoalEntity;
+import com.example.kurtosisstudy.db.DailyDatabase;
+import com.example.kurtosisstudy.db.DaySummaryEntity;
+import com.example.kurtosisstudy.db.MainResultsDatabase;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * TodaySnapshot
+ * -------------
+ * Purpose:
+ *   - One immutable, process-wide view of "today" for every UI surface (complications, MainActivity):
+ *     progress, secondary progress, goal, worn minutes and the last service heartbeat.
+ *   - Replaces the Room reads each complication request / onResume used to do.
+ *
+ * What it does:
+ *   • Publishing (analytics pipeline → publishProgress / publishGoal / publishWear / publishHeartbeat):
+ *       - Each publish builds a NEW snapshot (copy + one changed field) and swaps it in atomically,
+ *         so a reader never sees progress from one update and goal from another half-applied.
+ *       - A publish for another day starts from an empty snapshot (fields UNKNOWN), i.e. rollover resets it.
+ *       - Listeners (MainActivity) are called after each swap, on the publisher's thread.
+ *   • Reading:
+ *       - peek(): lock-free, never touches the DB; null if nothing complete is known for today.
+ *       - get(context): peek(), or on a cold start (process just started, nothing published yet)
+ *         fills the UNKNOWN fields once from today's day_summary row (+ prefs/hot state) and publishes
+ *         the result. Call off the main thread.
+ *
+ * Notes:
+ *   • Single-process app: the heartbeat published here is the service's own tick; HotStateFile's
+ *     HEARTBEAT_TIME stays the cross-restart source and is only read on cold start.
+ *   • Fields stay raw (goal 0 = no goal row yet); each surface applies its own defaults.
+ */
+
+public final class TodaySnapshot {
+
+    private static final String TAG = "TodaySnapshot_KurtosisStudy";
+
+    public static final int UNKNOWN = -1;
+
+    public interface Listener {
+        void onSnapshot(TodaySnapshot snapshot);
+    }
+
+    private static final AtomicReference<TodaySnapshot> current = new AtomicReference<>(null);
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public final String day;
+    public final int progressMinutes;
+    public final int secondaryMinutes;
+    public final int goalMinutes;
+    public final int wornMinutes;
+    public final long heartbeatAt;        // ms, 0 = never / UNKNOWN
+    public final long publishedAt;
+
+    private TodaySnapshot(String day, int progressMinutes, int secondaryMinutes, int goalMinutes,
+                          int wornMinutes, long heartbeatAt) {
+        this.day = day;
+        this.progressMinutes = progressMinutes;
+        this.secondaryMinutes = secondaryMinutes;
+        this.goalMinutes = goalMinutes;
+        this.wornMinutes = wornMinutes;
+        this.heartbeatAt = heartbeatAt;
+        this.publishedAt = System.currentTimeMillis();
+    }
+
+    private static TodaySnapshot empty(String day) {
+        return new TodaySnapshot(day, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
+    }
+
+    public boolean isComplete() {
+        return progressMinutes != UNKNOWN && secondaryMinutes != UNKNOWN && goalMinutes != UNKNOWN
+                && wornMinutes != UNKNOWN && heartbeatAt != UNKNOWN;
+    }
+
+    public boolean isServiceAlive(long freshMs) {
+        return heartbeatAt > 0 && StudyClock.now() - heartbeatAt < freshMs;
+    }
+
+    // ================== Publish ==================
+
+    public static void publishProgress(String day, int progress, int secondary) {
+        publish(day, s -> new TodaySnapshot(s.day, progress, secondary, s.goalMinutes, s.wornMinutes, s.heartbeatAt));
+    }
+
+    public static void publishGoal(String day, int goal) {
+        publish(day, s -> new TodaySnapshot(s.day, s.progressMinutes, s.secondaryMinutes, goal, s.wornMinutes, s.heartbeatAt));
+    }
+
+    public static void publishWear(String day, int worn) {
+        publish(day, s -> new TodaySnapshot(s.day, s.progressMinutes, s.secondaryMinutes, s.goalMinutes, worn, s.heartbeatAt));
+    }
+
+    public static void publishHeartbeat(long at) {
+        publish(DataStorageManager.getDayForDB(), s -> new TodaySnapshot(s.day, s.progressMinutes, s.secondaryMinutes, s.goalMinutes, s.wornMinutes, at));
+    }
+
+    private interface Change {
+        TodaySnapshot apply(TodaySnapshot base);
+    }
+
+    private static void publish(String day, Change change) {
+        TodaySnapshot next = current.updateAndGet(s -> change.apply(
+                (s != null && s.day.equals(day)) ? s : empty(day)));
+        for (Listener l : listeners) {
+            try {
+                l.onSnapshot(next);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Listener failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public static void addListener(Listener l) {
+        listeners.addIfAbsent(l);
+    }
+
+    public static void removeListener(Listener l) {
+        listeners.remove(l);
+    }
+
+    // ================== Read ==================
+
+    // Lock-free; null unless every field is known for today
+    public static TodaySnapshot peek() {
+        TodaySnapshot s = current.get();
+        return (s != null && s.isComplete() && s.day.equals(DataStorageManager.getDayForDB())) ? s : null;
+    }
+
+    // peek(), or a one-time DB/prefs fill of the unknown fields (cold start). Off the main thread.
+    public static TodaySnapshot get(Context context) {
+        TodaySnapshot s = peek();
+        if (s != null) return s;
+
+        String day = DataStorageManager.getDayForDB();
+        TodaySnapshot base = current.get();
+        if (base == null || !base.day.equals(day)) base = empty(day);
+
+        int progress = base.progressMinutes, secondary = base.secondaryMinutes;
+        int goal = base.goalMinutes, worn = base.wornMinutes;
+        long heartbeat = base.heartbeatAt;
+        try {
+            MainResultsDatabase mainDb = DataStorageManager.getMainDatabase();
+            DailyDatabase dailyDb = DataStorageManager.getDailyDatabase();
+            // One primary-key read of today's day_summary row (-1 columns = nothing written yet today)
+            DaySummaryEntity sum = (mainDb != null) ? mainDb.daySummaryDao().getDay(day) : null;
+            if (progress == UNKNOWN || secondary == UNKNOWN) {
+                progress = (sum != null) ? Math.max(sum.activeMinutes, 0) : 0;
+                secondary = (sum != null) ? Math.max(sum.diverseMinutes, 0) : 0;
+            }
+            if (goal == UNKNOWN) {
+                if (sum != null && sum.goalMinutes >= 0) {
+                    goal = sum.goalMinutes;
+                } else {
+                    // Summary without a goal yet (e.g. first run after the v3 migration): the daily goal table
+                    AdjustedDailyGoalEntity g = (dailyDb != null) ? dailyDb.adjustedDailyGoalDao().getLastGoal() : null;
+                    goal = (g != null) ? g.adjustedDailyGoal : 0;
+                }
+            }
+            if (worn == UNKNOWN) {
+                worn = (sum != null) ? Math.max(sum.wornMinutes, 0) : 0;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Cold-start read failed: " + e.getMessage());
+            progress = Math.max(progress, 0);
+            secondary = Math.max(secondary, 0);
+            goal = Math.max(goal, 0);
+            worn = Math.max(worn, 0);
+        }
+        if (heartbeat == UNKNOWN) {
+            heartbeat = HotStateFile.get(context).getLong(HotStateFile.LongField.HEARTBEAT_TIME);
+        }
+
+        // Only fill what is still unknown: a value published meanwhile by the pipeline wins
+        final int fp = progress, fs = secondary, fg = goal, fw = worn;
+        final long fh = heartbeat;
+        TodaySnapshot loaded = current.updateAndGet(cur -> {
+            TodaySnapshot b = (cur != null && cur.day.equals(day)) ? cur : empty(day);
+            return new TodaySnapshot(day,
+                    b.progressMinutes != UNKNOWN ? b.progressMinutes : fp,
+                    b.secondaryMinutes != UNKNOWN ? b.secondaryMinutes : fs,
+                    b.goalMinutes != UNKNOWN ? b.goalMinutes : fg,
+                    b.wornMinutes != UNKNOWN ? b.wornMinutes : fw,
+                    b.heartbeatAt != UNKNOWN ? b.heartbeatAt : fh);
+        });
+        Log.d(TAG, "Cold-start snapshot: " + loaded);
+        return loaded;
+    }
+
+    @Override
+    public String toString() {
+        return "TodaySnapshot{day=" + day + ", progress=" + progressMinutes + ", secondary=" + secondaryMinutes
+                + ", goal=" + goalMinutes + ", worn=" + wornMinutes + ", heartbeatAt=" + heartbeatAt + "}";
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.kurtosisstudy;
+
+import android.database.Cursor;
+
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * WalCheckpointScheduler
+ * ----------------------
+ * Purpose:
+ *   - Moves WAL checkpoints off the writer thread: instead of SQLite auto-checkpointing in the middle of a
+ *     3000-row flush, a PASSIVE checkpoint runs every CHECKPOINT_EVERY_TICKS minutes as the last stage
+ *     of the service's minute tick (no thread or wakeup of its own).
+ *
+ * What it does:
+ *   • tickStage(...) (MinuteTickScheduler.Stage.WAL_CHECKPOINT, after the stages that enqueue DB work):
+ *       - Daily DB, main results DB and (if open) the partitioned store get PRAGMA wal_checkpoint(PASSIVE).
+ *       - PASSIVE never waits for readers or writers; frames still in use are simply left for the next run.
+ *   • Metrics per database (see getMetricsSummary()):
+ *       - WAL size before the checkpoint (last / max), checkpoint duration (last / max),
+ *         frames in the log vs frames checkpointed, and the number of runs.
+ *       - A one-line summary is written to the logs every run.
+ *
+ * Notes:
+ *   • Registered by ForegroundSensorService with its other tick stages; stops with the tick.
+ *   • The auto-checkpoint threshold set by SqliteTuningProfile stays as a safety net if this thread is late.
+ */
+
+public class WalCheckpointScheduler {
+
+    private static final String TAG = "WalCheckpoint_KurtosisStudy";
+
+    // Checkpoint every 5th minute tick
+    public static final int CHECKPOINT_EVERY_TICKS = 5;
+
+    // label -> metrics; only touched from the tick thread except for the read in getMetricsSummary()
+    private static final Map<String, Metrics> metrics = new LinkedHashMap<>();
+
+    // MinuteTickScheduler stage (registered with everyTicks = CHECKPOINT_EVERY_TICKS)
+    public static void tickStage(long alignedMinute) {
+        checkpointAll();
+    }
+
+    // Runs one passive checkpoint on every open database; also callable directly (e.g. before an upload)
+    public static void checkpointAll() {
+        StringBuilder summary = new StringBuilder("WAL checkpoint:");
+        checkpoint("daily", DataStorageManager.peekDailyDatabase(), summary);
+        checkpoint("main", DataStorageManager.peekMainDatabase(), summary);
+        if (PartitionedStore.isOpen()) {
+            checkpoint("partitioned", PartitionedStore.getDatabase(), summary);
+        }
+        LogSaver.saveLog(TAG, "d", summary.toString());
+    }
+
+    private static void checkpoint(String label, RoomDatabase room, StringBuilder summary) {
+        if (room == null || !room.isOpen()) return;
+
+        SupportSQLiteDatabase db = room.getOpenHelper().getWritableDatabase();
+        long walBytes = walSize(db.getPath());
+
+        long t0 = System.nanoTime();
+        int logFrames = -1, checkpointed = -1;
+        try (Cursor c = db.query("PRAGMA wal_checkpoint(PASSIVE)")) {
+            if (c.moveToFirst()) {
+                logFrames = c.getInt(1);        // columns: busy, log, checkpointed
+                checkpointed = c.getInt(2);
+            }
+        }
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+
+        Metrics m;
+        synchronized (metrics) {
+            m = metrics.get(label);
+            if (m == null) {
+                m = new Metrics();
+                metrics.put(label, m);
+            }
+            m.record(walBytes, durationMs, logFrames, checkpointed);
+        }
+        summary.append(' ').append(label).append("{wal=").append(walBytes / 1024).append("KiB, ")
+                .append(durationMs).append("ms, ").append(checkpointed).append('/').append(logFrames).append(" frames}");
+    }
+
+    private static long walSize(String dbPath) {
+        if (dbPath == null) return 0L;
+        File wal = new File(dbPath + "-wal");
+        return wal.exists() ? wal.length() : 0L;
+    }
+
+    public static String getMetricsSummary() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (metrics) {
+            for (Map.Entry<String, Metrics> e : metrics.entrySet()) {
+                sb.append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static final class Metrics {
+        long runs;
+        long lastWalBytes, maxWalBytes;
+        long lastDurationMs, maxDurationMs;
+        int lastLogFrames, lastCheckpointedFrames;
+
+        void record(long walBytes, long durationMs, int logFrames, int checkpointed) {
+            runs++;
+            lastWalBytes = walBytes;
+            maxWalBytes = Math.max(maxWalBytes, walBytes);
+            lastDurationMs = durationMs;
+            maxDurationMs = Math.max(maxDurationMs, durationMs);
+            lastLogFrames = logFrames;
+            lastCheckpointedFrames = checkpointed;
+        }
+
+        @Override
+        public String toString() {
+            return "runs=" + runs + " wal(last/max)=" + lastWalBytes + "/" + maxWalBytes
+                    + "B duration(last/max)=" + lastDurationMs + "/" + maxDurationMs
+                    + "ms frames=" + lastCheckpointedFrames + "/" + lastLogFrames;
+        }
+    }
+}
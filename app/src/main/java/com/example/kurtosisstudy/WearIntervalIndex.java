@@ -0,0 +1,129 @@
+package com.example.kurtosisstudy;
+
+import com.example.kurtosisstudy.db.MainResultsDatabase;
+import com.example.kurtosisstudy.db.WearIntervalDao;
+import com.example.kurtosisstudy.db.WearIntervalEntity;
+import com.example.kurtosisstudy.db.WearSessionEntity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * WearIntervalIndex
+ * -----------------
+ * Purpose:
+ *   - Persisted worn segments (wear_intervals_table) so wear coverage questions are answered with one
+ *     index seek instead of walking the raw wear_sessions_table transitions:
+ *       · wornMillisBetween(t1, t2) — worn ms inside [t1, t2)
+ *       · isWornAt(t)               — wear state at t
+ *       · lastNotWornAt(t)          — latest removal at or before t
+ *
+ * What it does:
+ *   • apply(db, session, backfilled) runs inside CoalescingWriter's main transaction, right after the raw
+ *     row is inserted, so segments and transitions are committed (or rolled back) together:
+ *       - worn while the last segment is closed → opens a segment (endTs null);
+ *       - not worn while it is open → closes it (backfilled = stamped at last heartbeat + 1 ms);
+ *       - repeated states change nothing (same as the raw fold: only flips count);
+ *       - a transition older than the newest segment edge (backdated / replaced) → rebuild().
+ *   • rebuild(db): full fold of every transition, O(n); also used when the table is still empty
+ *     (after MAIN_3_4) — rebuildIfEmpty() is queued by DataStorageManager.init.
+ *   • Each segment stores wornBefore (worn ms of all earlier segments), a running prefix sum:
+ *       worn(0, t) = seg.wornBefore + (min(t, seg.endTs) - seg.startTs), seg = last segment starting ≤ t
+ *     → worn between t1 and t2 is worn(0, t2) - worn(0, t1): two primary-key seeks.
+ *
+ * Notes:
+ *   • Transitions only: before the first recorded "worn" nothing counts as worn, like the raw fold.
+ *   • Writes happen on the CoalescingWriter thread only; reads are plain DAO calls from any worker.
+ */
+
+public final class WearIntervalIndex {
+
+    private static final String TAG = "WearIntervalIndex_KurtosisStudy";
+
+    private WearIntervalIndex() {} // no instances
+
+    // ================== Maintenance (writer thread) ==================
+
+    public static void apply(MainResultsDatabase db, WearSessionEntity s, boolean backfilled) {
+        WearIntervalDao dao = db.wearIntervalDao();
+        WearIntervalEntity last = dao.getLast();
+        if (last == null
+                || s.timestamp <= last.startTs
+                || (last.endTs != null && s.timestamp < last.endTs)) {
+            rebuild(db);                                       // first use or backdated: fold everything
+            return;
+        }
+        if (last.endTs == null) {
+            if (!s.isWorn) dao.close(last.startTs, s.timestamp, backfilled);
+        } else if (s.isWorn) {
+            dao.insert(new WearIntervalEntity(s.timestamp, null,
+                    last.wornBefore + (last.endTs - last.startTs), false));
+        }
+    }
+
+    public static void rebuildIfEmpty(MainResultsDatabase db) {
+        if (db.wearIntervalDao().getLast() == null) rebuild(db);
+    }
+
+    public static void rebuild(MainResultsDatabase db) {
+        WearIntervalDao dao = db.wearIntervalDao();
+        Set<Long> backfilledEnds = new HashSet<>(dao.getBackfilledEnds());
+        List<WearIntervalEntity> segments = fold(db.wearSessionDao().getAllSessions(), backfilledEnds);
+        dao.deleteAll();
+        dao.insertAll(segments);
+        LogSaver.saveLog(TAG, "d", "Rebuilt " + segments.size() + " worn segments");
+    }
+
+    // Transitions (ascending) → worn segments with their prefix sums
+    static List<WearIntervalEntity> fold(List<WearSessionEntity> sessions, Set<Long> backfilledEnds) {
+        List<WearIntervalEntity> out = new ArrayList<>();
+        WearIntervalEntity open = null;
+        long wornBefore = 0;
+        for (WearSessionEntity s : sessions) {
+            if (s.isWorn && open == null) {
+                open = new WearIntervalEntity(s.timestamp, null, wornBefore, false);
+                out.add(open);
+            } else if (!s.isWorn && open != null) {
+                open.endTs = s.timestamp;
+                open.backfilled = backfilledEnds.contains(s.timestamp);
+                wornBefore += s.timestamp - open.startTs;
+                open = null;
+            }
+        }
+        return out;
+    }
+
+    // ================== Queries ==================
+
+    // Worn ms in [t1, t2)
+    public static long wornMillisBetween(MainResultsDatabase db, long t1, long t2) {
+        if (t2 <= t1) return 0L;
+        WearIntervalDao dao = db.wearIntervalDao();
+        return wornUpTo(dao, t2) - wornUpTo(dao, t1);
+    }
+
+    public static boolean isWornAt(MainResultsDatabase db, long t) {
+        WearIntervalEntity seg = db.wearIntervalDao().getAtOrBefore(t);
+        return seg != null && (seg.endTs == null || t < seg.endTs);
+    }
+
+    // Latest removal at or before t, or null if the watch was never taken off before t
+    public static Long lastNotWornAt(MainResultsDatabase db, long t) {
+        return db.wearIntervalDao().getLastEndAtOrBefore(t);
+    }
+
+    // True if any segment starts at or before t: before that there is no wear history to judge by
+    public static boolean hasHistoryAt(MainResultsDatabase db, long t) {
+        return db.wearIntervalDao().getAtOrBefore(t) != null;
+    }
+
+    // Worn ms from the first segment up to t
+    private static long wornUpTo(WearIntervalDao dao, long t) {
+        WearIntervalEntity seg = dao.getAtOrBefore(t);
+        if (seg == null) return 0L;
+        long end = (seg.endTs == null) ? t : Math.min(t, seg.endTs);
+        return seg.wornBefore + (end - seg.startTs);
+    }
+}
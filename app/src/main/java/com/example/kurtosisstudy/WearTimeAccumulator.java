@@ -0,0 +1,276 @@
+package com.example.kurtosisstudy;
+
+import com.example.kurtosisstudy.db.WearSessionEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * WearTimeAccumulator
+ * -------------------
+ * Purpose:
+ *   - Today's worn / not-worn minutes inside the 08:00–22:00 window, kept up to date in memory instead of
+ *     re-reading and re-walking every WearSessionEntity of the day every minute.
+ *
+ * What it does:
+ *   • Folded state for the loaded day: current wear state, the instant everything is accounted up to
+ *     (accountedTo), accumulated worn / not-worn millis, plus the day's transitions (sorted, a few dozen).
+ *   • onSession(session) (each saved transition):
+ *       - Newest transition so far → O(1): the span since accountedTo goes to the old state, state flips.
+ *       - Backdated transition (saveWearStateToDatabaseAt with an earlier timestamp) → the day's list
+ *         is re-folded in memory, O(transitions of the day). Same result as re-reading the DB.
+ *       - A transition of a newer day starts that day; one of an older day is ignored (not today's rows).
+ *   • minutes(now): accumulated values + the open span [accountedTo, min(now, 22:00)] → O(1) per tick.
+ *   • slopeStart(): start of the trailing worn run inside the window (GoalNotificationManager's expected
+ *     slope), walked back over the day's transitions in memory instead of re-reading them.
+ *   • load(day, sessions): full recompute from the DB rows — only on process start (or after a failed check).
+ *     A later new day without any transition yet is started in memory (startDay), no DB read.
+ *     Transitions seen before the first load may not be committed yet when the rows are read: they are
+ *     kept and replayed on top of the rows (same timestamp replaces, so a row read twice counts once).
+ *   • referenceMinutes(...): the original per-minute algorithm, kept verbatim as the equivalence oracle;
+ *     DataStorageManager compares both every VERIFY_INTERVAL_MS and reloads from the DB on a mismatch.
+ *
+ * Notes:
+ *   • Not thread-safe: used only on DataStorageManager's storage worker.
+ *   • Checkpoint: the minutes are persisted through the existing daily wear time / day_summary write
+ *     whenever they change; a restart rebuilds the in-memory state with one load(...).
+ *   • Day with no transition at all → 0 worn / 840 not worn, exactly like the original algorithm.
+ */
+
+public class WearTimeAccumulator {
+
+    static final int WINDOW_MINUTES = 14 * 60;   // 08:00–22:00 = 840
+    static final long VERIFY_INTERVAL_MS = 60L * 60 * 1000;
+
+    private String day = null;                   // null = nothing loaded yet (process start)
+    private long windowStart, windowEnd;
+    private final List<WearSessionEntity> sessions = new ArrayList<>();   // day's transitions, by timestamp
+    private final List<WearSessionEntity> beforeLoad = new ArrayList<>(); // seen while nothing was loaded
+    private long sessionsSeen = 0;
+
+    // Fold of `sessions` (see referenceMinutes)
+    private boolean state;
+    private long accountedTo;
+    private long wornMillis, notWornMillis;
+
+    // Last values handed out by the caller (replaces the "has anything changed" DB read)
+    private int publishedWorn = -1, publishedNotWorn = -1;
+
+    // ---- Metrics ----
+    private long appliedO1 = 0, refolds = 0, loads = 0, checks = 0, mismatches = 0;
+    private long lastVerifyAt = 0;
+
+    // ================== Day ==================
+
+    public boolean isLoadedFor(String today) {
+        return today.equals(day);
+    }
+
+    // Some day was loaded in this process: every later transition went through onSession(...)
+    public boolean isLoaded() {
+        return day != null;
+    }
+
+    // Full recompute: the day's rows from the DB (ORDER BY timestamp ASC), then the transitions seen before
+    public void load(String today, List<WearSessionEntity> rows) {
+        startDay(today);
+        if (rows != null) sessions.addAll(rows);
+        refold();
+        loads++;
+        List<WearSessionEntity> early = new ArrayList<>(beforeLoad);
+        beforeLoad.clear();
+        for (WearSessionEntity s : early) apply(s);
+    }
+
+    // New day seen live (rollover): nothing to read, the day has no transition yet
+    public void startDay(String newDay) {
+        day = newDay;
+        long[] window = StudyClock.windowOf(newDay);   // 08:00 / 22:00
+        windowStart = window[0];
+        windowEnd = window[1];
+        sessions.clear();
+        refold();
+        publishedWorn = -1;
+        publishedNotWorn = -1;
+    }
+
+    // ================== Transitions ==================
+
+    public void onSession(WearSessionEntity s) {
+        sessionsSeen++;
+        if (s.date == null) return;
+        if (day == null) {
+            beforeLoad.add(s);                                 // not loaded yet: replayed by load(...)
+            return;
+        }
+        apply(s);
+    }
+
+    // Transitions handed to onSession so far (a DB read older than a change is not compared against)
+    public long sessionsSeen() {
+        return sessionsSeen;
+    }
+
+    private void apply(WearSessionEntity s) {
+        int cmp = s.date.compareTo(day);
+        if (cmp < 0) return;                                   // an older day's row
+        if (cmp > 0) startDay(s.date);
+
+        // Same timestamp replaces (REPLACE on the primary key, like the DB)
+        int i = sessions.size();
+        while (i > 0 && sessions.get(i - 1).timestamp > s.timestamp) i--;
+        if (i > 0 && sessions.get(i - 1).timestamp == s.timestamp) {
+            sessions.set(i - 1, s);
+            refold();
+            return;
+        }
+        sessions.add(i, s);
+
+        if (i == sessions.size() - 1) {
+            step(s);                                           // newest so far: O(1)
+            appliedO1++;
+        } else {
+            refold();                                          // backdated: re-walk the day in memory
+        }
+    }
+
+    // One transition on top of the fold (timestamps non-decreasing)
+    private void step(WearSessionEntity s) {
+        if (s.timestamp < windowStart) {
+            state = s.isWorn;                                  // state before 08:00, no time counted
+            return;
+        }
+        if (s.timestamp > windowEnd) return;                   // after 22:00: ignored
+        long delta = s.timestamp - accountedTo;
+        if (state) wornMillis += delta;
+        else notWornMillis += delta;
+        state = s.isWorn;
+        accountedTo = s.timestamp;
+    }
+
+    private void refold() {
+        state = false;                                         // day starts "not worn"
+        accountedTo = windowStart;
+        wornMillis = 0;
+        notWornMillis = 0;
+        for (WearSessionEntity s : sessions) step(s);
+        refolds++;
+    }
+
+    // ================== Values ==================
+
+    // {wornMinutes, notWornMinutes} at `now`
+    public int[] minutes(long now) {
+        if (sessions.isEmpty()) return new int[]{0, WINDOW_MINUTES};
+        long worn = wornMillis, notWorn = notWornMillis;
+        long tailEnd = Math.min(now, windowEnd);
+        if (accountedTo < tailEnd) {
+            if (state) worn += tailEnd - accountedTo;
+            else notWorn += tailEnd - accountedTo;
+        }
+        return new int[]{(int) (worn / 60_000L), (int) (notWorn / 60_000L)};
+    }
+
+    // Start of the trailing worn run inside 08:00–22:00 (08:00 if worn since before the window), or -1
+    public long slopeStart() {
+        if (day == null) return -1L;
+        return trailingWornRunStart(sessions, windowStart, windowEnd);
+    }
+
+    // The backward walk GoalNotificationManager ran on the day's rows (ORDER BY timestamp ASC), unchanged
+    static long trailingWornRunStart(List<WearSessionEntity> sessions, long windowStart, long windowEnd) {
+        boolean inStreak = false;     // have we found the trailing run of 1s (going backward)?
+        long slopeStartTime = -1L;
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            WearSessionEntity session = sessions.get(i);
+            long t = session.timestamp;
+            boolean w = session.isWorn;
+
+            if (t > windowEnd) continue;                       // skip events after the window
+            if (t < windowStart) {
+                // A run found in the window keeps its start; otherwise worn before 08:00 clamps to 08:00
+                if (!inStreak) slopeStartTime = w ? windowStart : -1L;
+                break;
+            }
+            if (w) {
+                inStreak = true;                               // push the start earlier while we see 1s
+                slopeStartTime = t;
+            } else if (inStreak) {
+                break;                                         // the 0 before the run
+            }
+        }
+        return slopeStartTime;
+    }
+
+    // True (and remembered) if these minutes differ from the last ones handed out
+    public boolean publish(int[] value) {
+        if (value[0] == publishedWorn && value[1] == publishedNotWorn) return false;
+        publishedWorn = value[0];
+        publishedNotWorn = value[1];
+        return true;
+    }
+
+    // ================== Equivalence check ==================
+
+    public boolean verifyDue(long now) {
+        return now - lastVerifyAt >= VERIFY_INTERVAL_MS;
+    }
+
+    // Compares with the original algorithm on the DB rows; on a mismatch adopts the DB rows. True if equal.
+    public boolean verify(List<WearSessionEntity> dbRows, long now) {
+        lastVerifyAt = now;
+        checks++;
+        int[] expected = referenceMinutes(dbRows, windowStart, windowEnd, now);
+        int[] actual = minutes(now);
+        if (expected[0] == actual[0] && expected[1] == actual[1]) return true;
+        mismatches++;
+        String today = day;
+        int keepWorn = publishedWorn, keepNotWorn = publishedNotWorn;
+        load(today, dbRows);
+        publishedWorn = keepWorn;
+        publishedNotWorn = keepNotWorn;
+        return false;
+    }
+
+    // The per-minute algorithm computeAndSaveDailyWearTime used before, unchanged
+    static int[] referenceMinutes(List<WearSessionEntity> sessions, long windowStart, long windowEnd, long now) {
+        if (sessions == null || sessions.isEmpty()) {
+            return new int[]{0, WINDOW_MINUTES};
+        }
+        long tailEnd = Math.min(now, windowEnd);
+        long wornMillis = 0;
+        long notWornMillis = 0;
+        boolean currentState = false;            // Start day “not worn”
+        long previousTs = windowStart;
+        for (WearSessionEntity session : sessions) {
+            if (session.timestamp < windowStart) {
+                currentState = session.isWorn;
+                continue;
+            }
+            if (session.timestamp > windowEnd) break;
+            long delta = session.timestamp - previousTs;
+            if (currentState) wornMillis += delta;
+            else notWornMillis += delta;
+            currentState = session.isWorn;
+            previousTs = session.timestamp;
+        }
+        if (previousTs < tailEnd) {
+            long delta = tailEnd - previousTs;
+            if (currentState) wornMillis += delta;
+            else notWornMillis += delta;
+        }
+        return new int[]{(int) (wornMillis / 60_000L), (int) (notWornMillis / 60_000L)};
+    }
+
+    // ================== Metrics ==================
+
+    public String getMetricsSummary() {
+        return "wearAcc day=" + day
+                + " transitions=" + sessions.size()
+                + " appliedO1=" + appliedO1
+                + " refolds=" + refolds
+                + " loads=" + loads
+                + " checks=" + checks
+                + " mismatches=" + mismatches;
+    }
+}
@@ -4,6 +4,7 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.pm.ServiceInfo;
 import android.net.Uri;
 import android.os.Build;
@@ -18,7 +19,10 @@ import androidx.work.ForegroundInfo;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import com.example.kurtosisstudy.PartitionedStore;
 import com.example.kurtosisstudy.PrefsKeys;
+import com.example.kurtosisstudy.StudyClock;
+import com.example.kurtosisstudy.db.DayPartitionEntity;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.storage.FirebaseStorage;
@@ -40,8 +44,11 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,10 +68,14 @@ import java.util.regex.Pattern;
  *   • MAIN:
  *       - Zips main_results_db_<USER_ID> (+ WAL/SHM + meta.json).
  *       - Always overwrites cloud object apps/<appId>/users/<id>/main/.
+ *       - When the partitioned store is open, exports each of its days (PartitionedStore.exportDay) and
+ *         uploads it to days/Partitioned<id>_<dayKey>.zip, idempotent by SHA like the daily items.
  *   • DAILY:
  *       - For each dayKey, zips User<id>_<dayKey> (+ WAL/SHM + meta.json).
  *       - Computes SHA-256 and compares with cloud metadata (contentSha256).
  *       - Uploads only if different → idempotent uploads.
+ *       - Adds User<id>_<dayKey> to PrefsKeys.Data.UPLOADED_DAILY_DBS once the cloud copy matches and the
+ *         day is finished (today's copy is partial; compaction must never rely on it).
  *   • Progress:
  *       - Calls setForegroundAsync(...) with a small “Uploading…” notification.
  *       - Reports PROG_ITEM_DONE ("MAIN" or dayKey) and PROG_PERCENT (0–100).
@@ -72,6 +83,7 @@ import java.util.regex.Pattern;
  *       - Saves LAST_CLOUD_UPLOAD_TIME in PREFS.
  *       - Calls pruneLocalDailyDatabasesOlderThanAgeCloudSafe(...) to delete
  *         local daily DBs older than AGE_DAYS *only if* their .zip exists in cloud.
+ *       - Drops partitioned days older than AGE_DAYS, only those in PrefsKeys.Data.UPLOADED_PARTITION_DAYS.
  *
  * Notes:
  *   • Each daily upload is wrapped in try/catch so a single bad day doesn’t fail the whole job.
@@ -101,6 +113,9 @@ public class DatabaseUploadWorker extends Worker {
     // ---- Pruning policy ----
     private static final int AGE_DAYS = 14;
 
+    // A day counts as finished (uploaded copy final) this long after its midnight
+    private static final long FINISH_GRACE_MS = 10 * 60_000L;
+
     // Pattern: User{digits}_{yyyy_MM_dd}
     private static final Pattern USER_DAY_PATTERN =
             Pattern.compile("^User(\\d+)_([0-9]{4}_[0-9]{2}_[0-9]{2})$");
@@ -181,6 +196,11 @@ public class DatabaseUploadWorker extends Worker {
                     Log.w(TAG, "MAIN DB missing locally: " + mainDbName);
                 }
 
+                // Partitioned raw-data store (only open in STORAGE_MODE_PARTITIONED): one object per day
+                if (PartitionedStore.isOpen()) {
+                    uploadPartitionedDays(rootRef, appId, userId, deviceId);
+                }
+
                 done++;
                 setProgressAsync(new Data.Builder()
                         .putString(PROG_ITEM_DONE, "MAIN")
@@ -200,6 +220,11 @@ public class DatabaseUploadWorker extends Worker {
                         Log.w(TAG, "Daily DB missing locally, skip: " + dailyDbName);
                         continue;
                     }
+                    // A compacted file must never overwrite the full-rate copy already in the cloud
+                    if (isDailyCompacted(getApplicationContext(), dailyDbName)) {
+                        Log.d(TAG, "Skip compacted daily (full-rate copy already uploaded): " + dayKey);
+                        continue;
+                    }
 
                     final String ts = TS_FMT.format(new Date());
                     final boolean isFinal = true; // explicit user press = snapshot intent
@@ -241,6 +266,11 @@ public class DatabaseUploadWorker extends Worker {
                     } else {
                         Log.d(TAG, "Skip identical daily: " + dayKey);
                     }
+                    // Safe to compact locally from now on (see RawDataCompactionWorker), but only once the day
+                    // is over: a copy of an unfinished day misses the rows compaction would later delete
+                    if (isFinishedDay(dayKey)) {
+                        markDailyUploaded(getApplicationContext(), dailyDbName);
+                    }
                 } catch (Exception dayEx) {
                     Log.e(TAG, "Daily upload failed for " + dayKey + " (skipping)", dayEx);
                 } finally {
@@ -271,6 +301,17 @@ public class DatabaseUploadWorker extends Worker {
                 Log.e(TAG, "Pruning step failed (skipped): ", e);
             }
 
+            // Same age limit for the partitioned store, only for the days whose own copy is in the cloud
+            if (PartitionedStore.isOpen()) {
+                try {
+                    int dropped = PartitionedStore.applyRetention(AGE_DAYS, getStringSet(
+                            getApplicationContext(), PrefsKeys.Data.UPLOADED_PARTITION_DAYS));
+                    Log.d(TAG, "Partitioned retention dropped " + dropped + " day(s)");
+                } catch (Exception e) {
+                    Log.e(TAG, "Partitioned retention failed (skipped): ", e);
+                }
+            }
+
             return Result.success(new Data.Builder()
                     .putString(OUT_MESSAGE, "Upload complete. All items saved to cloud ✅")
                     .build());
@@ -283,6 +324,99 @@ public class DatabaseUploadWorker extends Worker {
         }
     }
 
+    // ================== PARTITIONED DAYS (idempotent by SHA) ==================
+
+    // Exports each partition to a per-day file and uploads it to days/Partitioned<id>_<dayKey>.zip.
+    // Finished days go to UPLOADED_PARTITION_DAYS once the cloud copy matches (retention may then drop them)
+    // and are not exported again; today is re-sent on every run and never marked.
+    private void uploadPartitionedDays(StorageReference rootRef, String appId, String userId, String deviceId) {
+        final Context ctx = getApplicationContext();
+        final Set<String> uploaded = getStringSet(ctx, PrefsKeys.Data.UPLOADED_PARTITION_DAYS);
+
+        for (DayPartitionEntity partition : PartitionedStore.getAllPartitions()) {
+            final String dayKey = partition.dayKey;
+            final boolean finished = isFinishedDay(dayKey);
+            if (finished && uploaded.contains(dayKey)) continue;
+
+            final String partDbName = "Partitioned" + userId + "_" + dayKey;
+            final File export = new File(ctx.getCacheDir(), partDbName);
+            try {
+                PartitionedStore.exportDay(dayKey, export);
+
+                final String ts = TS_FMT.format(new Date());
+                final File meta = writeMetaJson(ts, deviceId, partDbName, dayKey, userId, appId, finished);
+                final File zip = new File(ctx.getCacheDir(),
+                        "partitioned_backup_" + userId + "_" + dayKey + "_" + ts + ".zip");
+                zipFiles(zip,
+                        new ZipSource(export, "db/" + partDbName),
+                        new ZipSource(meta, "meta.json")
+                );
+
+                final String sha256 = sha256(zip);
+                final String objectPath = "apps/" + appId + "/users/" + userId + "/days/" + partDbName + ".zip";
+                final StorageReference ref = rootRef.child(objectPath);
+                StorageMetadata rmeta = getMetadataSafe(ref); // 404 -> null
+                String remoteSha = (rmeta != null) ? rmeta.getCustomMetadata("contentSha256") : null;
+
+                if (!sha256.equals(remoteSha)) {
+                    final StorageMetadata up = new StorageMetadata.Builder()
+                            .setCustomMetadata("contentSha256", sha256)
+                            .setCustomMetadata("isFinal", String.valueOf(finished))
+                            .setCustomMetadata("deviceId", deviceId)
+                            .setCustomMetadata("dbName", partDbName)
+                            .setCustomMetadata("dayKey", dayKey)
+                            .setCustomMetadata("userId", userId)
+                            .setCustomMetadata("filename", partDbName + ".zip")
+                            .setCustomMetadata("timestamp", ts)
+                            .build();
+
+                    setForegroundAsync(makeForegroundInfo("Uploading databases", "Uploading partition " + dayKey + "…"));
+                    Tasks.await(ref.putFile(Uri.fromFile(zip), up));
+                    Log.d(TAG, "Partition uploaded: " + dayKey);
+                } else {
+                    Log.d(TAG, "Skip identical partition: " + dayKey);
+                }
+                if (finished) addToStringSet(ctx, PrefsKeys.Data.UPLOADED_PARTITION_DAYS, dayKey);
+            } catch (Exception dayEx) {
+                Log.e(TAG, "Partition upload failed for " + dayKey + " (kept locally)", dayEx);
+            } finally {
+                //noinspection ResultOfMethodCallIgnored
+                export.delete();
+            }
+        }
+    }
+
+    private static Set<String> getStringSet(Context ctx, String key) {
+        return ctx.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE)
+                .getStringSet(key, Collections.emptySet());
+    }
+
+    private static void addToStringSet(Context ctx, String key, String value) {
+        SharedPreferences prefs = ctx.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE);
+        // Copy: the set returned by getStringSet must not be modified in place
+        Set<String> values = new HashSet<>(prefs.getStringSet(key, Collections.emptySet()));
+        if (values.add(value)) {
+            prefs.edit().putStringSet(key, values).apply();
+        }
+    }
+
+    // ================== UPLOADED SET (read by RawDataCompactionWorker) ==================
+
+    private static void markDailyUploaded(Context ctx, String dailyDbName) {
+        addToStringSet(ctx, PrefsKeys.Data.UPLOADED_DAILY_DBS, dailyDbName);
+    }
+
+    // A day is final once it ended FINISH_GRACE_MS ago (late minute rows of 23:59 are routed to their own day)
+    private static boolean isFinishedDay(String dayKey) {
+        return dayKey.compareTo(StudyClock.dayKeyOf(StudyClock.now() - FINISH_GRACE_MS)) < 0;
+    }
+
+    private static boolean isDailyCompacted(Context ctx, String dailyDbName) {
+        return ctx.getSharedPreferences(PrefsKeys.Data.PREFS, Context.MODE_PRIVATE)
+                .getStringSet(PrefsKeys.Data.COMPACTED_DAILY_DBS, Collections.emptySet())
+                .contains(dailyDbName);
+    }
+
     // ================== PRUNING (age-based across ALL users, cloud-safe) ==================
 
     private void pruneLocalDailyDatabasesOlderThanAgeCloudSafe(
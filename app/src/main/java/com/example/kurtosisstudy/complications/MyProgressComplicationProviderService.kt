@@ -16,8 +16,8 @@ import kotlinx.coroutines.withContext
 import kotlin.math.max
 
 // Your storage accessor
-import com.example.kurtosisstudy.DataStorageManager
 import com.example.kurtosisstudy.PrefsKeys
+import com.example.kurtosisstudy.TodaySnapshot
 
 class MyProgressComplicationProviderService : SuspendingComplicationDataSourceService() {
 
@@ -46,8 +46,8 @@ class MyProgressComplicationProviderService : SuspendingComplicationDataSourceSe
             return NoDataComplicationData()
         }
 
-        val today = loadTodayProgressAndGoal()
-        val g = max(today.goalMinutes, 1)          // max >= 1
+        val today = loadTodayProgressAndGoal(applicationContext)
+        val g = max(today.goalMinutes.takeIf { it > 0 } ?: DEFAULT_GOAL_MINUTES, 1)          // max >= 1
         val p = today.progressMinutes.coerceAtLeast(0)
         val label = if (p <= g) formatHm(p) else "+${p - g}'"  // truthful label past goal
         Log.d(TAG, "onComplicationActivated(g=$g, p=$p, label=$label)")
@@ -72,35 +72,13 @@ class MyProgressComplicationProviderService : SuspendingComplicationDataSourceSe
             return if (m < 10) "${h}h0${m}'" else "${h}h${m}'"
         }
 
-        /** Single helper that reads today's progress + goal (IO thread). */
-        private suspend fun loadTodayProgressAndGoal(): TodaySnapshot =
-            withContext(Dispatchers.IO) {
-                val dayKey  = DataStorageManager.getDayForDB()
-                val mainDb  = DataStorageManager.getMainDatabase()
-                val dailyDb = DataStorageManager.getDailyDatabase() // your accessor
-
-                val progress: Int = try {
-                    mainDb?.dailyCumulativeDao()?.getLastEntryForDay(dayKey)?.cumulative ?: 0
-                } catch (_: Throwable) { 0 }
-
-                val goal: Int = try {
-                    dailyDb
-                        ?.adjustedDailyGoalDao()
-                        ?.getLastGoal()
-                        ?.adjustedDailyGoal
-                        ?.takeIf { it > 0 }           // or { it != 0 } if you only want to treat 0 as invalid
-                        ?: DEFAULT_GOAL_MINUTES
-                } catch (_: Throwable) {
-                    DEFAULT_GOAL_MINUTES
-                }
-                Log.w(TAG, "Updating complication to: "+ progress + "; out of: "+ goal)
-                TodaySnapshot(progress, goal)
-            }
-
-        private data class TodaySnapshot(
-            val progressMinutes: Int,
-            val goalMinutes: Int
-        )
+        /** Today's progress + goal from the published snapshot; Room (IO thread) only on cold start. */
+        private suspend fun loadTodayProgressAndGoal(ctx: Context): TodaySnapshot {
+            val snapshot = TodaySnapshot.peek()
+                ?: withContext(Dispatchers.IO) { TodaySnapshot.get(ctx) }
+            Log.w(TAG, "Updating complication to: "+ snapshot.progressMinutes + "; out of: "+ snapshot.goalMinutes)
+            return snapshot
+        }
 
         /** Call this after you update the DB so the complication refreshes immediately. */
         @JvmStatic
@@ -2,7 +2,6 @@ package com.example.kurtosisstudy.complications
 
 import android.app.PendingIntent
 import android.content.ComponentName
-import android.content.Context
 import android.content.Intent
 import android.util.Log
 import androidx.wear.watchface.complications.data.ComplicationData
@@ -14,7 +13,9 @@ import androidx.wear.watchface.complications.datasource.ComplicationDataSourceUp
 import androidx.wear.watchface.complications.datasource.ComplicationRequest
 import androidx.wear.watchface.complications.datasource.SuspendingComplicationDataSourceService
 import com.example.kurtosisstudy.MainActivity
-import com.example.kurtosisstudy.PrefsKeys
+import com.example.kurtosisstudy.TodaySnapshot
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 
 class MyServiceAliveCheckComplicationProviderService : SuspendingComplicationDataSourceService() {
 
@@ -34,11 +35,12 @@ class MyServiceAliveCheckComplicationProviderService : SuspendingComplicationDat
     override suspend fun onComplicationRequest(request: ComplicationRequest): ComplicationData? {
         if (request.complicationType != ComplicationType.SHORT_TEXT) return null
 
-        val prefs = applicationContext.getSharedPreferences(PrefsKeys.HeartBeat.HEARTBEAT_PREFS, Context.MODE_PRIVATE)
-        val lastBeat = prefs.getLong(PrefsKeys.HeartBeat.HEARTBEAT_TIME, 0L)
+        // Last heartbeat as published by the service tick (HotStateFile HEARTBEAT_TIME only on cold start)
+        val snapshot = TodaySnapshot.peek()
+            ?: withContext(Dispatchers.IO) { TodaySnapshot.get(applicationContext) }
 
-        // Healthy if last heartbeat < FRESH_MS ago (elapsedRealtime-based)
-        val isAlive = lastBeat > 0 && (System.currentTimeMillis() - lastBeat) < FRESH_MS
+        // Healthy if last heartbeat < FRESH_MS ago
+        val isAlive = snapshot.isServiceAlive(FRESH_MS)
 
         if (isAlive) {
             // Hide the complication when service looks healthy
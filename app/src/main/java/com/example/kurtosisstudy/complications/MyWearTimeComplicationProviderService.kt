@@ -14,8 +14,8 @@ import kotlinx.coroutines.withContext
 import kotlin.math.max
 import kotlin.math.min
 
-// Your storage accessor
-import com.example.kurtosisstudy.DataStorageManager
+// Published "today" values
+import com.example.kurtosisstudy.TodaySnapshot
 
 class MyWearTimeComplicationProviderService : SuspendingComplicationDataSourceService() {
 
@@ -34,7 +34,9 @@ class MyWearTimeComplicationProviderService : SuspendingComplicationDataSourceSe
     override suspend fun onComplicationRequest(request: ComplicationRequest): ComplicationData? {
         if (request.complicationType != ComplicationType.RANGED_VALUE) return null
 
-        val wornMins = withContext(Dispatchers.IO) { readTodayWornMinutes() }
+        val snapshot = TodaySnapshot.peek()
+            ?: withContext(Dispatchers.IO) { TodaySnapshot.get(applicationContext) }
+        val wornMins = snapshot.wornMinutes.coerceAtLeast(0)
         val clamped = min(max(wornMins.toFloat(), 0f), GOAL_MINUTES)
         val label = formatHm(wornMins)
 
@@ -70,23 +72,6 @@ class MyWearTimeComplicationProviderService : SuspendingComplicationDataSourceSe
             return if (m < 10) "${h}h0${m}'" else "${h}h${m}'"
         }
 
-        /** Read today’s wornMinutes using your manager + DAO. */
-        private suspend fun readTodayWornMinutes(): Int {
-            val db = DataStorageManager.getMainDatabase()
-            if (db == null) {
-                Log.w(TAG, "Main database is null; returning 0")
-                return 0
-            }
-            val dayKey = DataStorageManager.getDayForDB() // your existing helper (e.g., "yyyy-MM-dd")
-            return try {
-                // Expect: DailyWearTimeDao.getLastEntryForDay(String): DailyWearTimeEntity?
-                db.dailyWearTimeDao().getLastEntryForDay(dayKey)?.wornMinutes ?: 0
-            } catch (t: Throwable) {
-                Log.e(TAG, "DAO read failed", t)
-                0
-            }
-        }
-
         /** Call this after you update the DB so the complication refreshes immediately. */
         @JvmStatic
         fun requestComplicationUpdate(ctx: android.content.Context) {
@@ -6,6 +6,8 @@ import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 
+import java.util.List;
+
 /*
 DailyCumulativeDao.java — Data Access Object
 Author: Guillem Cornella (@gcornella)
@@ -35,5 +37,9 @@ public interface DailyCumulativeDao {
     @Query("SELECT * FROM daily_cumulative_table WHERE timestamp <= :targetTimestamp AND day = :day ORDER BY timestamp DESC LIMIT 1")
     DailyCumulativeEntity getClosestBefore(long targetTimestamp, String day);
 
+    // Gets the rows of a given day written after a timestamp, oldest first (notification state after a restart)
+    @Query("SELECT * FROM daily_cumulative_table WHERE day = :day AND timestamp > :fromTimestamp ORDER BY timestamp ASC")
+    List<DailyCumulativeEntity> getEntriesSince(String day, long fromTimestamp);
+
 
 }
@@ -2,9 +2,12 @@ package com.example.kurtosisstudy.db;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "daily_cumulative_table")
+// (day, timestamp) serves the per-minute "last entry for day" and "closest before" lookups without a sort
+@Entity(tableName = "daily_cumulative_table",
+        indices = {@Index(value = {"day", "timestamp"})})
 public class DailyCumulativeEntity {
     @PrimaryKey @NonNull
     public long timestamp;
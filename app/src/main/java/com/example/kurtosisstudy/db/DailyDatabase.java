@@ -9,14 +9,20 @@ import androidx.room.RoomDatabase;
             MinuteAverageEntity.class,
             AdjustedDailyGoalEntity.class,
             LogsEntity.class,
+            SecondSummaryEntity.class,
+            EnergyReportEntity.class,
+            SignalPyramidEntity.class,
     },
-    version = 1,
-    exportSchema = false
+    version = 7,
+    exportSchema = true
 )
 public abstract class DailyDatabase extends RoomDatabase {
     public abstract SensorSampleDao sensorSampleDao();
     public abstract MinuteAverageDao minuteAverageDao();
     public abstract AdjustedDailyGoalDao adjustedDailyGoalDao();
     public abstract LogsDao logsDao();
+    public abstract SecondSummaryDao secondSummaryDao();
+    public abstract EnergyReportDao energyReportDao();
+    public abstract SignalPyramidDao signalPyramidDao();
 }
 
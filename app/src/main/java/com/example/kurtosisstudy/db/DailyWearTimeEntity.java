@@ -2,9 +2,12 @@ package com.example.kurtosisstudy.db;
 
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "daily_wear_minutes_table")
+// (week, day) serves the hourly weekly average, which reads a whole week ordered by day
+@Entity(tableName = "daily_wear_minutes_table",
+        indices = {@Index(value = {"week", "day"})})
 public class DailyWearTimeEntity {
     @PrimaryKey @NonNull
     public String day; // e.g. "2025-08-01"
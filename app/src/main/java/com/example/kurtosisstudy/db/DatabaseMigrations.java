@@ -0,0 +1,204 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/*
+DatabaseMigrations.java — Room schema migrations
+Description: Keeps every schema change of MainResultsDatabase, DailyDatabase and PartitionedDatabase as an explicit migration,
+so existing study files (main_results_db_<id> and every User<id>_<yyyy_MM_dd>) are upgraded in place
+instead of being wiped. Index names follow Room's "index_<table>_<columns>" convention so the migrated
+schema matches the exported one.
+*/
+
+public final class DatabaseMigrations {
+
+    private DatabaseMigrations() {} // no instances
+
+    // ---- MainResultsDatabase ----
+
+    // v1 -> v2: secondary indexes for the per-minute and hourly lookups
+    public static final Migration MAIN_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_daily_cumulative_table_day_timestamp` "
+                    + "ON `daily_cumulative_table` (`day`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_wear_sessions_table_date_timestamp` "
+                    + "ON `wear_sessions_table` (`date`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_wear_sessions_table_date_isWorn_timestamp` "
+                    + "ON `wear_sessions_table` (`date`, `isWorn`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_daily_wear_minutes_table_week_day` "
+                    + "ON `daily_wear_minutes_table` (`week`, `day`)");
+        }
+    };
+
+    // notifications_table has no day column: local "yyyy_MM_dd" of its ms timestamp
+    private static final String NOTIFICATION_DAY =
+            "strftime('%Y_%m_%d', n.timestamp / 1000, 'unixepoch', 'localtime')";
+
+    // v2 -> v3: one in-place summary row per day, backfilled from the append-only tables.
+    // Goals live in the daily files and are not backfilled (-1 until the next goal computation).
+    public static final Migration MAIN_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `day_summary` ("
+                    + "`day` TEXT NOT NULL, `week` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, "
+                    + "`activeMinutes` INTEGER NOT NULL, `diverseMinutes` INTEGER NOT NULL, "
+                    + "`wornMinutes` INTEGER NOT NULL, `notWornMinutes` INTEGER NOT NULL, "
+                    + "`goalMinutes` INTEGER NOT NULL, `ratio` REAL NOT NULL, "
+                    + "`notificationsLevel1` INTEGER NOT NULL, `notificationsLevel2` INTEGER NOT NULL, "
+                    + "`notificationsLevel3` INTEGER NOT NULL, `notificationsLevel4` INTEGER NOT NULL, "
+                    + "`notificationsLevel5` INTEGER NOT NULL, PRIMARY KEY(`day`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_day_summary_week` ON `day_summary` (`week`)");
+            db.execSQL("INSERT OR IGNORE INTO `day_summary` SELECT d.day, "
+                    + "COALESCE(w.week, c.week, 0), CAST(strftime('%s','now') AS INTEGER) * 1000, "
+                    + "COALESCE(c.cumulative, -1), COALESCE(c.secondaryCumulative, -1), "
+                    + "COALESCE(w.wornMinutes, -1), COALESCE(w.notWornMinutes, -1), -1, "
+                    + "COALESCE((SELECT r.ratioValue FROM weekly_ratio_table r WHERE r.weekId = COALESCE(w.week, c.week)), -1), "
+                    + "(SELECT COUNT(*) FROM notifications_table n WHERE n.level = 1 AND " + NOTIFICATION_DAY + " = d.day), "
+                    + "(SELECT COUNT(*) FROM notifications_table n WHERE n.level = 2 AND " + NOTIFICATION_DAY + " = d.day), "
+                    + "(SELECT COUNT(*) FROM notifications_table n WHERE n.level = 3 AND " + NOTIFICATION_DAY + " = d.day), "
+                    + "(SELECT COUNT(*) FROM notifications_table n WHERE n.level = 4 AND " + NOTIFICATION_DAY + " = d.day), "
+                    + "(SELECT COUNT(*) FROM notifications_table n WHERE n.level = 5 AND " + NOTIFICATION_DAY + " = d.day) "
+                    + "FROM (SELECT day FROM daily_cumulative_table UNION SELECT day FROM daily_wear_minutes_table) d "
+                    + "LEFT JOIN daily_wear_minutes_table w ON w.day = d.day "
+                    + "LEFT JOIN daily_cumulative_table c ON c.day = d.day "
+                    + "AND c.timestamp = (SELECT MAX(c2.timestamp) FROM daily_cumulative_table c2 WHERE c2.day = d.day) "
+                    + "WHERE d.day IS NOT NULL");
+        }
+    };
+
+    // v3 -> v4: worn segments folded from wear_sessions_table. Left empty here: WearIntervalIndex rebuilds it
+    // from the transitions on the writer thread, in order with the wear rows still being written.
+    public static final Migration MAIN_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `wear_intervals_table` ("
+                    + "`startTs` INTEGER NOT NULL, `endTs` INTEGER, `wornBefore` INTEGER NOT NULL, "
+                    + "`backfilled` INTEGER NOT NULL, PRIMARY KEY(`startTs`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_wear_intervals_table_endTs` "
+                    + "ON `wear_intervals_table` (`endTs`)");
+        }
+    };
+
+    // v4 -> v5: per-day chart histograms. Not backfilled: the wrist-angle bins need the raw samples,
+    // so days before the upgrade simply have no row.
+    public static final Migration MAIN_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `day_histogram_table` ("
+                    + "`day` TEXT NOT NULL, `week` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, "
+                    + "`slotActive` BLOB, `slotDiverse` BLOB, `slotAngle` BLOB, `appliedMinutes` BLOB, "
+                    + "PRIMARY KEY(`day`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_day_histogram_table_week` "
+                    + "ON `day_histogram_table` (`week`)");
+        }
+    };
+
+    public static final Migration[] MAIN = { MAIN_1_2, MAIN_2_3, MAIN_3_4, MAIN_4_5 };
+
+    // ---- DailyDatabase ----
+
+    // v1 -> v2: index for the 30' minute-average window
+    public static final Migration DAILY_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_minute_averages_table_timestamp` "
+                    + "ON `minute_averages_table` (`timestamp`)");
+        }
+    };
+
+    // v2 -> v3: 1 Hz summaries written by the raw-data compaction
+    public static final Migration DAILY_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `second_summaries_table` ("
+                    + "`secondStart` INTEGER NOT NULL, `sampleCount` INTEGER NOT NULL, "
+                    + "`meanAngle` REAL NOT NULL, `minAngle` REAL NOT NULL, `maxAngle` REAL NOT NULL, "
+                    + "`meanInclination` REAL NOT NULL, `minInclination` REAL NOT NULL, `maxInclination` REAL NOT NULL, "
+                    + "`meanMagnitude` REAL NOT NULL, `minMagnitude` REAL NOT NULL, `maxMagnitude` REAL NOT NULL, "
+                    + "`activeCount` INTEGER NOT NULL, `diverseCount` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`secondStart`))");
+        }
+    };
+
+    // v3 -> v4: logs keyed by a generated row id (the ms timestamp key made same-ms lines replace each other) + level
+    public static final Migration DAILY_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `logs_table_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`level` TEXT, `tag` TEXT, `log` TEXT)");
+            db.execSQL("INSERT INTO `logs_table_new` (`timestamp`, `level`, `tag`, `log`) "
+                    + "SELECT `timestamp`, NULL, `tag`, `log` FROM `logs_table` ORDER BY `timestamp`");
+            db.execSQL("DROP TABLE `logs_table`");
+            db.execSQL("ALTER TABLE `logs_table_new` RENAME TO `logs_table`");
+        }
+    };
+
+    // v4 -> v5: per-day CPU / wakelock report (CpuAccounting)
+    public static final Migration DAILY_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `energy_report_table` ("
+                    + "`kind` TEXT NOT NULL, `name` TEXT NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`valueMs` INTEGER NOT NULL, `count` INTEGER NOT NULL, `maxMs` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`kind`, `name`))");
+        }
+    };
+
+    // v5 -> v6: min/max + LTTB decimation pyramid of the raw signals (SignalPyramid)
+    public static final Migration DAILY_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `signal_pyramid_table` ("
+                    + "`signal` INTEGER NOT NULL, `level` INTEGER NOT NULL, `bucketStart` INTEGER NOT NULL, "
+                    + "`count` INTEGER NOT NULL, `minValue` REAL NOT NULL, `maxValue` REAL NOT NULL, "
+                    + "`meanValue` REAL NOT NULL, `pointTs` INTEGER NOT NULL, `pointValue` REAL NOT NULL, "
+                    + "`provisional` INTEGER NOT NULL, PRIMARY KEY(`signal`, `level`, `bucketStart`))");
+        }
+    };
+
+    // v6 -> v7: minute averages keyed by the measured epoch minute instead of the "HH:mm:ss" string.
+    // The date of a string key is the local date of its write time; a key later than its own write time
+    // belongs to the previous day (23:59 computed after midnight). The write-time index is dropped with the table.
+    public static final Migration DAILY_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `minute_averages_table_new` ("
+                    + "`epochMinute` INTEGER NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`average` INTEGER NOT NULL, `secondary` INTEGER NOT NULL, PRIMARY KEY(`epochMinute`))");
+            db.execSQL("INSERT OR REPLACE INTO `minute_averages_table_new` (`epochMinute`, `timestamp`, `average`, `secondary`) "
+                    + "SELECT CASE WHEN m * 60000 > `timestamp` THEN m - 1440 ELSE m END, `timestamp`, `average`, `secondary` "
+                    + "FROM (SELECT CAST(strftime('%s', date(`timestamp` / 1000, 'unixepoch', 'localtime') || ' ' || `alignedMinute`, 'utc') AS INTEGER) / 60 AS m, "
+                    + "`timestamp`, `average`, `secondary` FROM `minute_averages_table`) WHERE m IS NOT NULL "
+                    + "ORDER BY `timestamp`");
+            db.execSQL("DROP TABLE `minute_averages_table`");
+            db.execSQL("ALTER TABLE `minute_averages_table_new` RENAME TO `minute_averages_table`");
+        }
+    };
+
+    public static final Migration[] DAILY = { DAILY_1_2, DAILY_2_3, DAILY_3_4, DAILY_4_5, DAILY_5_6, DAILY_6_7 };
+
+    // ---- PartitionedDatabase ----
+
+    // v1 -> v2: minute averages keyed by (dayKey, epochMinute); the row's own dayKey dates the "HH:mm:ss" key
+    public static final Migration PARTITIONED_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `partitioned_minute_averages_table_new` ("
+                    + "`dayKey` TEXT NOT NULL, `epochMinute` INTEGER NOT NULL, `timestamp` INTEGER NOT NULL, "
+                    + "`average` INTEGER NOT NULL, `secondary` INTEGER NOT NULL, PRIMARY KEY(`dayKey`, `epochMinute`))");
+            db.execSQL("INSERT OR REPLACE INTO `partitioned_minute_averages_table_new` "
+                    + "(`dayKey`, `epochMinute`, `timestamp`, `average`, `secondary`) "
+                    + "SELECT `dayKey`, m, `timestamp`, `average`, `secondary` "
+                    + "FROM (SELECT `dayKey`, CAST(strftime('%s', replace(`dayKey`, '_', '-') || ' ' || `alignedMinute`, 'utc') AS INTEGER) / 60 AS m, "
+                    + "`timestamp`, `average`, `secondary` FROM `partitioned_minute_averages_table`) WHERE m IS NOT NULL");
+            db.execSQL("DROP TABLE `partitioned_minute_averages_table`");
+            db.execSQL("ALTER TABLE `partitioned_minute_averages_table_new` RENAME TO `partitioned_minute_averages_table`");
+        }
+    };
+
+    public static final Migration[] PARTITIONED = { PARTITIONED_1_2 };
+}
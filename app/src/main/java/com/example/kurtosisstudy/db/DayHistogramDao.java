@@ -0,0 +1,25 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/*
+DayHistogramDao.java — Data Access Object
+Description: One row per day of pre-binned activity / wrist-angle histograms (day_histogram_table).
+Charts read these rows by primary key or week instead of scanning minute averages or raw samples.
+*/
+
+@Dao
+public interface DayHistogramDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(DayHistogramEntity row);
+
+    @Query("SELECT * FROM day_histogram_table WHERE day = :day")
+    DayHistogramEntity getDay(String day);
+
+    @Query("SELECT * FROM day_histogram_table WHERE week = :week ORDER BY day ASC")
+    List<DayHistogramEntity> getWeek(int week);
+}
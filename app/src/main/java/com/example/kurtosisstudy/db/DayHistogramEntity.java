@@ -0,0 +1,32 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// Chart-ready histograms of one day (ActivityHistograms), rewritten in place as minute averages land.
+// Arrays are packed little-endian int32 BLOBs; (week) serves the week view, which reads ≤ 7 rows.
+@Entity(tableName = "day_histogram_table",
+        indices = {@Index(value = {"week"})})
+public class DayHistogramEntity {
+    @PrimaryKey @NonNull
+    public String day;              // Format "yyyy_MM_dd"
+    public int week;
+    public long updatedAt;
+    public byte[] slotActive;       // 96 × active seconds per 15' slot
+    public byte[] slotDiverse;      // 96 × diverse (secondary) seconds per 15' slot
+    public byte[] slotAngle;        // 96 × ANGLE_BINS samples per wrist-angle bin per 15' slot
+    public byte[] appliedMinutes;   // BitSet of the minutes of the day already counted
+
+    public DayHistogramEntity(@NonNull String day, int week, long updatedAt, byte[] slotActive,
+                              byte[] slotDiverse, byte[] slotAngle, byte[] appliedMinutes) {
+        this.day = day;
+        this.week = week;
+        this.updatedAt = updatedAt;
+        this.slotActive = slotActive;
+        this.slotDiverse = slotDiverse;
+        this.slotAngle = slotAngle;
+        this.appliedMinutes = appliedMinutes;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// One row per day present in the partitioned database: the [startMillis, endMillis) range that
+// owns that day's raw rows, plus where the data came from (live recording or an imported day file).
+@Entity(tableName = "day_partitions_table")
+public class DayPartitionEntity {
+    @PrimaryKey @NonNull
+    public String dayKey;           // Format "yyyy_MM_dd"
+    public long startMillis;        // Local midnight of dayKey
+    public long endMillis;          // Local midnight of the next day
+    public long createdAt;
+    public String importedFrom;     // Source file name (User<id>_<day>) or null when recorded live
+
+    public DayPartitionEntity(@NonNull String dayKey, long startMillis, long endMillis, long createdAt, String importedFrom) {
+        this.dayKey = dayKey;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.createdAt = createdAt;
+        this.importedFrom = importedFrom;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/*
+DaySummaryDao.java — Data Access Object
+Description: One row per day (day_summary) kept up to date in place: every write is ensure(day) + one
+UPDATE of the columns that changed, so readers get "today" with a primary-key lookup instead of
+re-deriving it with ORDER BY timestamp DESC LIMIT 1 over the append-only tables.
+*/
+
+@Dao
+public interface DaySummaryDao {
+    // Creates the day's row with every value unknown (-1); no-op if it exists
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void ensure(DaySummaryEntity row);
+
+    @Query("UPDATE day_summary SET week = :week, updatedAt = :ts, activeMinutes = :activeMinutes, "
+            + "diverseMinutes = :diverseMinutes WHERE day = :day")
+    void updateProgress(String day, int week, long ts, int activeMinutes, int diverseMinutes);
+
+    @Query("UPDATE day_summary SET week = :week, updatedAt = :ts, wornMinutes = :wornMinutes, "
+            + "notWornMinutes = :notWornMinutes WHERE day = :day")
+    void updateWear(String day, int week, long ts, int wornMinutes, int notWornMinutes);
+
+    @Query("UPDATE day_summary SET week = :week, updatedAt = :ts, goalMinutes = :goalMinutes, "
+            + "ratio = :ratio WHERE day = :day")
+    void updateGoal(String day, int week, long ts, int goalMinutes, float ratio);
+
+    // (:level = n) is 1 for the matching column, 0 for the others
+    @Query("UPDATE day_summary SET updatedAt = :ts, "
+            + "notificationsLevel1 = notificationsLevel1 + (:level = 1), "
+            + "notificationsLevel2 = notificationsLevel2 + (:level = 2), "
+            + "notificationsLevel3 = notificationsLevel3 + (:level = 3), "
+            + "notificationsLevel4 = notificationsLevel4 + (:level = 4), "
+            + "notificationsLevel5 = notificationsLevel5 + (:level = 5) WHERE day = :day")
+    void countNotification(String day, long ts, int level);
+
+    @Query("SELECT * FROM day_summary WHERE day = :day")
+    DaySummaryEntity getDay(String day);
+
+    @Query("SELECT * FROM day_summary WHERE day = :day")
+    LiveData<DaySummaryEntity> getDayLive(String day);
+
+    @Query("SELECT * FROM day_summary WHERE week = :week ORDER BY day ASC")
+    List<DaySummaryEntity> getWeek(int week);
+
+    @Query("SELECT * FROM day_summary ORDER BY day ASC")
+    List<DaySummaryEntity> getAll();
+
+    // Weekly average inputs from the week's (≤ 7) summary rows, without touching the per-minute
+    // cumulative rows (WeeklyAggregationBenchmark in the unit tests compares it with the per-day lookups)
+    @Query("SELECT SUM(wornMinutes >= 0) AS wearDays, "
+            + "SUM(wornMinutes > 0 AND wornMinutes < :minWornMinutes) AS shortDays, "
+            + "SUM(wornMinutes >= :minWornMinutes AND activeMinutes >= 0) AS validDays, "
+            + "TOTAL(CASE WHEN wornMinutes >= :minWornMinutes AND activeMinutes >= 0 THEN wornMinutes END) AS totalWearMinutes, "
+            + "TOTAL(CASE WHEN wornMinutes >= :minWornMinutes AND activeMinutes >= 0 THEN activeMinutes END) AS totalMovement "
+            + "FROM day_summary WHERE week = :week")
+    WeeklyMovementTotals getWeeklyMovementTotals(int week, int minWornMinutes);
+}
@@ -0,0 +1,41 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// "Current state" of one day, updated in place by the analytics pipeline (DaySummaryDao) in the same
+// transaction as the append-only row it summarizes. -1 = not known yet for that day.
+// (week) serves the weekly average, which reads the 7 rows of a week.
+@Entity(tableName = "day_summary",
+        indices = {@Index(value = {"week"})})
+public class DaySummaryEntity {
+    @PrimaryKey @NonNull
+    public String day;              // Format "yyyy_MM_dd"
+    public int week;
+    public long updatedAt;
+    public int activeMinutes;       // last daily_cumulative_table.cumulative of the day
+    public int diverseMinutes;      // last daily_cumulative_table.secondaryCumulative
+    public int wornMinutes;         // daily_wear_minutes_table
+    public int notWornMinutes;
+    public int goalMinutes;         // last adjusted goal (daily DB)
+    public float ratio;             // weekly ratio the goal was projected with
+    public int notificationsLevel1; // notifications_table rows of the day, per level
+    public int notificationsLevel2;
+    public int notificationsLevel3;
+    public int notificationsLevel4;
+    public int notificationsLevel5; // "watch not worn"
+
+    public DaySummaryEntity(@NonNull String day, int week, long updatedAt) {
+        this.day = day;
+        this.week = week;
+        this.updatedAt = updatedAt;
+        this.activeMinutes = -1;
+        this.diverseMinutes = -1;
+        this.wornMinutes = -1;
+        this.notWornMinutes = -1;
+        this.goalMinutes = -1;
+        this.ratio = -1f;
+    }
+}
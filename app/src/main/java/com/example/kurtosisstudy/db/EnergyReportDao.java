@@ -0,0 +1,22 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/*
+EnergyReportDao.java — Data Access Object
+Description: Defines the contract for the per-day CPU / wakelock report written by CpuAccounting.
+*/
+
+@Dao
+public interface EnergyReportDao {
+    // REPLACE: each write carries the day's cumulative values
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<EnergyReportEntity> rows);
+
+    @Query("SELECT * FROM energy_report_table ORDER BY kind, valueMs DESC")
+    List<EnergyReportEntity> getAll();
+}
@@ -0,0 +1,28 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+// One line of the day's energy-proxy report (CpuAccounting). Cumulative for the day: rewritten in place
+// every hour and at rollover, so the daily file ends up holding the final values.
+@Entity(tableName = "energy_report_table", primaryKeys = {"kind", "name"})
+public class EnergyReportEntity {
+    @NonNull
+    public String kind;             // SUBSYSTEM | THREAD | WAKELOCK | PROCESS
+    @NonNull
+    public String name;             // subsystem / thread name (digits folded to '#') / metric
+    public long timestamp;          // when these values were written
+    public long valueMs;            // CPU ms (SUBSYSTEM, THREAD, PROCESS) or held ms (WAKELOCK)
+    public long count;              // invocations (SUBSYSTEM) or acquisitions (WAKELOCK)
+    public long maxMs;              // longest single invocation (SUBSYSTEM), else 0
+
+    public EnergyReportEntity(@NonNull String kind, @NonNull String name, long timestamp,
+                              long valueMs, long count, long maxMs) {
+        this.kind = kind;
+        this.name = name;
+        this.timestamp = timestamp;
+        this.valueMs = valueMs;
+        this.count = count;
+        this.maxMs = maxMs;
+    }
+}
@@ -2,7 +2,8 @@ package com.example.kurtosisstudy.db;
 
 import androidx.room.Dao;
 import androidx.room.Insert;
-import androidx.room.OnConflictStrategy;
+
+import java.util.List;
 
 /*
 LogsDao.java — Data Access Object
@@ -13,6 +14,10 @@ Description: Defines the contract for writing logs for debugging.
 
 @Dao
 public interface LogsDao {
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    @Insert
     void insert(LogsEntity log);
-}
\ No newline at end of file
+
+    // One batch drained from LogSaver's ring buffer (ids are generated, nothing is replaced)
+    @Insert
+    void insertAll(List<LogsEntity> logs);
+}
@@ -3,16 +3,20 @@ package com.example.kurtosisstudy.db;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 
+// One persisted log line. The key is a row id: several lines in the same millisecond no longer replace each other.
 @Entity(tableName = "logs_table")
 public class LogsEntity {
-    @PrimaryKey
+    @PrimaryKey(autoGenerate = true)
+    public long id;
     public long timestamp;
+    public String level;            // "d" | "i" | "w" | "e" (null for rows written before v4)
     public String tag;
     public String log;
 
-    public LogsEntity(long timestamp, String tag, String log) {
+    public LogsEntity(long timestamp, String level, String tag, String log) {
         this.timestamp = timestamp;
+        this.level = level;
         this.tag = tag;
         this.log = log;
     }
-}
\ No newline at end of file
+}
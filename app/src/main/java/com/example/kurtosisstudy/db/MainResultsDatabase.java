@@ -11,10 +11,13 @@ import androidx.room.RoomDatabase;
             NotificationEntity.class,
             StudyMetaEntity.class,
             WearSessionEntity.class,
-            DailyWearTimeEntity.class
+            DailyWearTimeEntity.class,
+            DaySummaryEntity.class,
+            WearIntervalEntity.class,
+            DayHistogramEntity.class
     },
-    version = 1,
-        exportSchema = false
+    version = 5,
+    exportSchema = true
 )
 public abstract class MainResultsDatabase extends RoomDatabase {
     public abstract DailyCumulativeDao dailyCumulativeDao();
@@ -24,4 +27,7 @@ public abstract class MainResultsDatabase extends RoomDatabase {
     public abstract StudyMetaDao studyMetaDao();
     public abstract WearSessionDao wearSessionDao();
     public abstract DailyWearTimeDao dailyWearTimeDao();
+    public abstract DaySummaryDao daySummaryDao();
+    public abstract WearIntervalDao wearIntervalDao();
+    public abstract DayHistogramDao dayHistogramDao();
 }
@@ -23,8 +23,12 @@ public interface MinuteAverageDao {
     @Query("SELECT * FROM minute_averages_table")
     List<MinuteAverageEntity> getAllMinuteAverages();
 
-    // Gets all the minute averages (in seconds) to calculate the cumulative (in minutes) from the previous 30 minutes to detect active or not active window
-    @Query("SELECT average FROM minute_averages_table WHERE timestamp >= :startTime ORDER BY timestamp ASC")
-    List<Integer> getMinuteAveragesSince(long startTime);
+    // Gets the minute averages (in seconds) of the measured minutes >= fromMinute (epoch minutes) to detect active or not active window
+    @Query("SELECT average FROM minute_averages_table WHERE epochMinute >= :fromMinute ORDER BY epochMinute ASC")
+    List<Integer> getMinuteAveragesSince(long fromMinute);
+
+    // Same range with the keys, to rebuild the in-memory notification window after a restart
+    @Query("SELECT * FROM minute_averages_table WHERE epochMinute >= :fromMinute ORDER BY epochMinute ASC")
+    List<MinuteAverageEntity> getMinuteAverageRowsSince(long fromMinute);
 }
 
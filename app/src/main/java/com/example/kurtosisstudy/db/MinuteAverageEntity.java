@@ -1,21 +1,22 @@
 package com.example.kurtosisstudy.db;
 
-import androidx.annotation.NonNull;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 
+// Keyed by the measured minute as an integer (epoch ms / 60 000): range queries on the 30' window
+// go straight through the primary key (DAILY_6_7 converted the former "HH:mm:ss" string keys)
 @Entity(tableName = "minute_averages_table")
 public class MinuteAverageEntity {
-    @PrimaryKey @NonNull
-    public String alignedMinute;    // Start of minute containing data from the following minute (e.g., 13:14:00 contains data from 13:14:01 to 13:14:59)
+    @PrimaryKey
+    public long epochMinute;        // Minute the data belongs to (e.g., 13:14 contains data from 13:14:00 to 13:14:59)
     public long timestamp;          // Timestamp when a new row is added to the DB
     public int average;
     public int secondary;
 
-    public MinuteAverageEntity(@NonNull String alignedMinute, long timestamp, int average, int secondary) {
-        this.alignedMinute = alignedMinute;
+    public MinuteAverageEntity(long epochMinute, long timestamp, int average, int secondary) {
+        this.epochMinute = epochMinute;
         this.timestamp = timestamp;
         this.average = average;
         this.secondary = secondary;
     }
-}
\ No newline at end of file
+}
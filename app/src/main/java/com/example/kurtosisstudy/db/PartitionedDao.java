@@ -0,0 +1,60 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/*
+PartitionedDao.java — Data Access Object
+Description: Defines the contract for reading and writing raw data and minute averages in the
+single time-partitioned database, plus the day catalog used for O(1) day switching and retention.
+*/
+
+@Dao
+public interface PartitionedDao {
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertSamples(List<PartitionedSampleEntity> samples);
+
+    // Gets raw data rows between a given timestamp start and end, to calculate minute averages
+    @Query("SELECT * FROM partitioned_sensor_data_table WHERE timestamp > :start AND timestamp < :end")
+    List<PartitionedSampleEntity> getSamplesInRange(long start, long end);
+
+    // Drops a whole day of raw rows with one primary-key range delete
+    @Query("DELETE FROM partitioned_sensor_data_table WHERE timestamp >= :start AND timestamp < :end")
+    int deleteSamplesInRange(long start, long end);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertOrUpdateMinuteAverage(PartitionedMinuteAverageEntity minuteAverage);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertMinuteAverages(List<PartitionedMinuteAverageEntity> minuteAverages);
+
+    // Gets all the minute averages of one day to calculate the cumulative (in minutes)
+    @Query("SELECT * FROM partitioned_minute_averages_table WHERE dayKey = :dayKey")
+    List<PartitionedMinuteAverageEntity> getMinuteAveragesForDay(String dayKey);
+
+    // Gets the minute averages (in seconds) of one day's measured minutes >= fromMinute (30' activity window)
+    @Query("SELECT average FROM partitioned_minute_averages_table WHERE dayKey = :dayKey AND epochMinute >= :fromMinute ORDER BY epochMinute ASC")
+    List<Integer> getMinuteAveragesSince(String dayKey, long fromMinute);
+
+    @Query("DELETE FROM partitioned_minute_averages_table WHERE dayKey = :dayKey")
+    int deleteMinuteAveragesForDay(String dayKey);
+
+    // ---- Day catalog ----
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertPartition(DayPartitionEntity partition);
+
+    @Query("UPDATE day_partitions_table SET importedFrom = :source WHERE dayKey = :dayKey")
+    void markImported(String dayKey, String source);
+
+    @Query("SELECT * FROM day_partitions_table WHERE dayKey = :dayKey LIMIT 1")
+    DayPartitionEntity getPartition(String dayKey);
+
+    @Query("SELECT * FROM day_partitions_table ORDER BY dayKey ASC")
+    List<DayPartitionEntity> getAllPartitions();
+
+    @Query("DELETE FROM day_partitions_table WHERE dayKey = :dayKey")
+    void deletePartition(String dayKey);
+}
@@ -0,0 +1,17 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Database;
+import androidx.room.RoomDatabase;
+
+@Database(
+    entities = {
+            PartitionedSampleEntity.class,
+            PartitionedMinuteAverageEntity.class,
+            DayPartitionEntity.class,
+    },
+    version = 2,
+    exportSchema = true
+)
+public abstract class PartitionedDatabase extends RoomDatabase {
+    public abstract PartitionedDao partitionedDao();
+}
@@ -0,0 +1,25 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+// Same per-minute row as MinuteAverageEntity, keyed by (dayKey, epochMinute): day reads and the
+// 30' window of one day are both prefix/range scans of the primary key.
+@Entity(tableName = "partitioned_minute_averages_table",
+        primaryKeys = {"dayKey", "epochMinute"})
+public class PartitionedMinuteAverageEntity {
+    @NonNull
+    public String dayKey;           // Format "yyyy_MM_dd"
+    public long epochMinute;        // Measured minute, epoch ms / 60 000
+    public long timestamp;
+    public int average;
+    public int secondary;
+
+    public PartitionedMinuteAverageEntity(@NonNull String dayKey, long epochMinute, long timestamp, int average, int secondary) {
+        this.dayKey = dayKey;
+        this.epochMinute = epochMinute;
+        this.timestamp = timestamp;
+        this.average = average;
+        this.secondary = secondary;
+    }
+}
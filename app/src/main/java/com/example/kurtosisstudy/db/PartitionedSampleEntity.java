@@ -0,0 +1,37 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Same 50 Hz row as SensorSampleEntity, stored in the single long-lived partitioned database.
+// Rows are partitioned by day through the timestamp range kept in day_partitions_table,
+// so a whole day is dropped with one primary-key range delete.
+@Entity(tableName = "partitioned_sensor_data_table")
+public class PartitionedSampleEntity {
+    @PrimaryKey
+    public long timestamp;
+    public float accelX;
+    public float accelY;
+    public float accelZ;
+    public float angle;
+    public float inclination;
+    public float std;
+    public float rawKurtosis;
+    public float rawGMAC;
+    public int kurtosis;
+    public int activity;
+
+    public PartitionedSampleEntity(long timestamp, float accelX, float accelY, float accelZ, float angle, float inclination, float std, float rawKurtosis, float rawGMAC, int kurtosis, int activity) {
+        this.timestamp = timestamp;
+        this.accelX = accelX;
+        this.accelY = accelY;
+        this.accelZ = accelZ;
+        this.angle = angle;
+        this.inclination = inclination;
+        this.std = std;
+        this.rawKurtosis = rawKurtosis;
+        this.rawGMAC = rawGMAC;
+        this.kurtosis = kurtosis;
+        this.activity = activity;
+    }
+}
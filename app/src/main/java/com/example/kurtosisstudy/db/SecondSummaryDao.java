@@ -0,0 +1,30 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/*
+SecondSummaryDao.java — Data Access Object
+Description: Defines the contract for the 1 Hz summaries that replace the raw data of older days.
+*/
+
+@Dao
+public interface SecondSummaryDao {
+    // REPLACE so a chunk re-run after a crash overwrites its own seconds
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<SecondSummaryEntity> summaries);
+
+    // Gets the 1 Hz summaries between a given timestamp start (inclusive) and end (exclusive)
+    @Query("SELECT * FROM second_summaries_table WHERE secondStart >= :start AND secondStart < :end ORDER BY secondStart ASC")
+    List<SecondSummaryEntity> getSummariesInRange(long start, long end);
+
+    @Query("SELECT COUNT(*) FROM second_summaries_table")
+    int count();
+
+    // Oldest tier keeps only minute aggregates → summaries are dropped
+    @Query("DELETE FROM second_summaries_table")
+    int deleteAll();
+}
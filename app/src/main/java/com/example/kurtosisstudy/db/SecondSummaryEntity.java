@@ -0,0 +1,43 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// 1 Hz summary of the raw 50 Hz rows, written by RawDataCompactionWorker once a day leaves the full-rate tier
+@Entity(tableName = "second_summaries_table")
+public class SecondSummaryEntity {
+    @PrimaryKey
+    public long secondStart;        // Epoch ms floored to the second (covers secondStart .. secondStart+999)
+    public int sampleCount;
+    public float meanAngle;
+    public float minAngle;
+    public float maxAngle;
+    public float meanInclination;
+    public float minInclination;
+    public float maxInclination;
+    public float meanMagnitude;     // |acc| = sqrt(x² + y² + z²)
+    public float minMagnitude;
+    public float maxMagnitude;
+    public int activeCount;         // samples with activity == 1
+    public int diverseCount;        // samples with kurtosis == 1
+
+    public SecondSummaryEntity(long secondStart, int sampleCount,
+                               float meanAngle, float minAngle, float maxAngle,
+                               float meanInclination, float minInclination, float maxInclination,
+                               float meanMagnitude, float minMagnitude, float maxMagnitude,
+                               int activeCount, int diverseCount) {
+        this.secondStart = secondStart;
+        this.sampleCount = sampleCount;
+        this.meanAngle = meanAngle;
+        this.minAngle = minAngle;
+        this.maxAngle = maxAngle;
+        this.meanInclination = meanInclination;
+        this.minInclination = minInclination;
+        this.maxInclination = maxInclination;
+        this.meanMagnitude = meanMagnitude;
+        this.minMagnitude = minMagnitude;
+        this.maxMagnitude = maxMagnitude;
+        this.activeCount = activeCount;
+        this.diverseCount = diverseCount;
+    }
+}
@@ -21,5 +21,17 @@ public interface SensorSampleDao {
     // Gets raw data rows between a given timestamp start and end, to calculate minute averages
     @Query("SELECT * FROM sensor_data_table WHERE timestamp > :start AND timestamp < :end")
     List<SensorSampleEntity> getkurtosisOrGMACValuesInRange(long start, long end);
+
+    // Oldest raw row left in the file, used by the compaction to resume where it stopped
+    @Query("SELECT MIN(timestamp) FROM sensor_data_table")
+    Long getOldestTimestamp();
+
+    // Gets raw data rows between a given timestamp start (inclusive) and end (exclusive), in time order
+    @Query("SELECT * FROM sensor_data_table WHERE timestamp >= :start AND timestamp < :end ORDER BY timestamp ASC")
+    List<SensorSampleEntity> getSamplesInRange(long start, long end);
+
+    // Deletes raw data rows between a given timestamp start (inclusive) and end (exclusive)
+    @Query("DELETE FROM sensor_data_table WHERE timestamp >= :start AND timestamp < :end")
+    int deleteSamplesInRange(long start, long end);
 }
 
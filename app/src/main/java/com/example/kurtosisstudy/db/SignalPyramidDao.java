@@ -0,0 +1,23 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/*
+SignalPyramidDao.java — Data Access Object
+Description: Writes the decimation pyramid buckets built from each raw flush (REPLACE: a provisional
+bucket is overwritten by its final version) and reads single buckets back when a restart resumes one.
+Range reads for plotting go through CrossDayQueryEngine (SignalPyramid.range).
+*/
+
+@Dao
+public interface SignalPyramidDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<SignalPyramidEntity> buckets);
+
+    @Query("SELECT * FROM signal_pyramid_table WHERE signal = :signal AND level = :level AND bucketStart = :bucketStart")
+    SignalPyramidEntity getBucket(int signal, int level, long bucketStart);
+}
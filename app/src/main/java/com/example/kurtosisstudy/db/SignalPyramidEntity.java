@@ -0,0 +1,35 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Entity;
+
+// One bucket of the per-day decimation pyramid (SignalPyramid): min / max / mean of the raw signal inside
+// the bucket plus the point largest-triangle-three-buckets kept for it. The primary key
+// (signal, level, bucketStart) serves the zoom range reads.
+@Entity(tableName = "signal_pyramid_table",
+        primaryKeys = {"signal", "level", "bucketStart"})
+public class SignalPyramidEntity {
+    public int signal;              // SignalPyramid.Signal ordinal
+    public int level;               // index into SignalPyramid.LEVEL_MS
+    public long bucketStart;        // epoch ms, multiple of the level's width
+    public int count;               // raw samples covered
+    public float minValue;
+    public float maxValue;
+    public float meanValue;
+    public long pointTs;            // LTTB point
+    public float pointValue;
+    public boolean provisional;     // next bucket not complete yet: point may still change
+
+    public SignalPyramidEntity(int signal, int level, long bucketStart, int count, float minValue, float maxValue,
+                               float meanValue, long pointTs, float pointValue, boolean provisional) {
+        this.signal = signal;
+        this.level = level;
+        this.bucketStart = bucketStart;
+        this.count = count;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.meanValue = meanValue;
+        this.pointTs = pointTs;
+        this.pointValue = pointValue;
+        this.provisional = provisional;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.kurtosisstudy.db;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/*
+SqliteTuningProfile.java — per-database SQLite settings
+Description: Groups the PRAGMAs applied every time a Room database is opened (synchronous, cache_size,
+mmap_size, wal_autocheckpoint) and the page size the file is expected to have. Attach it with
+Room.databaseBuilder(...).addCallback(PROFILE.asCallback("name")).
+
+Notes:
+  - PRAGMAs are per connection; onOpen runs on Room's primary (writer) connection, which is the one
+    doing the 3000-row flushes. Readers keep the framework defaults.
+  - page_size cannot change once a WAL file exists, so it is only checked and logged on open.
+  - wal_autocheckpoint stays as a safety net; the regular checkpoints are PASSIVE ones run
+    off the writer thread by WalCheckpointScheduler.
+*/
+
+public final class SqliteTuningProfile {
+
+    private static final String TAG = "SqliteTuning_KurtosisStudy";
+
+    public static final String SYNC_OFF = "OFF";
+    public static final String SYNC_NORMAL = "NORMAL";   // durable in WAL mode except for the last commits on power loss
+    public static final String SYNC_FULL = "FULL";
+
+    // Raw 50 Hz bursts + logs: large WAL budget so auto-checkpoints almost never hit the writer
+    public static final SqliteTuningProfile DAILY_WRITE_HEAVY =
+            new SqliteTuningProfile(SYNC_NORMAL, 4 * 1024, 16L * 1024 * 1024, 4096, 4000);
+
+    // Small tables, read by UI/complications, written a few times per minute
+    public static final SqliteTuningProfile MAIN_READ_MOSTLY =
+            new SqliteTuningProfile(SYNC_NORMAL, 2 * 1024, 8L * 1024 * 1024, 4096, 1000);
+
+    public final String synchronous;        // OFF | NORMAL | FULL
+    public final int cacheSizeKib;          // written as cache_size = -KiB
+    public final long mmapSizeBytes;        // 0 disables memory-mapped I/O
+    public final int pageSize;              // expected page size of the file
+    public final int walAutocheckpointPages; // 0 disables automatic checkpoints
+
+    public SqliteTuningProfile(String synchronous, int cacheSizeKib, long mmapSizeBytes,
+                               int pageSize, int walAutocheckpointPages) {
+        this.synchronous = synchronous;
+        this.cacheSizeKib = cacheSizeKib;
+        this.mmapSizeBytes = mmapSizeBytes;
+        this.pageSize = pageSize;
+        this.walAutocheckpointPages = walAutocheckpointPages;
+    }
+
+    // Applies the profile to an open connection
+    public void apply(SupportSQLiteDatabase db, String label) {
+        pragma(db, "synchronous = " + synchronous);
+        pragma(db, "cache_size = -" + cacheSizeKib);
+        pragma(db, "mmap_size = " + mmapSizeBytes);
+        pragma(db, "wal_autocheckpoint = " + walAutocheckpointPages);
+
+        long actualPageSize = pragmaLong(db, "page_size");
+        if (actualPageSize != pageSize) {
+            Log.w(TAG, label + ": page_size is " + actualPageSize + ", profile expects " + pageSize + " (fixed once created)");
+        }
+        Log.d(TAG, label + ": applied " + this);
+    }
+
+    public RoomDatabase.Callback asCallback(String label) {
+        return new RoomDatabase.Callback() {
+            @Override
+            public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                try {
+                    apply(db, label);
+                } catch (Exception e) {
+                    // A failed PRAGMA must never prevent the database from opening
+                    Log.e(TAG, label + ": could not apply tuning profile", e);
+                }
+            }
+        };
+    }
+
+    // PRAGMAs that echo a row are rejected by execSQL on Android → always go through query()
+    private static void pragma(SupportSQLiteDatabase db, String statement) {
+        try (Cursor c = db.query("PRAGMA " + statement)) {
+            c.moveToFirst();
+        }
+    }
+
+    private static long pragmaLong(SupportSQLiteDatabase db, String name) {
+        try (Cursor c = db.query("PRAGMA " + name)) {
+            return c.moveToFirst() ? c.getLong(0) : -1L;
+        }
+    }
+
+    @NonNull @Override
+    public String toString() {
+        return "synchronous=" + synchronous + " cache=" + cacheSizeKib + "KiB mmap=" + mmapSizeBytes
+                + " page=" + pageSize + " walAutocheckpoint=" + walAutocheckpointPages;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/*
+WearIntervalDao.java — Data Access Object
+Description: Reads and maintains the worn segments of wear_intervals_table. Every read is a single
+primary-key or endTs index seek (ORDER BY … LIMIT 1), so it costs O(log n) whatever the study length.
+*/
+
+@Dao
+public interface WearIntervalDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(WearIntervalEntity segment);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<WearIntervalEntity> segments);
+
+    @Query("UPDATE wear_intervals_table SET endTs = :endTs, backfilled = :backfilled WHERE startTs = :startTs")
+    void close(long startTs, long endTs, boolean backfilled);
+
+    // Newest segment (open or closed)
+    @Query("SELECT * FROM wear_intervals_table ORDER BY startTs DESC LIMIT 1")
+    WearIntervalEntity getLast();
+
+    // Segment that starts at or before t (contains t if t < endTs or it is open)
+    @Query("SELECT * FROM wear_intervals_table WHERE startTs <= :t ORDER BY startTs DESC LIMIT 1")
+    WearIntervalEntity getAtOrBefore(long t);
+
+    // Latest removal at or before t
+    @Query("SELECT endTs FROM wear_intervals_table WHERE endTs IS NOT NULL AND endTs <= :t ORDER BY endTs DESC LIMIT 1")
+    Long getLastEndAtOrBefore(long t);
+
+    // Kept across a rebuild: the raw transitions do not say which closures were backfilled
+    @Query("SELECT endTs FROM wear_intervals_table WHERE backfilled = 1")
+    List<Long> getBackfilledEnds();
+
+    @Query("DELETE FROM wear_intervals_table")
+    void deleteAll();
+}
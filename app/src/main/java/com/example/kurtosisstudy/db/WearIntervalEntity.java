@@ -0,0 +1,25 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// One worn segment [startTs, endTs) folded from wear_sessions_table (WearIntervalIndex keeps it in step).
+// Segments never overlap, so ordering by startTs also orders endTs; (endTs) serves the last not-worn lookup.
+// wornBefore = worn ms of every earlier segment → worn time up to any t is one lookup, no walk.
+@Entity(tableName = "wear_intervals_table",
+        indices = {@Index(value = {"endTs"})})
+public class WearIntervalEntity {
+    @PrimaryKey
+    public long startTs;        // worn transition that opened the segment (ms)
+    public Long endTs;          // not-worn transition that closed it; null = still worn
+    public long wornBefore;     // sum of (endTs - startTs) of all earlier segments
+    public boolean backfilled;  // closed after the fact at last heartbeat + 1 ms (service was dead)
+
+    public WearIntervalEntity(long startTs, Long endTs, long wornBefore, boolean backfilled) {
+        this.startTs = startTs;
+        this.endTs = endTs;
+        this.wornBefore = wornBefore;
+        this.backfilled = backfilled;
+    }
+}
@@ -25,4 +25,8 @@ public interface WearSessionDao {
     // Gets all rows for a given day of worn/not-worn data to infer worn time and adjust daily goals
     @Query("SELECT * FROM wear_sessions_table WHERE date = :date ORDER BY timestamp ASC")
     List<WearSessionEntity> getSessionsForDate(String date);
+
+    // Every transition in time order, to (re)build wear_intervals_table
+    @Query("SELECT * FROM wear_sessions_table ORDER BY timestamp ASC")
+    List<WearSessionEntity> getAllSessions();
 }
\ No newline at end of file
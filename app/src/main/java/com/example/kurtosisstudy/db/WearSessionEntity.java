@@ -1,9 +1,15 @@
 package com.example.kurtosisstudy.db;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "wear_sessions_table")
+// (date, timestamp) serves the ordered day timeline, (date, isWorn, timestamp) the last not-worn lookup
+@Entity(tableName = "wear_sessions_table",
+        indices = {
+                @Index(value = {"date", "timestamp"}),
+                @Index(value = {"date", "isWorn", "timestamp"})
+        })
 public class WearSessionEntity {
     @PrimaryKey
     public long timestamp;  // when the transition happened (ms)
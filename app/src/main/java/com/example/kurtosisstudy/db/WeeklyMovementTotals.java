@@ -0,0 +1,16 @@
+package com.example.kurtosisstudy.db;
+
+/*
+WeeklyMovementTotals.java — Query result (not a table)
+
+Description: One row returned by DaySummaryDao.getWeeklyMovementTotals(...): the week's wear days and,
+over the days that pass the wear floor, the summed wear minutes and the summed final cumulative of each day.
+*/
+
+public class WeeklyMovementTotals {
+    public int wearDays;            // daily_wear_minutes_table rows of the week (any wear)
+    public int shortDays;           // 0 < wornMinutes < floor → skipped
+    public int validDays;           // wornMinutes >= floor AND the day has a cumulative row
+    public long totalWearMinutes;   // over valid days
+    public long totalMovement;      // over valid days: last cumulative of each day
+}
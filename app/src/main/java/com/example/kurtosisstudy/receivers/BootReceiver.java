@@ -15,10 +15,10 @@ import androidx.work.OutOfQuotaPolicy;
 import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 
+import com.example.kurtosisstudy.ComplicationUpdateBroker;
 import com.example.kurtosisstudy.DataStorageManager;
+import com.example.kurtosisstudy.HotStateFile;
 import com.example.kurtosisstudy.LogSaver;
-import com.example.kurtosisstudy.PrefsKeys;
-import com.example.kurtosisstudy.complications.MyServiceAliveCheckComplicationProviderService;
 
 public class BootReceiver extends BroadcastReceiver {
     // On reboot, set watch worn to unknown
@@ -36,13 +36,10 @@ public class BootReceiver extends BroadcastReceiver {
             Context app = context.getApplicationContext();
 
             // Set watch worn state to unknown
-            app.getSharedPreferences(PrefsKeys.Wear.WEAR_PREFS, Context.MODE_PRIVATE)
-                    .edit()
-                    .putInt(PrefsKeys.Wear.WEAR_STATE, STATE_UNKNOWN)
-                    .apply();
+            HotStateFile.get(app).putInt(HotStateFile.IntField.WEAR_STATE, STATE_UNKNOWN);
 
             // Refresh complication
-            MyServiceAliveCheckComplicationProviderService.requestComplicationUpdate(app);
+            ComplicationUpdateBroker.request(app, ComplicationUpdateBroker.Target.SERVICE_ALIVE);
 
             // Immediate one-off check/recovery (unique, idempotent) and set make sure a 15-min periodic watchdog exists
             //HeartbeatCheckWorker.enqueueNow(app);
@@ -2,7 +2,6 @@ package com.example.kurtosisstudy.receivers;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -16,13 +15,11 @@ import androidx.work.OneTimeWorkRequest;
 import androidx.work.ExistingWorkPolicy;
 import androidx.work.WorkManager;
 
+import com.example.kurtosisstudy.ComplicationUpdateBroker;
 import com.example.kurtosisstudy.ForegroundSensorService;
-import com.example.kurtosisstudy.PrefsKeys;
-import com.example.kurtosisstudy.complications.MyComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyProgressComplicationProviderService;
-import com.example.kurtosisstudy.complications.MyServiceAliveCheckComplicationProviderService;
+import com.example.kurtosisstudy.HotStateFile;
 import com.example.kurtosisstudy.DataStorageManager;
-import com.example.kurtosisstudy.complications.MyWearTimeComplicationProviderService;
+import com.example.kurtosisstudy.StudyClock;
 
 public class HeartbeatCheckWorker extends Worker {
 
@@ -50,22 +47,18 @@ public class HeartbeatCheckWorker extends Worker {
      * Safe to call from Worker, RestartReceiver, or anywhere.
      */
     public static void checkAndRecover(Context c, String srcTag) {
-        final SharedPreferences hbPrefs =
-                c.getSharedPreferences(PrefsKeys.HeartBeat.HEARTBEAT_PREFS, Context.MODE_PRIVATE);
+        final HotStateFile hot = HotStateFile.get(c);
 
-        final long last = hbPrefs.getLong(PrefsKeys.HeartBeat.HEARTBEAT_TIME, 0L);
-        final long now  = System.currentTimeMillis();
+        final long last = hot.getLong(HotStateFile.LongField.HEARTBEAT_TIME);
+        final long now  = StudyClock.now();
         final long age  = (last == 0L) ? -1L : (now - last);
         final boolean expired = (last == 0L) || (age > HEARTBEAT_TTL_MS);
 
         Log.d(TAG, "[" + srcTag + "] HB last=" + last + " ageMs=" + (last == 0L ? "N/A" : age) +
                 " expired=" + expired + " ttlMs=" + HEARTBEAT_TTL_MS);
 
-        // Keep complication fresh regardless
-        MyServiceAliveCheckComplicationProviderService.requestComplicationUpdate(c);
-        MyProgressComplicationProviderService.requestComplicationUpdate(c);
-        MyComplicationProviderService.requestComplicationUpdate(c);
-        MyWearTimeComplicationProviderService.requestComplicationUpdate(c);
+        // Keep complication fresh regardless (broker drops the ones whose value did not change)
+        ComplicationUpdateBroker.requestAll(c);
 
         if (!expired) {
             Log.d(TAG, "[" + srcTag + "] Service healthy → no action.");
@@ -90,22 +83,19 @@ public class HeartbeatCheckWorker extends Worker {
 
     /** Public so receivers reuse the exact same normalization path. */
     public static void normalizeWearStateOnExpiredHeartbeat(Context c, long lastHb) {
-        final SharedPreferences wear =
-                c.getSharedPreferences(PrefsKeys.Wear.WEAR_PREFS, Context.MODE_PRIVATE);
+        final HotStateFile hot = HotStateFile.get(c);
 
-        final boolean wasOn  = wear.getBoolean(PrefsKeys.Wear.WEAR_BOOL, false);
-        final int prevState  = wear.getInt(PrefsKeys.Wear.WEAR_STATE, -1); // -1 UNKNOWN, 0 OFF, 1 ON
+        final boolean wasOn  = hot.isWorn();
+        final int prevState  = hot.getWearState(); // -1 UNKNOWN, 0 OFF, 1 ON
 
+        // The OFF at lastHB+1ms is not written from here (the DBs belong to the dead service):
+        // ForegroundSensorService asks the persisted worn segments on restart, so resetting the
+        // hot state below no longer loses the closure.
         if (lastHb > 0L && (wasOn || prevState == 1)) {
-            try {
-                //DataStorageManager.saveWearStateToDatabaseAt(false, lastHb + 1L);
-                Log.d(TAG, "Backfilled OFF at lastHB+1ms to close prior ON segment");
-            } catch (Throwable t) {
-                Log.w(TAG, "Failed to backfill OFF at lastHB+1: " + t);
-            }
+            Log.d(TAG, "Prior ON segment will be closed at lastHB+1ms when the service restarts");
         }
 
-        wear.edit().putInt(PrefsKeys.Wear.WEAR_STATE, -1 /* UNKNOWN */).apply();
+        hot.putInt(HotStateFile.IntField.WEAR_STATE, -1 /* UNKNOWN */);
     }
 
     // ——— Existing helpers (unchanged) ———
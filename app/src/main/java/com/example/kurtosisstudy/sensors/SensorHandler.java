@@ -11,6 +11,7 @@ import android.util.Log;
 
 
 import com.example.kurtosisstudy.ComputationManager;
+import com.example.kurtosisstudy.CpuAccounting;
 import com.example.kurtosisstudy.DataStorageManager;
 import com.example.kurtosisstudy.LogSaver;
 
@@ -168,6 +169,7 @@ public class SensorHandler implements SensorEventListener {
     public void onSensorChanged(SensorEvent event) {
 
         if (!isRunning || event.sensor.getType() != Sensor.TYPE_ACCELEROMETER) return;
+        long cpuStart = CpuAccounting.start();
         // Log.d(TAG, "------ onSensorChanged called");
 
         // Convert from nanoseconds to miliseconds
@@ -274,6 +276,7 @@ public class SensorHandler implements SensorEventListener {
         if (durationMs>15){
             LogSaver.saveLog(TAG,"d", "Computation took >15ms: " + durationMs);
         }
+        CpuAccounting.stop(CpuAccounting.Subsystem.SENSOR_MATH, cpuStart);
     }
 
 
@@ -1,21 +1,21 @@
 package com.example.kurtosisstudy.sensors;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 
+import com.example.kurtosisstudy.CpuAccounting;
 import com.example.kurtosisstudy.DataStorageManager;
+import com.example.kurtosisstudy.HotStateFile;
 import com.example.kurtosisstudy.LogSaver;
-import com.example.kurtosisstudy.PrefsKeys;
 
 /*
  * WatchWearDetector
  * -----------------
  * Purpose:
  *   - Detects whether the watch is currently worn or off-wrist using the off-body + heart-rate sensors.
- *   - Keeps a persistent wear state in SharedPreferences + database for use by the FGS and analytics.
+ *   - Keeps a persistent wear state in HotStateFile + database for use by the FGS and analytics.
  *
  * What it does:
  *   • On start():
@@ -31,7 +31,7 @@ import com.example.kurtosisstudy.PrefsKeys;
  *       - If timeout reached while still UNKNOWN → assumes not worn.
  *   • applyState(...):
  *       - Updates in-memory flags (isWorn, wearState).
- *       - Persists WEAR_BOOL and WEAR_STATE to WEAR_PREFS.
+ *       - Persists WEAR_BOOL and WEAR_STATE to HotStateFile (one consistent pair).
  *       - Calls DataStorageManager.saveWearStateToDatabase(worn) for a DB-safe record.
  *   • stop():
  *       - Unregisters off-body listener and stops the HR resolver.
@@ -47,8 +47,8 @@ public class WatchWearDetector implements SensorEventListener {
     // Tag used for logging/debugging
     private static final String TAG = "WatchWearDetector_KurtosisStudy";
 
-    // Prefs + keys
-    private SharedPreferences prefsWatchWorn;
+    // Persisted wear pair (worn flag + state)
+    private final HotStateFile hotState;
 
     private final SensorManager sensorManager;
     private final Sensor offBodySensor;
@@ -82,9 +82,9 @@ public class WatchWearDetector implements SensorEventListener {
         heartRateSensor = sensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE);
 
         // Read preferences (last worn boolean, and last wear state {-1 if reboot})
-        prefsWatchWorn = context.getApplicationContext().getSharedPreferences(PrefsKeys.Wear.WEAR_PREFS, Context.MODE_PRIVATE);
-        isWorn = prefsWatchWorn.getBoolean(PrefsKeys.Wear.WEAR_BOOL, false);  // Default to true on first launch
-        wearState = prefsWatchWorn.getInt(PrefsKeys.Wear.WEAR_STATE, STATE_UNKNOWN);
+        hotState = HotStateFile.get(context);
+        isWorn = hotState.isWorn();               // false on first launch
+        wearState = hotState.getWearState();
         LogSaver.saveLog(TAG,"e", "WatchWearDetector isWorn?;" + isWorn + ", and state is: "+wearState);
 
 
@@ -143,6 +143,10 @@ public class WatchWearDetector implements SensorEventListener {
     // will be called only when the device detects a change in wear status — not on a fixed schedule.
     @Override
     public void onSensorChanged(SensorEvent event) {
+        CpuAccounting.run(CpuAccounting.Subsystem.WEAR_DETECTION, () -> handleSensorEvent(event));
+    }
+
+    private void handleSensorEvent(SensorEvent event) {
         int type = event.sensor.getType();
         //LogSaver.saveLog(TAG, "e", "Type: " + type);
 
@@ -204,10 +208,7 @@ public class WatchWearDetector implements SensorEventListener {
         isWorn = worn;
         wearState = state;
 
-        prefsWatchWorn.edit()
-                .putBoolean(PrefsKeys.Wear.WEAR_BOOL, worn)
-                .putInt(PrefsKeys.Wear.WEAR_STATE, state)
-                .apply();
+        hotState.putWear(worn, state);
         DataStorageManager.saveWearStateToDatabase(worn);
         LogSaver.saveLog(TAG, "d", "Watch worn: " + worn + ", so state is: " + state + ", so saving: "+worn+" to database");
     }
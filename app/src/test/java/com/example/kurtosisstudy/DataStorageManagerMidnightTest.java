@@ -0,0 +1,173 @@
+package com.example.kurtosisstudy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.kurtosisstudy.db.DailyDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/*
+ * DataStorageManagerMidnightTest
+ * ------------------------------
+ * Drives DataStorageManager across midnight with a fake StudyClock (StudyClock.install):
+ *   23:45 init → 23:55 tomorrow's file pre-opened → a producer thread flushes one second of 50 Hz samples
+ *   every (fake) second from 23:59:00 to 00:01:00 while the test thread runs the 00:00:30 swap →
+ *   00:03 yesterday's file retired.
+ * Each day's file must hold exactly the samples of that day (none lost, none in the wrong file), and no
+ * flush may stall the producer for a whole sample period. Routing is checked through dailyDatabaseFor /
+ * liveDailyDatabase at each step.
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class DataStorageManagerMidnightTest {
+
+    private static final long WAIT_MS = 10_000;
+    private static final int HZ = 50;
+    private static final long STALL_MS = 1_000;        // one flush period of the real producer
+
+    private final AtomicLong now = new AtomicLong();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LocalDate day = LocalDate.of(2025, 3, 12);
+    private final String dayKey = "2025_03_12";
+    private final String nextDayKey = "2025_03_13";
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        StudyClock.install(now::get);
+    }
+
+    @After
+    public void tearDown() {
+        DataStorageManager.shutdown();
+        StudyClock.install(StudyClock.SYSTEM);
+    }
+
+    @Test
+    public void crossesMidnightWithoutLosingOrMisroutingRows() throws Exception {
+        // 23:45: today's file only
+        setClock(day, 23, 45, 0);
+        DataStorageManager.init(context);
+        DailyDatabase today = DataStorageManager.peekDailyDatabase();
+        assertNotNull(today);
+        assertSame(today, DataStorageManager.dailyDatabaseFor(dayKey));
+        assertNull(DataStorageManager.liveDailyDatabase(nextDayKey));
+        assertFalse(DataStorageManager.shouldReinitializeDailyDb());
+
+        // 23:55: inside PREPARE_AHEAD_MS → tomorrow's file is built and opened on the storage worker
+        setClock(day, 23, 55, 0);
+        DataStorageManager.maintainDailyDatabases();
+        DailyDatabase prepared = DataStorageManager.liveDailyDatabase(nextDayKey);
+        assertNotNull("tomorrow's file not prepared", prepared);
+        waitUntil("tomorrow's file created", () -> context.getDatabasePath("User1_" + nextDayKey).exists());
+        assertSame(today, DataStorageManager.peekDailyDatabase());
+
+        // 23:59:00 → 00:01:00: one second of samples per flush, [t - 1 s, t), on a producer thread
+        long midnight = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        long swapAt = midnight + 30_000;
+        long from = midnight - 60_000, to = midnight + 60_000;
+        AtomicInteger beforeMidnight = new AtomicInteger(), afterMidnight = new AtomicInteger();
+        AtomicLong slowestFlushMs = new AtomicLong();
+        AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                for (long t = from; t <= to; t += 1_000) {
+                    now.set(t);
+                    int size = HZ;
+                    long[] ts = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        ts[i] = t - 1_000 + i * (1_000L / HZ);
+                        if (ts[i] < midnight) beforeMidnight.incrementAndGet();
+                        else afterMidnight.incrementAndGet();
+                    }
+                    float[] f = new float[size];
+                    int[] n = new int[size];
+                    long t0 = System.nanoTime();
+                    DataStorageManager.snapshotAndSaveBuffers(ts, f, f, f, f, f, f, f, f, n, n, size);
+                    slowestFlushMs.accumulateAndGet((System.nanoTime() - t0) / 1_000_000, Math::max);
+                    Thread.sleep(2);                            // lets the swap interleave with the flushes
+                }
+            } catch (Throwable e) {
+                producerFailure.set(e);
+            }
+        }, "midnight-producer");
+        producer.start();
+
+        // 00:00:30: the swap runs while the producer keeps flushing; it reuses the prepared instance
+        waitUntil("producer at 00:00:30", () -> now.get() >= swapAt || !producer.isAlive());
+        assertTrue(DataStorageManager.shouldReinitializeDailyDb());
+        DataStorageManager.init(context);
+        assertSame(prepared, DataStorageManager.peekDailyDatabase());
+        assertSame(prepared, DataStorageManager.dailyDatabaseFor(nextDayKey));
+        assertSame(today, DataStorageManager.dailyDatabaseFor(dayKey));
+        assertSame(today, DataStorageManager.liveDailyDatabase(dayKey));
+        assertSame("an older day falls back to today's file", prepared, DataStorageManager.dailyDatabaseFor("2025_03_01"));
+
+        producer.join(WAIT_MS);
+        assertFalse("producer still running", producer.isAlive());
+        assertNull("producer failed", producerFailure.get());
+        assertFalse(DataStorageManager.shouldReinitializeDailyDb());
+        assertTrue("a flush stalled the producer for " + slowestFlushMs.get() + " ms", slowestFlushMs.get() < STALL_MS);
+
+        // Every sample in the file of its own day, exactly once
+        int before = beforeMidnight.get(), after = afterMidnight.get();
+        assertEquals(61 * HZ, before);                          // [23:58:59, 00:00:00)
+        assertEquals(60 * HZ, after);                           // [00:00:00, 00:01:00)
+        waitUntil("all samples stored", () -> rows(today) + rows(prepared) >= before + after);
+        assertEquals("samples of " + dayKey, before, rows(today));
+        assertEquals("samples of " + nextDayKey, after, rows(prepared));
+
+        // 00:03: grace period over → yesterday's file is closed and its day routes to today's file
+        setClock(day.plusDays(1), 0, 3, 0);
+        DataStorageManager.maintainDailyDatabases();
+        waitUntil("yesterday's file retired", () -> DataStorageManager.liveDailyDatabase(dayKey) == null && !today.isOpen());
+        assertSame(prepared, DataStorageManager.dailyDatabaseFor(dayKey));
+        assertSame(prepared, DataStorageManager.peekDailyDatabase());
+    }
+
+    // ================== Helpers ==================
+
+    private void setClock(LocalDate date, int hour, int minute, int second) {
+        now.set(date.atTime(LocalTime.of(hour, minute, second)).atZone(zone).toInstant().toEpochMilli());
+    }
+
+    private static int rows(DailyDatabase daily) {
+        try (Cursor c = daily.getOpenHelper().getReadableDatabase().query("SELECT COUNT(*) FROM sensor_data_table")) {
+            return c.moveToFirst() ? c.getInt(0) : -1;
+        }
+    }
+
+    private static void waitUntil(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("timed out waiting for " + what);
+            Thread.sleep(20);
+        }
+    }
+}
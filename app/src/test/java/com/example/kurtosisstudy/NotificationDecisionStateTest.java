@@ -0,0 +1,169 @@
+package com.example.kurtosisstudy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/*
+ * NotificationDecisionStateTest
+ * -----------------------------
+ * Feeds NotificationDecisionState the way computeAndSaveMinuteAverage / computeAndSaveDailyCumulative do
+ * and checks the two 30' reads against what the replaced DB queries would return:
+ *   recomputed minutes, a gap longer than the ring, late minutes colliding with a newer slot,
+ *   the cumulative lag before the first write of the day, and the day change; and the cumulative at the
+ *   slope start against DailyCumulativeDao.getClosestBefore (last write at or before, 0 if none).
+ */
+
+public class NotificationDecisionStateTest {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 12);
+    private static final String DAY_KEY = "2025_03_12";
+
+    @Before
+    public void setUp() {
+        NotificationDecisionState.clear();
+    }
+
+    @After
+    public void tearDown() {
+        NotificationDecisionState.clear();
+    }
+
+    @Test
+    public void recomputedMinuteReplacesItsValue() {
+        for (int m = 31; m <= 40; m++) feed(11, m, 30);                          // 10 × 30 s
+        long now = at(12, 0);
+        assertEquals(300, NotificationDecisionState.activeSecondsPrev30Minutes(now));
+        assertFalse(NotificationDecisionState.wasActiveDuringPrev30Minutes(now));
+
+        feed(11, 40, 90);                                                          // recomputed, not added
+        assertEquals(360, NotificationDecisionState.activeSecondsPrev30Minutes(now));
+        assertTrue(NotificationDecisionState.wasActiveDuringPrev30Minutes(now));
+
+        feed(11, 40, 0);
+        assertEquals(270, NotificationDecisionState.activeSecondsPrev30Minutes(now));
+    }
+
+    @Test
+    public void windowKeepsTheLast30MeasuredMinutes() {
+        feed(11, 30, 60);
+        feed(11, 31, 60);
+        assertEquals(120, NotificationDecisionState.activeSecondsPrev30Minutes(at(12, 0)));   // epochMinute ≥ now - 30'
+        assertEquals(60, NotificationDecisionState.activeSecondsPrev30Minutes(at(12, 1)));
+        assertEquals(0, NotificationDecisionState.activeSecondsPrev30Minutes(at(12, 2)));
+    }
+
+    @Test
+    public void gapLongerThanTheRingEmptiesTheWindow() {
+        for (int m = 0; m < 30; m++) feed(11, m, 60);
+        assertEquals(1800, NotificationDecisionState.activeSecondsPrev30Minutes(at(11, 30)));
+
+        long afterGap = at(11, 30) + (NotificationDecisionState.RING_MINUTES + 36) * 60_000L;  // 13:10
+        assertEquals(0, NotificationDecisionState.activeSecondsPrev30Minutes(afterGap));
+        assertFalse(NotificationDecisionState.wasActiveDuringPrev30Minutes(afterGap));
+
+        feed(13, 10, 45);
+        assertEquals(45, NotificationDecisionState.activeSecondsPrev30Minutes(at(13, 11)));
+
+        // Cumulative: the minutes between two writes far apart keep the earlier value
+        NotificationDecisionState.onCumulative(DAY_KEY, at(11, 0), 10);
+        NotificationDecisionState.onCumulative(DAY_KEY, at(13, 0), 50);
+        assertEquals(10, NotificationDecisionState.cumulative30MinutesBefore(at(12, 30)));
+        assertEquals(10, NotificationDecisionState.cumulative30MinutesBefore(at(13, 5)));
+        assertEquals(50, NotificationDecisionState.cumulative30MinutesBefore(at(13, 30)));
+        assertEquals(50, NotificationDecisionState.cumulative30MinutesBefore(at(15, 0)));
+    }
+
+    @Test
+    public void lateMinuteNeverEvictsANewerSlot() {
+        feed(12, 0, 100);
+        long now = at(12, 5);
+        assertEquals(100, NotificationDecisionState.activeSecondsPrev30Minutes(now));
+
+        // Same slot, one ring older: dropped, the newer minute stays
+        feed(12, 0 - NotificationDecisionState.RING_MINUTES, 500);
+        assertEquals(100, NotificationDecisionState.activeSecondsPrev30Minutes(now));
+        feed(12, 0, 120);
+        assertEquals(120, NotificationDecisionState.activeSecondsPrev30Minutes(now));
+
+        // A late minute inside the window still counts
+        feed(11, 50, 40);
+        assertEquals(160, NotificationDecisionState.activeSecondsPrev30Minutes(now));
+    }
+
+    @Test
+    public void cumulativeLagBeforeTheFirstWriteIsZero() {
+        NotificationDecisionState.onCumulative(DAY_KEY, at(10, 0), 5);
+        assertEquals(0, NotificationDecisionState.cumulative30MinutesBefore(at(10, 20)));      // 09:50 < first write
+        assertEquals(5, NotificationDecisionState.cumulative30MinutesBefore(at(10, 30)));
+
+        NotificationDecisionState.onCumulative(DAY_KEY, at(9, 0), 99);                          // older write: ignored
+        assertEquals(0, NotificationDecisionState.cumulative30MinutesBefore(at(9, 45)));
+        assertEquals(5, NotificationDecisionState.cumulative30MinutesBefore(at(10, 45)));
+
+        NotificationDecisionState.onCumulative(DAY_KEY, at(10, 10), 8);
+        assertEquals(5, NotificationDecisionState.cumulative30MinutesBefore(at(10, 39)));
+        assertEquals(8, NotificationDecisionState.cumulative30MinutesBefore(at(10, 40)));
+    }
+
+    @Test
+    public void newDayStartsEmptyAndOlderDayIsIgnored() {
+        feed(21, 50, 400);
+        NotificationDecisionState.onCumulative(DAY_KEY, at(21, 0), 70);
+        LocalDate next = DAY.plusDays(1);
+        long nextMorning = next.atTime(LocalTime.of(0, 20)).atZone(ZONE).toInstant().toEpochMilli();
+        assertEquals(0, NotificationDecisionState.activeSecondsPrev30Minutes(nextMorning));    // other day than the rings
+        assertEquals(0, NotificationDecisionState.cumulative30MinutesBefore(nextMorning));
+
+        NotificationDecisionState.onMinuteAverage("2025_03_13", nextMorning / 60_000L - 1, 20);
+        NotificationDecisionState.onMinuteAverage(DAY_KEY, at(23, 59) / 60_000L, 60);          // yesterday: ignored
+        NotificationDecisionState.onCumulative(DAY_KEY, at(23, 59), 90);
+        assertEquals(20, NotificationDecisionState.activeSecondsPrev30Minutes(nextMorning));
+        assertEquals(0, NotificationDecisionState.cumulative30MinutesBefore(nextMorning));
+    }
+
+    @Test
+    public void cumulativeAtOrBeforeFindsTheLastWrite() {
+        assertEquals(0, NotificationDecisionState.cumulativeAtOrBefore(at(9, 0)));                // nothing yet
+        NotificationDecisionState.onCumulative(DAY_KEY, at(8, 10), 3);
+        NotificationDecisionState.onCumulative(DAY_KEY, at(9, 0), 10);
+        NotificationDecisionState.onCumulative(DAY_KEY, at(9, 0), 11);                             // same row again
+        NotificationDecisionState.onCumulative(DAY_KEY, at(8, 30), 99);                            // older write: ignored
+        NotificationDecisionState.onCumulative(DAY_KEY, at(10, 0), 20);
+
+        assertEquals(0, NotificationDecisionState.cumulativeAtOrBefore(at(8, 0)));
+        assertEquals(3, NotificationDecisionState.cumulativeAtOrBefore(at(8, 10)));
+        assertEquals(3, NotificationDecisionState.cumulativeAtOrBefore(at(8, 59)));
+        assertEquals(11, NotificationDecisionState.cumulativeAtOrBefore(at(9, 0)));
+        assertEquals(20, NotificationDecisionState.cumulativeAtOrBefore(at(12, 0)));
+        long nextDay = DAY.plusDays(1).atTime(LocalTime.of(9, 0)).atZone(ZONE).toInstant().toEpochMilli();
+        assertEquals(0, NotificationDecisionState.cumulativeAtOrBefore(nextDay));                 // not today's rows
+
+        // A whole day of minute writes, hours back from the last one
+        for (int m = 10 * 60 + 1; m < 22 * 60; m++) {
+            NotificationDecisionState.onCumulative(DAY_KEY, at(0, 0) + m * 60_000L, m);
+        }
+        assertEquals(11 * 60 + 30, NotificationDecisionState.cumulativeAtOrBefore(at(11, 30) + 30_000));
+        assertEquals(21 * 60 + 59, NotificationDecisionState.cumulativeAtOrBefore(at(23, 0)));
+    }
+
+    // ================== Helpers ==================
+
+    private static void feed(int hour, int minute, int activeSeconds) {
+        long minuteStart = at(0, 0) + (hour * 60L + minute) * 60_000L;
+        NotificationDecisionState.onMinuteAverage(DAY_KEY, minuteStart / 60_000L, activeSeconds);
+    }
+
+    private static long at(int hour, int minute) {
+        return DAY.atTime(LocalTime.of(hour, minute)).atZone(ZONE).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.kurtosisstudy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * StudyClockTest
+ * --------------
+ * Drives StudyClock with a fake time source (StudyClock.install) across day boundaries and checks that the
+ * cached Day is rebuilt at midnight: key, [start, end), 08:00 / 22:00 bounds and study week all move with it.
+ * Runs in Europe/Madrid so the 23 h DST day (2025-03-30) is covered too.
+ */
+
+public class StudyClockTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Madrid");
+    private static final long HOUR_MS = 60L * 60 * 1000;
+
+    private final AtomicLong now = new AtomicLong();
+    private TimeZone previousZone;
+
+    @Before
+    public void setUp() {
+        previousZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(ZONE));
+        StudyClock.install(now::get);
+        // Study started on Wednesday 2025-03-05 at 10:00 → week 2 starts on 2025-03-12
+        StudyClock.setStudyStart(at(LocalDate.of(2025, 3, 5), 10, 0));
+    }
+
+    @After
+    public void tearDown() {
+        StudyClock.setStudyStart(0L);
+        StudyClock.install(StudyClock.SYSTEM);
+        TimeZone.setDefault(previousZone);
+    }
+
+    @Test
+    public void midnightMovesDayKeyBoundsAndWeek() {
+        LocalDate last = LocalDate.of(2025, 3, 11);     // 7th day of week 1
+        LocalDate first = last.plusDays(1);              // 1st day of week 2
+
+        now.set(at(first, 0, 0) - 1);
+        StudyClock.Day before = StudyClock.today();
+        assertEquals("2025_03_11", before.key);
+        assertEquals("2025_03_11", StudyClock.todayKey());
+        assertEquals(at(last, 0, 0), before.start);
+        assertEquals(at(first, 0, 0), before.end);
+        assertEquals(at(last, 8, 0), before.windowStart);
+        assertEquals(at(last, 22, 0), before.windowEnd);
+        assertEquals(1, before.week);
+        assertEquals(1, StudyClock.week());
+        assertFalse(StudyClock.isWithinActiveHours());
+        assertSame("cached within the day", before, StudyClock.today());
+
+        now.set(at(first, 0, 0));
+        StudyClock.Day after = StudyClock.today();
+        assertNotSame(before, after);
+        assertEquals("2025_03_12", after.key);
+        assertEquals("2025_03_12", StudyClock.todayKey());
+        assertEquals(before.end, after.start);
+        assertEquals(at(first.plusDays(1), 0, 0), after.end);
+        assertEquals(at(first, 8, 0), after.windowStart);
+        assertEquals(at(first, 22, 0), after.windowEnd);
+        assertEquals(at(first, 8, 0), StudyClock.todayAtHour(StudyClock.WINDOW_START_HOUR));
+        assertEquals(at(first, 22, 0), StudyClock.todayAtHour(StudyClock.WINDOW_END_HOUR));
+        assertEquals(2, after.week);
+        assertEquals(2, StudyClock.week());
+
+        // Yesterday's late sample still maps to yesterday's key and window
+        assertEquals("2025_03_11", StudyClock.dayKeyOf(at(first, 0, 0) - 1));
+        long[] window = StudyClock.windowOf("2025_03_11");
+        assertEquals(at(last, 8, 0), window[0]);
+        assertEquals(at(last, 22, 0), window[1]);
+        assertEquals(at(last, 0, 0), StudyClock.startOfDay("2025_03_11"));
+    }
+
+    @Test
+    public void activeHoursFollowTheNewDayWindow() {
+        LocalDate day = LocalDate.of(2025, 3, 12);
+        now.set(at(day, 7, 59));
+        assertFalse(StudyClock.isWithinActiveHours());
+        now.set(at(day, 8, 0));
+        assertTrue(StudyClock.isWithinActiveHours());
+        now.set(at(day, 21, 59));
+        assertTrue(StudyClock.isWithinActiveHours());
+        now.set(at(day, 22, 0));
+        assertFalse(StudyClock.isWithinActiveHours());
+        now.set(at(day.plusDays(1), 8, 30));
+        assertTrue(StudyClock.isWithinActiveHours());
+        assertEquals("2025_03_13", StudyClock.todayKey());
+    }
+
+    @Test
+    public void dstDayIs23HoursAndKeepsLocalBounds() {
+        LocalDate dst = LocalDate.of(2025, 3, 30);       // 02:00 → 03:00 in Europe/Madrid
+        now.set(at(dst, 12, 0));
+        StudyClock.Day d = StudyClock.today();
+        assertEquals("2025_03_30", d.key);
+        assertEquals(23 * HOUR_MS, d.end - d.start);
+        assertEquals(at(dst, 8, 0), d.windowStart);
+        assertEquals(at(dst, 22, 0), d.windowEnd);
+        assertEquals(4, d.week);                         // day 25 of the study
+
+        now.set(d.end);
+        assertEquals("2025_03_31", StudyClock.todayKey());
+        assertEquals(24 * HOUR_MS, StudyClock.today().end - StudyClock.today().start);
+        assertEquals(4, StudyClock.week());              // day 26
+    }
+
+    @Test
+    public void boundsOfOtherDaysKeepLocalMidnights() {
+        now.set(at(LocalDate.of(2025, 3, 12), 12, 0));
+        LocalDate dst = LocalDate.of(2025, 3, 30);
+        long[] bounds = StudyClock.boundsOf("2025_03_30");
+        assertEquals(at(dst, 0, 0), bounds[0]);
+        assertEquals(at(dst.plusDays(1), 0, 0), bounds[1]);
+        assertEquals(23 * HOUR_MS, bounds[1] - bounds[0]);
+
+        long[] today = StudyClock.boundsOf("2025_03_12");
+        assertEquals(StudyClock.today().start, today[0]);
+        assertEquals(StudyClock.today().end, today[1]);
+        assertEquals("2025_03_30", StudyClock.dayKeyOf(at(dst, 23, 59)));
+
+        assertNull(StudyClock.boundsOf("bench_001"));
+        assertNull(StudyClock.boundsOf(null));
+        assertEquals(StudyClock.today().start, StudyClock.startOfDay("bench_001"));
+    }
+
+    @Test
+    public void weekIsClampedAndZeroWithoutStudyStart() {
+        now.set(at(LocalDate.of(2025, 9, 1), 12, 0));
+        assertEquals(StudyClock.MAX_WEEK, StudyClock.week());
+
+        StudyClock.setStudyStart(0L);
+        assertEquals(0, StudyClock.week());
+    }
+
+    private static long at(LocalDate date, int hour, int minute) {
+        return date.atTime(LocalTime.of(hour, minute)).atZone(ZONE).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.kurtosisstudy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.kurtosisstudy.db.WearSessionEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * WearTimeAccumulatorTest
+ * -----------------------
+ * Feeds wear transitions to WearTimeAccumulator the way DataStorageManager does (onSession after each
+ * saved row) and, after every transition, compares minutes(now) with the original algorithm run on the
+ * rows read back from wear_sessions_table (sqlite-jdbc, WearSessionDao.getSessionsForDate).
+ * Covers newest / backdated / same-timestamp transitions, rows outside 08:00–22:00, an older day's row,
+ * the day rollover, transitions seen before the first load, and the reload after a mismatch.
+ * Also checks slopeStart(), the trailing worn run GoalNotificationManager's expected slope starts from.
+ */
+
+public class WearTimeAccumulatorTest {
+
+    private static final String SESSIONS_FOR_DATE = "SELECT * FROM wear_sessions_table WHERE date = ? ORDER BY timestamp ASC";
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LocalDate day = LocalDate.of(2025, 3, 12);
+    private final String dayKey = "2025_03_12";
+    private final String nextDayKey = "2025_03_13";
+    private Connection db;
+
+    @Before
+    public void open() throws Exception {
+        db = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (PreparedStatement s = db.prepareStatement("CREATE TABLE `wear_sessions_table` (`timestamp` INTEGER NOT NULL, "
+                + "`date` TEXT, `isWorn` INTEGER NOT NULL, PRIMARY KEY(`timestamp`))")) {
+            s.execute();
+        }
+    }
+
+    @After
+    public void close() throws Exception {
+        db.close();
+    }
+
+    @Test
+    public void dayWithoutTransitionsIsAllNotWorn() throws Exception {
+        WearTimeAccumulator acc = new WearTimeAccumulator();
+        acc.load(dayKey, dbRows(dayKey));
+        assertArrayEquals(new int[]{0, WearTimeAccumulator.WINDOW_MINUTES}, acc.minutes(at(day, 12, 0)));
+        assertMatchesDb(acc, dayKey, at(day, 12, 0));
+    }
+
+    @Test
+    public void liveTransitionsMatchTheDbWalk() throws Exception {
+        WearTimeAccumulator acc = new WearTimeAccumulator();
+        acc.load(dayKey, dbRows(dayKey));
+
+        save(acc, at(day, 7, 30), dayKey, true);       // before the window: state only
+        save(acc, at(day, 8, 45), dayKey, false);
+        save(acc, at(day, 9, 10), dayKey, true);
+        assertMatchesDb(acc, dayKey, at(day, 9, 59));
+        save(acc, at(day, 9, 40), dayKey, false);      // backdated
+        save(acc, at(day, 9, 40), dayKey, true);       // same timestamp replaces
+        assertMatchesDb(acc, dayKey, at(day, 10, 30));
+        save(acc, at(day, 6, 0), "2025_03_11", false);  // older day: ignored
+        save(acc, at(day, 21, 50), dayKey, false);
+        save(acc, at(day, 22, 30), dayKey, true);      // after the window: ignored
+        assertMatchesDb(acc, dayKey, at(day, 23, 0));
+    }
+
+    @Test
+    public void randomTransitionSequencesMatchTheDbWalk() throws Exception {
+        Random random = new Random(7);
+        long dayStart = at(day, 0, 0);
+        for (int trial = 0; trial < 50; trial++) {
+            try (PreparedStatement s = db.prepareStatement("DELETE FROM wear_sessions_table")) {
+                s.execute();
+            }
+            WearTimeAccumulator acc = new WearTimeAccumulator();
+            acc.load(dayKey, dbRows(dayKey));
+            long now = at(day, 6, 0);
+            for (int i = 0; i < 40; i++) {
+                now += random.nextInt(40 * 60_000);
+                long ts = (random.nextInt(4) == 0)
+                        ? dayStart + (long) random.nextInt((int) (now - dayStart + 1))   // backdated
+                        : now;
+                if (random.nextInt(10) == 0) ts = ts / 60_000L * 60_000L;                   // collides more often
+                save(acc, ts, dayKey, random.nextBoolean());
+                assertMatchesDb(acc, dayKey, now);
+                assertMatchesDb(acc, dayKey, now + random.nextInt(20 * 60_000));
+            }
+        }
+    }
+
+    @Test
+    public void newDayTransitionStartsThatDay() throws Exception {
+        WearTimeAccumulator acc = new WearTimeAccumulator();
+        acc.load(dayKey, dbRows(dayKey));
+        save(acc, at(day, 9, 0), dayKey, true);
+
+        LocalDate next = day.plusDays(1);
+        save(acc, at(next, 8, 30), nextDayKey, true);
+        assertTrue(acc.isLoadedFor(nextDayKey));
+        assertMatchesDb(acc, nextDayKey, at(next, 10, 0));
+        save(acc, at(day, 21, 0), dayKey, false);      // late row of yesterday: not today's
+        assertMatchesDb(acc, nextDayKey, at(next, 11, 0));
+    }
+
+    @Test
+    public void transitionsBeforeTheFirstLoadAreReplayed() throws Exception {
+        WearTimeAccumulator acc = new WearTimeAccumulator();
+        save(acc, at(day, 8, 30), dayKey, true);       // committed before the read
+        acc.onSession(new WearSessionEntity(at(day, 9, 15), dayKey, false));   // still queued in the writer
+
+        acc.load(dayKey, dbRows(dayKey));
+        insert(at(day, 9, 15), dayKey, false);         // committed after the read
+        assertMatchesDb(acc, dayKey, at(day, 10, 0));
+        assertTrue(acc.verify(dbRows(dayKey), at(day, 10, 0)));
+    }
+
+    @Test
+    public void verifyReloadsFromTheDbOnMismatch() throws Exception {
+        WearTimeAccumulator acc = new WearTimeAccumulator();
+        acc.load(dayKey, dbRows(dayKey));
+        save(acc, at(day, 9, 0), dayKey, true);
+        insert(at(day, 10, 0), dayKey, false);         // written without onSession
+
+        long now = at(day, 12, 0);
+        assertFalse(acc.verify(dbRows(dayKey), now));
+        assertMatchesDb(acc, dayKey, now);
+        assertTrue(acc.verify(dbRows(dayKey), now));
+    }
+
+    @Test
+    public void slopeStartIsTheTrailingWornRun() throws Exception {
+        WearTimeAccumulator acc = new WearTimeAccumulator();
+        assertEquals(-1L, acc.slopeStart());                           // nothing loaded
+        acc.load(dayKey, dbRows(dayKey));
+        assertEquals(-1L, acc.slopeStart());
+
+        save(acc, at(day, 7, 30), dayKey, true);                        // worn since before 08:00
+        assertEquals(at(day, 8, 0), acc.slopeStart());
+        save(acc, at(day, 9, 0), dayKey, false);
+        save(acc, at(day, 9, 30), dayKey, true);
+        save(acc, at(day, 10, 0), dayKey, true);
+        assertEquals(at(day, 9, 30), acc.slopeStart());
+        save(acc, at(day, 10, 15), dayKey, false);
+        save(acc, at(day, 10, 40), dayKey, true);
+        assertEquals(at(day, 10, 40), acc.slopeStart());
+        save(acc, at(day, 10, 30), dayKey, true);                       // backdated: run starts earlier
+        assertEquals(at(day, 10, 30), acc.slopeStart());
+        save(acc, at(day, 22, 30), dayKey, false);                      // after the window: ignored
+        assertEquals(at(day, 10, 30), acc.slopeStart());
+    }
+
+    // ================== Helpers ==================
+
+    // DataStorageManager.saveWearStateToDatabaseAt: REPLACE the row, then feed the accumulator
+    private void save(WearTimeAccumulator acc, long ts, String date, boolean isWorn) throws Exception {
+        insert(ts, date, isWorn);
+        acc.onSession(new WearSessionEntity(ts, date, isWorn));
+    }
+
+    private void insert(long ts, String date, boolean isWorn) throws Exception {
+        try (PreparedStatement s = db.prepareStatement("INSERT OR REPLACE INTO wear_sessions_table VALUES (?, ?, ?)")) {
+            s.setLong(1, ts);
+            s.setString(2, date);
+            s.setInt(3, isWorn ? 1 : 0);
+            s.executeUpdate();
+        }
+    }
+
+    private List<WearSessionEntity> dbRows(String date) throws Exception {
+        List<WearSessionEntity> rows = new ArrayList<>();
+        try (PreparedStatement s = db.prepareStatement(SESSIONS_FOR_DATE)) {
+            s.setString(1, date);
+            try (ResultSet rs = s.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new WearSessionEntity(rs.getLong("timestamp"), rs.getString("date"), rs.getInt("isWorn") != 0));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void assertMatchesDb(WearTimeAccumulator acc, String date, long now) throws Exception {
+        long[] window = StudyClock.windowOf(date);
+        int[] expected = WearTimeAccumulator.referenceMinutes(dbRows(date), window[0], window[1], now);
+        assertArrayEquals("minutes at " + now, expected, acc.minutes(now));
+    }
+
+    private long at(LocalDate date, int hour, int minute) {
+        return date.atTime(LocalTime.of(hour, minute)).atZone(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.kurtosisstudy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.kurtosisstudy.db.DailyDatabase;
+import com.example.kurtosisstudy.db.LogsEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * WriterBenchmark
+ * ---------------
+ * Purpose:
+ *   - Writes the same rows into today's DailyDatabase (logs_table) along both paths:
+ *       · "per-row":   LogsDao.insert per row, one implicit transaction each (what LogSaver/DataStorageManager used to do).
+ *       · "coalesced": one CoalescingWriter.logs(...) command per row through the real queue, batch window
+ *                      and commit path (dailyDatabaseFor(day) → runInTransaction), then flush(...).
+ *
+ * Notes:
+ *   • Asserts what does not depend on the machine: every row landed in the right file, and the writer used
+ *     far fewer transactions than rows. The timings travel in the assertion messages.
+ *   • -DwriterBenchmark.assertTiming=true also asserts that the coalesced path is not slower (device runs only).
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class WriterBenchmark {
+
+    private static final int ROWS = 2_000;
+    private static final long FLUSH_TIMEOUT_MS = 10_000;
+    private static final boolean ASSERT_TIMING = Boolean.getBoolean("writerBenchmark.assertTiming");
+
+    private final AtomicLong now = new AtomicLong();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        StudyClock.install(now::get);
+        now.set(LocalDate.of(2025, 3, 12).atTime(LocalTime.NOON).atZone(zone).toInstant().toEpochMilli());
+        DataStorageManager.init(context);
+    }
+
+    @After
+    public void tearDown() {
+        DataStorageManager.shutdown();
+        StudyClock.install(StudyClock.SYSTEM);
+    }
+
+    @Test
+    public void coalescedCommitsUseFewTransactions() {
+        DailyDatabase daily = DataStorageManager.peekDailyDatabase();
+        long base = now.get();
+
+        // Baseline: one row, one transaction
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            daily.logsDao().insert(new LogsEntity(base + i, "d", "per-row", "row " + i));
+        }
+        long perRowNs = System.nanoTime() - t0;
+
+        // CoalescingWriter: one command per row, committed in MAX_BATCH / FLUSH_INTERVAL_MS batches
+        long txnsBefore = CoalescingWriter.transactionCount();
+        long rowsBefore = CoalescingWriter.committedRows();
+        t0 = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            CoalescingWriter.logs(Collections.singletonList(new LogsEntity(base + i, "d", "coalesced", "row " + i)));
+        }
+        assertTrue("writer did not drain within " + FLUSH_TIMEOUT_MS + " ms: " + CoalescingWriter.getStatsSummary(),
+                CoalescingWriter.flush(FLUSH_TIMEOUT_MS));
+        long coalescedNs = System.nanoTime() - t0;
+        long txns = CoalescingWriter.transactionCount() - txnsBefore;
+        long rows = CoalescingWriter.committedRows() - rowsBefore;
+
+        String report = String.format(Locale.US,
+                "rows=%d per-row=%.1f ms coalesced=%.1f ms (%d rows in %d txns, MAX_BATCH=%d) | %s",
+                ROWS, perRowNs / 1e6, coalescedNs / 1e6, rows, txns, CoalescingWriter.MAX_BATCH,
+                CoalescingWriter.getStatsSummary());
+
+        assertEquals("per-row rows; " + report, ROWS, rows(daily, "per-row"));
+        assertEquals("coalesced rows; " + report, ROWS, rows(daily, "coalesced"));
+        // Other writers (LogSaver) may share a batch, so the bound leaves room for a few extra transactions
+        assertTrue("rows not coalesced; " + report, txns <= ROWS / CoalescingWriter.MAX_BATCH + 10);
+        if (ASSERT_TIMING) assertTrue("coalesced path slower; " + report, coalescedNs <= perRowNs);
+    }
+
+    private static int rows(DailyDatabase daily, String tag) {
+        try (Cursor c = daily.getOpenHelper().getReadableDatabase()
+                .query("SELECT COUNT(*) FROM logs_table WHERE tag = ?", new Object[]{tag})) {
+            return c.moveToFirst() ? c.getInt(0) : -1;
+        }
+    }
+}
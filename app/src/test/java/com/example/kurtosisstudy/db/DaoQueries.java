@@ -0,0 +1,138 @@
+package com.example.kurtosisstudy.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+DaoQueries.java — test helper
+Description: Collects every @Query of a Room database from the DAO sources: the DAOs the database class exposes
+(abstract XDao x()), then each @Query value (string literals joined by +) with the method's parameters.
+Room's @Query has CLASS retention, so reflection cannot see it at runtime; reading the sources keeps the
+statements identical to the annotations. Unit tests run with the module directory as working directory.
+*/
+
+final class DaoQueries {
+
+    static final File SOURCES = new File("src/main/java/com/example/kurtosisstudy/db");
+
+    private static final Pattern DAO_GETTER = Pattern.compile("abstract\\s+(\\w+Dao)\\s+\\w+\\s*\\(\\s*\\)");
+    private static final Pattern SIGNATURE = Pattern.compile("(\\w+)\\s*\\(([^)]*)\\)\\s*;");
+    private static final Pattern NAMED_ARG = Pattern.compile(":(\\w+)");
+
+    // One @Query method
+    static final class DaoQuery {
+        final String name;              // Dao.method
+        final String sql;               // as annotated, with :named arguments
+        final List<String[]> params;    // {type, name} in declaration order
+
+        DaoQuery(String name, String sql, List<String[]> params) {
+            this.name = name;
+            this.sql = sql;
+            this.params = params;
+        }
+
+        // The statement with one `?` per :named argument, and the argument names in that order
+        String positionalSql() {
+            return NAMED_ARG.matcher(sql).replaceAll("?");
+        }
+
+        List<String> argumentNames() {
+            List<String> names = new ArrayList<>();
+            Matcher m = NAMED_ARG.matcher(sql);
+            while (m.find()) names.add(m.group(1));
+            return names;
+        }
+
+        String typeOf(String argument) {
+            for (String[] p : params) if (p[1].equals(argument)) return p[0];
+            throw new IllegalStateException(name + ": no parameter " + argument);
+        }
+
+        boolean isRead() {
+            return sql.trim().regionMatches(true, 0, "SELECT", 0, 6);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private DaoQueries() {} // no instances
+
+    static List<DaoQuery> forDatabase(String databaseClass) throws IOException {
+        List<DaoQuery> queries = new ArrayList<>();
+        for (String dao : daosOf(databaseClass)) queries.addAll(forDao(dao));
+        return queries;
+    }
+
+    // Every *Dao.java of the package
+    static Set<String> allDaos() {
+        Set<String> daos = new TreeSet<>();
+        File[] files = SOURCES.listFiles((dir, name) -> name.endsWith("Dao.java"));
+        if (files != null) for (File f : files) daos.add(f.getName().replace(".java", ""));
+        return daos;
+    }
+
+    // DAOs a database class exposes
+    static Set<String> daosOf(String databaseClass) throws IOException {
+        Set<String> daos = new TreeSet<>();
+        Matcher m = DAO_GETTER.matcher(read(databaseClass));
+        while (m.find()) daos.add(m.group(1));
+        return daos;
+    }
+
+    static List<DaoQuery> forDao(String dao) throws IOException {
+        String src = read(dao);
+        List<DaoQuery> queries = new ArrayList<>();
+        int at = 0;
+        while ((at = src.indexOf("@Query(", at)) >= 0) {
+            int i = at + "@Query(".length();
+            StringBuilder sql = new StringBuilder();
+            while (true) {
+                char c = src.charAt(i);
+                if (c == '"') {
+                    int end = i + 1;
+                    while (src.charAt(end) != '"' || src.charAt(end - 1) == '\\') end++;
+                    sql.append(src, i + 1, end);
+                    i = end + 1;
+                } else if (c == ')') {
+                    i++;
+                    break;
+                } else if (Character.isWhitespace(c) || c == '+') {
+                    i++;
+                } else {
+                    throw new IllegalStateException(dao + ": @Query is not a plain string literal at " + src.substring(at, i + 1));
+                }
+            }
+            Matcher sig = SIGNATURE.matcher(src);
+            if (!sig.find(i)) throw new IllegalStateException(dao + ": no method after " + sql);
+            queries.add(new DaoQuery(dao + "." + sig.group(1), sql.toString().replace("\\\"", "\""), params(sig.group(2))));
+            at = i;
+        }
+        return queries;
+    }
+
+    private static List<String[]> params(String list) {
+        List<String[]> params = new ArrayList<>();
+        if (list.trim().isEmpty()) return params;
+        for (String p : list.split(",")) {
+            String[] words = p.replaceAll("@\\w+", "").trim().split("\\s+");
+            params.add(new String[]{words[words.length - 2], words[words.length - 1]});
+        }
+        return params;
+    }
+
+    private static String read(String className) throws IOException {
+        File file = new File(SOURCES, className + ".java");
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,522 @@
+package com.example.kurtosisstudy.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.room.migration.Migration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+DatabaseMigrationsQueryPlanTest.java
+Description: Creates the version-1 schemas exactly as Room created them on the first app release and runs every
+migration of DatabaseMigrations on them. Then:
+  · the migrated schema must match the one Room exports for the current version (app/schemas/...json);
+  · every @Query of every DAO (read from the DAO sources, see DaoQueries) runs on several seeded weeks of
+    rows, and EXPLAIN QUERY PLAN shows an index seek for filtered statements and no temp B-tree sort,
+    except the few listed with their reason;
+  · the data conversions of the minute-key migrations.
+*/
+
+public class DatabaseMigrationsQueryPlanTest {
+
+    // ---- Version 1 schemas (Room DDL of the baseline entities) ----
+
+    static final String[] MAIN_V1 = {
+            "CREATE TABLE IF NOT EXISTS `daily_cumulative_table` (`timestamp` INTEGER NOT NULL, `day` TEXT, "
+                    + "`week` INTEGER NOT NULL, `cumulative` INTEGER NOT NULL, `secondaryCumulative` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`timestamp`))",
+            "CREATE TABLE IF NOT EXISTS `weekly_average_table` (`weekNumber` INTEGER NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, `goalAchieved` REAL NOT NULL, PRIMARY KEY(`weekNumber`))",
+            "CREATE TABLE IF NOT EXISTS `weekly_ratio_table` (`weekId` INTEGER NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, `ratioValue` REAL NOT NULL, PRIMARY KEY(`weekId`))",
+            "CREATE TABLE IF NOT EXISTS `notifications_table` (`timestamp` INTEGER NOT NULL, "
+                    + "`level` INTEGER NOT NULL, `message` TEXT, PRIMARY KEY(`timestamp`))",
+            "CREATE TABLE IF NOT EXISTS `study_meta_table` (`id` INTEGER NOT NULL, "
+                    + "`startOfStudyTimestamp` INTEGER NOT NULL, `startOfStudyDate` TEXT, "
+                    + "`baselineComputed` INTEGER NOT NULL, PRIMARY KEY(`id`))",
+            "CREATE TABLE IF NOT EXISTS `wear_sessions_table` (`timestamp` INTEGER NOT NULL, `date` TEXT, "
+                    + "`isWorn` INTEGER NOT NULL, PRIMARY KEY(`timestamp`))",
+            "CREATE TABLE IF NOT EXISTS `daily_wear_minutes_table` (`day` TEXT NOT NULL, `week` INTEGER NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, `wornMinutes` INTEGER NOT NULL, `notWornMinutes` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`day`))",
+    };
+
+    private static final String[] DAILY_V1 = {
+            "CREATE TABLE IF NOT EXISTS `sensor_data_table` (`timestamp` INTEGER NOT NULL, `accelX` REAL NOT NULL, "
+                    + "`accelY` REAL NOT NULL, `accelZ` REAL NOT NULL, `angle` REAL NOT NULL, `inclination` REAL NOT NULL, "
+                    + "`std` REAL NOT NULL, `rawKurtosis` REAL NOT NULL, `rawGMAC` REAL NOT NULL, "
+                    + "`kurtosis` INTEGER NOT NULL, `activity` INTEGER NOT NULL, PRIMARY KEY(`timestamp`))",
+            "CREATE TABLE IF NOT EXISTS `minute_averages_table` (`alignedMinute` TEXT NOT NULL, "
+                    + "`timestamp` INTEGER NOT NULL, `average` INTEGER NOT NULL, `secondary` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`alignedMinute`))",
+            "CREATE TABLE IF NOT EXISTS `adjusted_daily_goal_table` (`timestamp` INTEGER NOT NULL, "
+                    + "`week` INTEGER NOT NULL, `day` TEXT, `adjustedDailyGoal` INTEGER NOT NULL, PRIMARY KEY(`timestamp`))",
+            "CREATE TABLE IF NOT EXISTS `logs_table` (`timestamp` INTEGER NOT NULL, `tag` TEXT, `log` TEXT, "
+                    + "PRIMARY KEY(`timestamp`))",
+    };
+
+    private static final String[] PARTITIONED_V1 = {
+            "CREATE TABLE IF NOT EXISTS `partitioned_minute_averages_table` (`dayKey` TEXT NOT NULL, "
+                    + "`alignedMinute` TEXT NOT NULL, `timestamp` INTEGER NOT NULL, `average` INTEGER NOT NULL, "
+                    + "`secondary` INTEGER NOT NULL, PRIMARY KEY(`dayKey`, `alignedMinute`))",
+            "CREATE INDEX IF NOT EXISTS `index_partitioned_minute_averages_table_dayKey_timestamp` "
+                    + "ON `partitioned_minute_averages_table` (`dayKey`, `timestamp`)",
+            "CREATE TABLE IF NOT EXISTS `partitioned_sensor_data_table` (`timestamp` INTEGER NOT NULL, "
+                    + "`accelX` REAL NOT NULL, `accelY` REAL NOT NULL, `accelZ` REAL NOT NULL, `angle` REAL NOT NULL, "
+                    + "`inclination` REAL NOT NULL, `std` REAL NOT NULL, `rawKurtosis` REAL NOT NULL, `rawGMAC` REAL NOT NULL, "
+                    + "`kurtosis` INTEGER NOT NULL, `activity` INTEGER NOT NULL, PRIMARY KEY(`timestamp`))",
+            "CREATE TABLE IF NOT EXISTS `day_partitions_table` (`dayKey` TEXT NOT NULL, `startMillis` INTEGER NOT NULL, "
+                    + "`endMillis` INTEGER NOT NULL, `createdAt` INTEGER NOT NULL, `importedFrom` TEXT, PRIMARY KEY(`dayKey`))",
+    };
+
+    // ---- Seeded data: four study weeks (main, partitioned) or one study day (daily file) ----
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final DateTimeFormatter DAY_KEY = DateTimeFormatter.ofPattern("yyyy_MM_dd", Locale.US);
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final int STUDY_DAYS = 28;
+    private static final long STUDY_START = LocalDate.of(2025, 3, 3).atStartOfDay(ZONE).toInstant().toEpochMilli();
+    private static final long MID = STUDY_START + 17 * DAY_MS + 12 * HOUR_MS;   // arguments point here
+
+    // Room exports the current schema of each database here (room.schemaLocation)
+    private static final File SCHEMAS = new File("schemas");
+
+    // Filtered statements allowed to scan, and statements allowed to sort, with the reason
+    private static final Map<String, String> SCANS_ALLOWED = new TreeMap<>();
+    private static final Map<String, String> SORTS_ALLOWED = new TreeMap<>();
+    static {
+        SCANS_ALLOWED.put("WearIntervalDao.getBackfilledEnds", "WearIntervalIndex.rebuild folds every segment anyway");
+        SORTS_ALLOWED.put("EnergyReportDao.getAll", "a few dozen report rows, read once per day");
+        SORTS_ALLOWED.put("DaySummaryDao.getWeek", "the ≤ 7 rows of one week");
+        SORTS_ALLOWED.put("DayHistogramDao.getWeek", "the ≤ 7 rows of one week");
+    }
+
+    private Connection connection;
+
+    @Before
+    public void open() throws Exception {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @After
+    public void close() throws Exception {
+        connection.close();
+    }
+
+    // ================== Query plans ==================
+
+    @Test
+    public void everyDaoBelongsToADatabase() throws Exception {
+        Set<String> exposed = new TreeSet<>();
+        for (String database : new String[]{"MainResultsDatabase", "DailyDatabase", "PartitionedDatabase"}) {
+            exposed.addAll(DaoQueries.daosOf(database));
+        }
+        assertEquals("DAOs not checked below", DaoQueries.allDaos(), exposed);
+    }
+
+    @Test
+    public void mainDatabaseQueriesUseIndexes() throws Exception {
+        createAndMigrate(MAIN_V1, DatabaseMigrations.MAIN);
+        seed("daily_cumulative_table", STUDY_START, STUDY_DAYS * 1440, MINUTE_MS);          // one row per minute
+        seed("wear_sessions_table", STUDY_START, STUDY_DAYS * 32, 45 * MINUTE_MS);          // transitions
+        seed("wear_intervals_table", STUDY_START, STUDY_DAYS * 16, 90 * MINUTE_MS);
+        seed("notifications_table", STUDY_START, STUDY_DAYS * 14, 60 * MINUTE_MS);
+        seed("daily_wear_minutes_table", STUDY_START, STUDY_DAYS, DAY_MS);                 // one row per day
+        seed("day_summary", STUDY_START, STUDY_DAYS, DAY_MS);
+        seed("day_histogram_table", STUDY_START, STUDY_DAYS, DAY_MS);
+        seed("weekly_average_table", STUDY_START, STUDY_DAYS / 7, 7 * DAY_MS);             // one row per week
+        seed("weekly_ratio_table", STUDY_START, STUDY_DAYS / 7, 7 * DAY_MS);
+        seed("study_meta_table", STUDY_START, 1, DAY_MS);
+
+        assertQueries(DaoQueries.forDatabase("MainResultsDatabase"));
+    }
+
+    @Test
+    public void dailyDatabaseQueriesUseIndexes() throws Exception {
+        createAndMigrate(DAILY_V1, DatabaseMigrations.DAILY);
+        long window = startOfDay(MID) + 8 * HOUR_MS;                                         // one 08:00–22:00 file
+        seed("sensor_data_table", window, 14 * 3600, 1_000L);                                // 1 Hz stands in for 50 Hz
+        seed("second_summaries_table", window, 14 * 3600, 1_000L);
+        seed("minute_averages_table", window, 14 * 60, MINUTE_MS);
+        seed("adjusted_daily_goal_table", window, 14, HOUR_MS);
+        seed("logs_table", window, 14 * 360, 10_000L);
+        seed("signal_pyramid_table", window, 14 * 360, 10_000L);
+        seed("energy_report_table", window, 40, 1_000L);
+
+        assertQueries(DaoQueries.forDatabase("DailyDatabase"));
+    }
+
+    @Test
+    public void partitionedDatabaseQueriesUseIndexes() throws Exception {
+        createAndMigrate(PARTITIONED_V1, DatabaseMigrations.PARTITIONED);
+        seed("partitioned_sensor_data_table", STUDY_START, STUDY_DAYS * 4320, 20_000L);
+        seed("partitioned_minute_averages_table", STUDY_START, STUDY_DAYS * 1440, MINUTE_MS);
+        seed("day_partitions_table", STUDY_START, STUDY_DAYS, DAY_MS);
+
+        assertQueries(DaoQueries.forDatabase("PartitionedDatabase"));
+    }
+
+    // ================== Exported schemas ==================
+
+    @Test
+    public void migratedMainSchemaMatchesTheExportedSchema() throws Exception {
+        createAndMigrate(MAIN_V1, DatabaseMigrations.MAIN);
+        assertMatchesExportedSchema("MainResultsDatabase", DatabaseMigrations.MAIN);
+    }
+
+    @Test
+    public void migratedDailySchemaMatchesTheExportedSchema() throws Exception {
+        createAndMigrate(DAILY_V1, DatabaseMigrations.DAILY);
+        assertMatchesExportedSchema("DailyDatabase", DatabaseMigrations.DAILY);
+    }
+
+    @Test
+    public void migratedPartitionedSchemaMatchesTheExportedSchema() throws Exception {
+        createAndMigrate(PARTITIONED_V1, DatabaseMigrations.PARTITIONED);
+        assertMatchesExportedSchema("PartitionedDatabase", DatabaseMigrations.PARTITIONED);
+    }
+
+    // ================== Data conversions ==================
+
+    @Test
+    public void dailyMinuteKeysBecomeEpochMinutesOfTheirDay() throws Exception {
+        createAndMigrateTo(DAILY_V1, DatabaseMigrations.DAILY, 6);
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = LocalDate.of(2025, 3, 12);
+        long writtenAt1315 = day.atTime(13, 16, 5).atZone(zone).toInstant().toEpochMilli();
+        long writtenAfterMidnight = day.plusDays(1).atTime(0, 1, 2).atZone(zone).toInstant().toEpochMilli();
+        JdbcSupportDatabase.exec(connection, "INSERT INTO minute_averages_table VALUES ('13:14:00', " + writtenAt1315 + ", 41, 7)");
+        JdbcSupportDatabase.exec(connection, "INSERT INTO minute_averages_table VALUES ('23:59:00', " + writtenAfterMidnight + ", 12, 3)");
+
+        DatabaseMigrations.DAILY_6_7.migrate(JdbcSupportDatabase.wrap(connection));
+
+        assertEquals(41, averageAt("minute_averages_table", epochMinute(day, 13, 14, zone)));
+        // Written after midnight, but measured on the file's day
+        assertEquals(12, averageAt("minute_averages_table", epochMinute(day, 23, 59, zone)));
+    }
+
+    @Test
+    public void partitionedMinuteKeysAreDatedByTheirDayKey() throws Exception {
+        createAndMigrateTo(PARTITIONED_V1, DatabaseMigrations.PARTITIONED, 1);
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate day = LocalDate.of(2025, 3, 12);
+        long writtenAfterMidnight = day.plusDays(1).atTime(0, 1, 2).atZone(zone).toInstant().toEpochMilli();
+        JdbcSupportDatabase.exec(connection, "INSERT INTO partitioned_minute_averages_table VALUES "
+                + "('2025_03_12', '23:59:00', " + writtenAfterMidnight + ", 12, 3)");
+
+        DatabaseMigrations.PARTITIONED_1_2.migrate(JdbcSupportDatabase.wrap(connection));
+
+        assertEquals(12, averageAt("partitioned_minute_averages_table", epochMinute(day, 23, 59, zone)));
+    }
+
+    // ================== Helpers ==================
+
+    private void createAndMigrate(String[] v1, Migration[] migrations) throws Exception {
+        createAndMigrateTo(v1, migrations, Integer.MAX_VALUE);
+    }
+
+    private void createAndMigrateTo(String[] v1, Migration[] migrations, int version) throws Exception {
+        for (String ddl : v1) JdbcSupportDatabase.exec(connection, ddl);
+        int current = 1;
+        for (Migration m : migrations) {
+            if (m.endVersion > version) break;
+            assertEquals("migrations must be contiguous", current, m.startVersion);
+            m.migrate(JdbcSupportDatabase.wrap(connection));
+            current = m.endVersion;
+        }
+    }
+
+    // Every DAO statement: runs on the seeded rows with dummy arguments; a filtered one is answered by an
+    // index seek (no full-table SCAN) and no statement sorts in a temp B-tree, except the listed ones
+    private void assertQueries(List<DaoQueries.DaoQuery> queries) throws Exception {
+        assertFalse("no @Query found", queries.isEmpty());
+        for (DaoQueries.DaoQuery q : queries) {
+            List<String> plan = planOf(q);
+            boolean filtered = q.sql.toUpperCase(Locale.ROOT).contains(" WHERE ");
+            if (filtered || q.isRead()) assertFalse("empty plan for " + q, plan.isEmpty());   // DELETE of all rows: truncate
+            for (String detail : plan) {
+                if (filtered && !SCANS_ALLOWED.containsKey(q.name)) {
+                    assertFalse("full scan in " + q + " → " + plan, detail.startsWith("SCAN ") && !detail.equals("SCAN CONSTANT ROW"));
+                }
+                if (!SORTS_ALLOWED.containsKey(q.name)) {
+                    assertFalse("sort in " + q + " → " + plan, detail.contains("TEMP B-TREE"));
+                }
+            }
+            if (filtered && !SCANS_ALLOWED.containsKey(q.name)) {
+                assertTrue("no index seek in " + q + " → " + plan, plan.stream().anyMatch(d -> d.startsWith("SEARCH ")));
+            }
+            run(q);
+        }
+    }
+
+    private List<String> planOf(DaoQueries.DaoQuery q) throws Exception {
+        List<String> details = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN QUERY PLAN " + q.positionalSql())) {
+            bind(ps, q);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) details.add(rs.getString("detail"));
+            }
+        }
+        return details;
+    }
+
+    // Reads are stepped to the end; writes run in a transaction that is rolled back
+    private void run(DaoQueries.DaoQuery q) throws Exception {
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(q.positionalSql())) {
+            bind(ps, q);
+            if (q.isRead()) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) { /* step every row */ }
+                }
+            } else {
+                ps.executeUpdate();
+            }
+        } finally {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Dummy arguments inside the seeded range, by parameter type and name
+    private static void bind(PreparedStatement ps, DaoQueries.DaoQuery q) throws Exception {
+        List<String> names = q.argumentNames();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            String type = q.typeOf(name);
+            String lower = name.toLowerCase(Locale.ROOT);
+            switch (type) {
+                case "String":
+                    ps.setString(i + 1, lower.equals("source") ? "User1_" + dayKeyOf(MID) : dayKeyOf(MID));
+                    break;
+                case "long":
+                case "Long":
+                    if (lower.contains("minute")) ps.setLong(i + 1, MID / MINUTE_MS);
+                    else if (lower.startsWith("end")) ps.setLong(i + 1, MID + HOUR_MS);
+                    else ps.setLong(i + 1, MID);
+                    break;
+                case "int":
+                case "Integer":
+                    if (lower.startsWith("week")) ps.setInt(i + 1, weekOf(MID));
+                    else if (lower.equals("minwornminutes")) ps.setInt(i + 1, 480);
+                    else if (lower.equals("level")) ps.setInt(i + 1, 2);
+                    else if (lower.equals("signal")) ps.setInt(i + 1, 0);
+                    else ps.setInt(i + 1, 1);
+                    break;
+                case "boolean":
+                    ps.setInt(i + 1, 1);
+                    break;
+                case "float":
+                case "double":
+                    ps.setDouble(i + 1, 1.0);
+                    break;
+                default:
+                    throw new IllegalStateException(q + ": no dummy value for " + type + " " + name);
+            }
+        }
+    }
+
+    // `rows` rows stepping `stepMs` from `from`; column values derived from the row time by column name
+    private void seed(String table, long from, int rows, long stepMs) throws Exception {
+        List<String[]> columns = new ArrayList<>();           // {name, type, pk}
+        try (Statement s = connection.createStatement();
+             ResultSet rs = s.executeQuery("PRAGMA table_info(`" + table + "`)")) {
+            while (rs.next()) columns.add(new String[]{rs.getString("name"), rs.getString("type"), rs.getString("pk")});
+        }
+        assertFalse("no table " + table, columns.isEmpty());
+        StringBuilder sql = new StringBuilder("INSERT OR IGNORE INTO `" + table + "` VALUES (");
+        for (int c = 0; c < columns.size(); c++) sql.append(c == 0 ? "?" : ", ?");
+        sql.append(")");
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < rows; i++) {
+                long t = from + i * stepMs;
+                for (int c = 0; c < columns.size(); c++) {
+                    ps.setObject(c + 1, valueOf(columns.get(c), t, i, stepMs));
+                }
+                ps.executeUpdate();
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static Object valueOf(String[] column, long t, int i, long stepMs) {
+        String name = column[0].toLowerCase(Locale.ROOT);
+        String type = column[1].toUpperCase(Locale.ROOT);
+        boolean pk = !"0".equals(column[2]);
+        switch (name) {
+            case "day": case "date": case "daykey": case "startofstudydate":
+                return dayKeyOf(t);
+            case "week": case "weeknumber": case "weekid":
+                return weekOf(t);
+            case "epochminute":
+                return t / MINUTE_MS;
+            case "timestamp": case "startts": case "secondstart": case "bucketstart": case "updatedat":
+            case "createdat": case "startmillis": case "pointts": case "startofstudytimestamp":
+                return t;
+            case "endts":
+                return t + stepMs / 2;
+            case "endmillis":
+                return t + DAY_MS;
+            case "isworn": case "backfilled": case "provisional": case "baselinecomputed":
+                return i % 2;
+            case "id":
+                return i + 1;
+            case "signal":
+                return i % 4;
+            case "level":
+                return type.contains("INT") ? 1 + i % 5 : "d";
+            default:
+                if (type.contains("INT")) return pk ? i : i % 7;
+                if (type.contains("TEXT")) return pk ? "k" + i : "v" + (i % 4);
+                if (type.contains("BLOB")) return new byte[96];
+                return (i % 100) / 10.0;
+        }
+    }
+
+    // Columns (affinity, NOT NULL, primary key position) and index_* indices of every exported entity,
+    // as Room's TableInfo validation compares them after the migrations
+    private void assertMatchesExportedSchema(String database, Migration[] migrations) throws Exception {
+        int version = migrations[migrations.length - 1].endVersion;
+        File file = new File(SCHEMAS, "com.example.kurtosisstudy.db." + database + "/" + version + ".json");
+        assertTrue("no exported schema " + file, file.exists());
+        JSONObject schema = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8))
+                .getJSONObject("database");
+        assertEquals(version, schema.getInt("version"));
+
+        JSONArray entities = schema.getJSONArray("entities");
+        Set<String> exportedTables = new TreeSet<>();
+        for (int e = 0; e < entities.length(); e++) {
+            JSONObject entity = entities.getJSONObject(e);
+            String table = entity.getString("tableName");
+            exportedTables.add(table);
+
+            List<String> pk = new ArrayList<>();
+            JSONArray pkColumns = entity.getJSONObject("primaryKey").getJSONArray("columnNames");
+            for (int c = 0; c < pkColumns.length(); c++) pk.add(pkColumns.getString(c));
+            Map<String, String> expected = new TreeMap<>();
+            JSONArray fields = entity.getJSONArray("fields");
+            for (int f = 0; f < fields.length(); f++) {
+                JSONObject field = fields.getJSONObject(f);
+                String column = field.getString("columnName");
+                expected.put(column, field.getString("affinity") + " notNull=" + field.optBoolean("notNull")
+                        + " pk=" + (pk.indexOf(column) + 1));
+            }
+            Map<String, String> actual = new TreeMap<>();
+            try (Statement s = connection.createStatement();
+                 ResultSet rs = s.executeQuery("PRAGMA table_info(`" + table + "`)")) {
+                while (rs.next()) {
+                    actual.put(rs.getString("name"), affinity(rs.getString("type")) + " notNull=" + (rs.getInt("notnull") != 0)
+                            + " pk=" + rs.getInt("pk"));
+                }
+            }
+            assertEquals(database + " v" + version + " columns of " + table, expected, actual);
+
+            Map<String, String> expectedIndices = new TreeMap<>();
+            JSONArray indices = entity.optJSONArray("indices");
+            for (int x = 0; indices != null && x < indices.length(); x++) {
+                JSONObject index = indices.getJSONObject(x);
+                expectedIndices.put(index.getString("name"), "unique=" + index.getBoolean("unique")
+                        + " " + index.getJSONArray("columnNames").join(",").replace("\"", ""));
+            }
+            assertEquals(database + " v" + version + " indices of " + table, expectedIndices, indicesOf(table));
+        }
+
+        Set<String> tables = new TreeSet<>();
+        try (Statement s = connection.createStatement();
+             ResultSet rs = s.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table' "
+                     + "AND name NOT LIKE 'sqlite_%' AND name NOT IN ('room_master_table', 'android_metadata')")) {
+            while (rs.next()) tables.add(rs.getString(1));
+        }
+        assertEquals(database + " v" + version + " tables", exportedTables, tables);
+    }
+
+    private Map<String, String> indicesOf(String table) throws Exception {
+        Map<String, String> indices = new TreeMap<>();
+        try (Statement s = connection.createStatement();
+             ResultSet rs = s.executeQuery("PRAGMA index_list(`" + table + "`)")) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (name.startsWith("index_")) indices.put(name, "unique=" + (rs.getInt("unique") != 0));
+            }
+        }
+        for (Map.Entry<String, String> index : indices.entrySet()) {
+            List<String> columns = new ArrayList<>();
+            try (Statement s = connection.createStatement();
+                 ResultSet rs = s.executeQuery("PRAGMA index_info(`" + index.getKey() + "`)")) {
+                while (rs.next()) columns.add(rs.getString("name"));
+            }
+            index.setValue(index.getValue() + " " + String.join(",", columns));
+        }
+        return indices;
+    }
+
+    // SQLite's type affinity rules (what Room's TableInfo compares)
+    private static String affinity(String declared) {
+        String type = declared == null ? "" : declared.toUpperCase(Locale.ROOT);
+        if (type.contains("INT")) return "INTEGER";
+        if (type.contains("CHAR") || type.contains("CLOB") || type.contains("TEXT")) return "TEXT";
+        if (type.isEmpty() || type.contains("BLOB")) return "BLOB";
+        if (type.contains("REAL") || type.contains("FLOA") || type.contains("DOUB")) return "REAL";
+        return "NUMERIC";
+    }
+
+    private int averageAt(String table, long epochMinute) throws Exception {
+        try (Statement s = connection.createStatement();
+             ResultSet rs = s.executeQuery("SELECT average FROM " + table + " WHERE epochMinute = " + epochMinute)) {
+            assertTrue("no row for minute " + epochMinute, rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    private static long epochMinute(LocalDate day, int hour, int minute, ZoneId zone) {
+        return day.atTime(LocalTime.of(hour, minute)).atZone(zone).toInstant().toEpochMilli() / 60_000L;
+    }
+
+    private static long startOfDay(long t) {
+        return Instant.ofEpochMilli(t).atZone(ZONE).toLocalDate().atStartOfDay(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static String dayKeyOf(long t) {
+        return DAY_KEY.format(Instant.ofEpochMilli(t).atZone(ZONE));
+    }
+
+    private static int weekOf(long t) {
+        long days = ChronoUnit.DAYS.between(Instant.ofEpochMilli(STUDY_START).atZone(ZONE).toLocalDate(),
+                Instant.ofEpochMilli(t).atZone(ZONE).toLocalDate());
+        return (int) (days / 7 + 1);
+    }
+}
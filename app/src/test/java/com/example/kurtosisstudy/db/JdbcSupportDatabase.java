@@ -0,0 +1,38 @@
+package com.example.kurtosisstudy.db;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+JdbcSupportDatabase.java — test helper
+Description: Runs DatabaseMigrations on the JVM. The migrations only call execSQL(...), so a SupportSQLiteDatabase
+proxy forwarding those calls to an in-memory sqlite-jdbc connection is enough; any other call fails the test.
+*/
+
+final class JdbcSupportDatabase {
+
+    private JdbcSupportDatabase() {} // no instances
+
+    static SupportSQLiteDatabase wrap(Connection connection) {
+        return (SupportSQLiteDatabase) Proxy.newProxyInstance(
+                SupportSQLiteDatabase.class.getClassLoader(),
+                new Class<?>[]{SupportSQLiteDatabase.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("execSQL") && args != null && args.length >= 1) {
+                        exec(connection, (String) args[0]);
+                        return null;
+                    }
+                    throw new UnsupportedOperationException("Not used by the migrations: " + method.getName());
+                });
+    }
+
+    static void exec(Connection connection, String sql) throws SQLException {
+        try (Statement s = connection.createStatement()) {
+            s.execute(sql);
+        }
+    }
+}
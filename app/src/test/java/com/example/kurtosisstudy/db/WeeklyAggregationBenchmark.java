@@ -0,0 +1,147 @@
+package com.example.kurtosisstudy.db;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.room.migration.Migration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+WeeklyAggregationBenchmark.java
+Description: Checks the weekly average aggregation on a study-sized main results DB (sqlite-jdbc, WAL):
+  · "n+1":     DailyWearTimeDao.getEntriesForWeek + one DailyCumulativeDao.getLastEntryForDay per wear day
+               (what computeAndSaveWeeklyAverage used to do every hour).
+  · "summary": DaySummaryDao.getWeeklyMovementTotals, one statement over the week's ≤ 7 day_summary rows.
+The scratch file holds WEEKS × 7 days with one cumulative row per minute of the 08:00–22:00 window, written
+at version 1 and migrated with DatabaseMigrations.MAIN (MAIN_2_3 backfills day_summary from those rows).
+Both paths must give the same movement and wear totals for every week; the plan side (one PK range over
+day_summary) is covered by DatabaseMigrationsQueryPlanTest.
+*/
+
+public class WeeklyAggregationBenchmark {
+
+    private static final int WEEKS = 12;
+    private static final int MINUTES_PER_DAY = 14 * 60;
+    private static final int FLOOR = 480;            // DataStorageManager.MIN_WEAR_MINUTES_PER_DAY
+
+    // DAO statements, with Room's named arguments as JDBC parameters
+    private static final String ENTRIES_FOR_WEEK =
+            "SELECT * FROM daily_wear_minutes_table WHERE week = ? ORDER BY day ASC";
+    private static final String LAST_ENTRY_FOR_DAY =
+            "SELECT * FROM daily_cumulative_table WHERE day = ? ORDER BY timestamp DESC LIMIT 1";
+    private static final String WEEKLY_TOTALS =
+            "SELECT SUM(wornMinutes >= 0) AS wearDays, "
+                    + "SUM(wornMinutes > 0 AND wornMinutes < ?1) AS shortDays, "
+                    + "SUM(wornMinutes >= ?1 AND activeMinutes >= 0) AS validDays, "
+                    + "TOTAL(CASE WHEN wornMinutes >= ?1 AND activeMinutes >= 0 THEN wornMinutes END) AS totalWearMinutes, "
+                    + "TOTAL(CASE WHEN wornMinutes >= ?1 AND activeMinutes >= 0 THEN activeMinutes END) AS totalMovement "
+                    + "FROM day_summary WHERE week = ?2";
+
+    private File file;
+    private Connection db;
+
+    @Before
+    public void open() throws Exception {
+        file = File.createTempFile("weekly_aggregation_benchmark_scratch", ".db");
+        db = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        JdbcSupportDatabase.exec(db, "PRAGMA journal_mode = WAL");
+        for (String ddl : DatabaseMigrationsQueryPlanTest.MAIN_V1) JdbcSupportDatabase.exec(db, ddl);
+        fill();
+        for (Migration m : DatabaseMigrations.MAIN) m.migrate(JdbcSupportDatabase.wrap(db));
+    }
+
+    @After
+    public void close() throws Exception {
+        db.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+
+    @Test
+    public void summaryTotalsMatchPerDayLookups() throws Exception {
+        try (PreparedStatement entries = db.prepareStatement(ENTRIES_FOR_WEEK);
+             PreparedStatement last = db.prepareStatement(LAST_ENTRY_FOR_DAY);
+             PreparedStatement totals = db.prepareStatement(WEEKLY_TOTALS)) {
+            for (int week = 1; week <= WEEKS; week++) {
+                // Old path: one list query + one sorted lookup per day
+                long movement = 0, wear = 0;
+                entries.setInt(1, week);
+                try (ResultSet w = entries.executeQuery()) {
+                    while (w.next()) {
+                        int worn = w.getInt("wornMinutes");
+                        if (worn < FLOOR) continue;
+                        last.setString(1, w.getString("day"));
+                        try (ResultSet c = last.executeQuery()) {
+                            if (c.next()) {
+                                movement += c.getInt("cumulative");
+                                wear += worn;
+                            }
+                        }
+                    }
+                }
+
+                // New path: one statement per week over day_summary
+                totals.setInt(1, FLOOR);
+                totals.setInt(2, week);
+                try (ResultSet t = totals.executeQuery()) {
+                    t.next();
+                    assertEquals("movement of week " + week, movement, t.getLong("totalMovement"));
+                    assertEquals("wear of week " + week, wear, t.getLong("totalWearMinutes"));
+                }
+            }
+        }
+    }
+
+    // WEEKS × 7 days at version 1; about one day in five stays under the wear floor
+    private void fill() throws Exception {
+        Random random = new Random(42);
+        long dayMs = 24L * 60 * 60 * 1000;
+        long firstDay = System.currentTimeMillis() - (long) WEEKS * 7 * dayMs;
+        db.setAutoCommit(false);
+        try (PreparedStatement cumulativeRow = db.prepareStatement(
+                     "INSERT INTO daily_cumulative_table VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement wearRow = db.prepareStatement(
+                     "INSERT INTO daily_wear_minutes_table VALUES (?, ?, ?, ?, ?)")) {
+            for (int d = 0; d < WEEKS * 7; d++) {
+                int week = d / 7 + 1;
+                String day = String.format(Locale.US, "bench_%03d", d);
+                long start = firstDay + d * dayMs;
+                int cumulative = 0;
+                for (int m = 0; m < MINUTES_PER_DAY; m++) {
+                    cumulative += random.nextInt(3);
+                    cumulativeRow.setLong(1, start + m * 60_000L);
+                    cumulativeRow.setString(2, day);
+                    cumulativeRow.setInt(3, week);
+                    cumulativeRow.setInt(4, cumulative);
+                    cumulativeRow.setInt(5, cumulative / 4);
+                    cumulativeRow.executeUpdate();
+                }
+                int worn = (random.nextInt(5) == 0) ? 200 + random.nextInt(250) : FLOOR + random.nextInt(MINUTES_PER_DAY - FLOOR);
+                wearRow.setString(1, day);
+                wearRow.setInt(2, week);
+                wearRow.setLong(3, start + MINUTES_PER_DAY * 60_000L);
+                wearRow.setInt(4, worn);
+                wearRow.setInt(5, MINUTES_PER_DAY - worn);
+                wearRow.executeUpdate();
+            }
+        }
+        db.commit();
+        db.setAutoCommit(true);
+        try (Statement s = db.createStatement()) {
+            s.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+    }
+}